@@ -0,0 +1,351 @@
+package education.bert;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Base class of the caches with primitive int keys. Keys are stored in an open-addressing table with linear probing
+ * and backward-shift deletion, so the table needs neither entry objects nor tombstones. The table is allocated once
+ * for the maximum number of items and kept at most half full. When the cache is full, an item is evicted according to
+ * the CLOCK policy: the hand sweeps the table, clearing the referenced flags, and evicts the first item that has not
+ * been referenced since the previous sweep.
+ * <p>
+ * Writes are guarded by a StampedLock, while reads are optimistic and retried under the read lock only if a write
+ * interfered. Subclasses store the values in parallel arrays.
+ */
+abstract class AbstractIntCache {
+
+    /**
+     * The minimum number of items to store.
+     */
+    public static final int minimalCacheSize = 1;
+
+    /**
+     * The maximum number of items to store. The table holds four slots per item rounded down to a power of two, so a
+     * larger size would overflow the table capacity.
+     */
+    public static final int maximalCacheSize = (1 << 29) - 1;
+
+    /**
+     * The lock guarding the table.
+     */
+    protected final StampedLock lock = new StampedLock();
+
+    /**
+     * The keys of the items.
+     */
+    protected final int[] keys;
+
+    /**
+     * The flags of the occupied slots.
+     */
+    protected final boolean[] used;
+
+    /**
+     * The CLOCK flags of the items referenced since the previous sweep of the hand. Racy updates are harmless.
+     */
+    protected final boolean[] referenced;
+
+    /**
+     * The mask used to compute slot indexes.
+     */
+    protected final int mask;
+
+    /**
+     * The loads in flight by key.
+     */
+    protected final ConcurrentHashMap<Integer, CompletableFuture<?>> loads = new ConcurrentHashMap<>();
+
+    /**
+     * The counter recording the statistics of the cache.
+     */
+    protected final StatsCounter stats;
+
+    /**
+     * The maximum number of items to store.
+     */
+    private final int maxCacheSize;
+
+    /**
+     * The number of stored items.
+     */
+    private int size;
+
+    /**
+     * The position of the CLOCK hand.
+     */
+    private int hand;
+
+    /**
+     * Constructs an empty table for the specified maximum number of items.
+     *
+     * @param maxCacheSize the maximum number of items to store.
+     * @param stats        the counter recording the statistics of the cache.
+     */
+    protected AbstractIntCache(int maxCacheSize, StatsCounter stats) {
+        if (stats == null) {
+            throw new NullPointerException();
+        }
+        if (maxCacheSize < minimalCacheSize) {
+            throw new IllegalArgumentException("maxCacheSize must not be less than minimalCacheSize (" + minimalCacheSize + ")");
+        }
+        if (maxCacheSize > maximalCacheSize) {
+            throw new IllegalArgumentException("maxCacheSize must not be greater than maximalCacheSize (" + maximalCacheSize + ")");
+        }
+        this.maxCacheSize = maxCacheSize;
+        this.stats = stats;
+        int capacity = Integer.highestOneBit(maxCacheSize) << 2;
+        keys = new int[capacity];
+        used = new boolean[capacity];
+        referenced = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the number of stored items.
+     *
+     * @return the number of stored items.
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the maximum number of items to store.
+     *
+     * @return the maximum number of items to store.
+     */
+    public int getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * Removes all items. Loads in flight will not cache their results.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            loads.clear();
+            for (int i = 0; i < keys.length; i++) {
+                if (used[i]) {
+                    used[i] = false;
+                    referenced[i] = false;
+                    clearValue(i);
+                }
+            }
+            size = 0;
+            hand = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the cache.
+     *
+     * @return the snapshot of the statistics.
+     */
+    public CacheStats stats() {
+        return stats.snapshot();
+    }
+
+    /**
+     * Moves the value from one slot to another one.
+     *
+     * @param from the index of the source slot.
+     * @param to   the index of the target slot.
+     */
+    protected abstract void moveValue(int from, int to);
+
+    /**
+     * Releases the value of the slot.
+     *
+     * @param index the index of the slot.
+     */
+    protected abstract void clearValue(int index);
+
+    /**
+     * Returns the keys of the stored items from the most to the least recently used one, as approximated by CLOCK. The
+     * items are not marked as referenced and no statistics are recorded.
+     *
+     * @return the keys of the stored items.
+     */
+    public int[] keysByRecency() {
+        long stamp = lock.readLock();
+        try {
+            int[] slots = slotsByRecency();
+            int[] itemKeys = new int[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                itemKeys[i] = keys[slots[i]];
+            }
+            return itemKeys;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the occupied slots from the most to the least recently used item as approximated by CLOCK: the
+     * referenced items come first, then the others in the reverse order of eviction. Both groups are listed backwards
+     * from the hand, since the hand has passed the items right behind it last. Must be invoked under a lock.
+     *
+     * @return the indexes of the occupied slots.
+     */
+    protected final int[] slotsByRecency() {
+        int[] slots = new int[size];
+        int count = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            boolean wanted = pass == 0;
+            for (int i = 1; i <= keys.length; i++) {
+                int index = (hand - i) & mask;
+                if (used[index] && referenced[index] == wanted) {
+                    slots[count++] = index;
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the slot of the key. May be invoked under an optimistic read, so the result must be validated.
+     *
+     * @param key the key to be found.
+     * @return the index of the slot, or -1 if the key is absent.
+     */
+    protected final int indexOf(int key) {
+        int index = hash(key) & mask;
+        for (int i = 0; i <= mask; i++) {
+            if (!used[index]) {
+                return -1;
+            }
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Occupies a free slot for the absent key, evicting an item if the cache is full. Must be invoked under the write
+     * lock.
+     *
+     * @param key the key to be inserted.
+     * @return the index of the occupied slot.
+     */
+    protected final int insert(int key) {
+        if (size >= maxCacheSize) {
+            evict();
+        }
+        int index = hash(key) & mask;
+        while (used[index]) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        used[index] = true;
+        referenced[index] = false;
+        size++;
+        return index;
+    }
+
+    /**
+     * Frees the slot and shifts the following items of the probe sequence back, so no tombstone is needed. Must be
+     * invoked under the write lock.
+     *
+     * @param index the index of the slot.
+     */
+    protected final void delete(int index) {
+        int hole = index;
+        used[hole] = false;
+        clearValue(hole);
+        size--;
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            if (!used[next]) {
+                return;
+            }
+            int home = hash(keys[next]) & mask;
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!stays) {
+                keys[hole] = keys[next];
+                referenced[hole] = referenced[next];
+                used[hole] = true;
+                moveValue(next, hole);
+                used[next] = false;
+                clearValue(next);
+                hole = next;
+            }
+        }
+    }
+
+    /**
+     * Cancels caching of the result of the load in flight for the key. Must be invoked under the write lock.
+     *
+     * @param key the key whose load is to be cancelled.
+     */
+    protected final void cancelLoad(int key) {
+        if (!loads.isEmpty()) {
+            loads.remove(key);
+        }
+    }
+
+    /**
+     * Waits for the load in flight and returns its result, rethrowing the exception of the loader.
+     *
+     * @param load the load to wait for.
+     * @param <T>  the type of the loaded value.
+     * @return the loaded value.
+     */
+    protected static <T> T join(CompletableFuture<T> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Evicts the first item not referenced since the previous sweep of the CLOCK hand.
+     */
+    private void evict() {
+        while (true) {
+            int index = hand;
+            hand = (hand + 1) & mask;
+            if (used[index]) {
+                if (referenced[index]) {
+                    referenced[index] = false;
+                } else {
+                    delete(index);
+                    stats.recordEviction(EvictionCause.SIZE);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mixes the bits of the key, so consecutive ids do not form long probe sequences.
+     *
+     * @param key the key to be hashed.
+     * @return the hash of the key.
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
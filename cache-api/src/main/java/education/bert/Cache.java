@@ -1,5 +1,9 @@
 package education.bert;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * An interface that describes the basic methods for cache implementation.
  *
@@ -34,4 +38,32 @@ public interface Cache<K, V> {
      * @return the previous value associated with key, or {@code null} if there was no mapping for key.
      */
     V remove(K key);
+
+    /**
+     * Returns the values corresponding to the specified keys that the cache contains.
+     *
+     * @param keys the keys whose associated values are to be returned.
+     * @return the mappings of the keys present in the cache, in the iteration order of the keys.
+     */
+    default Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the listener notified when the cache evicts an item on its own, e.g. to demote it to another cache. Replaces
+     * the previous listener; {@code null} disables the notifications.
+     *
+     * @param listener the listener to be notified, or {@code null}.
+     * @throws UnsupportedOperationException if the implementation does not report evictions.
+     */
+    default void setEvictionListener(EvictionListener<? super K, ? super V> listener) {
+        throw new UnsupportedOperationException("eviction listener is not supported by " + getClass().getSimpleName());
+    }
 }
@@ -0,0 +1,351 @@
+package education.bert;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent cache implementation based on Least recently used (LRU) cache replacement policy. The keyspace is split
+ * into independently locked segments, each of them keeping its own LRU order. Reads never block: a lookup goes straight
+ * to a ConcurrentHashMap and the access is recorded in a small per-segment buffer which is applied to the LRU order
+ * later under the segment lock (on the next write or when the buffer is full).
+ * <p>
+ * The maximum number of items is split between segments, so the total number of stored items never exceeds
+ * maxCacheSize. Each segment evicts as soon as its own share is full, so when the keys are not spread evenly, an item
+ * may be evicted while the cache as a whole holds fewer than maxCacheSize items. Small caches use a single segment and
+ * therefore keep the exact LRU order and capacity.
+ *
+ * @param <K> the type of keys maintained by this cache. As a key it is supposed to use some type of queries (e.g.
+ *            SQL-queries).
+ * @param <V> the type of cached values.
+ */
+public class CacheConcurrentLruImpl<K, V> implements Cache<K, V> {
+
+    /**
+     * The minimum number of items to store.
+     */
+    public static final int minimalCacheSize = 1;
+
+    /**
+     * The default maximum number of items to store specified by default constructor.
+     */
+    public static final int defaultCacheSize = 10;
+
+    /**
+     * The minimum number of items per segment. The cache is not split into more segments than allows this value.
+     */
+    public static final int minimalSegmentSize = 16;
+
+    /**
+     * The default number of segments to be used, derived from the number of available processors.
+     */
+    public static final int defaultConcurrencyLevel = 4 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of recorded reads per segment kept before they are applied to the LRU order. Must be a power of two.
+     */
+    private static final int readBufferSize = 64;
+
+    /**
+     * Independently locked parts of the cache.
+     */
+    private final Segment<K, V>[] segments;
+
+    /**
+     * The mask used to choose a segment by the key hash.
+     */
+    private final int segmentMask;
+
+    /**
+     * Constructs a cache class split into the number of segments suitable for the specified concurrency level.
+     *
+     * @param maxCacheSize     the maximum number of items to store.
+     * @param concurrencyLevel the estimated number of concurrently updating threads.
+     */
+    @SuppressWarnings("unchecked")
+    public CacheConcurrentLruImpl(int maxCacheSize, int concurrencyLevel) {
+        if (maxCacheSize < minimalCacheSize) {
+            throw new IllegalArgumentException("maxCacheSize must not be less than minimalCacheSize (" + minimalCacheSize + ")");
+        }
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("concurrencyLevel must be positive");
+        }
+
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && (long) segmentCount * 2 * minimalSegmentSize <= maxCacheSize) {
+            segmentCount <<= 1;
+        }
+        segmentMask = segmentCount - 1;
+        segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int capacity = maxCacheSize / segmentCount + (i < maxCacheSize % segmentCount ? 1 : 0);
+            segments[i] = new Segment<>(capacity);
+        }
+    }
+
+    /**
+     * Constructs a cache class with the default concurrency level.
+     *
+     * @param maxCacheSize the maximum number of items to store.
+     */
+    public CacheConcurrentLruImpl(int maxCacheSize) {
+        this(maxCacheSize, defaultConcurrencyLevel);
+    }
+
+    /**
+     * Constructs a cache class and sets the default value for maximum cache size.
+     */
+    public CacheConcurrentLruImpl() {
+        this(defaultCacheSize);
+    }
+
+    /**
+     * Adds a value to the cache associated with a specific key. If the cache previously contained a mapping for the
+     * key, the old value is replaced. When the segment size exceeds its maximum, the least recently accessed element of
+     * the segment will be deleted.
+     *
+     * @param key   key with which the specified value is to be associated.
+     * @param value value to be added to the cache.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        return segmentFor(key).put(key, value);
+    }
+
+    /**
+     * Returns the value corresponding to the specified key. This method does not block.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the cache contains no mapping for the
+     * key.
+     */
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * Removes the value corresponding to the specified key.
+     *
+     * @param key the key whose associated value is to be removed.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return segmentFor(key).remove(key);
+    }
+
+    /**
+     * Sets the listener notified when the least recently used item of a segment is evicted.
+     *
+     * @param listener the listener to be notified, or {@code null}.
+     */
+    @Override
+    public void setEvictionListener(EvictionListener<? super K, ? super V> listener) {
+        for (Segment<K, V> segment : segments) {
+            segment.evictionListener = listener;
+        }
+    }
+
+    /**
+     * Returns the number of segments the cache is split into.
+     *
+     * @return the number of segments.
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Returns the segment responsible for the specified key.
+     *
+     * @param key the key for which segment is to be returned.
+     * @return the segment responsible for the key.
+     */
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & segmentMask];
+    }
+
+    /**
+     * An item of the segment LRU list.
+     *
+     * @param <K> the type of key.
+     * @param <V> the type of value.
+     */
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        Node<K, V> prev;
+        Node<K, V> next;
+        boolean linked;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An independently locked part of the cache with its own LRU order. The map is safe for lock-free reads, while the
+     * LRU list is guarded by the segment lock.
+     *
+     * @param <K> the type of keys.
+     * @param <V> the type of values.
+     */
+    private static final class Segment<K, V> extends ReentrantLock {
+        private final int capacity;
+        private final ConcurrentHashMap<K, Node<K, V>> map;
+        private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>(readBufferSize);
+        private final AtomicInteger readCount = new AtomicInteger();
+        private volatile EvictionListener<? super K, ? super V> evictionListener;
+
+        /**
+         * The least recently used node.
+         */
+        private Node<K, V> head;
+
+        /**
+         * The most recently used node.
+         */
+        private Node<K, V> tail;
+
+        private int size;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            map = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+        }
+
+        V get(K key) {
+            Node<K, V> node = map.get(key);
+            if (node == null) {
+                return null;
+            }
+            recordRead(node);
+            return node.value;
+        }
+
+        V put(K key, V value) {
+            lock();
+            try {
+                drainReads();
+                Node<K, V> node = map.get(key);
+                if (node != null) {
+                    V previous = node.value;
+                    node.value = value;
+                    moveToTail(node);
+                    return previous;
+                }
+                node = new Node<>(key, value);
+                map.put(key, node);
+                linkLast(node);
+                if (++size > capacity) {
+                    Node<K, V> eldest = head;
+                    unlink(eldest);
+                    map.remove(eldest.key);
+                    size--;
+                    EvictionListener<? super K, ? super V> listener = evictionListener;
+                    if (listener != null) {
+                        listener.onEviction(eldest.key, eldest.value, EvictionCause.SIZE);
+                    }
+                }
+                return null;
+            } finally {
+                unlock();
+            }
+        }
+
+        V remove(K key) {
+            lock();
+            try {
+                drainReads();
+                Node<K, V> node = map.remove(key);
+                if (node == null) {
+                    return null;
+                }
+                unlink(node);
+                size--;
+                return node.value;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Records the access to the node in the lossy ring buffer. When the buffer is full, tries to apply the recorded
+         * accesses without waiting for the lock.
+         */
+        private void recordRead(Node<K, V> node) {
+            int index = readCount.getAndIncrement() & (readBufferSize - 1);
+            readBuffer.lazySet(index, node);
+            if (index == readBufferSize - 1 && tryLock()) {
+                try {
+                    drainReads();
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        /**
+         * Applies the recorded accesses to the LRU order from the oldest to the newest one. Must be invoked under the
+         * segment lock.
+         */
+        private void drainReads() {
+            int start = readCount.get();
+            for (int i = 0; i < readBufferSize; i++) {
+                Node<K, V> node = readBuffer.getAndSet((start + i) & (readBufferSize - 1), null);
+                if (node != null && node.linked) {
+                    moveToTail(node);
+                }
+            }
+        }
+
+        private void linkLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            node.linked = true;
+        }
+
+        private void unlink(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.linked = false;
+        }
+
+        private void moveToTail(Node<K, V> node) {
+            if (node != tail) {
+                unlink(node);
+                linkLast(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package education.bert;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cache implementation based on Least recently used (LRU) cache replacement policy with time-based expiration. An item
+ * expires when the specified duration has elapsed since it was written (expire-after-write) or since it was last
+ * accessed (expire-after-access). Expired items are never returned and are removed by a hierarchical timing wheel while
+ * the cache is being used, so expiration costs neither a timer per item nor a full scan.
+ * <p>
+ * Optionally the cache can refresh items: a read of an item older than the refresh duration returns the current (stale)
+ * value and starts reloading it in the background. Only one reload per item is in flight at a time.
+ *
+ * @param <K> the type of keys maintained by this cache. As a key it is supposed to use some type of queries (e.g.
+ *            SQL-queries).
+ * @param <V> the type of cached values.
+ */
+public class CacheExpiringImpl<K, V> implements Cache<K, V> {
+
+    /**
+     * The minimum number of items to store.
+     */
+    public static final int minimalCacheSize = 1;
+
+    /**
+     * A map for storing items in the access order.
+     */
+    private final LinkedHashMap<K, Node<K, V>> cacheMap;
+
+    /**
+     * The wheel that schedules expiration of the items.
+     */
+    private final TimerWheel<Node<K, V>> timerWheel;
+
+    /**
+     * The time source.
+     */
+    private final Ticker ticker;
+
+    /**
+     * The duration after the write when an item expires in nanoseconds, or 0 if disabled.
+     */
+    private final long expireAfterWriteNanos;
+
+    /**
+     * The duration after the last access when an item expires in nanoseconds, or 0 if disabled.
+     */
+    private final long expireAfterAccessNanos;
+
+    /**
+     * The duration after the write when an item is reloaded on access in nanoseconds, or 0 if disabled.
+     */
+    private long refreshAfterWriteNanos;
+
+    /**
+     * The function that reloads values of the items to be refreshed.
+     */
+    private Function<? super K, ? extends V> reloader;
+
+    /**
+     * The executor that runs the reloads.
+     */
+    private Executor refreshExecutor;
+
+    /**
+     * The listener notified about evicted and expired items, or {@code null}.
+     */
+    private EvictionListener<? super K, ? super V> evictionListener;
+
+    /**
+     * Constructs a cache class with the specified expiration durations. A zero duration disables the corresponding
+     * expiration.
+     *
+     * @param maxCacheSize      the maximum number of items to store.
+     * @param expireAfterWrite  the duration after the write when an item expires.
+     * @param expireAfterAccess the duration after the last access when an item expires.
+     * @param unit              the unit of the durations.
+     * @param ticker            the time source.
+     */
+    public CacheExpiringImpl(int maxCacheSize, long expireAfterWrite, long expireAfterAccess, TimeUnit unit, Ticker ticker) {
+        if (maxCacheSize < minimalCacheSize) {
+            throw new IllegalArgumentException("maxCacheSize must not be less than minimalCacheSize (" + minimalCacheSize + ")");
+        }
+        if (expireAfterWrite < 0 || expireAfterAccess < 0) {
+            throw new IllegalArgumentException("expiration durations must not be negative");
+        }
+        this.ticker = ticker;
+        expireAfterWriteNanos = unit.toNanos(expireAfterWrite);
+        expireAfterAccessNanos = unit.toNanos(expireAfterAccess);
+        timerWheel = new TimerWheel<>(ticker.read());
+
+        cacheMap = new LinkedHashMap<K, Node<K, V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Node<K, V>> eldest) {
+                if (size() > maxCacheSize) {
+                    timerWheel.deschedule(eldest.getValue());
+                    notifyEviction(eldest.getValue(), EvictionCause.SIZE);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Constructs a cache class with the specified expiration durations using the system time.
+     *
+     * @param maxCacheSize      the maximum number of items to store.
+     * @param expireAfterWrite  the duration after the write when an item expires.
+     * @param expireAfterAccess the duration after the last access when an item expires.
+     * @param unit              the unit of the durations.
+     */
+    public CacheExpiringImpl(int maxCacheSize, long expireAfterWrite, long expireAfterAccess, TimeUnit unit) {
+        this(maxCacheSize, expireAfterWrite, expireAfterAccess, unit, Ticker.systemTicker());
+    }
+
+    /**
+     * Enables refreshing of the items. A read of an item written more than the specified duration ago returns the
+     * current value and reloads the item using the executor. If the item is changed or removed while reloading, the
+     * reloaded value is discarded. If the reloader returns {@code null}, the item is removed.
+     *
+     * @param refreshAfterWrite the duration after the write when an item is to be reloaded.
+     * @param unit              the unit of the duration.
+     * @param reloader          the function that loads a fresh value for the key.
+     * @param executor          the executor that runs the reloads.
+     */
+    public synchronized void setRefreshAfterWrite(long refreshAfterWrite, TimeUnit unit, Function<? super K, ? extends V> reloader, Executor executor) {
+        if (refreshAfterWrite <= 0) {
+            throw new IllegalArgumentException("refreshAfterWrite must be positive");
+        }
+        if (reloader == null || executor == null) {
+            throw new NullPointerException();
+        }
+        this.refreshAfterWriteNanos = unit.toNanos(refreshAfterWrite);
+        this.reloader = reloader;
+        this.refreshExecutor = executor;
+    }
+
+    /**
+     * Enables refreshing of the items using the common fork-join pool.
+     *
+     * @param refreshAfterWrite the duration after the write when an item is to be reloaded.
+     * @param unit              the unit of the duration.
+     * @param reloader          the function that loads a fresh value for the key.
+     * @see #setRefreshAfterWrite(long, TimeUnit, Function, Executor)
+     */
+    public void setRefreshAfterWrite(long refreshAfterWrite, TimeUnit unit, Function<? super K, ? extends V> reloader) {
+        setRefreshAfterWrite(refreshAfterWrite, unit, reloader, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Adds a value to the cache associated with a specific key. If the cache previously contained a mapping for the
+     * key, the old value is replaced and its expiration time is restarted. When the cache size exceeds its maximum, the
+     * least recently accessed element will be deleted.
+     *
+     * @param key   key with which the specified value is to be associated.
+     * @param value value to be added to the cache.
+     * @return the previous unexpired value associated with key, or {@code null} if there was no such mapping for key.
+     */
+    @Override
+    public synchronized V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        long now = ticker.read();
+        expireEntries(now);
+        Node<K, V> node = cacheMap.get(key);
+        if (node != null) {
+            V previous = isExpired(node, now) ? null : node.value;
+            node.value = value;
+            node.writeTime = now;
+            node.accessTime = now;
+            schedule(node);
+            return previous;
+        }
+        node = new Node<>(key, value, now);
+        cacheMap.put(key, node);
+        schedule(node);
+        return null;
+    }
+
+    /**
+     * Returns the value corresponding to the specified key if it has not expired. If refreshing is enabled and the
+     * value is old enough, starts reloading it and returns the current value.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the cache contains no unexpired mapping
+     * for the key.
+     */
+    @Override
+    public synchronized V get(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        long now = ticker.read();
+        expireEntries(now);
+        Node<K, V> node = cacheMap.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (isExpired(node, now)) {
+            cacheMap.remove(key);
+            timerWheel.deschedule(node);
+            notifyEviction(node, EvictionCause.EXPIRED);
+            return null;
+        }
+        node.accessTime = now;
+        if (expireAfterAccessNanos > 0) {
+            schedule(node);
+        }
+        if (refreshAfterWriteNanos > 0 && !node.refreshing && now - node.writeTime >= refreshAfterWriteNanos) {
+            refresh(node);
+        }
+        return node.value;
+    }
+
+    /**
+     * Removes the value corresponding to the specified key.
+     *
+     * @param key the key whose associated value is to be removed.
+     * @return the previous unexpired value associated with key, or {@code null} if there was no such mapping for key.
+     */
+    @Override
+    public synchronized V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        long now = ticker.read();
+        expireEntries(now);
+        Node<K, V> node = cacheMap.remove(key);
+        if (node == null) {
+            return null;
+        }
+        timerWheel.deschedule(node);
+        return isExpired(node, now) ? null : node.value;
+    }
+
+    /**
+     * Sets the listener notified when an item is evicted because of the size limit or removed because it has expired.
+     *
+     * @param listener the listener to be notified, or {@code null}.
+     */
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<? super K, ? super V> listener) {
+        evictionListener = listener;
+    }
+
+    /**
+     * Removes the expired items without waiting for the next access to the cache.
+     */
+    public synchronized void cleanUp() {
+        expireEntries(ticker.read());
+    }
+
+    /**
+     * Returns the number of items in the cache including expired items which have not been removed yet.
+     *
+     * @return the number of items in the cache.
+     */
+    public synchronized int size() {
+        return cacheMap.size();
+    }
+
+    /**
+     * Advances the timing wheel and removes the items whose time has come.
+     *
+     * @param now the current time in nanoseconds.
+     */
+    private void expireEntries(long now) {
+        timerWheel.advance(now, node -> {
+            cacheMap.remove(node.key);
+            notifyEviction(node, EvictionCause.EXPIRED);
+        });
+    }
+
+    /**
+     * Notifies the eviction listener, if any, about the evicted item.
+     *
+     * @param node  the evicted item.
+     * @param cause the reason of the eviction.
+     */
+    private void notifyEviction(Node<K, V> node, EvictionCause cause) {
+        if (evictionListener != null) {
+            evictionListener.onEviction(node.key, node.value, cause);
+        }
+    }
+
+    /**
+     * Checks whether the item has expired.
+     *
+     * @param node the item to be checked.
+     * @param now  the current time in nanoseconds.
+     * @return {@code true} if the item has expired.
+     */
+    private boolean isExpired(Node<K, V> node, long now) {
+        return (expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos)
+                || (expireAfterAccessNanos > 0 && now - node.accessTime >= expireAfterAccessNanos);
+    }
+
+    /**
+     * Computes the deadline of the item and schedules it on the timing wheel, if expiration is enabled.
+     *
+     * @param node the item to be scheduled.
+     */
+    private void schedule(Node<K, V> node) {
+        if (expireAfterWriteNanos > 0 && expireAfterAccessNanos > 0) {
+            node.deadline = Math.min(saturatedAdd(node.writeTime, expireAfterWriteNanos),
+                    saturatedAdd(node.accessTime, expireAfterAccessNanos));
+        } else if (expireAfterWriteNanos > 0) {
+            node.deadline = saturatedAdd(node.writeTime, expireAfterWriteNanos);
+        } else if (expireAfterAccessNanos > 0) {
+            node.deadline = saturatedAdd(node.accessTime, expireAfterAccessNanos);
+        } else {
+            return;
+        }
+        timerWheel.schedule(node);
+    }
+
+    /**
+     * Adds the duration to the time, saturating at {@code Long.MAX_VALUE}. A huge duration, e.g. one saturated by
+     * {@link TimeUnit#toNanos(long)}, would otherwise wrap the deadline around to a time in the past.
+     *
+     * @param time     the time in nanoseconds.
+     * @param duration the non-negative duration in nanoseconds.
+     * @return the sum, or {@code Long.MAX_VALUE} if it overflows.
+     */
+    private static long saturatedAdd(long time, long duration) {
+        long sum = time + duration;
+        return sum < time ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Starts reloading the item. The reloaded value replaces the current one only if the item has not been changed or
+     * removed in the meantime. If the reload fails, the current value is kept and the item may be refreshed again.
+     *
+     * @param node the item to be refreshed.
+     */
+    private void refresh(Node<K, V> node) {
+        node.refreshing = true;
+        Function<? super K, ? extends V> currentReloader = reloader;
+        long writeTime = node.writeTime;
+        try {
+            refreshExecutor.execute(() -> {
+                V value = null;
+                boolean loaded = false;
+                try {
+                    value = currentReloader.apply(node.key);
+                    loaded = true;
+                } finally {
+                    completeRefresh(node, writeTime, value, loaded);
+                }
+            });
+        } catch (RuntimeException e) {
+            node.refreshing = false;
+        }
+    }
+
+    /**
+     * Applies the result of reloading the item.
+     *
+     * @param node      the refreshed item.
+     * @param writeTime the write time of the item when the reload started.
+     * @param value     the reloaded value.
+     * @param loaded    {@code false} if the reload failed.
+     */
+    private synchronized void completeRefresh(Node<K, V> node, long writeTime, V value, boolean loaded) {
+        node.refreshing = false;
+        if (!loaded || cacheMap.get(node.key) != node || node.writeTime != writeTime) {
+            return;
+        }
+        if (value == null) {
+            cacheMap.remove(node.key);
+            timerWheel.deschedule(node);
+            return;
+        }
+        long now = ticker.read();
+        node.value = value;
+        node.writeTime = now;
+        node.accessTime = now;
+        schedule(node);
+    }
+
+    /**
+     * A cached value together with its timestamps.
+     *
+     * @param <K> the type of key.
+     * @param <V> the type of value.
+     */
+    private static final class Node<K, V> extends TimerWheel.Timer<Node<K, V>> {
+        final K key;
+        V value;
+        long writeTime;
+        long accessTime;
+        long deadline;
+        boolean refreshing;
+
+        Node(K key, V value, long now) {
+            this.key = key;
+            this.value = value;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+
+        @Override
+        long getDeadline() {
+            return deadline;
+        }
+    }
+}
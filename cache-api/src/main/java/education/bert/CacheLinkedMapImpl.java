@@ -27,6 +27,11 @@ public class CacheLinkedMapImpl<K, V> implements Cache<K, V> {
      */
     private final LinkedHashMap<K, V> cacheMap;
 
+    /**
+     * The listener notified about evicted items, or {@code null}.
+     */
+    private volatile EvictionListener<? super K, ? super V> evictionListener;
+
     /**
      * Constructs a cache class with cacheMap configured for LRU replacement policy.
      *
@@ -40,7 +45,14 @@ public class CacheLinkedMapImpl<K, V> implements Cache<K, V> {
         cacheMap = new LinkedHashMap<K, V>(16, 0.75f, true) {
             @Override
             protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-                return size() > maxCacheSize;
+                if (size() <= maxCacheSize) {
+                    return false;
+                }
+                EvictionListener<? super K, ? super V> listener = evictionListener;
+                if (listener != null) {
+                    listener.onEviction(eldest.getKey(), eldest.getValue(), EvictionCause.SIZE);
+                }
+                return true;
             }
         };
     }
@@ -67,14 +79,15 @@ public class CacheLinkedMapImpl<K, V> implements Cache<K, V> {
     }
 
     /**
-     * Returns the value corresponding to the specified key.
+     * Returns the value corresponding to the specified key. The map is ordered by access, so a get reorders it and has
+     * to be synchronized as well as the writes.
      *
      * @param key the key whose associated value is to be returned.
      * @return the value corresponding to the specified key, or {@code null} if the cache contains no mapping for the
      * key.
      */
     @Override
-    public V get(K key) {
+    public synchronized V get(K key) {
         return cacheMap.get(key);
     }
 
@@ -88,4 +101,14 @@ public class CacheLinkedMapImpl<K, V> implements Cache<K, V> {
     public synchronized V remove(K key) {
         return cacheMap.remove(key);
     }
+
+    /**
+     * Sets the listener notified when the least recently accessed element is deleted by LinkedHashMap.
+     *
+     * @param listener the listener to be notified, or {@code null}.
+     */
+    @Override
+    public void setEvictionListener(EvictionListener<? super K, ? super V> listener) {
+        evictionListener = listener;
+    }
 }
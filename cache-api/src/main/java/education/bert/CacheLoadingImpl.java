@@ -0,0 +1,382 @@
+package education.bert;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * LoadingCache implementation that adds loading with per-key stampede protection to any Cache implementation. The
+ * loads in flight are registered in a ConcurrentHashMap, so only the first caller missing a key runs the mapping
+ * function while the others wait for its result.
+ * <p>
+ * A put or remove of the key while it is being loaded cancels caching of the loaded value, so a slow load can not
+ * overwrite a newer value or resurrect a removed one.
+ *
+ * @param <K> the type of keys maintained by this cache. As a key it is supposed to use some type of queries (e.g.
+ *            SQL-queries).
+ * @param <V> the type of cached values.
+ */
+public class CacheLoadingImpl<K, V> implements LoadingCache<K, V> {
+
+    /**
+     * The number of locks guarding installation of loaded values. Must be a power of two.
+     */
+    private static final int lockStripes = 64;
+
+    /**
+     * The cache that stores the items.
+     */
+    private final Cache<K, V> cache;
+
+    /**
+     * The loads in flight by key.
+     */
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+
+    /**
+     * Locks that make installation of a loaded value atomic with respect to puts and removes of the same key.
+     */
+    private final Object[] locks = new Object[lockStripes];
+
+    /**
+     * The counter recording the statistics of the cache.
+     */
+    private final StatsCounter stats;
+
+    /**
+     * The listener notified about evicted items, or {@code null}.
+     */
+    private volatile EvictionListener<? super K, ? super V> evictionListener;
+
+    /**
+     * Constructs a loading cache on top of the specified cache that records statistics. Evictions are recorded only if
+     * the underlying cache supports an eviction listener.
+     *
+     * @param cache the cache that stores the items.
+     * @param stats the counter recording the statistics, e.g. {@link StatsCounter#disabled()}.
+     */
+    public CacheLoadingImpl(Cache<K, V> cache, StatsCounter stats) {
+        if (cache == null || stats == null) {
+            throw new NullPointerException();
+        }
+        this.cache = cache;
+        this.stats = stats;
+        for (int i = 0; i < lockStripes; i++) {
+            locks[i] = new Object();
+        }
+        if (stats != StatsCounter.disabled()) {
+            try {
+                cache.setEvictionListener(this::onEviction);
+            } catch (UnsupportedOperationException ignored) {
+                // evictions of this cache are not counted
+            }
+        }
+    }
+
+    /**
+     * Constructs a loading cache on top of the specified cache.
+     *
+     * @param cache the cache that stores the items.
+     */
+    public CacheLoadingImpl(Cache<K, V> cache) {
+        this(cache, StatsCounter.disabled());
+    }
+
+    /**
+     * Returns the value corresponding to the specified key, loading it with the mapping function if the cache contains
+     * no mapping for the key. Only one load per key is in flight at a time.
+     *
+     * @param key             the key whose associated value is to be returned.
+     * @param mappingFunction the function that loads the value for the key.
+     * @return the current (existing or loaded) value associated with the key, or {@code null} if the loaded value is
+     * {@code null}.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = cache.get(key);
+        if (value != null) {
+            stats.recordHits(1);
+            return value;
+        }
+        stats.recordMisses(1);
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loads.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        long startTime = 0L;
+        boolean loading = false;
+        try {
+            value = cache.get(key);
+            if (value == null) {
+                startTime = System.nanoTime();
+                loading = true;
+                value = mappingFunction.apply(key);
+                loading = false;
+                stats.recordLoadSuccess(System.nanoTime() - startTime);
+                if (value != null) {
+                    install(key, load, value);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            if (loading) {
+                stats.recordLoadFailure(System.nanoTime() - startTime);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Returns the values corresponding to the specified keys, loading all missing keys with a single call of the
+     * mapping function. Only one load per key is in flight at a time.
+     *
+     * @param keys            the keys whose associated values are to be returned.
+     * @param mappingFunction the function that loads the values for the set of missing keys.
+     * @return the current (existing or loaded) mappings of the keys, in the iteration order of the keys.
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys,
+                            Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> mappingFunction) {
+        Map<K, V> found = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> ownLoads = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> otherLoads = new LinkedHashMap<>();
+        int hits = 0;
+        for (K key : keys) {
+            if (found.containsKey(key) || ownLoads.containsKey(key) || otherLoads.containsKey(key)) {
+                continue;
+            }
+            V value = cache.get(key);
+            if (value != null) {
+                hits++;
+                found.put(key, value);
+                continue;
+            }
+            CompletableFuture<V> load = new CompletableFuture<>();
+            CompletableFuture<V> inFlight = loads.putIfAbsent(key, load);
+            if (inFlight != null) {
+                otherLoads.put(key, inFlight);
+            } else {
+                ownLoads.put(key, load);
+            }
+        }
+        stats.recordHits(hits);
+        stats.recordMisses(ownLoads.size() + otherLoads.size());
+
+        if (!ownLoads.isEmpty()) {
+            loadAll(ownLoads, found, mappingFunction);
+        }
+        for (Map.Entry<K, CompletableFuture<V>> entry : otherLoads.entrySet()) {
+            V value = join(entry.getValue());
+            if (value != null) {
+                found.put(entry.getKey(), value);
+            }
+        }
+
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = found.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the keys registered by this thread with a single call of the mapping function, caches the loaded values
+     * and completes the loads.
+     *
+     * @param ownLoads        the loads registered for the keys.
+     * @param found           the map to add the loaded values to.
+     * @param mappingFunction the function that loads the values for the set of missing keys.
+     */
+    private void loadAll(Map<K, CompletableFuture<V>> ownLoads, Map<K, V> found,
+                         Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> mappingFunction) {
+        long startTime = 0L;
+        boolean loading = false;
+        try {
+            Set<K> missing = new LinkedHashMap<>(ownLoads).keySet();
+            for (Map.Entry<K, CompletableFuture<V>> entry : ownLoads.entrySet()) {
+                V value = cache.get(entry.getKey());
+                if (value != null) {
+                    found.put(entry.getKey(), value);
+                    missing.remove(entry.getKey());
+                }
+            }
+            Map<? extends K, ? extends V> loaded = Collections.emptyMap();
+            if (!missing.isEmpty()) {
+                startTime = System.nanoTime();
+                loading = true;
+                loaded = mappingFunction.apply(Collections.unmodifiableSet(missing));
+                loading = false;
+                stats.recordLoadSuccess(System.nanoTime() - startTime);
+            }
+            for (Map.Entry<K, CompletableFuture<V>> entry : ownLoads.entrySet()) {
+                K key = entry.getKey();
+                V value = found.get(key);
+                if (value == null) {
+                    value = loaded.get(key);
+                    if (value != null) {
+                        install(key, entry.getValue(), value);
+                        found.put(key, value);
+                    }
+                }
+                entry.getValue().complete(value);
+            }
+        } catch (RuntimeException | Error e) {
+            if (loading) {
+                stats.recordLoadFailure(System.nanoTime() - startTime);
+            }
+            for (CompletableFuture<V> load : ownLoads.values()) {
+                load.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            for (Map.Entry<K, CompletableFuture<V>> entry : ownLoads.entrySet()) {
+                loads.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Adds a value to the cache associated with a specific key. A load of the key in flight will not cache its
+     * result.
+     *
+     * @param key   key with which the specified value is to be associated.
+     * @param value value to be added to the cache.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public V put(K key, V value) {
+        synchronized (lockFor(key)) {
+            loads.remove(key);
+            return cache.put(key, value);
+        }
+    }
+
+    /**
+     * Returns the value corresponding to the specified key.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the cache contains no mapping for the
+     * key.
+     */
+    @Override
+    public V get(K key) {
+        V value = cache.get(key);
+        if (value != null) {
+            stats.recordHits(1);
+        } else {
+            stats.recordMisses(1);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the value corresponding to the specified key. A load of the key in flight will not cache its result.
+     *
+     * @param key the key whose associated value is to be removed.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public V remove(K key) {
+        synchronized (lockFor(key)) {
+            loads.remove(key);
+            return cache.remove(key);
+        }
+    }
+
+    /**
+     * Sets the listener notified when the underlying cache evicts an item.
+     *
+     * @param listener the listener to be notified, or {@code null}.
+     */
+    @Override
+    public void setEvictionListener(EvictionListener<? super K, ? super V> listener) {
+        cache.setEvictionListener(this::onEviction);
+        evictionListener = listener;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the cache.
+     *
+     * @return the snapshot of the statistics.
+     */
+    public CacheStats stats() {
+        return stats.snapshot();
+    }
+
+    /**
+     * Records the eviction by the underlying cache and notifies the eviction listener, if any.
+     *
+     * @param key   the key of the evicted item.
+     * @param value the value of the evicted item.
+     * @param cause the reason of the eviction.
+     */
+    private void onEviction(K key, V value, EvictionCause cause) {
+        stats.recordEviction(cause);
+        EvictionListener<? super K, ? super V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEviction(key, value, cause);
+        }
+    }
+
+    /**
+     * Caches the loaded value unless the load has been cancelled by a put or remove of the key.
+     *
+     * @param key   the loaded key.
+     * @param load  the load registered for the key.
+     * @param value the loaded value.
+     */
+    private void install(K key, CompletableFuture<V> load, V value) {
+        synchronized (lockFor(key)) {
+            if (loads.remove(key, load)) {
+                cache.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Returns the lock guarding the specified key.
+     *
+     * @param key the key for which lock is to be returned.
+     * @return the lock guarding the key.
+     */
+    private Object lockFor(K key) {
+        int h = key.hashCode();
+        return locks[(h ^ (h >>> 16)) & (lockStripes - 1)];
+    }
+
+    /**
+     * Waits for the load in flight and returns its result, rethrowing the exception of the mapping function.
+     *
+     * @param load the load to wait for.
+     * @return the loaded value.
+     */
+    private V join(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package education.bert;
 
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Objects;
 
 /**
- * Cache implementation based on First in first out (FIFO) cache replacement policy. This is the simplest implementation
- * using a HashMap and LinkedList collections.
+ * Cache implementation based on First in first out (FIFO) cache replacement policy. Values are stored in a HashMap
+ * wrapped into nodes of an intrusive doubly-linked queue, so both removal and eviction take constant time. The node is
+ * also the queue entry, so an insert allocates no separate {@code LinkedList} node besides the HashMap entry. Reads
+ * and writes are synchronized on the cache, since the HashMap is not safe for a read racing with a resize.
  *
  * @param <K> the type of keys maintained by this cache. As a key it is supposed to use some type of queries (e.g.
  *            SQL-queries).
@@ -30,17 +30,27 @@ public class CacheMapAndQueueImpl<K, V> implements Cache<K, V> {
     public static final int defaultCacheSize = 10;
 
     /**
-     * General collection for storing items providing fast access.
+     * General collection for storing items providing fast access. Each value is wrapped into a node of the queue.
      */
-    private final HashMap<K, V> cacheMap;
+    private final HashMap<K, Node<K, V>> cacheMap;
 
     /**
-     * LinkedList that allows FIFO cache replacement policy.
+     * The head of the queue, i.e. the earliest added node, or {@code null} if the cache is empty.
      */
-    private final LinkedList<K> cacheQueue;
+    private Node<K, V> head;
 
     /**
-     * Constructs a cache class with empty cacheMap and cacheQueue collections and sets the maxCacheSize.
+     * The tail of the queue, i.e. the latest added node, or {@code null} if the cache is empty.
+     */
+    private Node<K, V> tail;
+
+    /**
+     * The listener notified about evicted items, or {@code null}.
+     */
+    private volatile EvictionListener<? super K, ? super V> evictionListener;
+
+    /**
+     * Constructs a cache class with empty cacheMap and queue and sets the maxCacheSize.
      *
      * @param maxCacheSize the maximum number of items to store.
      */
@@ -51,7 +61,6 @@ public class CacheMapAndQueueImpl<K, V> implements Cache<K, V> {
         this.maxCacheSize = maxCacheSize;
 
         cacheMap = new HashMap<>();
-        cacheQueue = new LinkedList<>();
     }
 
     /**
@@ -75,14 +84,19 @@ public class CacheMapAndQueueImpl<K, V> implements Cache<K, V> {
         if (key == null || value == null) {
             throw new NullPointerException();
         }
-        if (cacheMap.containsKey(key)) {
-            return cacheMap.put(key, value);
+        Node<K, V> node = cacheMap.get(key);
+        if (node != null) {
+            V previous = node.value;
+            node.value = value;
+            return previous;
         }
         if (cacheMap.size() >= maxCacheSize) {
             kickOut();
         }
-        cacheQueue.offer(key);
-        return cacheMap.put(key, value);
+        node = new Node<>(key, value);
+        cacheMap.put(key, node);
+        linkLast(node);
+        return null;
     }
 
     /**
@@ -93,11 +107,12 @@ public class CacheMapAndQueueImpl<K, V> implements Cache<K, V> {
      * key.
      */
     @Override
-    public V get(K key) {
+    public synchronized V get(K key) {
         if (key == null) {
             throw new NullPointerException();
         }
-        return cacheMap.get(key);
+        Node<K, V> node = cacheMap.get(key);
+        return node == null ? null : node.value;
     }
 
     /**
@@ -111,15 +126,88 @@ public class CacheMapAndQueueImpl<K, V> implements Cache<K, V> {
         if (key == null) {
             throw new NullPointerException();
         }
-        cacheQueue.remove(key);
-        return cacheMap.remove(key);
+        Node<K, V> node = cacheMap.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.value;
     }
 
     /**
-     * Removes the first key from the cacheQueue and its corresponding value from the cacheMap. This method will be
-     * invoked when the number of items in the cache reaches its maximum (FIFO cache replacement policy).
+     * Sets the listener notified when the first item is removed from the cache by kickOut().
+     *
+     * @param listener the listener to be notified, or {@code null}.
+     */
+    @Override
+    public void setEvictionListener(EvictionListener<? super K, ? super V> listener) {
+        evictionListener = listener;
+    }
+
+    /**
+     * Removes the head node from the queue and its corresponding value from the cacheMap. This method will be invoked
+     * when the number of items in the cache reaches its maximum (FIFO cache replacement policy).
      */
     private void kickOut() {
-        cacheMap.remove(Objects.requireNonNull(cacheQueue.poll()));
+        Node<K, V> eldest = head;
+        unlink(eldest);
+        cacheMap.remove(eldest.key);
+        EvictionListener<? super K, ? super V> listener = evictionListener;
+        if (listener != null) {
+            listener.onEviction(eldest.key, eldest.value, EvictionCause.SIZE);
+        }
+    }
+
+    /**
+     * Appends the node to the tail of the queue.
+     *
+     * @param node the node to be appended.
+     */
+    private void linkLast(Node<K, V> node) {
+        node.prev = tail;
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+    }
+
+    /**
+     * Unlinks the node from any position of the queue in constant time.
+     *
+     * @param node the node to be unlinked.
+     */
+    private void unlink(Node<K, V> node) {
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    /**
+     * A cached value together with its position in the FIFO queue.
+     *
+     * @param <K> the type of key.
+     * @param <V> the type of value.
+     */
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
     }
 }
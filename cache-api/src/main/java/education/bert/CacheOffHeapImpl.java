@@ -0,0 +1,568 @@
+package education.bert;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Cache implementation that stores serialized values outside of the Java heap, so even millions of items do not add
+ * to garbage collection pauses. Only the index (keys and small nodes locating the values) lives on the heap.
+ * <p>
+ * The memory is allocated lazily in pages of direct ByteBuffers up to the specified capacity. As in memcached, every
+ * page is assigned to a size class and cut into chunks of that class, and each value is stored in the smallest chunk
+ * that fits it. Every size class has its own Least recently used (LRU) queue: when a class has no free chunk and no new
+ * page can be allocated, the least recently used item of that class is evicted. A class with no item to evict takes a
+ * free chunk of a larger class, or else a page is reassigned to it from the class with the most pages, whose items in
+ * that page are evicted, so pages handed out early do not starve the classes needed later. Values larger than a page,
+ * and values for which no such room can be found, are not cached and are counted by {@link #getRejectedCount()}.
+ *
+ * @param <K> the type of keys maintained by this cache. As a key it is supposed to use some type of queries (e.g.
+ *            SQL-queries).
+ * @param <V> the type of cached values.
+ */
+public class CacheOffHeapImpl<K, V> implements Cache<K, V> {
+
+    /**
+     * The default size of a memory page in bytes (1 MiB).
+     */
+    public static final int defaultPageSize = 1 << 20;
+
+    /**
+     * The size of the smallest chunk in bytes.
+     */
+    public static final int minimalChunkSize = 64;
+
+    /**
+     * The ratio between the chunk sizes of neighbouring size classes.
+     */
+    private static final double chunkSizeFactor = 1.25;
+
+    /**
+     * The size of the chunk header holding the length of the value.
+     */
+    private static final int headerSize = 4;
+
+    /**
+     * The codec converting values to and from bytes.
+     */
+    private final ValueCodec<V> codec;
+
+    /**
+     * The size of a memory page in bytes.
+     */
+    private final int pageSize;
+
+    /**
+     * The maximum number of pages to allocate.
+     */
+    private final int maxPages;
+
+    /**
+     * The allocated pages.
+     */
+    private final ArrayList<ByteBuffer> pages = new ArrayList<>();
+
+    /**
+     * The index of the size class every allocated page is assigned to, by page.
+     */
+    private int[] pageOwners = new int[16];
+
+    /**
+     * The number of values that could not be cached.
+     */
+    private long rejectedCount;
+
+    /**
+     * The chunk sizes of the size classes in ascending order.
+     */
+    private final int[] chunkSizes;
+
+    /**
+     * The size classes in the order of their chunk sizes.
+     */
+    private final SizeClass<K>[] sizeClasses;
+
+    /**
+     * The index locating the values by key.
+     */
+    private final HashMap<K, Node<K>> index = new HashMap<>();
+
+    /**
+     * The listener notified about evicted items, or {@code null}.
+     */
+    private EvictionListener<? super K, ? super V> evictionListener;
+
+    /**
+     * Constructs an empty cache that may use the specified amount of memory.
+     *
+     * @param capacity the maximum number of bytes to allocate.
+     * @param pageSize the size of a memory page in bytes, which is also the maximum size of a stored value.
+     * @param codec    the codec converting values to and from bytes.
+     */
+    @SuppressWarnings("unchecked")
+    public CacheOffHeapImpl(long capacity, int pageSize, ValueCodec<V> codec) {
+        if (codec == null) {
+            throw new NullPointerException();
+        }
+        if (pageSize < minimalChunkSize) {
+            throw new IllegalArgumentException("pageSize must not be less than minimalChunkSize (" + minimalChunkSize + ")");
+        }
+        if (capacity < pageSize) {
+            throw new IllegalArgumentException("capacity must not be less than pageSize (" + pageSize + ")");
+        }
+        this.codec = codec;
+        this.pageSize = pageSize;
+        maxPages = (int) Math.min(capacity / pageSize, Integer.MAX_VALUE);
+
+        int[] sizes = new int[64];
+        int count = 0;
+        for (int size = minimalChunkSize; size < pageSize; size = Math.max(size + 8, (int) (size * chunkSizeFactor) + 7 & ~7)) {
+            if (count == sizes.length) {
+                sizes = Arrays.copyOf(sizes, count * 2);
+            }
+            sizes[count++] = size;
+        }
+        chunkSizes = Arrays.copyOf(sizes, count + 1);
+        chunkSizes[count] = pageSize;
+        sizeClasses = (SizeClass<K>[]) new SizeClass<?>[chunkSizes.length];
+        for (int i = 0; i < sizeClasses.length; i++) {
+            sizeClasses[i] = new SizeClass<>(chunkSizes[i]);
+        }
+    }
+
+    /**
+     * Constructs an empty cache that may use the specified amount of memory in pages of the default size (1 MiB).
+     *
+     * @param capacity the maximum number of bytes to allocate.
+     * @param codec    the codec converting values to and from bytes.
+     */
+    public CacheOffHeapImpl(long capacity, ValueCodec<V> codec) {
+        this(capacity, defaultPageSize, codec);
+    }
+
+    /**
+     * Adds a value to the cache associated with a specific key. If the cache previously contained a mapping for the
+     * key, the old value is replaced. If there is no room for the value, the least recently used item of its size class
+     * is evicted. A value that does not fit into a page or for which no room can be made is not cached, and neither is
+     * the previous value of the key then; such a put is counted by {@link #getRejectedCount()}.
+     *
+     * @param key   key with which the specified value is to be associated.
+     * @param value value to be added to the cache.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public synchronized V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        int size = codec.encodedSize(value);
+        int classIndex = classFor(headerSize + size);
+
+        Node<K> node = index.get(key);
+        V previous = null;
+        if (node != null) {
+            previous = read(node.handle);
+            if (node.classIndex == classIndex) {
+                try {
+                    write(node.handle, size, value);
+                } catch (RuntimeException e) {
+                    release(node);
+                    throw e;
+                }
+                SizeClass<K> sizeClass = sizeClasses[classIndex];
+                sizeClass.unlink(node);
+                sizeClass.linkLast(node);
+                return previous;
+            }
+            release(node);
+        }
+        long handle = classIndex < 0 ? -1L : allocate(classIndex);
+        if (handle < 0L) {
+            rejectedCount++;
+            return previous;
+        }
+        // The chunk may have been taken from a larger class, which then owns the item.
+        classIndex = pageOwners[(int) (handle >>> 32)];
+        try {
+            write(handle, size, value);
+        } catch (RuntimeException e) {
+            sizeClasses[classIndex].free(handle);
+            throw e;
+        }
+        node = new Node<>(key, handle, classIndex);
+        sizeClasses[classIndex].linkLast(node);
+        index.put(key, node);
+        return previous;
+    }
+
+    /**
+     * Returns the value corresponding to the specified key and marks the item as the most recently used one.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the cache contains no mapping for the
+     * key.
+     */
+    @Override
+    public synchronized V get(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        Node<K> node = index.get(key);
+        if (node == null) {
+            return null;
+        }
+        SizeClass<K> sizeClass = sizeClasses[node.classIndex];
+        sizeClass.unlink(node);
+        sizeClass.linkLast(node);
+        return read(node.handle);
+    }
+
+    /**
+     * Removes the value corresponding to the specified key and frees its chunk.
+     *
+     * @param key the key whose associated value is to be removed.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public synchronized V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        Node<K> node = index.get(key);
+        if (node == null) {
+            return null;
+        }
+        V previous = read(node.handle);
+        release(node);
+        return previous;
+    }
+
+    /**
+     * Returns the number of stored items.
+     *
+     * @return the number of stored items.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the number of bytes allocated outside of the heap.
+     *
+     * @return the number of allocated bytes.
+     */
+    public synchronized long getAllocatedMemory() {
+        return (long) pages.size() * pageSize;
+    }
+
+    /**
+     * Returns the number of puts whose value could not be cached. These are values larger than a page, and values whose
+     * size class has no item to evict while no larger class has a free chunk and no other class has a page to give
+     * away.
+     *
+     * @return the number of rejected values.
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Sets the listener notified when the least recently used item of a size class is evicted. The value is decoded
+     * only if a listener is set.
+     *
+     * @param listener the listener to be notified, or {@code null}.
+     */
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<? super K, ? super V> listener) {
+        evictionListener = listener;
+    }
+
+    /**
+     * Returns the index of the smallest size class whose chunks fit the specified number of bytes.
+     *
+     * @param bytes the number of bytes to store.
+     * @return the index of the size class, or -1 if the bytes do not fit into a page.
+     */
+    private int classFor(int bytes) {
+        if (bytes > pageSize) {
+            return -1;
+        }
+        int classIndex = Arrays.binarySearch(chunkSizes, bytes);
+        return classIndex >= 0 ? classIndex : -classIndex - 1;
+    }
+
+    /**
+     * Allocates a chunk of the size class: reuses a free chunk, cuts a new one from the current page of the class,
+     * allocates a new page or, if the capacity is exhausted, evicts the least recently used item of the class. A class
+     * with no item to evict takes a free chunk of a larger class or gets a page reassigned from another class.
+     *
+     * @param classIndex the index of the size class.
+     * @return the handle of the chunk, or -1 if the class can get no chunk.
+     */
+    private long allocate(int classIndex) {
+        SizeClass<K> sizeClass = sizeClasses[classIndex];
+        if (sizeClass.freeCount > 0) {
+            return sizeClass.freeChunks[--sizeClass.freeCount];
+        }
+        if (sizeClass.page < 0 || sizeClass.nextOffset + sizeClass.chunkSize > pageSize) {
+            if (pages.size() < maxPages) {
+                pages.add(ByteBuffer.allocateDirect(pageSize));
+                assign(pages.size() - 1, classIndex);
+            } else if (sizeClass.head != null) {
+                Node<K> eldest = sizeClass.head;
+                evict(sizeClass, eldest);
+                return eldest.handle;
+            } else {
+                for (int i = classIndex + 1; i < sizeClasses.length; i++) {
+                    if (sizeClasses[i].freeCount > 0) {
+                        return sizeClasses[i].freeChunks[--sizeClasses[i].freeCount];
+                    }
+                }
+                int page = reclaimPage(classIndex);
+                if (page < 0) {
+                    return -1L;
+                }
+                assign(page, classIndex);
+            }
+        }
+        long handle = (long) sizeClass.page << 32 | sizeClass.nextOffset;
+        sizeClass.nextOffset += sizeClass.chunkSize;
+        return handle;
+    }
+
+    /**
+     * Assigns the page to the size class, which cuts its next chunks from it.
+     *
+     * @param page       the index of the page.
+     * @param classIndex the index of the size class.
+     */
+    private void assign(int page, int classIndex) {
+        if (page == pageOwners.length) {
+            pageOwners = Arrays.copyOf(pageOwners, page * 2);
+        }
+        pageOwners[page] = classIndex;
+        SizeClass<K> sizeClass = sizeClasses[classIndex];
+        sizeClass.pageCount++;
+        sizeClass.page = page;
+        sizeClass.nextOffset = 0;
+    }
+
+    /**
+     * Takes a page away from the class with the most pages other than the specified one. The page holding the least
+     * recently used item of that class is taken, and all items stored in the page are evicted.
+     *
+     * @param classIndex the index of the size class that needs a page.
+     * @return the index of the freed page, or -1 if no other class has a page.
+     */
+    private int reclaimPage(int classIndex) {
+        int donorIndex = -1;
+        for (int i = 0; i < sizeClasses.length; i++) {
+            if (i != classIndex && sizeClasses[i].pageCount > 0
+                    && (donorIndex < 0 || sizeClasses[i].pageCount > sizeClasses[donorIndex].pageCount)) {
+                donorIndex = i;
+            }
+        }
+        if (donorIndex < 0) {
+            return -1;
+        }
+        SizeClass<K> donor = sizeClasses[donorIndex];
+        int page = -1;
+        if (donor.head != null) {
+            page = (int) (donor.head.handle >>> 32);
+        } else {
+            for (int i = 0; i < pages.size() && page < 0; i++) {
+                if (pageOwners[i] == donorIndex) {
+                    page = i;
+                }
+            }
+        }
+        Node<K> node = donor.head;
+        while (node != null) {
+            Node<K> next = node.next;
+            if ((int) (node.handle >>> 32) == page) {
+                evict(donor, node);
+            }
+            node = next;
+        }
+        int freeCount = 0;
+        for (int i = 0; i < donor.freeCount; i++) {
+            if ((int) (donor.freeChunks[i] >>> 32) != page) {
+                donor.freeChunks[freeCount++] = donor.freeChunks[i];
+            }
+        }
+        donor.freeCount = freeCount;
+        if (donor.page == page) {
+            donor.page = -1;
+        }
+        donor.pageCount--;
+        return page;
+    }
+
+    /**
+     * Evicts the item of the size class, notifying the listener. The chunk of the item is not freed.
+     *
+     * @param sizeClass the size class of the item.
+     * @param node      the node of the item.
+     */
+    private void evict(SizeClass<K> sizeClass, Node<K> node) {
+        sizeClass.unlink(node);
+        index.remove(node.key);
+        if (evictionListener != null) {
+            evictionListener.onEviction(node.key, read(node.handle), EvictionCause.SIZE);
+        }
+    }
+
+    /**
+     * Removes the node from the index and frees its chunk.
+     *
+     * @param node the node to be released.
+     */
+    private void release(Node<K> node) {
+        SizeClass<K> sizeClass = sizeClasses[node.classIndex];
+        sizeClass.unlink(node);
+        sizeClass.free(node.handle);
+        index.remove(node.key);
+    }
+
+    /**
+     * Encodes the value into the chunk.
+     *
+     * @param handle the handle of the chunk.
+     * @param size   the size of the encoded value.
+     * @param value  the value to be written.
+     */
+    private void write(long handle, int size, V value) {
+        ByteBuffer page = pages.get((int) (handle >>> 32));
+        int offset = (int) handle;
+        page.clear();
+        page.putInt(offset, size);
+        page.position(offset + headerSize);
+        page.limit(offset + headerSize + size);
+        codec.encode(value, page);
+        if (page.hasRemaining()) {
+            throw new IllegalStateException("codec wrote " + (page.position() - offset - headerSize)
+                    + " bytes instead of " + size);
+        }
+    }
+
+    /**
+     * Decodes the value stored in the chunk.
+     *
+     * @param handle the handle of the chunk.
+     * @return the stored value.
+     */
+    private V read(long handle) {
+        ByteBuffer page = pages.get((int) (handle >>> 32));
+        int offset = (int) handle;
+        page.clear();
+        int size = page.getInt(offset);
+        page.position(offset + headerSize);
+        page.limit(offset + headerSize + size);
+        return codec.decode(page);
+    }
+
+    /**
+     * The chunks of one size and the LRU queue of the items stored in them.
+     *
+     * @param <K> the type of keys.
+     */
+    private static final class SizeClass<K> {
+
+        /**
+         * The size of the chunks in bytes.
+         */
+        final int chunkSize;
+
+        /**
+         * The stack of the handles of free chunks.
+         */
+        long[] freeChunks = new long[16];
+
+        /**
+         * The number of free chunks.
+         */
+        int freeCount;
+
+        /**
+         * The number of pages assigned to the class.
+         */
+        int pageCount;
+
+        /**
+         * The page chunks are being cut from, or -1 if the class has no page yet.
+         */
+        int page = -1;
+
+        /**
+         * The offset of the next chunk to be cut from the page.
+         */
+        int nextOffset;
+
+        /**
+         * The least recently used item, or {@code null} if the class is empty.
+         */
+        Node<K> head;
+
+        /**
+         * The most recently used item, or {@code null} if the class is empty.
+         */
+        Node<K> tail;
+
+        SizeClass(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        void free(long handle) {
+            if (freeCount == freeChunks.length) {
+                freeChunks = Arrays.copyOf(freeChunks, freeCount * 2);
+            }
+            freeChunks[freeCount++] = handle;
+        }
+
+        void linkLast(Node<K> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void unlink(Node<K> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    /**
+     * The on-heap part of an item: its key, the location of its value and its place in the LRU queue.
+     *
+     * @param <K> the type of the key.
+     */
+    private static final class Node<K> {
+        final K key;
+        final long handle;
+        final int classIndex;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(K key, long handle, int classIndex) {
+            this.key = key;
+            this.handle = handle;
+            this.classIndex = classIndex;
+        }
+    }
+}
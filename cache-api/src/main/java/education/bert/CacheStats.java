@@ -0,0 +1,214 @@
+package education.bert;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the statistics of a cache.
+ */
+public final class CacheStats {
+
+    /**
+     * The number of hits.
+     */
+    private final long hitCount;
+
+    /**
+     * The number of misses.
+     */
+    private final long missCount;
+
+    /**
+     * The numbers of evictions indexed by the ordinal of their cause.
+     */
+    private final long[] evictionCounts;
+
+    /**
+     * The number of successful loads.
+     */
+    private final long loadSuccessCount;
+
+    /**
+     * The number of loads that threw an exception.
+     */
+    private final long loadFailureCount;
+
+    /**
+     * The total duration of all loads in nanoseconds.
+     */
+    private final long totalLoadTime;
+
+    /**
+     * The numbers of loads by power-of-two buckets of their duration in nanoseconds.
+     */
+    private final long[] loadTimeHistogram;
+
+    /**
+     * Constructs a snapshot of the statistics.
+     *
+     * @param hitCount          the number of hits.
+     * @param missCount         the number of misses.
+     * @param evictionCounts    the numbers of evictions indexed by the ordinal of their cause.
+     * @param loadSuccessCount  the number of successful loads.
+     * @param loadFailureCount  the number of failed loads.
+     * @param totalLoadTime     the total duration of all loads in nanoseconds.
+     * @param loadTimeHistogram the numbers of loads by power-of-two buckets of their duration in nanoseconds.
+     */
+    public CacheStats(long hitCount, long missCount, long[] evictionCounts, long loadSuccessCount,
+                      long loadFailureCount, long totalLoadTime, long[] loadTimeHistogram) {
+        if (evictionCounts.length != EvictionCause.values().length) {
+            throw new IllegalArgumentException("evictionCounts must have a count for each EvictionCause");
+        }
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCounts = evictionCounts.clone();
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.loadTimeHistogram = loadTimeHistogram.clone();
+    }
+
+    /**
+     * Returns the number of lookups that found a value.
+     *
+     * @return the number of hits.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that found no value.
+     *
+     * @return the number of misses.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of lookups, i.e. hits plus misses.
+     *
+     * @return the number of lookups.
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the ratio of hits to lookups, or 1 if there were no lookups.
+     *
+     * @return the hit rate.
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * Returns the total number of evictions of all causes.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        long count = 0;
+        for (long evictionCount : evictionCounts) {
+            count += evictionCount;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of evictions of the specified cause.
+     *
+     * @param cause the reason of the evictions.
+     * @return the number of evictions.
+     */
+    public long getEvictionCount(EvictionCause cause) {
+        return evictionCounts[cause.ordinal()];
+    }
+
+    /**
+     * Returns the number of successful loads.
+     *
+     * @return the number of successful loads.
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * Returns the number of loads that threw an exception.
+     *
+     * @return the number of failed loads.
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Returns the total duration of all loads in nanoseconds.
+     *
+     * @return the total load time.
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Returns the average duration of a load in nanoseconds, or 0 if there were no loads.
+     *
+     * @return the average load time.
+     */
+    public double getAverageLoadPenalty() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * Returns the upper bound of the load time histogram bucket containing the specified percentile, i.e. the
+     * percentile rounded up to a power of two.
+     *
+     * @param percentile the percentile in the range from 0 to 100.
+     * @return the load time in nanoseconds not exceeded by the specified percentage of loads, or 0 if there were no
+     * loads.
+     */
+    public long getLoadTimePercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in the range from 0 to 100");
+        }
+        long loadCount = loadSuccessCount + loadFailureCount;
+        if (loadCount == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(loadCount * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < loadTimeHistogram.length; i++) {
+            seen += loadTimeHistogram[i];
+            if (seen >= rank) {
+                return i >= 62 ? Long.MAX_VALUE : 2L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the numbers of loads by power-of-two buckets of their duration.
+     *
+     * @return a copy of the load time histogram.
+     */
+    public long[] getLoadTimeHistogram() {
+        return loadTimeHistogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCounts=" + Arrays.toString(evictionCounts) +
+                ", loadSuccessCount=" + loadSuccessCount +
+                ", loadFailureCount=" + loadFailureCount +
+                ", totalLoadTime=" + totalLoadTime +
+                '}';
+    }
+}
@@ -0,0 +1,116 @@
+package education.bert;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Publishes the statistics of caches through the platform MBean server under the name
+ * {@code education.bert:type=CacheStats,name=<cacheName>}.
+ */
+public final class CacheStatsJmx {
+
+    private CacheStatsJmx() {
+    }
+
+    /**
+     * Registers the statistics of the cache, replacing the previously registered cache of the same name.
+     *
+     * @param cacheName the name of the cache.
+     * @param counter   the counter recording the statistics of the cache.
+     * @return the name of the registered MBean.
+     */
+    public static ObjectName register(String cacheName, StatsCounter counter) {
+        if (counter == null) {
+            throw new NullPointerException();
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("education.bert:type=CacheStats,name=" + ObjectName.quote(cacheName));
+            synchronized (CacheStatsJmx.class) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(new Bean(counter), name);
+            }
+            return name;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Unregisters the statistics of the cache, if registered.
+     *
+     * @param name the name of the MBean returned by {@link #register(String, StatsCounter)}.
+     */
+    public static void unregister(ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            synchronized (CacheStatsJmx.class) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The MBean taking a fresh snapshot of the statistics on every attribute read.
+     */
+    private static final class Bean implements CacheStatsMXBean {
+        private final StatsCounter counter;
+
+        Bean(StatsCounter counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public long getHitCount() {
+            return counter.snapshot().getHitCount();
+        }
+
+        @Override
+        public long getMissCount() {
+            return counter.snapshot().getMissCount();
+        }
+
+        @Override
+        public double getHitRate() {
+            return counter.snapshot().getHitRate();
+        }
+
+        @Override
+        public long getSizeEvictionCount() {
+            return counter.snapshot().getEvictionCount(EvictionCause.SIZE);
+        }
+
+        @Override
+        public long getExpiredEvictionCount() {
+            return counter.snapshot().getEvictionCount(EvictionCause.EXPIRED);
+        }
+
+        @Override
+        public long getLoadSuccessCount() {
+            return counter.snapshot().getLoadSuccessCount();
+        }
+
+        @Override
+        public long getLoadFailureCount() {
+            return counter.snapshot().getLoadFailureCount();
+        }
+
+        @Override
+        public double getAverageLoadPenalty() {
+            return counter.snapshot().getAverageLoadPenalty();
+        }
+
+        @Override
+        public long getLoadTimeP99() {
+            return counter.snapshot().getLoadTimePercentile(99);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package education.bert;
+
+/**
+ * JMX view of the statistics of a cache. Register it with {@link CacheStatsJmx#register(String, StatsCounter)}.
+ */
+public interface CacheStatsMXBean {
+
+    /**
+     * Returns the number of hits.
+     *
+     * @return the number of hits.
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of misses.
+     *
+     * @return the number of misses.
+     */
+    long getMissCount();
+
+    /**
+     * Returns the ratio of hits to lookups.
+     *
+     * @return the hit rate.
+     */
+    double getHitRate();
+
+    /**
+     * Returns the number of items evicted because of the size limit.
+     *
+     * @return the number of size evictions.
+     */
+    long getSizeEvictionCount();
+
+    /**
+     * Returns the number of items removed because they have expired.
+     *
+     * @return the number of expirations.
+     */
+    long getExpiredEvictionCount();
+
+    /**
+     * Returns the number of successful loads.
+     *
+     * @return the number of successful loads.
+     */
+    long getLoadSuccessCount();
+
+    /**
+     * Returns the number of loads that threw an exception.
+     *
+     * @return the number of failed loads.
+     */
+    long getLoadFailureCount();
+
+    /**
+     * Returns the average duration of a load in nanoseconds.
+     *
+     * @return the average load time.
+     */
+    double getAverageLoadPenalty();
+
+    /**
+     * Returns the 99th percentile of the load time in nanoseconds, rounded up to a power of two.
+     *
+     * @return the 99th percentile of the load time.
+     */
+    long getLoadTimeP99();
+}
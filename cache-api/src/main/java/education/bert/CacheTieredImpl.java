@@ -0,0 +1,242 @@
+package education.bert;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache implementation composing two caches into tiers: a small and fast first level (L1), e.g. an on-heap cache, in
+ * front of a larger and denser second level (L2), e.g. an off-heap cache. The tiers are exclusive: items evicted from
+ * L1 because of its size are demoted to L2, and items found in L2 are promoted back to L1.
+ * <p>
+ * Demotions are queued by the eviction listener of L1 and applied to L2 after the L1 lock is released. Every write of
+ * a key advances the generation of its stripe, and a queued demotion or a promotion in progress is dropped if the
+ * generation has changed, so neither tier can resurrect a value that has been replaced or removed.
+ *
+ * @param <K> the type of keys maintained by this cache. As a key it is supposed to use some type of queries (e.g.
+ *            SQL-queries).
+ * @param <V> the type of cached values.
+ */
+public class CacheTieredImpl<K, V> implements Cache<K, V> {
+
+    /**
+     * The number of stripes guarding the keys. Must be a power of two.
+     */
+    private static final int lockStripes = 256;
+
+    /**
+     * The first level cache.
+     */
+    private final Cache<K, V> l1;
+
+    /**
+     * The second level cache.
+     */
+    private final Cache<K, V> l2;
+
+    /**
+     * Locks making moves of a key between the tiers atomic with respect to puts and removes of the same key.
+     */
+    private final Object[] locks = new Object[lockStripes];
+
+    /**
+     * The generations of the stripes advanced by every put and remove.
+     */
+    private final AtomicIntegerArray generations = new AtomicIntegerArray(lockStripes);
+
+    /**
+     * The items evicted from L1 and waiting to be demoted to L2.
+     */
+    private final ConcurrentLinkedQueue<Demotion<K, V>> demotions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of hits in L1.
+     */
+    private final LongAdder l1Hits = new LongAdder();
+
+    /**
+     * The number of hits in L2.
+     */
+    private final LongAdder l2Hits = new LongAdder();
+
+    /**
+     * The number of misses in both tiers.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a tiered cache. Takes over the eviction listener of L1, so L1 must support it.
+     *
+     * @param l1 the first level cache.
+     * @param l2 the second level cache.
+     */
+    public CacheTieredImpl(Cache<K, V> l1, Cache<K, V> l2) {
+        if (l1 == null || l2 == null) {
+            throw new NullPointerException();
+        }
+        this.l1 = l1;
+        this.l2 = l2;
+        for (int i = 0; i < lockStripes; i++) {
+            locks[i] = new Object();
+        }
+        l1.setEvictionListener((key, value, cause) -> {
+            if (cause == EvictionCause.SIZE) {
+                demotions.add(new Demotion<>(key, value, generations.get(stripe(key))));
+            }
+        });
+    }
+
+    /**
+     * Adds a value to L1 and invalidates the copy of the key in L2, if any.
+     *
+     * @param key   key with which the specified value is to be associated.
+     * @param value value to be added to the cache.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        int stripe = stripe(key);
+        V previous;
+        synchronized (locks[stripe]) {
+            previous = l1.put(key, value);
+            generations.incrementAndGet(stripe);
+            V demoted = l2.remove(key);
+            if (previous == null) {
+                previous = demoted;
+            }
+        }
+        drainDemotions();
+        return previous;
+    }
+
+    /**
+     * Returns the value corresponding to the specified key from L1 or, failing that, from L2. A value found in L2 is
+     * promoted to L1.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the cache contains no mapping for the
+     * key.
+     */
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        V value = l1.get(key);
+        if (value != null) {
+            l1Hits.increment();
+            return value;
+        }
+
+        int stripe = stripe(key);
+        int generation = generations.get(stripe);
+        value = l2.get(key);
+        if (value == null) {
+            misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        synchronized (locks[stripe]) {
+            if (generations.get(stripe) == generation && l2.remove(key) != null) {
+                l1.put(key, value);
+            }
+        }
+        drainDemotions();
+        return value;
+    }
+
+    /**
+     * Removes the value corresponding to the specified key from both tiers. Demotions of the key in flight are
+     * cancelled.
+     *
+     * @param key the key whose associated value is to be removed.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        int stripe = stripe(key);
+        synchronized (locks[stripe]) {
+            V previous = l1.remove(key);
+            generations.incrementAndGet(stripe);
+            V demoted = l2.remove(key);
+            return previous != null ? previous : demoted;
+        }
+    }
+
+    /**
+     * Returns the number of hits in L1.
+     *
+     * @return the number of hits in L1.
+     */
+    public long getL1HitCount() {
+        return l1Hits.sum();
+    }
+
+    /**
+     * Returns the number of hits in L2.
+     *
+     * @return the number of hits in L2.
+     */
+    public long getL2HitCount() {
+        return l2Hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that missed both tiers.
+     *
+     * @return the number of misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Moves the items evicted from L1 to L2, skipping those whose keys have been written since the eviction.
+     */
+    private void drainDemotions() {
+        Demotion<K, V> demotion;
+        while ((demotion = demotions.poll()) != null) {
+            int stripe = stripe(demotion.key);
+            synchronized (locks[stripe]) {
+                if (generations.get(stripe) == demotion.generation) {
+                    l2.put(demotion.key, demotion.value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the stripe of the specified key.
+     *
+     * @param key the key for which stripe is to be returned.
+     * @return the index of the stripe.
+     */
+    private static int stripe(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (lockStripes - 1);
+    }
+
+    /**
+     * An item evicted from L1 together with the generation of its stripe at the moment of the eviction.
+     *
+     * @param <K> the type of key.
+     * @param <V> the type of value.
+     */
+    private static final class Demotion<K, V> {
+        final K key;
+        final V value;
+        final int generation;
+
+        Demotion(K key, V value, int generation) {
+            this.key = key;
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package education.bert;
+
+import java.util.HashMap;
+
+/**
+ * Cache implementation based on Window TinyLFU (W-TinyLFU) cache replacement policy. New items are placed into a small
+ * LRU admission window. An item leaving the window competes with the eviction victim of the main region, and the one
+ * which is estimated to be accessed more frequently stays in the cache. The frequency is estimated by a Count-Min
+ * Sketch, so one-hit wonders and long scans can not flush the frequently used items. The main region is a segmented
+ * LRU: items are promoted from the probation segment to the protected one on a repeated access.
+ *
+ * @param <K> the type of keys maintained by this cache. As a key it is supposed to use some type of queries (e.g.
+ *            SQL-queries).
+ * @param <V> the type of cached values.
+ */
+public class CacheTinyLfuImpl<K, V> implements Cache<K, V> {
+
+    /**
+     * The minimum number of items to store.
+     */
+    public static final int minimalCacheSize = 1;
+
+    /**
+     * The default maximum number of items to store specified by default constructor.
+     */
+    public static final int defaultCacheSize = 10;
+
+    /**
+     * The percentage of maxCacheSize given to the admission window.
+     */
+    public static final int windowPercent = 1;
+
+    /**
+     * The percentage of the main region given to the protected segment.
+     */
+    public static final int protectedPercent = 80;
+
+    /**
+     * General collection for storing items providing fast access.
+     */
+    private final HashMap<K, Node<K, V>> cacheMap;
+
+    /**
+     * The frequency estimator of both cached and recently rejected keys.
+     */
+    private final FrequencySketch<K> sketch;
+
+    /**
+     * LRU list of the admission window.
+     */
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+
+    /**
+     * LRU list of the probation segment of the main region.
+     */
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+
+    /**
+     * LRU list of the protected segment of the main region.
+     */
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+
+    /**
+     * The maximum number of items in the admission window.
+     */
+    private final int maxWindowSize;
+
+    /**
+     * The maximum number of items in the main region.
+     */
+    private final int maxMainSize;
+
+    /**
+     * The maximum number of items in the protected segment.
+     */
+    private final int maxProtectedSize;
+
+    /**
+     * The listener notified about evicted items, or {@code null}.
+     */
+    private EvictionListener<? super K, ? super V> evictionListener;
+
+    /**
+     * Constructs a cache class with the regions sized according to the maxCacheSize.
+     *
+     * @param maxCacheSize the maximum number of items to store.
+     */
+    public CacheTinyLfuImpl(int maxCacheSize) {
+        if (maxCacheSize < minimalCacheSize) {
+            throw new IllegalArgumentException("maxCacheSize must not be less than minimalCacheSize (" + minimalCacheSize + ")");
+        }
+        maxWindowSize = Math.max(1, (int) ((long) maxCacheSize * windowPercent / 100));
+        maxMainSize = maxCacheSize - maxWindowSize;
+        maxProtectedSize = (int) ((long) maxMainSize * protectedPercent / 100);
+
+        cacheMap = new HashMap<>();
+        sketch = new FrequencySketch<>(maxCacheSize);
+    }
+
+    /**
+     * Constructs a cache class and sets the default value for maxCacheSize.
+     */
+    public CacheTinyLfuImpl() {
+        this(defaultCacheSize);
+    }
+
+    /**
+     * Adds a value to the cache associated with a specific key. If the cache previously contained a mapping for the
+     * key, the old value is replaced. A new item is added to the admission window, and when the cache is full, either
+     * the item leaving the window or the victim of the main region is evicted depending on their frequency.
+     *
+     * @param key   key with which the specified value is to be associated.
+     * @param value value to be added to the cache.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public synchronized V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        sketch.increment(key);
+        Node<K, V> node = cacheMap.get(key);
+        if (node != null) {
+            V previous = node.value;
+            node.value = value;
+            onHit(node);
+            return previous;
+        }
+        node = new Node<>(key, value);
+        cacheMap.put(key, node);
+        window.linkLast(node);
+        node.region = window;
+        if (window.size > maxWindowSize) {
+            evict();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value corresponding to the specified key. The access is recorded even if the key is absent, so a key
+     * which is requested repeatedly gets a chance to be admitted.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the cache contains no mapping for the
+     * key.
+     */
+    @Override
+    public synchronized V get(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        sketch.increment(key);
+        Node<K, V> node = cacheMap.get(key);
+        if (node == null) {
+            return null;
+        }
+        onHit(node);
+        return node.value;
+    }
+
+    /**
+     * Removes the value corresponding to the specified key.
+     *
+     * @param key the key whose associated value is to be removed.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @Override
+    public synchronized V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        Node<K, V> node = cacheMap.remove(key);
+        if (node == null) {
+            return null;
+        }
+        node.region.unlink(node);
+        return node.value;
+    }
+
+    /**
+     * Sets the listener notified when an item is evicted by the admission policy.
+     *
+     * @param listener the listener to be notified, or {@code null}.
+     */
+    @Override
+    public synchronized void setEvictionListener(EvictionListener<? super K, ? super V> listener) {
+        evictionListener = listener;
+    }
+
+    /**
+     * Updates the position of the accessed node: moves it to the tail of its LRU list or promotes it from probation to
+     * the protected segment.
+     *
+     * @param node the accessed node.
+     */
+    private void onHit(Node<K, V> node) {
+        if (node.region == probation) {
+            probation.unlink(node);
+            protectedSegment.linkLast(node);
+            node.region = protectedSegment;
+            if (protectedSegment.size > maxProtectedSize) {
+                Node<K, V> demoted = protectedSegment.head;
+                protectedSegment.unlink(demoted);
+                probation.linkLast(demoted);
+                demoted.region = probation;
+            }
+        } else {
+            node.region.moveToTail(node);
+        }
+    }
+
+    /**
+     * Moves the eldest node of the window to the probation segment. If the main region overflows, the candidate from
+     * the window and the victim of the main region compete, and the less frequent of them is removed.
+     */
+    private void evict() {
+        Node<K, V> candidate = window.head;
+        window.unlink(candidate);
+        if (maxMainSize == 0) {
+            cacheMap.remove(candidate.key);
+            notifyEviction(candidate);
+            return;
+        }
+        probation.linkLast(candidate);
+        candidate.region = probation;
+        if (probation.size + protectedSegment.size <= maxMainSize) {
+            return;
+        }
+
+        Node<K, V> victim = probation.head != candidate ? probation.head : protectedSegment.head;
+        if (sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+            victim = candidate;
+        }
+        victim.region.unlink(victim);
+        cacheMap.remove(victim.key);
+        notifyEviction(victim);
+    }
+
+    /**
+     * Notifies the eviction listener, if any, about the evicted node.
+     *
+     * @param node the evicted node.
+     */
+    private void notifyEviction(Node<K, V> node) {
+        if (evictionListener != null) {
+            evictionListener.onEviction(node.key, node.value, EvictionCause.SIZE);
+        }
+    }
+
+    /**
+     * A cached value together with its position in one of the LRU lists.
+     *
+     * @param <K> the type of key.
+     * @param <V> the type of value.
+     */
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        AccessOrder<K, V> region;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An intrusive doubly-linked list of nodes in the access order, from the least to the most recently used.
+     *
+     * @param <K> the type of keys.
+     * @param <V> the type of values.
+     */
+    private static final class AccessOrder<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        int size;
+
+        void linkLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void unlink(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToTail(Node<K, V> node) {
+            if (node != tail) {
+                unlink(node);
+                linkLast(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package education.bert;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe StatsCounter implementation based on LongAdder. Concurrent updates are spread over striped cells instead
+ * of contending on a single variable, so recording statistics does not become a bottleneck of a concurrent cache.
+ * Load times are also collected into a histogram with power-of-two buckets.
+ */
+public class ConcurrentStatsCounter implements StatsCounter {
+
+    /**
+     * The number of buckets of the load time histogram. The bucket i counts the loads that took from 2^i to 2^(i+1)
+     * nanoseconds.
+     */
+    public static final int histogramBuckets = 64;
+
+    /**
+     * The number of hits.
+     */
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * The number of misses.
+     */
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * The numbers of evictions indexed by the ordinal of their cause.
+     */
+    private final LongAdder[] evictionCounts = newAdders(EvictionCause.values().length);
+
+    /**
+     * The number of successful loads.
+     */
+    private final LongAdder loadSuccessCount = new LongAdder();
+
+    /**
+     * The number of loads that threw an exception.
+     */
+    private final LongAdder loadFailureCount = new LongAdder();
+
+    /**
+     * The total duration of all loads in nanoseconds.
+     */
+    private final LongAdder totalLoadTime = new LongAdder();
+
+    /**
+     * The numbers of loads by power-of-two buckets of their duration.
+     */
+    private final LongAdder[] loadTimeHistogram = newAdders(histogramBuckets);
+
+    @Override
+    public void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    @Override
+    public void recordEviction(EvictionCause cause) {
+        evictionCounts[cause.ordinal()].increment();
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        recordLoadTime(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        recordLoadTime(loadTime);
+    }
+
+    /**
+     * Returns a snapshot of the statistics recorded so far. The counters are read one by one, so the snapshot is not
+     * atomic with respect to concurrent updates.
+     *
+     * @return the snapshot of the statistics.
+     */
+    @Override
+    public CacheStats snapshot() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), sums(evictionCounts), loadSuccessCount.sum(),
+                loadFailureCount.sum(), totalLoadTime.sum(), sums(loadTimeHistogram));
+    }
+
+    /**
+     * Adds the load time to the total and to the histogram.
+     *
+     * @param loadTime the duration of the load in nanoseconds.
+     */
+    private void recordLoadTime(long loadTime) {
+        long nanos = Math.max(loadTime, 0L);
+        totalLoadTime.add(nanos);
+        loadTimeHistogram[63 - Long.numberOfLeadingZeros(nanos | 1L)].increment();
+    }
+
+    /**
+     * Creates an array of zero counters.
+     *
+     * @param count the number of counters.
+     * @return the array of counters.
+     */
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Reads the current values of the counters.
+     *
+     * @param adders the counters to be read.
+     * @return the values of the counters.
+     */
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,39 @@
+package education.bert;
+
+/**
+ * StatsCounter implementation that records nothing.
+ */
+enum DisabledStatsCounter implements StatsCounter {
+    INSTANCE;
+
+    /**
+     * The snapshot with all statistics equal to zero.
+     */
+    private static final CacheStats emptyStats = new CacheStats(0L, 0L, new long[EvictionCause.values().length], 0L, 0L,
+            0L, new long[ConcurrentStatsCounter.histogramBuckets]);
+
+    @Override
+    public void recordHits(int count) {
+    }
+
+    @Override
+    public void recordMisses(int count) {
+    }
+
+    @Override
+    public void recordEviction(EvictionCause cause) {
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return emptyStats;
+    }
+}
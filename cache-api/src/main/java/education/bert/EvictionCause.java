@@ -0,0 +1,17 @@
+package education.bert;
+
+/**
+ * The reason why a cache evicted an item on its own.
+ */
+public enum EvictionCause {
+
+    /**
+     * The item was evicted to keep the cache within its maximum size.
+     */
+    SIZE,
+
+    /**
+     * The item was evicted because its time to live has passed.
+     */
+    EXPIRED
+}
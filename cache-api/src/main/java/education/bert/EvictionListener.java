@@ -0,0 +1,22 @@
+package education.bert;
+
+/**
+ * A listener notified when a cache evicts an item on its own. Explicit removals and replacements are not reported.
+ * The listener is invoked synchronously by the thread that caused the eviction, usually while the cache is locked, so
+ * it must be fast and must not access the cache.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of values.
+ */
+@FunctionalInterface
+public interface EvictionListener<K, V> {
+
+    /**
+     * Notifies about an evicted item.
+     *
+     * @param key   the key of the evicted item.
+     * @param value the value of the evicted item.
+     * @param cause the reason of the eviction.
+     */
+    void onEviction(K key, V value, EvictionCause cause);
+}
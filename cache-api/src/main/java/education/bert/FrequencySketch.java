@@ -0,0 +1,157 @@
+package education.bert;
+
+/**
+ * A probabilistic estimator of the access frequency of items (Count-Min Sketch) with 4-bit counters. Each item is
+ * mapped to four counters, one per hash function: every function chooses a 64-bit word of the table and the counter
+ * within the word is taken from one group of four selected by the hash of the item. The frequency is estimated as the
+ * minimum of the counters. To keep the history fresh all counters are halved once the number of increments reaches the
+ * sample size.
+ *
+ * @param <E> the type of items whose frequency is estimated.
+ */
+final class FrequencySketch<E> {
+
+    /**
+     * Seeds for the four hash functions.
+     */
+    private static final long[] seeds = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    /**
+     * The mask that clears the highest bit of each counter after the word is shifted right by one.
+     */
+    private static final long resetMask = 0x7777777777777777L;
+
+    /**
+     * The mask that selects the lowest bit of each counter.
+     */
+    private static final long oneMask = 0x1111111111111111L;
+
+    /**
+     * The maximum value of a 4-bit counter.
+     */
+    private static final int maxFrequency = 15;
+
+    /**
+     * The table of counters, sixteen 4-bit counters per word.
+     */
+    private final long[] table;
+
+    /**
+     * The mask used to choose a word of the table.
+     */
+    private final int tableMask;
+
+    /**
+     * The number of increments after which the counters are halved.
+     */
+    private final int sampleSize;
+
+    /**
+     * The number of increments since the last reset.
+     */
+    private int size;
+
+    /**
+     * Constructs a sketch suitable for a cache holding the specified number of items.
+     *
+     * @param maximumSize the maximum number of items in the cache.
+     */
+    FrequencySketch(int maximumSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, Math.min(maximumSize, 1 << 30)) - 1) << 1;
+        table = new long[capacity];
+        tableMask = capacity - 1;
+        sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the estimated number of occurrences of the item, up to the maximum of {@value #maxFrequency}.
+     *
+     * @param item the item whose frequency is to be estimated.
+     * @return the estimated frequency of the item.
+     */
+    int frequency(E item) {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = maxFrequency;
+        for (int i = 0; i < 4; i++) {
+            int shift = (start + i) << 2;
+            int count = (int) ((table[indexOf(hash, i)] >>> shift) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments the counters of the item if they have not reached the maximum value. Halves all counters when the
+     * sample size is reached.
+     *
+     * @param item the item whose frequency is to be incremented.
+     */
+    void increment(E item) {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Increments the specified counter of the word if it has not reached the maximum value.
+     *
+     * @param index   the index of the word in the table.
+     * @param counter the index of the counter in the word.
+     * @return {@code true} if the counter has been incremented.
+     */
+    private boolean incrementAt(int index, int counter) {
+        int shift = counter << 2;
+        long mask = 0xfL << shift;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << shift;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halves all counters and adjusts the size accordingly.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & oneMask);
+            table[i] = (table[i] >>> 1) & resetMask;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    /**
+     * Returns the index of the word for the specified hash function.
+     *
+     * @param hash the spread hash of the item.
+     * @param i    the index of the hash function.
+     * @return the index of the word in the table.
+     */
+    private int indexOf(int hash, int i) {
+        long h = (hash + seeds[i]) * seeds[i];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    /**
+     * Applies a supplemental hash function to defend against poor quality hash codes.
+     *
+     * @param x the hash code of the item.
+     * @return the spread hash.
+     */
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,360 @@
+package education.bert;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Thread-safe cache with primitive int keys and values, e.g. for count queries. Keys and values are stored in parallel
+ * arrays of an open-addressing table, so nothing is boxed and a hit does not allocate at all. Items are evicted
+ * according to the CLOCK policy, which approximates LRU.
+ */
+public class Int2IntCache extends AbstractIntCache {
+
+    /**
+     * The default number of items to store.
+     */
+    public static final int defaultCacheSize = 10;
+
+    /**
+     * The values of the items.
+     */
+    private final int[] values;
+
+    /**
+     * The numbers of updates in progress by key, see {@link #beginUpdate(int)}. Guarded by the write lock.
+     */
+    private final Map<Integer, Integer> updates = new HashMap<>();
+
+    /**
+     * Constructs an empty cache with the specified maximum number of items that records statistics.
+     *
+     * @param maxCacheSize the maximum number of items to store.
+     * @param stats        the counter recording the statistics, e.g. {@link StatsCounter#disabled()}.
+     */
+    public Int2IntCache(int maxCacheSize, StatsCounter stats) {
+        super(maxCacheSize, stats);
+        values = new int[keys.length];
+    }
+
+    /**
+     * Constructs an empty cache with the specified maximum number of items.
+     *
+     * @param maxCacheSize the maximum number of items to store.
+     */
+    public Int2IntCache(int maxCacheSize) {
+        this(maxCacheSize, StatsCounter.disabled());
+    }
+
+    /**
+     * Constructs an empty cache with the default maximum number of items (10).
+     */
+    public Int2IntCache() {
+        this(defaultCacheSize);
+    }
+
+    /**
+     * Returns true if the cache contains a mapping for the specified key.
+     *
+     * @param key the key whose presence is to be tested.
+     * @return true if the cache contains a mapping for the key.
+     */
+    public boolean containsKey(int key) {
+        long stamp = lock.tryOptimisticRead();
+        boolean contains = indexOf(key) >= 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                contains = indexOf(key) >= 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return contains;
+    }
+
+    /**
+     * Returns the value corresponding to the specified key, or the default value if the cache contains no mapping for
+     * the key.
+     *
+     * @param key          the key whose associated value is to be returned.
+     * @param defaultValue the value to be returned if the key is absent.
+     * @return the value corresponding to the specified key, or the default value.
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        long stamp = lock.tryOptimisticRead();
+        int index = indexOf(key);
+        int value = index < 0 ? defaultValue : values[index];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                index = indexOf(key);
+                value = index < 0 ? defaultValue : values[index];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (index >= 0) {
+            referenced[index] = true;
+            stats.recordHits(1);
+        } else {
+            stats.recordMisses(1);
+        }
+        return value;
+    }
+
+    /**
+     * Adds a value to the cache associated with a specific key. A load of the key in flight will not cache its
+     * result.
+     *
+     * @param key   key with which the specified value is to be associated.
+     * @param value value to be added to the cache.
+     */
+    public void put(int key, int value) {
+        long stamp = lock.writeLock();
+        try {
+            cancelLoad(key);
+            store(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the value corresponding to the specified key. A load of the key in flight will not cache its result.
+     *
+     * @param key the key whose associated value is to be removed.
+     * @return true if the cache contained a mapping for the key.
+     */
+    public boolean remove(int key) {
+        long stamp = lock.writeLock();
+        try {
+            cancelLoad(key);
+            int index = indexOf(key);
+            if (index < 0) {
+                return false;
+            }
+            delete(index);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically adds the delta to the value of the specified key if the cache contains it, e.g. to maintain a cached
+     * count. Otherwise a load of the key in flight will not cache its result, since it may have missed the change.
+     *
+     * @param key   the key whose associated value is to be changed.
+     * @param delta the value to be added.
+     * @return true if the cache contained a mapping for the key.
+     */
+    public boolean addIfPresent(int key, int delta) {
+        long stamp = lock.writeLock();
+        try {
+            int index = indexOf(key);
+            if (index < 0) {
+                cancelLoad(key);
+                return false;
+            }
+            values[index] += delta;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Marks the start of a change of the value of the key at its source, e.g. of a database write that changes a cached
+     * count. Until the matching {@link #endUpdate(int, int)}, neither a load of the key in flight nor a new one caches
+     * its result, since it may or may not include the change. Updates of the same key may overlap.
+     *
+     * @param key the key whose value is to be changed.
+     */
+    public void beginUpdate(int key) {
+        long stamp = lock.writeLock();
+        try {
+            cancelLoad(key);
+            updates.merge(key, 1, Integer::sum);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Marks the end of a change of the value of the key started by {@link #beginUpdate(int)} and atomically adds the
+     * delta to the value of the key if the cache contains it. A load of the key in flight does not cache its result,
+     * since it has started during the change.
+     *
+     * @param key   the key whose value has been changed.
+     * @param delta the value to be added, 0 if the change has failed.
+     * @return true if the cache contained a mapping for the key.
+     */
+    public boolean endUpdate(int key, int delta) {
+        long stamp = lock.writeLock();
+        try {
+            updates.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+            cancelLoad(key);
+            int index = indexOf(key);
+            if (index < 0) {
+                return false;
+            }
+            values[index] += delta;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the value corresponding to the specified key, loading it with the mapping function if the cache contains
+     * no mapping for the key. If another thread is already loading the key, waits for its result instead. An exception
+     * thrown by the mapping function is propagated to all callers waiting for the load.
+     *
+     * @param key             the key whose associated value is to be returned.
+     * @param mappingFunction the function that loads the value for the key. It must not access the same key of this
+     *                        cache.
+     * @return the current (existing or loaded) value associated with the key.
+     */
+    public int computeIfAbsent(int key, IntUnaryOperator mappingFunction) {
+        long stamp = lock.tryOptimisticRead();
+        int index = indexOf(key);
+        int value = index < 0 ? 0 : values[index];
+        if (lock.validate(stamp) && index >= 0) {
+            referenced[index] = true;
+            stats.recordHits(1);
+            return value;
+        }
+        stamp = lock.readLock();
+        try {
+            index = indexOf(key);
+            if (index >= 0) {
+                referenced[index] = true;
+                stats.recordHits(1);
+                return values[index];
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        stats.recordMisses(1);
+
+        CompletableFuture<Integer> load = new CompletableFuture<>();
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Integer> inFlight = (CompletableFuture<Integer>) loads.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        long startTime = 0L;
+        boolean loading = false;
+        try {
+            stamp = lock.readLock();
+            try {
+                index = indexOf(key);
+                value = index < 0 ? 0 : values[index];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            if (index < 0) {
+                startTime = System.nanoTime();
+                loading = true;
+                value = mappingFunction.applyAsInt(key);
+                loading = false;
+                stats.recordLoadSuccess(System.nanoTime() - startTime);
+                install(key, load, value);
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            if (loading) {
+                stats.recordLoadFailure(System.nanoTime() - startTime);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Reloads the value of the key if the cache contains it, e.g. to correct a cached count that is maintained by
+     * deltas. The cached value stays readable during the reload. The reloaded value replaces it only if no put, remove
+     * or update of the key has been in progress meanwhile, since the reload may or may not include such a change, see
+     * {@link #beginUpdate(int)}. Otherwise the cached value is kept.
+     *
+     * @param key             the key whose value is to be reloaded.
+     * @param mappingFunction the function that loads the value for the key. It must not access the same key of this
+     *                        cache.
+     * @return true if the reloaded value has been cached.
+     */
+    public boolean refresh(int key, IntUnaryOperator mappingFunction) {
+        if (!containsKey(key)) {
+            return false;
+        }
+        CompletableFuture<Integer> load = new CompletableFuture<>();
+        if (loads.putIfAbsent(key, load) != null) {
+            return false;
+        }
+        long startTime = System.nanoTime();
+        try {
+            int value = mappingFunction.applyAsInt(key);
+            stats.recordLoadSuccess(System.nanoTime() - startTime);
+            load.complete(value);
+            return install(key, load, value);
+        } catch (RuntimeException | Error e) {
+            stats.recordLoadFailure(System.nanoTime() - startTime);
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Caches the loaded value unless the load has been cancelled by a put or remove of the key, or the key is being
+     * updated.
+     *
+     * @param key   the loaded key.
+     * @param load  the load registered for the key.
+     * @param value the loaded value.
+     * @return true if the value has been cached.
+     */
+    private boolean install(int key, CompletableFuture<Integer> load, int value) {
+        long stamp = lock.writeLock();
+        try {
+            if (loads.remove(key, load) && (updates.isEmpty() || !updates.containsKey(key))) {
+                store(key, value);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Stores the value of the key. Must be invoked under the write lock.
+     *
+     * @param key   the key of the item.
+     * @param value the value of the item.
+     */
+    private void store(int key, int value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+            referenced[index] = true;
+        } else {
+            values[insert(key)] = value;
+        }
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    protected void clearValue(int index) {
+        values[index] = 0;
+    }
+}
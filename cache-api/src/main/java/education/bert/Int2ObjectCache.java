@@ -0,0 +1,406 @@
+package education.bert;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Thread-safe cache with primitive int keys. Keys and values are stored in parallel arrays of an open-addressing table,
+ * so neither the keys are boxed nor entry objects are allocated, and a hit does not allocate at all. Items are evicted
+ * according to the CLOCK policy, which approximates LRU.
+ *
+ * @param <V> the type of cached values.
+ */
+public class Int2ObjectCache<V> extends AbstractIntCache {
+
+    /**
+     * The default number of items to store.
+     */
+    public static final int defaultCacheSize = 10;
+
+    /**
+     * The values of the items.
+     */
+    private final Object[] values;
+
+    /**
+     * Constructs an empty cache with the specified maximum number of items that records statistics.
+     *
+     * @param maxCacheSize the maximum number of items to store.
+     * @param stats        the counter recording the statistics, e.g. {@link StatsCounter#disabled()}.
+     */
+    public Int2ObjectCache(int maxCacheSize, StatsCounter stats) {
+        super(maxCacheSize, stats);
+        values = new Object[keys.length];
+    }
+
+    /**
+     * Constructs an empty cache with the specified maximum number of items.
+     *
+     * @param maxCacheSize the maximum number of items to store.
+     */
+    public Int2ObjectCache(int maxCacheSize) {
+        this(maxCacheSize, StatsCounter.disabled());
+    }
+
+    /**
+     * Constructs an empty cache with the default maximum number of items (10).
+     */
+    public Int2ObjectCache() {
+        this(defaultCacheSize);
+    }
+
+    /**
+     * Returns the value corresponding to the specified key.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the cache contains no mapping for the
+     * key.
+     */
+    public V get(int key) {
+        V value = lookup(key);
+        if (value != null) {
+            stats.recordHits(1);
+        } else {
+            stats.recordMisses(1);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value corresponding to the specified key if the cache contains it. Only a hit is recorded, so a miss
+     * can be followed by {@link #computeIfAbsent(int, IntFunction)} of the key without counting it twice.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the cache contains no mapping for the
+     * key.
+     */
+    public V getIfPresent(int key) {
+        V value = lookup(key);
+        if (value != null) {
+            stats.recordHits(1);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value corresponding to the specified key without recording statistics.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the cache contains no mapping for the
+     * key.
+     */
+    @SuppressWarnings("unchecked")
+    private V lookup(int key) {
+        long stamp = lock.tryOptimisticRead();
+        int index = indexOf(key);
+        Object value = index < 0 ? null : values[index];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                index = indexOf(key);
+                value = index < 0 ? null : values[index];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (index >= 0) {
+            referenced[index] = true;
+        }
+        return (V) value;
+    }
+
+    /**
+     * Performs the action for each item from the most to the least recently used one, as approximated by CLOCK. The
+     * items are copied under the read lock and the action is performed afterwards, so a slow action does not block the
+     * writes. The items are not marked as referenced and no statistics are recorded.
+     *
+     * @param action the action to be performed for the value and the key of each item.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachByRecency(ObjIntConsumer<? super V> action) {
+        int[] itemKeys;
+        Object[] itemValues;
+        long stamp = lock.readLock();
+        try {
+            int[] slots = slotsByRecency();
+            itemKeys = new int[slots.length];
+            itemValues = new Object[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                itemKeys[i] = keys[slots[i]];
+                itemValues[i] = values[slots[i]];
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        for (int i = 0; i < itemKeys.length; i++) {
+            action.accept((V) itemValues[i], itemKeys[i]);
+        }
+    }
+
+    /**
+     * Adds a value to the cache associated with a specific key. A load of the key in flight will not cache its
+     * result.
+     *
+     * @param key   key with which the specified value is to be associated.
+     * @param value value to be added to the cache.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        long stamp = lock.writeLock();
+        try {
+            cancelLoad(key);
+            return (V) store(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the value corresponding to the specified key. A load of the key in flight will not cache its result.
+     *
+     * @param key the key whose associated value is to be removed.
+     * @return the previous value associated with key, or {@code null} if there was no mapping for key.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        long stamp = lock.writeLock();
+        try {
+            cancelLoad(key);
+            int index = indexOf(key);
+            if (index < 0) {
+                return null;
+            }
+            Object previous = values[index];
+            delete(index);
+            return (V) previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the value corresponding to the specified key, loading it with the mapping function if the cache contains
+     * no mapping for the key. If another thread is already loading the key, waits for its result instead. A
+     * {@code null} result of the mapping function is returned but not cached. An exception thrown by the mapping
+     * function is propagated to all callers waiting for the load.
+     *
+     * @param key             the key whose associated value is to be returned.
+     * @param mappingFunction the function that loads the value for the key. It must not access the same key of this
+     *                        cache.
+     * @return the current (existing or loaded) value associated with the key, or {@code null} if the loaded value is
+     * {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key, IntFunction<? extends V> mappingFunction) {
+        V value = lookup(key);
+        if (value != null) {
+            stats.recordHits(1);
+            return value;
+        }
+        stats.recordMisses(1);
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = (CompletableFuture<V>) loads.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        long startTime = 0L;
+        boolean loading = false;
+        try {
+            value = lookup(key);
+            if (value == null) {
+                startTime = System.nanoTime();
+                loading = true;
+                value = mappingFunction.apply(key);
+                loading = false;
+                stats.recordLoadSuccess(System.nanoTime() - startTime);
+                if (value != null) {
+                    install(key, load, value);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            if (loading) {
+                stats.recordLoadFailure(System.nanoTime() - startTime);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Returns the values corresponding to the specified keys, loading all missing keys with a single call of the
+     * mapping function. Keys already being loaded by other threads are not loaded again; their results are waited for
+     * instead. Keys missing in the result of the mapping function are neither returned nor cached. An exception thrown
+     * by the mapping function is propagated to all callers waiting for the keys of the load.
+     *
+     * @param keys            the keys whose associated values are to be returned.
+     * @param mappingFunction the function that loads the values for the array of distinct missing keys. It must not
+     *                        access the same keys of this cache.
+     * @return the current (existing or loaded) mappings of the keys, in the order of the keys.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Integer, V> getAll(int[] keys, Function<int[], ? extends Map<Integer, ? extends V>> mappingFunction) {
+        Map<Integer, V> found = new LinkedHashMap<>();
+        Map<Integer, CompletableFuture<V>> ownLoads = new LinkedHashMap<>();
+        Map<Integer, CompletableFuture<V>> otherLoads = new LinkedHashMap<>();
+        int hits = 0;
+        for (int key : keys) {
+            if (found.containsKey(key) || ownLoads.containsKey(key) || otherLoads.containsKey(key)) {
+                continue;
+            }
+            V value = lookup(key);
+            if (value != null) {
+                hits++;
+                found.put(key, value);
+                continue;
+            }
+            CompletableFuture<V> load = new CompletableFuture<>();
+            CompletableFuture<V> inFlight = (CompletableFuture<V>) loads.putIfAbsent(key, load);
+            if (inFlight != null) {
+                otherLoads.put(key, inFlight);
+            } else {
+                ownLoads.put(key, load);
+            }
+        }
+        stats.recordHits(hits);
+        stats.recordMisses(ownLoads.size() + otherLoads.size());
+
+        if (!ownLoads.isEmpty()) {
+            loadAll(ownLoads, found, mappingFunction);
+        }
+        for (Map.Entry<Integer, CompletableFuture<V>> entry : otherLoads.entrySet()) {
+            V value = join(entry.getValue());
+            if (value != null) {
+                found.put(entry.getKey(), value);
+            }
+        }
+
+        Map<Integer, V> result = new LinkedHashMap<>();
+        for (int key : keys) {
+            V value = found.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the keys registered by this thread with a single call of the mapping function, caches the loaded values
+     * and completes the loads.
+     *
+     * @param ownLoads        the loads registered for the keys.
+     * @param found           the map to add the loaded values to.
+     * @param mappingFunction the function that loads the values for the array of missing keys.
+     */
+    private void loadAll(Map<Integer, CompletableFuture<V>> ownLoads, Map<Integer, V> found,
+                         Function<int[], ? extends Map<Integer, ? extends V>> mappingFunction) {
+        long startTime = 0L;
+        boolean loading = false;
+        try {
+            int[] missing = new int[ownLoads.size()];
+            int missingCount = 0;
+            for (int key : ownLoads.keySet()) {
+                V value = lookup(key);
+                if (value != null) {
+                    found.put(key, value);
+                } else {
+                    missing[missingCount++] = key;
+                }
+            }
+            Map<Integer, ? extends V> loaded = Collections.emptyMap();
+            if (missingCount > 0) {
+                startTime = System.nanoTime();
+                loading = true;
+                loaded = mappingFunction.apply(Arrays.copyOf(missing, missingCount));
+                loading = false;
+                stats.recordLoadSuccess(System.nanoTime() - startTime);
+            }
+            for (Map.Entry<Integer, CompletableFuture<V>> entry : ownLoads.entrySet()) {
+                int key = entry.getKey();
+                V value = found.get(key);
+                if (value == null) {
+                    value = loaded.get(key);
+                    if (value != null) {
+                        install(key, entry.getValue(), value);
+                        found.put(key, value);
+                    }
+                }
+                entry.getValue().complete(value);
+            }
+        } catch (RuntimeException | Error e) {
+            if (loading) {
+                stats.recordLoadFailure(System.nanoTime() - startTime);
+            }
+            for (CompletableFuture<V> load : ownLoads.values()) {
+                load.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            for (Map.Entry<Integer, CompletableFuture<V>> entry : ownLoads.entrySet()) {
+                loads.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Caches the loaded value unless the load has been cancelled by a put or remove of the key.
+     *
+     * @param key   the loaded key.
+     * @param load  the load registered for the key.
+     * @param value the loaded value.
+     */
+    private void install(int key, CompletableFuture<V> load, V value) {
+        long stamp = lock.writeLock();
+        try {
+            if (loads.remove(key, load)) {
+                store(key, value);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Stores the value of the key. Must be invoked under the write lock.
+     *
+     * @param key   the key of the item.
+     * @param value the value of the item.
+     * @return the previous value of the key, or {@code null} if there was no mapping for key.
+     */
+    private Object store(int key, V value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object previous = values[index];
+            values[index] = value;
+            referenced[index] = true;
+            return previous;
+        }
+        values[insert(key)] = value;
+        return null;
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    protected void clearValue(int index) {
+        values[index] = null;
+    }
+}
@@ -0,0 +1,45 @@
+package education.bert;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A cache that can load missing values itself. Loading of a value is performed at most once at a time for each key:
+ * concurrent callers requesting the same missing key wait for the result of the load in flight.
+ *
+ * @param <K> the type of keys maintained by this cache. As a key it is supposed to use some type of queries (e.g.
+ *            SQL-queries).
+ * @param <V> the type of cached values.
+ */
+public interface LoadingCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Returns the value corresponding to the specified key, loading it with the mapping function if the cache contains
+     * no mapping for the key. If another thread is already loading the key, waits for its result instead. A
+     * {@code null} result of the mapping function is returned but not cached. An exception thrown by the mapping
+     * function is propagated to all callers waiting for the load.
+     *
+     * @param key             the key whose associated value is to be returned.
+     * @param mappingFunction the function that loads the value for the key. It must not access the same key of this
+     *                        cache.
+     * @return the current (existing or loaded) value associated with the key, or {@code null} if the loaded value is
+     * {@code null}.
+     */
+    V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction);
+
+    /**
+     * Returns the values corresponding to the specified keys, loading all missing keys with a single call of the
+     * mapping function. Keys already being loaded by other threads are not loaded again; their results are waited for
+     * instead. Keys missing in the result of the mapping function are neither returned nor cached. An exception thrown
+     * by the mapping function is propagated to all callers waiting for the keys of the load.
+     *
+     * @param keys            the keys whose associated values are to be returned.
+     * @param mappingFunction the function that loads the values for the set of missing keys. It must not access the
+     *                        same keys of this cache.
+     * @return the current (existing or loaded) mappings of the keys, in the iteration order of the keys.
+     */
+    Map<K, V> getAll(Collection<? extends K> keys,
+                     Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> mappingFunction);
+}
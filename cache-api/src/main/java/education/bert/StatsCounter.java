@@ -0,0 +1,60 @@
+package education.bert;
+
+/**
+ * Records statistics of a cache: hits, misses, evictions by cause and loads with their durations. Implementations must
+ * be thread-safe and cheap enough to be invoked on every cache access.
+ */
+public interface StatsCounter {
+
+    /**
+     * Records cache hits.
+     *
+     * @param count the number of hits.
+     */
+    void recordHits(int count);
+
+    /**
+     * Records cache misses.
+     *
+     * @param count the number of misses.
+     */
+    void recordMisses(int count);
+
+    /**
+     * Records an eviction of an item.
+     *
+     * @param cause the reason of the eviction.
+     */
+    void recordEviction(EvictionCause cause);
+
+    /**
+     * Records a successful load of a value.
+     *
+     * @param loadTime the duration of the load in nanoseconds.
+     */
+    void recordLoadSuccess(long loadTime);
+
+    /**
+     * Records a load that threw an exception.
+     *
+     * @param loadTime the duration of the load in nanoseconds.
+     */
+    void recordLoadFailure(long loadTime);
+
+    /**
+     * Returns a snapshot of the statistics recorded so far.
+     *
+     * @return the snapshot of the statistics.
+     */
+    CacheStats snapshot();
+
+    /**
+     * Returns the counter that records nothing. Caches use it by default, so disabled statistics cost only an empty
+     * method call which the JIT compiler removes.
+     *
+     * @return the counter that records nothing.
+     */
+    static StatsCounter disabled() {
+        return DisabledStatsCounter.INSTANCE;
+    }
+}
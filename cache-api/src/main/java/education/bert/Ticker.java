@@ -0,0 +1,25 @@
+package education.bert;
+
+/**
+ * A time source that returns a time value representing the number of nanoseconds elapsed since some fixed but
+ * arbitrary point in time. Allows to replace the system time in tests.
+ */
+@FunctionalInterface
+public interface Ticker {
+
+    /**
+     * Returns the number of nanoseconds elapsed since this ticker's fixed point of reference.
+     *
+     * @return the current time in nanoseconds.
+     */
+    long read();
+
+    /**
+     * Returns a ticker that reads the current time using {@link System#nanoTime}.
+     *
+     * @return the system ticker.
+     */
+    static Ticker systemTicker() {
+        return System::nanoTime;
+    }
+}
@@ -0,0 +1,212 @@
+package education.bert;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel used to expire cache entries in amortized constant time. Each level of the wheel consists
+ * of buckets covering a power-of-two span of time, and an entry is placed into the bucket of the coarsest level whose
+ * span still fits its remaining lifetime. When the time advances, the passed buckets are drained: due entries are
+ * expired, and the others are rescheduled into the finer levels.
+ * <p>
+ * The wheel is not thread-safe and must be guarded by the lock of the cache that uses it.
+ *
+ * @param <T> the type of timers scheduled by this wheel.
+ */
+final class TimerWheel<T extends TimerWheel.Timer<T>> {
+
+    /**
+     * The number of buckets on each level of the wheel. Must be powers of two.
+     */
+    private static final int[] buckets = {64, 64, 32, 4, 1};
+
+    /**
+     * The bit shift that converts nanoseconds to ticks of each level: ~1.07s, ~1.14m, ~1.22h, ~1.63d and ~6.5d.
+     */
+    private static final int[] shifts = {30, 36, 42, 47, 49};
+
+    /**
+     * Sentinels of the bucket lists on each level.
+     */
+    private final Sentinel<T>[][] wheel;
+
+    /**
+     * The time of the last advance in nanoseconds.
+     */
+    private long nanos;
+
+    /**
+     * Constructs an empty wheel.
+     *
+     * @param nanos the current time in nanoseconds.
+     */
+    @SuppressWarnings("unchecked")
+    TimerWheel(long nanos) {
+        this.nanos = nanos;
+        wheel = (Sentinel<T>[][]) new Sentinel<?>[buckets.length][];
+        for (int i = 0; i < buckets.length; i++) {
+            wheel[i] = (Sentinel<T>[]) new Sentinel<?>[buckets[i]];
+            for (int j = 0; j < buckets[i]; j++) {
+                wheel[i][j] = new Sentinel<>();
+            }
+        }
+    }
+
+    /**
+     * Schedules the timer to fire at its deadline. A timer which is already scheduled is moved.
+     *
+     * @param timer the timer to be scheduled.
+     */
+    void schedule(T timer) {
+        deschedule(timer);
+        link(bucketFor(timer.getDeadline()), timer);
+    }
+
+    /**
+     * Cancels the timer if it is scheduled.
+     *
+     * @param timer the timer to be cancelled.
+     */
+    void deschedule(T timer) {
+        Timer<T> next = timer.getNextInBucket();
+        if (next != null) {
+            Timer<T> prev = timer.getPrevInBucket();
+            next.setPrevInBucket(prev);
+            prev.setNextInBucket(next);
+            timer.setNextInBucket(null);
+            timer.setPrevInBucket(null);
+        }
+    }
+
+    /**
+     * Advances the wheel to the current time and passes every timer whose deadline has been reached to the consumer.
+     *
+     * @param currentNanos the current time in nanoseconds.
+     * @param expired      the consumer of the expired timers.
+     */
+    void advance(long currentNanos, Consumer<T> expired) {
+        long previousNanos = nanos;
+        nanos = currentNanos;
+        for (int i = 0; i < shifts.length; i++) {
+            long previousTicks = previousNanos >>> shifts[i];
+            long currentTicks = currentNanos >>> shifts[i];
+            if (currentTicks - previousTicks <= 0L) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, expired);
+        }
+    }
+
+    /**
+     * Drains the buckets of the level passed since the previous advance.
+     *
+     * @param level         the level of the wheel.
+     * @param previousTicks the ticks of the level at the previous advance.
+     * @param delta         the number of passed ticks.
+     * @param expired       the consumer of the expired timers.
+     */
+    private void expire(int level, long previousTicks, long delta, Consumer<T> expired) {
+        Sentinel<T>[] levelBuckets = wheel[level];
+        int mask = levelBuckets.length - 1;
+        int steps = (int) Math.min(delta + 1, levelBuckets.length);
+        for (int i = 0; i < steps; i++) {
+            Sentinel<T> sentinel = levelBuckets[(int) ((previousTicks + i) & mask)];
+            Timer<T> timer = sentinel.getNextInBucket();
+            sentinel.setNextInBucket(sentinel);
+            sentinel.setPrevInBucket(sentinel);
+            while (timer != sentinel) {
+                Timer<T> next = timer.getNextInBucket();
+                timer.setNextInBucket(null);
+                timer.setPrevInBucket(null);
+                @SuppressWarnings("unchecked")
+                T scheduled = (T) timer;
+                if (scheduled.getDeadline() - nanos <= 0L) {
+                    expired.accept(scheduled);
+                } else {
+                    link(bucketFor(scheduled.getDeadline()), scheduled);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    /**
+     * Returns the bucket for the specified deadline.
+     *
+     * @param deadline the deadline in nanoseconds.
+     * @return the sentinel of the bucket list.
+     */
+    private Sentinel<T> bucketFor(long deadline) {
+        long duration = deadline - nanos;
+        int level = shifts.length - 1;
+        for (int i = 1; i < shifts.length; i++) {
+            if (duration < (1L << shifts[i])) {
+                level = i - 1;
+                break;
+            }
+        }
+        Sentinel<T>[] levelBuckets = wheel[level];
+        return levelBuckets[(int) ((deadline >>> shifts[level]) & (levelBuckets.length - 1))];
+    }
+
+    /**
+     * Appends the timer to the tail of the bucket list.
+     *
+     * @param sentinel the sentinel of the bucket list.
+     * @param timer    the timer to be appended.
+     */
+    private static <T extends Timer<T>> void link(Sentinel<T> sentinel, Timer<T> timer) {
+        Timer<T> last = sentinel.getPrevInBucket();
+        timer.setPrevInBucket(last);
+        timer.setNextInBucket(sentinel);
+        last.setNextInBucket(timer);
+        sentinel.setPrevInBucket(timer);
+    }
+
+    /**
+     * An item that can be scheduled on the wheel. The links are managed by the wheel only.
+     *
+     * @param <T> the type of the timer itself.
+     */
+    abstract static class Timer<T extends Timer<T>> {
+        private Timer<T> prevInBucket;
+        private Timer<T> nextInBucket;
+
+        /**
+         * Returns the time when the timer is to fire. Sentinels are never scheduled, so they never fire.
+         *
+         * @return the deadline in nanoseconds.
+         */
+        long getDeadline() {
+            return Long.MAX_VALUE;
+        }
+
+        Timer<T> getPrevInBucket() {
+            return prevInBucket;
+        }
+
+        void setPrevInBucket(Timer<T> prevInBucket) {
+            this.prevInBucket = prevInBucket;
+        }
+
+        Timer<T> getNextInBucket() {
+            return nextInBucket;
+        }
+
+        void setNextInBucket(Timer<T> nextInBucket) {
+            this.nextInBucket = nextInBucket;
+        }
+    }
+
+    /**
+     * The head of a circular bucket list.
+     *
+     * @param <T> the type of timers in the bucket.
+     */
+    private static final class Sentinel<T extends Timer<T>> extends Timer<T> {
+
+        Sentinel() {
+            setPrevInBucket(this);
+            setNextInBucket(this);
+        }
+    }
+}
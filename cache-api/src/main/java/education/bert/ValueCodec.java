@@ -0,0 +1,120 @@
+package education.bert;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts values to and from their binary form, so they can be stored outside of the Java heap.
+ *
+ * @param <V> the type of values converted by this codec.
+ */
+public interface ValueCodec<V> {
+
+    /**
+     * Returns the number of bytes needed to encode the value.
+     *
+     * @param value the value to be encoded.
+     * @return the size of the encoded value in bytes.
+     */
+    int encodedSize(V value);
+
+    /**
+     * Writes the value into the buffer starting at its current position. Exactly {@link #encodedSize(Object)} bytes
+     * must be written.
+     *
+     * @param value  the value to be encoded.
+     * @param buffer the buffer to write to.
+     */
+    void encode(V value, ByteBuffer buffer);
+
+    /**
+     * Reads a value from the buffer starting at its current position.
+     *
+     * @param buffer the buffer to read from.
+     * @return the decoded value.
+     */
+    V decode(ByteBuffer buffer);
+
+    /**
+     * Returns the number of bytes needed to encode the string with {@link #putString(ByteBuffer, String)}.
+     *
+     * @param string the string to be encoded, may be {@code null}.
+     * @return the size of the encoded string in bytes.
+     */
+    static int stringSize(String string) {
+        if (string == null) {
+            return 4;
+        }
+        int size = 4;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length()
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the string as its UTF-8 length followed by its UTF-8 bytes, without allocating an intermediate array. A
+     * {@code null} string is written as length -1. Unpaired surrogates are written as U+FFFD.
+     *
+     * @param buffer the buffer to write to.
+     * @param string the string to be written, may be {@code null}.
+     */
+    static void putString(ByteBuffer buffer, String string) {
+        if (string == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(stringSize(string) - 4);
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length()
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) 0xEF);
+                buffer.put((byte) 0xBF);
+                buffer.put((byte) 0xBD);
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Reads a string written with {@link #putString(ByteBuffer, String)}.
+     *
+     * @param buffer the buffer to read from.
+     * @return the string read, or {@code null} if a {@code null} string was written.
+     */
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
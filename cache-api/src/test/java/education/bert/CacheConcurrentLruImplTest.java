@@ -0,0 +1,204 @@
+package education.bert;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheConcurrentLruImplTest {
+    private final Cache<Integer, String> cache = new CacheConcurrentLruImpl<>(3);
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionTest() {
+        assertDoesNotThrow(() -> new CacheConcurrentLruImpl<Integer, String>());
+        assertThrows(IllegalArgumentException.class, () -> new CacheConcurrentLruImpl<Integer, String>(0));
+        assertThrows(IllegalArgumentException.class, () -> new CacheConcurrentLruImpl<Integer, String>(10, 0));
+    }
+
+    @Test
+    public void shouldThrowNullPointerExceptionTest() {
+        assertThrows(NullPointerException.class, () -> cache.put(null, "Some Value"));
+        assertThrows(NullPointerException.class, () -> cache.put(0, null));
+        assertThrows(NullPointerException.class, () -> cache.get(null));
+        assertThrows(NullPointerException.class, () -> cache.remove(null));
+    }
+
+    @Test
+    public void putGetTest() {
+        Integer key = 0;
+        String value = "Value";
+        assertNull(cache.put(key, value));
+        assertEquals(value, cache.get(key));
+    }
+
+    @Test
+    public void updateValueTest() {
+        Integer key = 0;
+        String value = "Value";
+        cache.put(key, value);
+        String newValue = "New Value";
+        String previousValue = cache.put(key, newValue);
+
+        assertEquals(value, previousValue);
+        assertEquals(newValue, cache.get(key));
+    }
+
+    @Test
+    public void putWithKickOutTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.put(3, "Value3");
+
+        assertEquals("Value1", cache.get(1));
+        assertEquals("Value2", cache.get(2));
+        assertEquals("Value3", cache.get(3));
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void readShouldRefreshRecencyTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.get(0);
+        cache.put(3, "Value3");
+
+        assertEquals("Value0", cache.get(0));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void manyReadsShouldKeepRecencyTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        for (int i = 0; i < 1000; i++) {
+            cache.get(i % 2);
+        }
+        cache.put(3, "Value3");
+
+        assertEquals("Value0", cache.get(0));
+        assertEquals("Value1", cache.get(1));
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    public void removeTest() {
+        cache.put(0, "Value");
+        assertEquals("Value", cache.remove(0));
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void removeNotExistedTest() {
+        assertNull(cache.get(0));
+        assertNull(cache.remove(0));
+    }
+
+    @Test
+    public void segmentCountTest() {
+        assertEquals(1, new CacheConcurrentLruImpl<Integer, String>(3, 64).getSegmentCount());
+        assertEquals(1, new CacheConcurrentLruImpl<Integer, String>(1000, 1).getSegmentCount());
+        assertEquals(8, new CacheConcurrentLruImpl<Integer, String>(1000, 8).getSegmentCount());
+        assertEquals(32, new CacheConcurrentLruImpl<Integer, String>(1000, 64).getSegmentCount());
+    }
+
+    @Test
+    public void maxCacheSizeTest() {
+        int maxCacheSize = 1000;
+        Cache<Integer, String> segmentedCache = new CacheConcurrentLruImpl<>(maxCacheSize, 64);
+        for (int i = 0; i < 10 * maxCacheSize; i++) {
+            segmentedCache.put(i, "Value" + i);
+        }
+
+        int stored = 0;
+        for (int i = 0; i < 10 * maxCacheSize; i++) {
+            if (segmentedCache.get(i) != null) {
+                stored++;
+            }
+        }
+        assertEquals(maxCacheSize, stored);
+    }
+
+    @Test
+    public void fullSegmentShouldEvictBeforeMaxCacheSizeTest() {
+        CacheConcurrentLruImpl<Integer, String> segmentedCache = new CacheConcurrentLruImpl<>(64, 4);
+        assertEquals(4, segmentedCache.getSegmentCount());
+        // Small Integer keys divisible by 4 fall into the same segment, whose share is 16 items.
+        for (int i = 0; i <= 16; i++) {
+            segmentedCache.put(4 * i, "Value" + 4 * i);
+        }
+
+        assertNull(segmentedCache.get(0));
+        for (int i = 1; i <= 16; i++) {
+            assertEquals("Value" + 4 * i, segmentedCache.get(4 * i));
+        }
+    }
+
+    @Test
+    public void concurrentAccessTest() throws Exception {
+        int maxCacheSize = 100;
+        int keys = 1000;
+        Cache<Integer, String> concurrentCache = new CacheConcurrentLruImpl<>(maxCacheSize, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        int key = random.nextInt(keys);
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                concurrentCache.put(key, "Value" + key);
+                                break;
+                            case 1:
+                                concurrentCache.remove(key);
+                                break;
+                            default:
+                                String value = concurrentCache.get(key);
+                                if (value != null) {
+                                    assertEquals("Value" + key, value);
+                                }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int stored = 0;
+        for (int i = 0; i < keys; i++) {
+            if (concurrentCache.get(i) != null) {
+                stored++;
+            }
+        }
+        assertTrue(stored <= maxCacheSize);
+    }
+
+    @Test
+    public void evictionListenerTest() {
+        List<String> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value, cause) -> evicted.add(key + "=" + value + ":" + cause));
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.remove(1);
+        cache.put(3, "Value3");
+        cache.put(4, "Value4");
+
+        assertEquals(Arrays.asList("0=Value0:SIZE"), evicted);
+    }
+}
@@ -0,0 +1,315 @@
+package education.bert;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheExpiringImplTest {
+    private final AtomicLong time = new AtomicLong();
+    private final Ticker ticker = time::get;
+    private final CacheExpiringImpl<Integer, String> cache =
+            new CacheExpiringImpl<>(3, 10, 0, TimeUnit.SECONDS, ticker);
+
+    private void advance(long duration, TimeUnit unit) {
+        time.addAndGet(unit.toNanos(duration));
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionTest() {
+        assertDoesNotThrow(() -> new CacheExpiringImpl<Integer, String>(1, 0, 0, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new CacheExpiringImpl<Integer, String>(0, 1, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new CacheExpiringImpl<Integer, String>(1, -1, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new CacheExpiringImpl<Integer, String>(1, 1, -1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> cache.setRefreshAfterWrite(0, TimeUnit.SECONDS, key -> "Value"));
+    }
+
+    @Test
+    public void shouldThrowNullPointerExceptionTest() {
+        assertThrows(NullPointerException.class, () -> cache.put(null, "Some Value"));
+        assertThrows(NullPointerException.class, () -> cache.put(0, null));
+        assertThrows(NullPointerException.class, () -> cache.get(null));
+        assertThrows(NullPointerException.class, () -> cache.remove(null));
+        assertThrows(NullPointerException.class, () -> cache.setRefreshAfterWrite(1, TimeUnit.SECONDS, null));
+    }
+
+    @Test
+    public void putGetTest() {
+        Integer key = 0;
+        String value = "Value";
+        assertNull(cache.put(key, value));
+        assertEquals(value, cache.get(key));
+    }
+
+    @Test
+    public void updateValueTest() {
+        Integer key = 0;
+        String value = "Value";
+        cache.put(key, value);
+        String newValue = "New Value";
+        String previousValue = cache.put(key, newValue);
+
+        assertEquals(value, previousValue);
+        assertEquals(newValue, cache.get(key));
+    }
+
+    @Test
+    public void putWithKickOutTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.put(3, "Value3");
+
+        assertEquals("Value1", cache.get(1));
+        assertEquals("Value2", cache.get(2));
+        assertEquals("Value3", cache.get(3));
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void removeTest() {
+        cache.put(0, "Value");
+        assertEquals("Value", cache.remove(0));
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void removeNotExistedTest() {
+        assertNull(cache.get(0));
+        assertNull(cache.remove(0));
+    }
+
+    @Test
+    public void expireAfterWriteTest() {
+        cache.put(0, "Value");
+        advance(9, TimeUnit.SECONDS);
+        assertEquals("Value", cache.get(0));
+        advance(1, TimeUnit.SECONDS);
+        assertNull(cache.get(0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void updateShouldRestartExpirationTest() {
+        cache.put(0, "Value");
+        advance(9, TimeUnit.SECONDS);
+        cache.put(0, "New Value");
+        advance(9, TimeUnit.SECONDS);
+        assertEquals("New Value", cache.get(0));
+        advance(1, TimeUnit.SECONDS);
+        assertNull(cache.put(0, "Newest Value"));
+    }
+
+    @Test
+    public void expiredValueShouldNotBeReturnedByRemoveTest() {
+        cache.put(0, "Value");
+        advance(10, TimeUnit.SECONDS);
+        assertNull(cache.remove(0));
+    }
+
+    @Test
+    public void expireAfterAccessTest() {
+        CacheExpiringImpl<Integer, String> accessCache = new CacheExpiringImpl<>(3, 0, 10, TimeUnit.SECONDS, ticker);
+        accessCache.put(0, "Value");
+        for (int i = 0; i < 5; i++) {
+            advance(9, TimeUnit.SECONDS);
+            assertEquals("Value", accessCache.get(0));
+        }
+        advance(10, TimeUnit.SECONDS);
+        assertNull(accessCache.get(0));
+    }
+
+    @Test
+    public void expireAfterWriteAndAccessTest() {
+        CacheExpiringImpl<Integer, String> mixedCache = new CacheExpiringImpl<>(3, 30, 10, TimeUnit.SECONDS, ticker);
+        mixedCache.put(0, "Value");
+        mixedCache.put(1, "Value");
+        for (int i = 0; i < 3; i++) {
+            advance(9, TimeUnit.SECONDS);
+            assertEquals("Value", mixedCache.get(0));
+        }
+        assertNull(mixedCache.get(1));
+        advance(3, TimeUnit.SECONDS);
+        assertNull(mixedCache.get(0));
+    }
+
+    @Test
+    public void timingWheelShouldRemoveExpiredItemsTest() {
+        CacheExpiringImpl<Integer, String> expiringCache = new CacheExpiringImpl<>(1000, 3, 0, TimeUnit.DAYS, ticker);
+        for (int i = 0; i < 48; i++) {
+            expiringCache.put(i, "Value" + i);
+            advance(1, TimeUnit.HOURS);
+        }
+        expiringCache.cleanUp();
+        assertEquals(48, expiringCache.size());
+
+        advance(2, TimeUnit.DAYS);
+        expiringCache.cleanUp();
+        assertEquals(23, expiringCache.size());
+        advance(1, TimeUnit.DAYS);
+        expiringCache.cleanUp();
+        assertEquals(0, expiringCache.size());
+    }
+
+    @Test
+    public void noExpirationTest() {
+        CacheExpiringImpl<Integer, String> eternalCache = new CacheExpiringImpl<>(1000, 0, 0, TimeUnit.SECONDS, ticker);
+        eternalCache.put(0, "Value");
+        advance(1000, TimeUnit.DAYS);
+        assertEquals("Value", eternalCache.get(0));
+    }
+
+    @Test
+    public void saturatedDurationShouldNotWrapDeadlineTest() {
+        advance(1, TimeUnit.DAYS);
+        CacheExpiringImpl<Integer, String> mixedCache =
+                new CacheExpiringImpl<>(10, Long.MAX_VALUE, 10, TimeUnit.SECONDS, ticker);
+        CacheExpiringImpl<Integer, String> eternalCache =
+                new CacheExpiringImpl<>(10, Long.MAX_VALUE, 0, TimeUnit.DAYS, ticker);
+        mixedCache.put(0, "Value");
+        eternalCache.put(0, "Value");
+
+        advance(20, TimeUnit.SECONDS);
+        mixedCache.cleanUp();
+        assertEquals(0, mixedCache.size());
+        advance(1000, TimeUnit.DAYS);
+        eternalCache.cleanUp();
+        assertEquals(1, eternalCache.size());
+        assertEquals("Value", eternalCache.get(0));
+    }
+
+    @Test
+    public void timingWheelLevelsTest() {
+        long[] durations = {
+                TimeUnit.MILLISECONDS.toNanos(500),
+                TimeUnit.SECONDS.toNanos(30),
+                TimeUnit.MINUTES.toNanos(30),
+                TimeUnit.HOURS.toNanos(20),
+                TimeUnit.DAYS.toNanos(3),
+                TimeUnit.DAYS.toNanos(20)
+        };
+        for (int i = 0; i < durations.length; i++) {
+            CacheExpiringImpl<Integer, String> itemCache =
+                    new CacheExpiringImpl<>(10, durations[i], 0, TimeUnit.NANOSECONDS, ticker);
+            itemCache.put(i, "Value");
+            itemCache.cleanUp();
+            assertEquals(1, itemCache.size());
+            advance(durations[i] / 2, TimeUnit.NANOSECONDS);
+            itemCache.cleanUp();
+            assertEquals(1, itemCache.size());
+            advance(durations[i] / 2 + TimeUnit.DAYS.toNanos(7), TimeUnit.NANOSECONDS);
+            itemCache.cleanUp();
+            assertEquals(0, itemCache.size());
+        }
+    }
+
+    @Test
+    public void refreshAfterWriteTest() {
+        AtomicInteger loads = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        cache.setRefreshAfterWrite(5, TimeUnit.SECONDS, key -> "Reloaded" + loads.incrementAndGet(), tasks::add);
+        cache.put(0, "Value");
+
+        advance(4, TimeUnit.SECONDS);
+        assertEquals("Value", cache.get(0));
+        assertTrue(tasks.isEmpty());
+
+        advance(2, TimeUnit.SECONDS);
+        assertEquals("Value", cache.get(0));
+        assertEquals("Value", cache.get(0));
+        assertEquals(1, tasks.size());
+
+        tasks.remove(0).run();
+        assertEquals("Reloaded1", cache.get(0));
+
+        advance(9, TimeUnit.SECONDS);
+        assertEquals("Reloaded1", cache.get(0));
+        tasks.remove(0).run();
+        advance(9, TimeUnit.SECONDS);
+        assertEquals("Reloaded2", cache.get(0));
+    }
+
+    @Test
+    public void refreshShouldNotOverrideNewerWriteTest() {
+        List<Runnable> tasks = new ArrayList<>();
+        cache.setRefreshAfterWrite(5, TimeUnit.SECONDS, key -> "Reloaded", tasks::add);
+        cache.put(0, "Value");
+        cache.put(1, "Value");
+        advance(6, TimeUnit.SECONDS);
+        cache.get(0);
+        cache.get(1);
+        cache.put(0, "New Value");
+        cache.remove(1);
+
+        tasks.forEach(Runnable::run);
+        assertEquals("New Value", cache.get(0));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void refreshToNullShouldRemoveTest() {
+        cache.setRefreshAfterWrite(5, TimeUnit.SECONDS, key -> null, Runnable::run);
+        cache.put(0, "Value");
+        advance(6, TimeUnit.SECONDS);
+        assertEquals("Value", cache.get(0));
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void failedRefreshShouldKeepValueTest() {
+        AtomicInteger attempts = new AtomicInteger();
+        cache.setRefreshAfterWrite(5, TimeUnit.SECONDS, key -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException();
+        }, task -> {
+            try {
+                task.run();
+            } catch (IllegalStateException ignored) {
+            }
+        });
+        cache.put(0, "Value");
+        advance(6, TimeUnit.SECONDS);
+        assertEquals("Value", cache.get(0));
+        assertEquals("Value", cache.get(0));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void rejectedRefreshShouldKeepValueTest() {
+        cache.setRefreshAfterWrite(5, TimeUnit.SECONDS, key -> "Reloaded", task -> {
+            throw new IllegalStateException();
+        });
+        cache.put(0, "Value");
+        advance(6, TimeUnit.SECONDS);
+        assertEquals("Value", cache.get(0));
+        assertEquals("Value", cache.get(0));
+    }
+
+    @Test
+    public void evictionListenerTest() {
+        List<String> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value, cause) -> evicted.add(key + "=" + value + ":" + cause));
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.put(3, "Value3");
+        advance(5, TimeUnit.SECONDS);
+        cache.put(4, "Value4");
+        assertEquals(Arrays.asList("0=Value0:SIZE", "1=Value1:SIZE"), evicted);
+
+        advance(7, TimeUnit.SECONDS);
+        cache.cleanUp();
+        evicted.sort(null);
+        assertEquals(Arrays.asList("0=Value0:SIZE", "1=Value1:SIZE", "2=Value2:EXPIRED", "3=Value3:EXPIRED"), evicted);
+
+        advance(3, TimeUnit.SECONDS);
+        assertNull(cache.get(4));
+        assertEquals("4=Value4:EXPIRED", evicted.get(4));
+    }
+}
@@ -2,6 +2,14 @@ package education.bert;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class CacheLinkedMapImplTest {
@@ -46,6 +54,39 @@ public class CacheLinkedMapImplTest {
         assertNull(cache.get(0));
     }
 
+    @Test
+    public void concurrentGetsShouldKeepAccessOrderTest() throws Exception {
+        Cache<Integer, String> sharedCache = new CacheLinkedMapImpl<>(16);
+        for (int i = 0; i < 16; i++) {
+            sharedCache.put(i, "Value" + i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] futures = new Future<?>[8];
+            for (int t = 0; t < futures.length; t++) {
+                int offset = t;
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < 500_000; i++) {
+                        int key = (i * 7 + offset) % 16;
+                        assertEquals("Value" + key, sharedCache.get(key));
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 16; i < 32; i++) {
+            sharedCache.put(i, "Value" + i);
+        }
+        for (int i = 0; i < 32; i++) {
+            assertEquals(i < 16 ? null : "Value" + i, sharedCache.get(i));
+        }
+    }
+
     @Test
     public void removeTest() {
         cache.put(0, "Value");
@@ -58,4 +99,29 @@ public class CacheLinkedMapImplTest {
         assertNull(cache.get(0));
         assertNull(cache.remove(0));
     }
+
+    @Test
+    public void evictionListenerTest() {
+        List<String> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value, cause) -> evicted.add(key + "=" + value + ":" + cause));
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.remove(1);
+        cache.put(3, "Value3");
+        cache.put(4, "Value4");
+
+        assertEquals(Arrays.asList("0=Value0:SIZE"), evicted);
+    }
+
+    @Test
+    public void getAllTest() {
+        cache.put(0, "Value0");
+        cache.put(2, "Value2");
+
+        Map<Integer, String> values = cache.getAll(Arrays.asList(2, 1, 0));
+        assertEquals(Arrays.asList(2, 0), new ArrayList<>(values.keySet()));
+        assertEquals("Value0", values.get(0));
+        assertEquals("Value2", values.get(2));
+    }
 }
@@ -0,0 +1,275 @@
+package education.bert;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheLoadingImplTest {
+    private final LoadingCache<Integer, String> cache = new CacheLoadingImpl<>(new CacheLinkedMapImpl<>(3));
+
+    @Test
+    public void shouldThrowNullPointerExceptionTest() {
+        assertThrows(NullPointerException.class, () -> new CacheLoadingImpl<Integer, String>(null));
+    }
+
+    @Test
+    public void putGetRemoveTest() {
+        assertNull(cache.put(0, "Value"));
+        assertEquals("Value", cache.get(0));
+        assertEquals("Value", cache.put(0, "New Value"));
+        assertEquals("New Value", cache.remove(0));
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void computeIfAbsentTest() {
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("Value0", cache.computeIfAbsent(0, key -> {
+            loads.incrementAndGet();
+            return "Value" + key;
+        }));
+        assertEquals("Value0", cache.computeIfAbsent(0, key -> {
+            loads.incrementAndGet();
+            return "Other Value";
+        }));
+        assertEquals("Value0", cache.get(0));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void nullValueShouldNotBeCachedTest() {
+        assertNull(cache.computeIfAbsent(0, key -> null));
+        assertEquals("Value", cache.computeIfAbsent(0, key -> "Value"));
+    }
+
+    @Test
+    public void exceptionShouldBePropagatedTest() {
+        assertThrows(IllegalStateException.class, () -> cache.computeIfAbsent(0, key -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals("Value", cache.computeIfAbsent(0, key -> "Value"));
+    }
+
+    @Test
+    public void concurrentLoadsShouldBeCollapsedTest() throws Exception {
+        int threads = 16;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    started.await();
+                    return cache.computeIfAbsent(0, key -> {
+                        loads.incrementAndGet();
+                        sleep(100);
+                        return "Value";
+                    });
+                }));
+            }
+            for (Future<String> future : futures) {
+                assertEquals("Value", future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void exceptionShouldBePropagatedToWaitersTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> loader = executor.submit(() -> cache.computeIfAbsent(0, key -> {
+                loading.countDown();
+                sleep(200);
+                throw new IllegalStateException();
+            }));
+            loading.await();
+            assertThrows(IllegalStateException.class, () -> cache.computeIfAbsent(0, key -> "Value"));
+            assertThrows(Exception.class, loader::get);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void removeWhileLoadingShouldCancelCachingTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch removed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> loader = executor.submit(() -> cache.computeIfAbsent(0, key -> {
+                loading.countDown();
+                await(removed);
+                return "Stale Value";
+            }));
+            loading.await();
+            cache.remove(0);
+            removed.countDown();
+            assertEquals("Stale Value", loader.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void putWhileLoadingShouldWinTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch updated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> loader = executor.submit(() -> cache.computeIfAbsent(0, key -> {
+                loading.countDown();
+                await(updated);
+                return "Stale Value";
+            }));
+            loading.await();
+            cache.put(0, "New Value");
+            updated.countDown();
+            loader.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("New Value", cache.get(0));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void evictionListenerTest() {
+        List<String> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value, cause) -> evicted.add(key + "=" + value + ":" + cause));
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.remove(1);
+        cache.put(3, "Value3");
+        cache.put(4, "Value4");
+
+        assertEquals(Arrays.asList("0=Value0:SIZE"), evicted);
+    }
+
+    @Test
+    public void statsTest() {
+        LoadingCache<Integer, String> statsCache =
+                new CacheLoadingImpl<>(new CacheLinkedMapImpl<>(3), new ConcurrentStatsCounter());
+        statsCache.computeIfAbsent(0, key -> "Value" + key);
+        statsCache.computeIfAbsent(0, key -> "Value" + key);
+        statsCache.get(1);
+        assertThrows(IllegalStateException.class, () -> statsCache.computeIfAbsent(1, key -> {
+            throw new IllegalStateException();
+        }));
+        statsCache.put(1, "Value1");
+        statsCache.put(2, "Value2");
+        statsCache.put(3, "Value3");
+        CacheStats stats = ((CacheLoadingImpl<Integer, String>) statsCache).stats();
+
+        assertEquals(1, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadFailureCount());
+        assertEquals(1, stats.getEvictionCount(EvictionCause.SIZE));
+        assertEquals(0, ((CacheLoadingImpl<Integer, String>) cache).stats().getRequestCount());
+    }
+
+    @Test
+    public void getAllTest() {
+        cache.put(1, "Value1");
+        List<Set<Integer>> requested = new ArrayList<>();
+
+        Map<Integer, String> values = cache.getAll(Arrays.asList(3, 1, 0, 3), keys -> {
+            requested.add(new HashSet<>(keys));
+            Map<Integer, String> loaded = new HashMap<>();
+            loaded.put(0, "Value0");
+            return loaded;
+        });
+        assertEquals(Arrays.asList(1, 0), new ArrayList<>(values.keySet()));
+        assertEquals("Value0", values.get(0));
+        assertEquals("Value1", values.get(1));
+        assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList(0, 3))), requested);
+        assertEquals("Value0", cache.get(0));
+        assertNull(cache.get(3));
+
+        assertEquals(values, cache.getAll(Arrays.asList(1, 0), keys -> {
+            throw new IllegalStateException();
+        }));
+    }
+
+    @Test
+    public void getAllExceptionShouldBePropagatedTest() {
+        assertThrows(IllegalStateException.class, () -> cache.getAll(Arrays.asList(0, 1), keys -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals("Value", cache.computeIfAbsent(0, key -> "Value"));
+    }
+
+    @Test
+    public void getAllShouldWaitForLoadsInFlightTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> loader = executor.submit(() -> cache.computeIfAbsent(0, key -> {
+                loading.countDown();
+                sleep(100);
+                return "Value0";
+            }));
+            loading.await();
+            Map<Integer, String> values = cache.getAll(Arrays.asList(0, 1), keys -> {
+                assertEquals(Collections.singleton(1), keys);
+                return Collections.singletonMap(1, "Value1");
+            });
+            assertEquals("Value0", values.get(0));
+            assertEquals("Value1", values.get(1));
+            assertEquals("Value0", loader.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void getAllStatsTest() {
+        CacheLoadingImpl<Integer, String> statsCache =
+                new CacheLoadingImpl<>(new CacheLinkedMapImpl<>(3), new ConcurrentStatsCounter());
+        statsCache.put(0, "Value0");
+        statsCache.getAll(Arrays.asList(0, 1, 2), keys -> Collections.singletonMap(1, "Value1"));
+        CacheStats stats = statsCache.stats();
+
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getLoadSuccessCount());
+    }
+}
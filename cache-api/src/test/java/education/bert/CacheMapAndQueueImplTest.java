@@ -2,6 +2,14 @@ package education.bert;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class CacheMapAndQueueImplTest {
@@ -67,4 +75,98 @@ public class CacheMapAndQueueImplTest {
         assertNull(cache.get(0));
         assertNull(cache.remove(0));
     }
+
+    @Test
+    public void updateShouldNotChangeOrderTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.put(0, "New Value0");
+        cache.put(3, "Value3");
+
+        assertNull(cache.get(0));
+        assertEquals("Value1", cache.get(1));
+    }
+
+    @Test
+    public void removeFromMiddleShouldKeepOrderTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.remove(1);
+        cache.put(3, "Value3");
+        cache.put(4, "Value4");
+
+        assertNull(cache.get(0));
+        assertNull(cache.get(1));
+        assertEquals("Value2", cache.get(2));
+        assertEquals("Value3", cache.get(3));
+        assertEquals("Value4", cache.get(4));
+    }
+
+    @Test
+    public void removeHeadAndTailTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.remove(0);
+        cache.remove(2);
+        cache.put(3, "Value3");
+        cache.put(4, "Value4");
+        cache.put(5, "Value5");
+
+        assertNull(cache.get(1));
+        assertEquals("Value3", cache.get(3));
+        assertEquals("Value4", cache.get(4));
+        assertEquals("Value5", cache.get(5));
+    }
+
+    @Test
+    public void evictionListenerTest() {
+        List<String> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value, cause) -> evicted.add(key + "=" + value + ":" + cause));
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.remove(1);
+        cache.put(3, "Value3");
+        cache.put(4, "Value4");
+
+        assertEquals(Arrays.asList("0=Value0:SIZE"), evicted);
+    }
+
+    @Test
+    public void concurrentGetsDuringPutsTest() throws Exception {
+        Cache<Integer, String> sharedCache = new CacheMapAndQueueImpl<>(200_000);
+        AtomicInteger written = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    sharedCache.put(i, "Value" + i);
+                    written.set(i + 1);
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                readers.add(executor.submit(() -> {
+                    while (!writer.isDone()) {
+                        int key = written.get() - 1;
+                        if (key >= 0) {
+                            assertEquals("Value" + key, sharedCache.get(key));
+                        }
+                    }
+                }));
+            }
+            writer.get();
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals("Value0", sharedCache.get(0));
+        assertEquals("Value199999", sharedCache.get(199_999));
+    }
 }
@@ -0,0 +1,243 @@
+package education.bert;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheOffHeapImplTest {
+    private static final ValueCodec<String> stringCodec = new ValueCodec<String>() {
+        @Override
+        public int encodedSize(String value) {
+            return ValueCodec.stringSize(value);
+        }
+
+        @Override
+        public void encode(String value, ByteBuffer buffer) {
+            ValueCodec.putString(buffer, value);
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) {
+            return ValueCodec.getString(buffer);
+        }
+    };
+
+    // A single page of 256 bytes holds four 64-byte chunks
+    private final CacheOffHeapImpl<Integer, String> cache = new CacheOffHeapImpl<>(256, 256, stringCodec);
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionTest() {
+        assertDoesNotThrow(() -> new CacheOffHeapImpl<>(CacheOffHeapImpl.defaultPageSize, stringCodec));
+        assertThrows(IllegalArgumentException.class, () -> new CacheOffHeapImpl<>(1024, 32, stringCodec));
+        assertThrows(IllegalArgumentException.class, () -> new CacheOffHeapImpl<>(128, 256, stringCodec));
+    }
+
+    @Test
+    public void shouldThrowNullPointerExceptionTest() {
+        assertThrows(NullPointerException.class, () -> new CacheOffHeapImpl<Integer, String>(256, 256, null));
+        assertThrows(NullPointerException.class, () -> cache.put(null, "Some Value"));
+        assertThrows(NullPointerException.class, () -> cache.put(0, null));
+        assertThrows(NullPointerException.class, () -> cache.get(null));
+        assertThrows(NullPointerException.class, () -> cache.remove(null));
+    }
+
+    @Test
+    public void putGetTest() {
+        Integer key = 0;
+        String value = "Value";
+        assertNull(cache.put(key, value));
+        assertEquals(value, cache.get(key));
+    }
+
+    @Test
+    public void updateValueTest() {
+        Integer key = 0;
+        String value = "Value";
+        cache.put(key, value);
+        String newValue = "New Value";
+        String previousValue = cache.put(key, newValue);
+
+        assertEquals(value, previousValue);
+        assertEquals(newValue, cache.get(key));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void updateValueOfOtherSizeClassTest() {
+        CacheOffHeapImpl<Integer, String> bigCache = new CacheOffHeapImpl<>(1024, 256, stringCodec);
+        String longValue = repeat('x', 100);
+        bigCache.put(0, "Value");
+        assertEquals("Value", bigCache.put(0, longValue));
+        assertEquals(longValue, bigCache.get(0));
+        assertEquals(longValue, bigCache.put(0, "Value"));
+        assertEquals("Value", bigCache.get(0));
+        assertEquals(1, bigCache.size());
+    }
+
+    @Test
+    public void putWithKickOutTest() {
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, "Value" + i);
+        }
+
+        assertNull(cache.get(0));
+        for (int i = 1; i < 5; i++) {
+            assertEquals("Value" + i, cache.get(i));
+        }
+        assertEquals(4, cache.size());
+        assertEquals(256, cache.getAllocatedMemory());
+    }
+
+    @Test
+    public void readShouldRefreshRecencyTest() {
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, "Value" + i);
+        }
+        cache.get(0);
+        cache.put(4, "Value4");
+
+        assertEquals("Value0", cache.get(0));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void removeTest() {
+        cache.put(0, "Value");
+        assertEquals("Value", cache.remove(0));
+        assertNull(cache.get(0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void removeNotExistedTest() {
+        assertNull(cache.get(0));
+        assertNull(cache.remove(0));
+    }
+
+    @Test
+    public void freedChunksShouldBeReusedTest() {
+        CacheOffHeapImpl<Integer, String> bigCache = new CacheOffHeapImpl<>(1 << 20, 256, stringCodec);
+        for (int i = 0; i < 1000; i++) {
+            bigCache.put(i, "Value" + i);
+            bigCache.remove(i);
+        }
+        assertEquals(256, bigCache.getAllocatedMemory());
+    }
+
+    @Test
+    public void tooLargeValueShouldNotBeCachedTest() {
+        cache.put(0, "Value");
+        assertEquals("Value", cache.put(0, repeat('x', 300)));
+        assertNull(cache.get(0));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getRejectedCount());
+    }
+
+    @Test
+    public void pageShouldBeReassignedToSizeClassWithoutPagesTest() {
+        List<String> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value, cause) -> evicted.add(key + "=" + value + ":" + cause));
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        String longValue = repeat('x', 100);
+
+        assertNull(cache.put(2, longValue));
+        assertEquals(longValue, cache.get(2));
+        assertNull(cache.get(0));
+        assertNull(cache.get(1));
+        assertEquals(Arrays.asList("0=Value0:SIZE", "1=Value1:SIZE"), evicted);
+
+        assertEquals(longValue, cache.put(2, "Value2"));
+        assertEquals("Value2", cache.get(2));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getRejectedCount());
+        assertEquals(256, cache.getAllocatedMemory());
+    }
+
+    @Test
+    public void freeChunkOfLargerSizeClassShouldBeTakenTest() {
+        CacheOffHeapImpl<Integer, String> twoPageCache = new CacheOffHeapImpl<>(512, 256, stringCodec);
+        twoPageCache.put(0, repeat('x', 100));
+        twoPageCache.put(1, repeat('y', 150));
+        twoPageCache.remove(0);
+
+        twoPageCache.put(2, "Value2");
+
+        assertEquals("Value2", twoPageCache.get(2));
+        assertEquals(repeat('y', 150), twoPageCache.get(1));
+        assertEquals(2, twoPageCache.size());
+        assertEquals(512, twoPageCache.getAllocatedMemory());
+    }
+
+    @Test
+    public void manyItemsTest() {
+        CacheOffHeapImpl<Integer, String> bigCache = new CacheOffHeapImpl<>(4 << 20, 64 << 10, stringCodec);
+        for (int i = 0; i < 100_000; i++) {
+            bigCache.put(i, "Value" + i);
+        }
+        assertTrue(bigCache.size() > 40_000);
+        assertEquals("Value99999", bigCache.get(99_999));
+        assertNull(bigCache.get(0));
+        assertEquals(4 << 20, bigCache.getAllocatedMemory());
+    }
+
+    @Test
+    public void stringCodecTest() {
+        CacheOffHeapImpl<Integer, String> bigCache = new CacheOffHeapImpl<>(1 << 20, 1 << 16, stringCodec);
+        String[] values = {"", "ascii", "Привет", "日本語", "emoji 😀", repeat('y', 1000)};
+        for (int i = 0; i < values.length; i++) {
+            bigCache.put(i, values[i]);
+        }
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], bigCache.get(i));
+        }
+        assertNull(bigCache.put(100, "\uD83D"));
+        assertEquals("\uFFFD", bigCache.get(100));
+        assertEquals(4, ValueCodec.stringSize(null));
+    }
+
+    @Test
+    public void brokenCodecShouldNotCorruptCacheTest() {
+        ValueCodec<String> brokenCodec = new ValueCodec<String>() {
+            @Override
+            public int encodedSize(String value) {
+                return value.length() + 1;
+            }
+
+            @Override
+            public void encode(String value, ByteBuffer buffer) {
+                buffer.put((byte) value.length());
+            }
+
+            @Override
+            public String decode(ByteBuffer buffer) {
+                return "";
+            }
+        };
+        CacheOffHeapImpl<Integer, String> brokenCache = new CacheOffHeapImpl<>(256, 256, brokenCodec);
+        assertThrows(IllegalStateException.class, () -> brokenCache.put(0, "Value"));
+        assertEquals(0, brokenCache.size());
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void evictionListenerTest() {
+        List<String> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value, cause) -> evicted.add(key + "=" + value + ":" + cause));
+        for (int i = 0; i < 6; i++) {
+            cache.put(i, "Value" + i);
+        }
+
+        assertEquals(Arrays.asList("0=Value0:SIZE", "1=Value1:SIZE"), evicted);
+    }
+}
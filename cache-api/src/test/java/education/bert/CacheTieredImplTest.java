@@ -0,0 +1,204 @@
+package education.bert;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheTieredImplTest {
+    private final Cache<Integer, String> l1 = new CacheLinkedMapImpl<>(2);
+    private final Cache<Integer, String> l2 = new CacheLinkedMapImpl<>(10);
+    private final CacheTieredImpl<Integer, String> cache = new CacheTieredImpl<>(l1, l2);
+
+    @Test
+    public void shouldThrowNullPointerExceptionTest() {
+        assertThrows(NullPointerException.class, () -> new CacheTieredImpl<>(null, l2));
+        assertThrows(NullPointerException.class, () -> new CacheTieredImpl<>(l1, null));
+        assertThrows(NullPointerException.class, () -> cache.put(null, "Some Value"));
+        assertThrows(NullPointerException.class, () -> cache.put(0, null));
+        assertThrows(NullPointerException.class, () -> cache.get(null));
+        assertThrows(NullPointerException.class, () -> cache.remove(null));
+    }
+
+    @Test
+    public void shouldThrowUnsupportedOperationExceptionTest() {
+        Cache<Integer, String> cacheWithoutListener = new Cache<Integer, String>() {
+            @Override
+            public String put(Integer key, String value) {
+                return null;
+            }
+
+            @Override
+            public String get(Integer key) {
+                return null;
+            }
+
+            @Override
+            public String remove(Integer key) {
+                return null;
+            }
+        };
+        assertThrows(UnsupportedOperationException.class, () -> new CacheTieredImpl<>(cacheWithoutListener, l2));
+    }
+
+    @Test
+    public void putGetTest() {
+        assertNull(cache.put(0, "Value"));
+        assertEquals("Value", cache.get(0));
+        assertEquals(1, cache.getL1HitCount());
+    }
+
+    @Test
+    public void updateValueTest() {
+        cache.put(0, "Value");
+        assertEquals("Value", cache.put(0, "New Value"));
+        assertEquals("New Value", cache.get(0));
+    }
+
+    @Test
+    public void evictedItemShouldBeDemotedTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+
+        assertNull(l1.get(0));
+        assertEquals("Value0", l2.get(0));
+        assertEquals("Value0", cache.get(0));
+        assertEquals(1, cache.getL2HitCount());
+    }
+
+    @Test
+    public void l2HitShouldBePromotedTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.get(0);
+
+        assertEquals("Value0", l1.get(0));
+        assertNull(l2.get(0));
+        assertEquals("Value1", l2.get(1));
+        assertEquals("Value0", cache.get(0));
+        assertEquals(1, cache.getL1HitCount());
+        assertEquals(1, cache.getL2HitCount());
+    }
+
+    @Test
+    public void removeShouldInvalidateBothTiersTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+
+        assertEquals("Value0", cache.remove(0));
+        assertEquals("Value2", cache.remove(2));
+        assertNull(cache.get(0));
+        assertNull(cache.get(2));
+        assertNull(l2.get(0));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void putShouldInvalidateDemotedCopyTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+
+        assertEquals("Value0", cache.put(0, "New Value0"));
+        assertNull(l2.get(0));
+        assertEquals("New Value0", cache.get(0));
+    }
+
+    @Test
+    public void removeNotExistedTest() {
+        assertNull(cache.get(0));
+        assertNull(cache.remove(0));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void expiredItemShouldNotBeDemotedTest() {
+        AtomicLong time = new AtomicLong();
+        Cache<Integer, String> expiringL1 = new CacheExpiringImpl<>(10, 10, 0, TimeUnit.SECONDS, time::get);
+        CacheTieredImpl<Integer, String> expiringCache = new CacheTieredImpl<>(expiringL1, l2);
+        expiringCache.put(0, "Value");
+        time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        assertNull(expiringCache.get(0));
+        assertNull(l2.get(0));
+    }
+
+    @Test
+    public void offHeapL2Test() {
+        CacheOffHeapImpl<Integer, String> offHeap = new CacheOffHeapImpl<>(1 << 16, 1 << 12, new ValueCodec<String>() {
+            @Override
+            public int encodedSize(String value) {
+                return ValueCodec.stringSize(value);
+            }
+
+            @Override
+            public void encode(String value, ByteBuffer buffer) {
+                ValueCodec.putString(buffer, value);
+            }
+
+            @Override
+            public String decode(ByteBuffer buffer) {
+                return ValueCodec.getString(buffer);
+            }
+        });
+        CacheTieredImpl<Integer, String> offHeapCache = new CacheTieredImpl<>(new CacheConcurrentLruImpl<>(16), offHeap);
+        for (int i = 0; i < 100; i++) {
+            offHeapCache.put(i, "Value" + i);
+        }
+        assertEquals(84, offHeap.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Value" + i, offHeapCache.get(i));
+        }
+        offHeapCache.remove(50);
+        assertNull(offHeapCache.get(50));
+    }
+
+    @Test
+    public void concurrentAccessTest() throws Exception {
+        CacheTieredImpl<Integer, Integer> concurrentCache =
+                new CacheTieredImpl<>(new CacheConcurrentLruImpl<>(64), new CacheTinyLfuImpl<>(256));
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        int key = random.nextInt(512);
+                        int operation = random.nextInt(10);
+                        if (operation == 0) {
+                            concurrentCache.remove(key);
+                        } else if (operation < 4) {
+                            concurrentCache.put(key, key);
+                        } else {
+                            Integer value = concurrentCache.get(key);
+                            assertTrue(value == null || value == key);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int key = 0; key < 512; key++) {
+            concurrentCache.remove(key);
+            assertNull(concurrentCache.get(key));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package education.bert;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheTinyLfuImplTest {
+    private final Cache<Integer, String> cache = new CacheTinyLfuImpl<>(3);
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionTest() {
+        assertDoesNotThrow(() -> new CacheTinyLfuImpl<Integer, String>());
+        assertThrows(IllegalArgumentException.class, () -> new CacheTinyLfuImpl<Integer, String>(0));
+    }
+
+    @Test
+    public void shouldThrowNullPointerExceptionTest() {
+        assertThrows(NullPointerException.class, () -> cache.put(null, "Some Value"));
+        assertThrows(NullPointerException.class, () -> cache.put(0, null));
+        assertThrows(NullPointerException.class, () -> cache.get(null));
+        assertThrows(NullPointerException.class, () -> cache.remove(null));
+    }
+
+    @Test
+    public void putGetTest() {
+        Integer key = 0;
+        String value = "Value";
+        assertNull(cache.put(key, value));
+        assertEquals(value, cache.get(key));
+    }
+
+    @Test
+    public void updateValueTest() {
+        Integer key = 0;
+        String value = "Value";
+        cache.put(key, value);
+        String newValue = "New Value";
+        String previousValue = cache.put(key, newValue);
+
+        assertEquals(value, previousValue);
+        assertEquals(newValue, cache.get(key));
+    }
+
+    @Test
+    public void singleItemCacheTest() {
+        Cache<Integer, String> singleItemCache = new CacheTinyLfuImpl<>(1);
+        singleItemCache.put(0, "Value0");
+        singleItemCache.put(1, "Value1");
+
+        assertNull(singleItemCache.get(0));
+        assertEquals("Value1", singleItemCache.get(1));
+    }
+
+    @Test
+    public void frequentItemShouldSurviveKickOutTest() {
+        cache.put(0, "Value0");
+        for (int i = 0; i < 5; i++) {
+            cache.get(0);
+        }
+        for (int i = 1; i < 20; i++) {
+            cache.put(i, "Value" + i);
+        }
+
+        assertEquals("Value0", cache.get(0));
+    }
+
+    @Test
+    public void putWithKickOutTest() {
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "Value" + i);
+        }
+
+        int stored = 0;
+        for (int i = 0; i < 10; i++) {
+            if (cache.get(i) != null) {
+                stored++;
+            }
+        }
+        assertEquals(3, stored);
+        assertEquals("Value9", cache.get(9));
+    }
+
+    @Test
+    public void protectedSegmentOverflowTest() {
+        Cache<Integer, String> largeCache = new CacheTinyLfuImpl<>(100);
+        for (int i = 0; i < 100; i++) {
+            largeCache.put(i, "Value" + i);
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) {
+                largeCache.get(i);
+            }
+        }
+
+        int stored = 0;
+        for (int i = 0; i < 100; i++) {
+            if (largeCache.get(i) != null) {
+                stored++;
+            }
+        }
+        assertEquals(100, stored);
+    }
+
+    @Test
+    public void removeTest() {
+        cache.put(0, "Value");
+        assertEquals("Value", cache.remove(0));
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void removeNotExistedTest() {
+        assertNull(cache.get(0));
+        assertNull(cache.remove(0));
+    }
+
+    @Test
+    public void hitRateOnZipfianTraceTest() {
+        int[] trace = zipfianTrace(10_000, 200_000, 0.9, 42);
+        int tinyLfuHits = hits(new CacheTinyLfuImpl<>(500), trace);
+        int lruHits = hits(new CacheLinkedMapImpl<>(500), trace);
+        int fifoHits = hits(new CacheMapAndQueueImpl<>(500), trace);
+
+        assertTrue(tinyLfuHits > lruHits * 1.05, "TinyLFU " + tinyLfuHits + " vs LRU " + lruHits);
+        assertTrue(tinyLfuHits > fifoHits * 1.05, "TinyLFU " + tinyLfuHits + " vs FIFO " + fifoHits);
+    }
+
+    @Test
+    public void hitRateOnScanMixedTraceTest() {
+        int[] zipf = zipfianTrace(10_000, 200_000, 0.9, 7);
+        int[] trace = new int[zipf.length];
+        int scanKey = 1_000_000;
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = (i / 1000) % 2 == 0 ? zipf[i] : scanKey++;
+        }
+        int tinyLfuHits = hits(new CacheTinyLfuImpl<>(500), trace);
+        int lruHits = hits(new CacheLinkedMapImpl<>(500), trace);
+        int fifoHits = hits(new CacheMapAndQueueImpl<>(500), trace);
+
+        assertTrue(tinyLfuHits > lruHits * 1.3, "TinyLFU " + tinyLfuHits + " vs LRU " + lruHits);
+        assertTrue(tinyLfuHits > fifoHits * 1.3, "TinyLFU " + tinyLfuHits + " vs FIFO " + fifoHits);
+    }
+
+    private static int hits(Cache<Integer, String> cache, int[] trace) {
+        int hits = 0;
+        for (int key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, "Value");
+            }
+        }
+        return hits;
+    }
+
+    private static int[] zipfianTrace(int keys, int length, double exponent, long seed) {
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = index >= 0 ? index : -index - 1;
+        }
+        return trace;
+    }
+
+    @Test
+    public void evictionListenerTest() {
+        CacheTinyLfuImpl<Integer, String> tinyCache = new CacheTinyLfuImpl<>(1);
+        List<String> evicted = new ArrayList<>();
+        tinyCache.setEvictionListener((key, value, cause) -> evicted.add(key + "=" + value + ":" + cause));
+        tinyCache.put(0, "Value0");
+        tinyCache.put(1, "Value1");
+
+        assertEquals(1, evicted.size());
+        assertTrue(evicted.get(0).endsWith(":SIZE"));
+    }
+}
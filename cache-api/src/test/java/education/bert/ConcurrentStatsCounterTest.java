@@ -0,0 +1,161 @@
+package education.bert;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanRegistration;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentStatsCounterTest {
+    private final StatsCounter counter = new ConcurrentStatsCounter();
+
+    @Test
+    public void emptyStatsTest() {
+        CacheStats stats = counter.snapshot();
+        assertEquals(0, stats.getRequestCount());
+        assertEquals(1.0, stats.getHitRate());
+        assertEquals(0, stats.getEvictionCount());
+        assertEquals(0.0, stats.getAverageLoadPenalty());
+        assertEquals(0, stats.getLoadTimePercentile(99));
+    }
+
+    @Test
+    public void recordTest() {
+        counter.recordHits(3);
+        counter.recordMisses(1);
+        counter.recordEviction(EvictionCause.SIZE);
+        counter.recordEviction(EvictionCause.EXPIRED);
+        counter.recordEviction(EvictionCause.SIZE);
+        counter.recordLoadSuccess(100);
+        counter.recordLoadFailure(300);
+        CacheStats stats = counter.snapshot();
+
+        assertEquals(3, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(4, stats.getRequestCount());
+        assertEquals(0.75, stats.getHitRate());
+        assertEquals(3, stats.getEvictionCount());
+        assertEquals(2, stats.getEvictionCount(EvictionCause.SIZE));
+        assertEquals(1, stats.getEvictionCount(EvictionCause.EXPIRED));
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadFailureCount());
+        assertEquals(400, stats.getTotalLoadTime());
+        assertEquals(200.0, stats.getAverageLoadPenalty());
+        assertTrue(stats.toString().contains("hitCount=3"));
+    }
+
+    @Test
+    public void loadTimePercentileTest() {
+        for (int i = 0; i < 99; i++) {
+            counter.recordLoadSuccess(1000);
+        }
+        counter.recordLoadSuccess(1_000_000);
+        CacheStats stats = counter.snapshot();
+
+        assertEquals(1024, stats.getLoadTimePercentile(50));
+        assertEquals(1024, stats.getLoadTimePercentile(99));
+        assertEquals(1 << 20, stats.getLoadTimePercentile(100));
+        assertEquals(99, stats.getLoadTimeHistogram()[9]);
+        assertEquals(1, stats.getLoadTimeHistogram()[19]);
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionTest() {
+        CacheStats stats = counter.snapshot();
+        assertThrows(IllegalArgumentException.class, () -> stats.getLoadTimePercentile(-1));
+        assertThrows(IllegalArgumentException.class, () -> stats.getLoadTimePercentile(101));
+        assertThrows(IllegalArgumentException.class, () -> new CacheStats(0, 0, new long[0], 0, 0, 0,
+                new long[ConcurrentStatsCounter.histogramBuckets]));
+    }
+
+    @Test
+    public void disabledCounterShouldRecordNothingTest() {
+        StatsCounter disabled = StatsCounter.disabled();
+        disabled.recordHits(1);
+        disabled.recordMisses(1);
+        disabled.recordEviction(EvictionCause.SIZE);
+        disabled.recordLoadSuccess(1);
+        disabled.recordLoadFailure(1);
+        CacheStats stats = disabled.snapshot();
+
+        assertEquals(0, stats.getRequestCount());
+        assertEquals(0, stats.getEvictionCount());
+        assertEquals(0, stats.getLoadSuccessCount() + stats.getLoadFailureCount());
+    }
+
+    @Test
+    public void jmxTest() throws Exception {
+        counter.recordHits(2);
+        counter.recordMisses(2);
+        counter.recordEviction(EvictionCause.SIZE);
+        counter.recordLoadSuccess(1000);
+        ObjectName name = CacheStatsJmx.register("test", counter);
+        try {
+            assertEquals(2L, getAttribute(name, "HitCount"));
+            assertEquals(2L, getAttribute(name, "MissCount"));
+            assertEquals(0.5, getAttribute(name, "HitRate"));
+            assertEquals(1L, getAttribute(name, "SizeEvictionCount"));
+            assertEquals(0L, getAttribute(name, "ExpiredEvictionCount"));
+            assertEquals(1L, getAttribute(name, "LoadSuccessCount"));
+            assertEquals(0L, getAttribute(name, "LoadFailureCount"));
+            assertEquals(1000.0, getAttribute(name, "AverageLoadPenalty"));
+            assertEquals(1024L, getAttribute(name, "LoadTimeP99"));
+
+            assertEquals(name, CacheStatsJmx.register("test", new ConcurrentStatsCounter()));
+            assertEquals(0L, getAttribute(name, "HitCount"));
+        } finally {
+            CacheStatsJmx.unregister(name);
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        assertThrows(NullPointerException.class, () -> CacheStatsJmx.register("test", null));
+    }
+
+    @Test
+    public void shouldThrowIllegalStateExceptionTest() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("education.bert:type=CacheStats,name=" + ObjectName.quote("undeletable"));
+        Undeletable undeletable = new Undeletable();
+        server.registerMBean(undeletable, name);
+        try {
+            assertThrows(IllegalStateException.class, () -> CacheStatsJmx.register("undeletable", counter));
+            assertThrows(IllegalStateException.class, () -> CacheStatsJmx.unregister(name));
+        } finally {
+            undeletable.deletable = true;
+            server.unregisterMBean(name);
+        }
+    }
+
+    private static Object getAttribute(ObjectName name, String attribute) throws Exception {
+        return ManagementFactory.getPlatformMBeanServer().getAttribute(name, attribute);
+    }
+
+    public interface UndeletableMBean {
+    }
+
+    public static class Undeletable implements UndeletableMBean, MBeanRegistration {
+        private volatile boolean deletable;
+
+        @Override
+        public ObjectName preRegister(MBeanServer server, ObjectName name) {
+            return name;
+        }
+
+        @Override
+        public void postRegister(Boolean registrationDone) {
+        }
+
+        @Override
+        public void preDeregister() throws Exception {
+            if (!deletable) {
+                throw new Exception("Undeletable");
+            }
+        }
+
+        @Override
+        public void postDeregister() {
+        }
+    }
+}
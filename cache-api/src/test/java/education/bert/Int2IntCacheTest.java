@@ -0,0 +1,353 @@
+package education.bert;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Int2IntCacheTest {
+    private final Int2IntCache cache = new Int2IntCache(3);
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionTest() {
+        assertDoesNotThrow(() -> new Int2IntCache());
+        assertThrows(IllegalArgumentException.class, () -> new Int2IntCache(0));
+    }
+
+    @Test
+    public void maxCacheSizeOverflowingTableShouldThrowIllegalArgumentExceptionTest() {
+        assertThrows(IllegalArgumentException.class, () -> new Int2IntCache(Int2IntCache.maximalCacheSize + 1));
+        assertThrows(IllegalArgumentException.class, () -> new Int2IntCache(1 << 30));
+    }
+
+    @Test
+    public void putGetTest() {
+        cache.put(0, 10);
+        assertTrue(cache.containsKey(0));
+        assertEquals(10, cache.getOrDefault(0, -1));
+        assertFalse(cache.containsKey(1));
+        assertEquals(-1, cache.getOrDefault(1, -1));
+    }
+
+    @Test
+    public void updateValueTest() {
+        cache.put(0, 10);
+        cache.put(0, 20);
+        assertEquals(20, cache.getOrDefault(0, -1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void referencedItemsShouldSurviveKickOutTest() {
+        cache.put(0, 0);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.getOrDefault(0, -1);
+        cache.getOrDefault(2, -1);
+        cache.put(3, 3);
+
+        assertEquals(3, cache.size());
+        assertEquals(0, cache.getOrDefault(0, -1));
+        assertEquals(-1, cache.getOrDefault(1, -1));
+        assertEquals(2, cache.getOrDefault(2, -1));
+        assertEquals(3, cache.getOrDefault(3, -1));
+    }
+
+    @Test
+    public void removeTest() {
+        cache.put(0, 10);
+        assertTrue(cache.remove(0));
+        assertFalse(cache.containsKey(0));
+        assertFalse(cache.remove(0));
+    }
+
+    @Test
+    public void shouldMatchMapWithoutKickOutTest() {
+        Int2IntCache bigCache = new Int2IntCache(1000);
+        Map<Integer, Integer> map = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(500) - 250;
+            if (random.nextInt(3) == 0) {
+                assertEquals(map.remove(key) != null, bigCache.remove(key));
+            } else {
+                map.put(key, i);
+                bigCache.put(key, i);
+            }
+            int probe = random.nextInt(500) - 250;
+            assertEquals(map.getOrDefault(probe, -1).intValue(), bigCache.getOrDefault(probe, -1));
+        }
+        assertEquals(map.size(), bigCache.size());
+    }
+
+    @Test
+    public void computeIfAbsentTest() {
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(5, cache.computeIfAbsent(5, key -> {
+            loads.incrementAndGet();
+            return key;
+        }));
+        assertEquals(5, cache.computeIfAbsent(5, key -> {
+            loads.incrementAndGet();
+            return 0;
+        }));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void exceptionShouldBePropagatedTest() {
+        assertThrows(IllegalStateException.class, () -> cache.computeIfAbsent(0, key -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(1, cache.computeIfAbsent(0, key -> 1));
+    }
+
+    @Test
+    public void concurrentLoadsShouldBeCollapsedTest() throws Exception {
+        int threads = 16;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    started.await();
+                    return cache.computeIfAbsent(0, key -> {
+                        loads.incrementAndGet();
+                        sleep(100);
+                        return 42;
+                    });
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(42, (int) future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void putWhileLoadingShouldWinTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch updated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> loader = executor.submit(() -> cache.computeIfAbsent(0, key -> {
+                loading.countDown();
+                await(updated);
+                return 1;
+            }));
+            loading.await();
+            cache.put(0, 2);
+            updated.countDown();
+            assertEquals(1, (int) loader.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, cache.getOrDefault(0, -1));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void statsTest() {
+        Int2IntCache statsCache = new Int2IntCache(2, new ConcurrentStatsCounter());
+        statsCache.computeIfAbsent(0, key -> key);
+        statsCache.computeIfAbsent(0, key -> key);
+        statsCache.getOrDefault(1, -1);
+        statsCache.containsKey(1);
+        assertThrows(IllegalStateException.class, () -> statsCache.computeIfAbsent(1, key -> {
+            throw new IllegalStateException();
+        }));
+        statsCache.put(1, 1);
+        statsCache.put(2, 2);
+        statsCache.getOrDefault(2, -1);
+        CacheStats stats = statsCache.stats();
+
+        assertEquals(2, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadFailureCount());
+        assertEquals(1, stats.getEvictionCount(EvictionCause.SIZE));
+    }
+
+    @Test
+    public void addIfPresentTest() {
+        cache.put(0, 10);
+
+        assertTrue(cache.addIfPresent(0, 5));
+        assertTrue(cache.addIfPresent(0, -2));
+        assertFalse(cache.addIfPresent(1, 1));
+        assertEquals(13, cache.getOrDefault(0, -1));
+        assertFalse(cache.containsKey(1));
+    }
+
+    @Test
+    public void addWhileLoadingShouldCancelCachingTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch added = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> loader = executor.submit(() -> cache.computeIfAbsent(0, key -> {
+                loading.countDown();
+                await(added);
+                return 1;
+            }));
+            loading.await();
+            assertFalse(cache.addIfPresent(0, 1));
+            added.countDown();
+            assertEquals(1, (int) loader.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertFalse(cache.containsKey(0));
+    }
+
+    @Test
+    public void endUpdateTest() {
+        cache.put(0, 10);
+        cache.beginUpdate(0);
+        cache.beginUpdate(1);
+
+        assertTrue(cache.endUpdate(0, 5));
+        assertFalse(cache.endUpdate(1, 1));
+        assertEquals(15, cache.getOrDefault(0, -1));
+        assertFalse(cache.containsKey(1));
+    }
+
+    @Test
+    public void loadDuringUpdateShouldNotBeCachedTest() {
+        cache.beginUpdate(0);
+        cache.beginUpdate(0);
+
+        assertEquals(1, cache.computeIfAbsent(0, key -> 1));
+        assertFalse(cache.containsKey(0));
+        cache.endUpdate(0, 1);
+        assertEquals(2, cache.computeIfAbsent(0, key -> 2));
+        assertFalse(cache.containsKey(0));
+        cache.endUpdate(0, 1);
+        assertEquals(3, cache.computeIfAbsent(0, key -> 3));
+        assertEquals(3, cache.getOrDefault(0, -1));
+    }
+
+    @Test
+    public void beginUpdateWhileLoadingShouldCancelCachingTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch updated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> loader = executor.submit(() -> cache.computeIfAbsent(0, key -> {
+                loading.countDown();
+                await(updated);
+                return 1;
+            }));
+            loading.await();
+            cache.beginUpdate(0);
+            cache.endUpdate(0, 1);
+            updated.countDown();
+            assertEquals(1, (int) loader.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertFalse(cache.containsKey(0));
+    }
+
+    @Test
+    public void refreshTest() {
+        assertFalse(cache.refresh(0, key -> 1));
+        assertFalse(cache.containsKey(0));
+
+        cache.put(0, 1);
+        assertTrue(cache.refresh(0, key -> 5));
+        assertEquals(5, cache.getOrDefault(0, -1));
+
+        cache.beginUpdate(0);
+        assertFalse(cache.refresh(0, key -> 7));
+        cache.endUpdate(0, 1);
+        assertEquals(6, cache.getOrDefault(0, -1));
+    }
+
+    @Test
+    public void updateDuringRefreshShouldKeepValueTest() throws Exception {
+        cache.put(0, 1);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch updated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> refresher = executor.submit(() -> cache.refresh(0, key -> {
+                loading.countDown();
+                await(updated);
+                return 10;
+            }));
+            loading.await();
+            assertEquals(1, cache.getOrDefault(0, -1));
+            cache.beginUpdate(0);
+            cache.endUpdate(0, 1);
+            updated.countDown();
+            assertFalse(refresher.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, cache.getOrDefault(0, -1));
+    }
+
+    @Test
+    public void keysByRecencyTest() {
+        cache.put(0, 1);
+        cache.put(1, 2);
+        cache.put(2, 3);
+        cache.remove(1);
+
+        int[] keys = cache.keysByRecency();
+        Arrays.sort(keys);
+        assertArrayEquals(new int[]{0, 2}, keys);
+    }
+
+    @Test
+    public void clearTest() {
+        cache.put(0, 1);
+        cache.put(1, 2);
+        cache.put(2, 3);
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.containsKey(1));
+        cache.put(3, 4);
+        cache.put(4, 5);
+        cache.put(5, 6);
+        cache.put(6, 7);
+        assertEquals(3, cache.size());
+        assertEquals(7, cache.getOrDefault(6, -1));
+    }
+}
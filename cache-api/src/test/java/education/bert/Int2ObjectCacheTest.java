@@ -0,0 +1,373 @@
+package education.bert;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Int2ObjectCacheTest {
+    private final Int2ObjectCache<String> cache = new Int2ObjectCache<>(3);
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionTest() {
+        assertDoesNotThrow(() -> new Int2ObjectCache<String>());
+        assertThrows(IllegalArgumentException.class, () -> new Int2ObjectCache<String>(0));
+        assertThrows(IllegalArgumentException.class, () -> new Int2ObjectCache<String>(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldThrowNullPointerExceptionTest() {
+        assertThrows(NullPointerException.class, () -> cache.put(0, null));
+    }
+
+    @Test
+    public void putGetTest() {
+        assertNull(cache.put(0, "Value"));
+        assertEquals("Value", cache.get(0));
+        assertNull(cache.put(-1, "Negative Value"));
+        assertEquals("Negative Value", cache.get(-1));
+    }
+
+    @Test
+    public void updateValueTest() {
+        cache.put(0, "Value");
+        assertEquals("Value", cache.put(0, "New Value"));
+        assertEquals("New Value", cache.get(0));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void putWithKickOutTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.put(3, "Value3");
+
+        assertEquals(3, cache.size());
+        assertEquals("Value3", cache.get(3));
+    }
+
+    @Test
+    public void referencedItemsShouldSurviveKickOutTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.get(0);
+        cache.get(1);
+        cache.put(3, "Value3");
+
+        assertEquals("Value0", cache.get(0));
+        assertEquals("Value1", cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals("Value3", cache.get(3));
+    }
+
+    @Test
+    public void forEachByRecencyTest() {
+        cache.put(0, "Value0");
+        cache.put(1, "Value1");
+        cache.put(2, "Value2");
+        cache.get(1);
+        List<Integer> keys = new ArrayList<>();
+
+        cache.forEachByRecency((value, key) -> {
+            assertEquals("Value" + key, value);
+            keys.add(key);
+        });
+        assertEquals(3, keys.size());
+        assertEquals(1, (int) keys.get(0));
+        assertTrue(keys.containsAll(Arrays.asList(0, 2)));
+        assertEquals(3, cache.getMaxCacheSize());
+
+        cache.put(3, "Value3");
+        assertEquals("Value1", cache.get(1));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void removeTest() {
+        cache.put(0, "Value");
+        assertEquals("Value", cache.remove(0));
+        assertNull(cache.get(0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void removeNotExistedTest() {
+        assertNull(cache.get(0));
+        assertNull(cache.remove(0));
+    }
+
+    @Test
+    public void shouldMatchMapWithoutKickOutTest() {
+        Int2ObjectCache<Integer> bigCache = new Int2ObjectCache<>(1000);
+        Map<Integer, Integer> map = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(500) * 1024;
+            if (random.nextInt(3) == 0) {
+                assertEquals(map.remove(key), bigCache.remove(key));
+            } else {
+                assertEquals(map.put(key, i), bigCache.put(key, i));
+            }
+            int probe = random.nextInt(500) * 1024;
+            assertEquals(map.get(probe), bigCache.get(probe));
+        }
+        assertEquals(map.size(), bigCache.size());
+    }
+
+    @Test
+    public void shouldKeepLastValuesWithKickOutTest() {
+        Int2ObjectCache<Integer> smallCache = new Int2ObjectCache<>(100);
+        Map<Integer, Integer> map = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(1000);
+            smallCache.put(key, i);
+            map.put(key, i);
+            assertTrue(smallCache.size() <= 100);
+        }
+        assertEquals(100, smallCache.size());
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            Integer value = smallCache.get(entry.getKey());
+            assertTrue(value == null || value.equals(entry.getValue()));
+        }
+    }
+
+    @Test
+    public void computeIfAbsentTest() {
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("Value0", cache.computeIfAbsent(0, key -> {
+            loads.incrementAndGet();
+            return "Value" + key;
+        }));
+        assertEquals("Value0", cache.computeIfAbsent(0, key -> {
+            loads.incrementAndGet();
+            return "Other Value";
+        }));
+        assertEquals(1, loads.get());
+        assertNull(cache.computeIfAbsent(1, key -> null));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void exceptionShouldBePropagatedTest() {
+        assertThrows(IllegalStateException.class, () -> cache.computeIfAbsent(0, key -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals("Value", cache.computeIfAbsent(0, key -> "Value"));
+    }
+
+    @Test
+    public void concurrentLoadsShouldBeCollapsedTest() throws Exception {
+        int threads = 16;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    started.await();
+                    return cache.computeIfAbsent(0, key -> {
+                        loads.incrementAndGet();
+                        sleep(100);
+                        return "Value";
+                    });
+                }));
+            }
+            for (Future<String> future : futures) {
+                assertEquals("Value", future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void removeWhileLoadingShouldCancelCachingTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch removed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> loader = executor.submit(() -> cache.computeIfAbsent(0, key -> {
+                loading.countDown();
+                await(removed);
+                return "Stale Value";
+            }));
+            loading.await();
+            cache.remove(0);
+            removed.countDown();
+            assertEquals("Stale Value", loader.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void concurrentAccessTest() throws Exception {
+        Int2ObjectCache<Integer> concurrentCache = new Int2ObjectCache<>(256);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        int key = random.nextInt(1024);
+                        int operation = random.nextInt(10);
+                        if (operation == 0) {
+                            concurrentCache.remove(key);
+                        } else if (operation < 3) {
+                            concurrentCache.put(key, key);
+                        } else {
+                            Integer value = concurrentCache.computeIfAbsent(key, k -> k);
+                            assertEquals(key, (int) value);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(concurrentCache.size() <= 256);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void statsTest() {
+        Int2ObjectCache<String> statsCache = new Int2ObjectCache<>(2, new ConcurrentStatsCounter());
+        statsCache.computeIfAbsent(0, key -> "Value" + key);
+        statsCache.computeIfAbsent(0, key -> "Value" + key);
+        statsCache.get(1);
+        assertThrows(IllegalStateException.class, () -> statsCache.computeIfAbsent(1, key -> {
+            throw new IllegalStateException();
+        }));
+        statsCache.put(1, "Value1");
+        statsCache.put(2, "Value2");
+        CacheStats stats = statsCache.stats();
+
+        assertEquals(1, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadFailureCount());
+        assertEquals(1, stats.getEvictionCount(EvictionCause.SIZE));
+        assertEquals(0, cache.stats().getRequestCount());
+        assertThrows(NullPointerException.class, () -> new Int2ObjectCache<String>(2, null));
+    }
+
+    @Test
+    public void getAllTest() {
+        cache.put(1, "Value1");
+        List<int[]> requested = new ArrayList<>();
+
+        Map<Integer, String> values = cache.getAll(new int[]{3, 1, 0, 3}, keys -> {
+            requested.add(keys);
+            Map<Integer, String> loaded = new HashMap<>();
+            loaded.put(0, "Value0");
+            return loaded;
+        });
+        assertEquals(Arrays.asList(1, 0), new ArrayList<>(values.keySet()));
+        assertEquals("Value0", values.get(0));
+        assertEquals(1, requested.size());
+        assertArrayEquals(new int[]{3, 0}, requested.get(0));
+        assertEquals("Value0", cache.get(0));
+        assertNull(cache.get(3));
+
+        assertEquals(values, cache.getAll(new int[]{1, 0}, keys -> {
+            throw new IllegalStateException();
+        }));
+    }
+
+    @Test
+    public void getAllExceptionShouldBePropagatedTest() {
+        assertThrows(IllegalStateException.class, () -> cache.getAll(new int[]{0, 1}, keys -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals("Value", cache.computeIfAbsent(0, key -> "Value"));
+    }
+
+    @Test
+    public void getAllShouldWaitForLoadsInFlightTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> loader = executor.submit(() -> cache.computeIfAbsent(0, key -> {
+                loading.countDown();
+                sleep(100);
+                return "Value0";
+            }));
+            loading.await();
+            Map<Integer, String> values = cache.getAll(new int[]{0, 1}, keys -> {
+                assertArrayEquals(new int[]{1}, keys);
+                Map<Integer, String> loaded = new HashMap<>();
+                loaded.put(1, "Value1");
+                return loaded;
+            });
+            assertEquals("Value0", values.get(0));
+            assertEquals("Value1", values.get(1));
+            assertEquals("Value0", loader.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void getAllStatsTest() {
+        Int2ObjectCache<String> statsCache = new Int2ObjectCache<>(3, new ConcurrentStatsCounter());
+        statsCache.put(0, "Value0");
+        statsCache.getAll(new int[]{0, 1, 2}, keys -> new HashMap<>());
+        CacheStats stats = statsCache.stats();
+
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getLoadSuccessCount());
+    }
+
+    @Test
+    public void getIfPresentShouldRecordOnlyHitsTest() {
+        Int2ObjectCache<String> statsCache = new Int2ObjectCache<>(2, new ConcurrentStatsCounter());
+        assertNull(statsCache.getIfPresent(0));
+        assertEquals("Value0", statsCache.computeIfAbsent(0, key -> "Value" + key));
+        assertEquals("Value0", statsCache.getIfPresent(0));
+        CacheStats stats = statsCache.stats();
+
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+    }
+}
@@ -0,0 +1,306 @@
+package education.bert.benchmark;
+
+import education.bert.Cache;
+import education.bert.CacheConcurrentLruImpl;
+import education.bert.CacheExpiringImpl;
+import education.bert.CacheLinkedMapImpl;
+import education.bert.CacheMapAndQueueImpl;
+import education.bert.CacheOffHeapImpl;
+import education.bert.CacheTieredImpl;
+import education.bert.CacheTinyLfuImpl;
+import education.bert.Int2ObjectCache;
+import education.bert.ValueCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark class for comparing the cache implementations in isolation. Measures the throughput and the latency of a
+ * mix of get, put and remove operations for every implementation, key distribution and read/write ratio. The main
+ * method runs the benchmark with 1 to 64 threads and reports the allocation rate using the GC profiler.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+    /**
+     * The thread counts the main method runs the benchmark with.
+     */
+    private static final int[] threadCounts = {1, 2, 4, 8, 16, 32, 64};
+
+    /**
+     * The number of operations every thread repeats in a loop.
+     */
+    private static final int operationsPerThread = 1 << 16;
+
+    /**
+     * The codec of the values of the off-heap cache.
+     */
+    private static final ValueCodec<String> stringCodec = new ValueCodec<String>() {
+        @Override
+        public int encodedSize(String value) {
+            return ValueCodec.stringSize(value);
+        }
+
+        @Override
+        public void encode(String value, ByteBuffer buffer) {
+            ValueCodec.putString(buffer, value);
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) {
+            return ValueCodec.getString(buffer);
+        }
+    };
+
+    /**
+     * The name of the cache implementation to test.
+     */
+    @Param({"LinkedMap", "MapAndQueue", "ConcurrentLru", "TinyLfu", "Expiring", "Tiered", "OffHeap", "Int2Object"})
+    String implementation;
+
+    /**
+     * The distribution of the requested keys.
+     */
+    @Param({"UNIFORM", "ZIPFIAN", "SCAN"})
+    KeyDistribution distribution;
+
+    /**
+     * The percentage of gets among the operations. Three quarters of the other operations are puts, the rest are
+     * removes.
+     */
+    @Param({"100", "90", "50"})
+    int readPercent;
+
+    /**
+     * The maximum number of items in the cache.
+     */
+    @Param("4096")
+    int cacheSize;
+
+    /**
+     * The number of distinct keys, several times the cache size so that there are misses and evictions.
+     */
+    @Param("16384")
+    int keySpace;
+
+    /**
+     * The cache to test.
+     */
+    private Cache<Integer, String> cache;
+
+    /**
+     * The boxed keys by key, so that the operations do not box them.
+     */
+    private Integer[] keys;
+
+    /**
+     * The values to be put by key.
+     */
+    private String[] values;
+
+    /**
+     * Main method to run the benchmark with 1 to 64 threads. JMH command line options can be passed as arguments, e.g.
+     * {@code -p implementation=LinkedMap,MapAndQueue} to compare only these implementations.
+     *
+     * @param args JMH command line options.
+     * @throws RunnerException            if JMH Runner issues occur.
+     * @throws CommandLineOptionException if the arguments can not be parsed.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .include(CacheBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .shouldFailOnError(true)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    /**
+     * Creates the cache and fills it with the keys requested last by a scan. This method is invoked before all
+     * iterations.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        keys = new Integer[keySpace];
+        values = new String[keySpace];
+        for (int i = 0; i < keySpace; i++) {
+            keys[i] = i;
+            values[i] = "value " + i;
+        }
+        cache = newCache(implementation, cacheSize);
+        for (int i = 0; i < keySpace; i++) {
+            cache.put(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Creates the cache by the name of its implementation.
+     *
+     * @param implementation the name of the cache implementation.
+     * @param cacheSize      the maximum number of items in the cache.
+     * @return the new cache.
+     */
+    private static Cache<Integer, String> newCache(String implementation, int cacheSize) {
+        switch (implementation) {
+            case "LinkedMap":
+                return new CacheLinkedMapImpl<>(cacheSize);
+            case "MapAndQueue":
+                return new CacheMapAndQueueImpl<>(cacheSize);
+            case "ConcurrentLru":
+                return new CacheConcurrentLruImpl<>(cacheSize);
+            case "TinyLfu":
+                return new CacheTinyLfuImpl<>(cacheSize);
+            case "Expiring":
+                return new CacheExpiringImpl<>(cacheSize, 1, 0, TimeUnit.HOURS);
+            case "Tiered":
+                return new CacheTieredImpl<>(new CacheConcurrentLruImpl<>(cacheSize / 4),
+                        newOffHeapCache(cacheSize - cacheSize / 4));
+            case "OffHeap":
+                return newOffHeapCache(cacheSize);
+            case "Int2Object":
+                return newInt2ObjectCache(cacheSize);
+            default:
+                throw new IllegalArgumentException("unknown implementation " + implementation);
+        }
+    }
+
+    /**
+     * Creates the off-heap cache with enough memory for the specified number of small values.
+     *
+     * @param cacheSize the number of values to fit.
+     * @return the new cache.
+     */
+    private static Cache<Integer, String> newOffHeapCache(int cacheSize) {
+        int pageSize = 64 * 1024;
+        long capacity = Math.max(pageSize, (long) cacheSize * CacheOffHeapImpl.minimalChunkSize);
+        return new CacheOffHeapImpl<>(capacity, pageSize, stringCodec);
+    }
+
+    /**
+     * Creates the cache with primitive int keys wrapped into the common interface. Its operations unbox the keys, which
+     * does not allocate.
+     *
+     * @param cacheSize the maximum number of items in the cache.
+     * @return the new cache.
+     */
+    private static Cache<Integer, String> newInt2ObjectCache(int cacheSize) {
+        Int2ObjectCache<String> cache = new Int2ObjectCache<>(cacheSize);
+        return new Cache<Integer, String>() {
+            @Override
+            public String put(Integer key, String value) {
+                return cache.put(key, value);
+            }
+
+            @Override
+            public String get(Integer key) {
+                return cache.get(key);
+            }
+
+            @Override
+            public String remove(Integer key) {
+                return cache.remove(key);
+            }
+        };
+    }
+
+    /**
+     * Executes the next operation of the thread.
+     *
+     * @param operations the operations of the thread.
+     * @return the result of the operation.
+     */
+    @Benchmark
+    public String operation(Operations operations) {
+        int index = operations.next++ & (operationsPerThread - 1);
+        int key = operations.keys[index];
+        switch (operations.types[index]) {
+            case Operations.get:
+                return cache.get(keys[key]);
+            case Operations.put:
+                return cache.put(keys[key], values[key]);
+            default:
+                return cache.remove(keys[key]);
+        }
+    }
+
+    /**
+     * The pregenerated operations of a thread, so that generating them is not measured.
+     */
+    @State(Scope.Thread)
+    public static class Operations {
+
+        /**
+         * The type of a get.
+         */
+        static final byte get = 0;
+
+        /**
+         * The type of a put.
+         */
+        static final byte put = 1;
+
+        /**
+         * The type of a remove.
+         */
+        static final byte remove = 2;
+
+        /**
+         * The keys of the operations.
+         */
+        int[] keys;
+
+        /**
+         * The types of the operations.
+         */
+        byte[] types;
+
+        /**
+         * The index of the next operation.
+         */
+        int next;
+
+        /**
+         * Generates the operations of the thread. Every thread gets its own sequence of keys. This method is invoked
+         * before all iterations.
+         *
+         * @param benchmark the parameters of the benchmark.
+         * @param params    the parameters of the thread.
+         */
+        @Setup(Level.Trial)
+        public void setup(CacheBenchmark benchmark, ThreadParams params) {
+            Random random = new Random(params.getThreadIndex());
+            keys = benchmark.distribution.keys(operationsPerThread, benchmark.keySpace, random);
+            types = new byte[operationsPerThread];
+            for (int i = 0; i < operationsPerThread; i++) {
+                int percent = random.nextInt(100);
+                if (percent < benchmark.readPercent) {
+                    types[i] = get;
+                } else if (random.nextInt(4) < 3) {
+                    types[i] = put;
+                } else {
+                    types[i] = remove;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package education.bert.benchmark;
+
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Distributions of the keys requested from a cache in benchmarks.
+ */
+public enum KeyDistribution {
+
+    /**
+     * Every key is requested equally often.
+     */
+    UNIFORM {
+        @Override
+        public int[] keys(int count, int keySpace, Random random) {
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = random.nextInt(keySpace);
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * A few hot keys are requested most of the time, the frequency of the key of rank {@code i} is proportional to
+     * {@code 1 / i^0.99} as in YCSB.
+     */
+    ZIPFIAN {
+        @Override
+        public int[] keys(int count, int keySpace, Random random) {
+            IntSupplier zipfian = zipfian(keySpace, 0.99, random);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = zipfian.getAsInt();
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * All keys are requested one after another in a loop starting from a random key, as a full scan does.
+     */
+    SCAN {
+        @Override
+        public int[] keys(int count, int keySpace, Random random) {
+            int start = random.nextInt(keySpace);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (start + i) % keySpace;
+            }
+            return keys;
+        }
+    };
+
+    /**
+     * Generates a sequence of the requested keys.
+     *
+     * @param count    the number of keys to generate.
+     * @param keySpace the number of distinct keys, which are {@code 0} to {@code keySpace - 1}.
+     * @param random   the source of randomness.
+     * @return the requested keys in order.
+     */
+    public abstract int[] keys(int count, int keySpace, Random random);
+
+    /**
+     * Returns a generator of keys where the frequency of the key of rank {@code i} is proportional to
+     * {@code 1 / i^skew}, using the algorithm of YCSB. Key 0 is the most frequent one.
+     *
+     * @param keySpace the number of distinct keys, which are {@code 0} to {@code keySpace - 1}.
+     * @param skew     the skew of the distribution in the range {@code (0, 1)}.
+     * @param random   the source of randomness.
+     * @return the generator of the requested keys.
+     */
+    public static IntSupplier zipfian(int keySpace, double skew, Random random) {
+        double zeta2 = 1 + Math.pow(0.5, skew);
+        double sum = 0;
+        for (int i = 1; i <= keySpace; i++) {
+            sum += 1 / Math.pow(i, skew);
+        }
+        double zetaN = sum;
+        double alpha = 1 / (1 - skew);
+        double eta = (1 - Math.pow(2.0 / keySpace, 1 - skew)) / (1 - zeta2 / zetaN);
+        return () -> {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < zeta2) {
+                return 1;
+            }
+            return Math.min(keySpace - 1, (int) (keySpace * Math.pow(eta * u - eta + 1, alpha)));
+        };
+    }
+}
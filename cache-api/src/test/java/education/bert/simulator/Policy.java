@@ -0,0 +1,133 @@
+package education.bert.simulator;
+
+import education.bert.Cache;
+import education.bert.CacheConcurrentLruImpl;
+import education.bert.CacheLinkedMapImpl;
+import education.bert.CacheMapAndQueueImpl;
+import education.bert.CacheTieredImpl;
+import education.bert.CacheTinyLfuImpl;
+import education.bert.Int2ObjectCache;
+
+import java.util.AbstractMap;
+import java.util.Map;
+
+/**
+ * Eviction policies to be simulated, by the cache implementation that provides them. The caches limited by the number
+ * of items are simulated, so that their hit ratios are comparable for the same size.
+ */
+public enum Policy {
+
+    /**
+     * Least recently used, {@link CacheLinkedMapImpl}.
+     */
+    LRU {
+        @Override
+        public Cache<Long, Long> newCache(int maxCacheSize) {
+            return new CacheLinkedMapImpl<>(maxCacheSize);
+        }
+    },
+
+    /**
+     * First in first out, {@link CacheMapAndQueueImpl}.
+     */
+    FIFO {
+        @Override
+        public Cache<Long, Long> newCache(int maxCacheSize) {
+            return new CacheMapAndQueueImpl<>(maxCacheSize);
+        }
+    },
+
+    /**
+     * Least recently used within each segment of the keyspace, {@link CacheConcurrentLruImpl}.
+     */
+    CONCURRENT_LRU {
+        @Override
+        public Cache<Long, Long> newCache(int maxCacheSize) {
+            return new CacheConcurrentLruImpl<>(maxCacheSize);
+        }
+    },
+
+    /**
+     * Window TinyLFU, {@link CacheTinyLfuImpl}.
+     */
+    TINY_LFU {
+        @Override
+        public Cache<Long, Long> newCache(int maxCacheSize) {
+            return new CacheTinyLfuImpl<>(maxCacheSize);
+        }
+    },
+
+    /**
+     * CLOCK, the approximation of LRU by {@link Int2ObjectCache}.
+     */
+    CLOCK {
+        @Override
+        public Cache<Long, Long> newCache(int maxCacheSize) {
+            return newInt2ObjectCache(maxCacheSize);
+        }
+    },
+
+    /**
+     * Exclusive tiers, {@link CacheTieredImpl} with a quarter of the items in the first level. Unlike in the benchmark,
+     * the second level is an LRU cache instead of an off-heap one, which is limited by bytes rather than items.
+     */
+    TIERED {
+        @Override
+        public Cache<Long, Long> newCache(int maxCacheSize) {
+            int l1Size = Math.max(1, maxCacheSize / 4);
+            return new CacheTieredImpl<>(new CacheConcurrentLruImpl<>(l1Size),
+                    new CacheLinkedMapImpl<>(Math.max(1, maxCacheSize - l1Size)));
+        }
+    };
+
+    /**
+     * Creates an empty cache with this policy.
+     *
+     * @param maxCacheSize the maximum number of items to store.
+     * @return the new cache.
+     */
+    public abstract Cache<Long, Long> newCache(int maxCacheSize);
+
+    /**
+     * Creates the cache with primitive int keys wrapped into the common interface. The long keys are folded into int
+     * keys by their hash codes, and each item keeps its long key, so keys with the same hash code replace each other
+     * instead of hitting each other's items.
+     *
+     * @param maxCacheSize the maximum number of items to store.
+     * @return the new cache.
+     */
+    private static Cache<Long, Long> newInt2ObjectCache(int maxCacheSize) {
+        Int2ObjectCache<Map.Entry<Long, Long>> cache = new Int2ObjectCache<>(maxCacheSize);
+        return new Cache<Long, Long>() {
+            @Override
+            public Long put(Long key, Long value) {
+                return valueOf(key, cache.put(key.hashCode(), new AbstractMap.SimpleImmutableEntry<>(key, value)));
+            }
+
+            @Override
+            public Long get(Long key) {
+                return valueOf(key, cache.get(key.hashCode()));
+            }
+
+            @Override
+            public Long remove(Long key) {
+                Long value = valueOf(key, cache.get(key.hashCode()));
+                if (value != null) {
+                    cache.remove(key.hashCode());
+                }
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Returns the value of the item if it belongs to the key.
+     *
+     * @param key  the requested key.
+     * @param item the item cached under the hash code of the key, or {@code null}.
+     * @return the value of the item, or {@code null} if there is no item of the key.
+     */
+    private static Long valueOf(Long key, Map.Entry<Long, Long> item) {
+        return item != null && item.getKey().equals(key) ? item.getValue() : null;
+    }
+}
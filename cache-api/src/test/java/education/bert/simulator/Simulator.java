@@ -0,0 +1,320 @@
+package education.bert.simulator;
+
+import education.bert.Cache;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trace-driven simulator of the hit ratios of the eviction policies. Replays an access trace against a cache of every
+ * policy and size: a requested key which is not cached is a miss and gets cached. The trace is read once in chunks and
+ * every chunk is replayed by all caches in parallel, so only a single chunk of the trace is kept in memory.
+ */
+public class Simulator {
+
+    /**
+     * The number of keys read from the trace at once.
+     */
+    public static final int chunkSize = 1 << 16;
+
+    /**
+     * The policies to be simulated.
+     */
+    private final List<Policy> policies;
+
+    /**
+     * The cache sizes to be simulated for every policy.
+     */
+    private final int[] sizes;
+
+    /**
+     * Constructs a simulator of the policies for each of the cache sizes.
+     *
+     * @param policies the policies to be simulated.
+     * @param sizes    the cache sizes to be simulated.
+     */
+    public Simulator(List<Policy> policies, int[] sizes) {
+        if (policies.isEmpty() || sizes.length == 0) {
+            throw new IllegalArgumentException("policies and sizes must not be empty");
+        }
+        this.policies = new ArrayList<>(policies);
+        this.sizes = sizes.clone();
+    }
+
+    /**
+     * Runs the simulator and prints the hit ratios as CSV. The arguments are {@code name=value} pairs:
+     * <ul>
+     * <li>{@code trace} the file of the recorded trace, or {@code generate} one of {@code zipf}, {@code loop} and
+     * {@code scan} for a synthetic trace;</li>
+     * <li>{@code format} {@code text} (default) or {@code binary} for a recorded trace;</li>
+     * <li>{@code events}, {@code keySpace}, {@code skew}, {@code scanPeriod}, {@code scanLength} and {@code seed} for a
+     * synthetic trace;</li>
+     * <li>{@code sizes} the comma-separated cache sizes;</li>
+     * <li>{@code policies} the comma-separated policies, all by default.</li>
+     * </ul>
+     * E.g. {@code generate=scan events=10000000 keySpace=100000 sizes=1000,10000}.
+     *
+     * @param args the {@code name=value} pairs.
+     * @throws IOException          if the trace can not be read.
+     * @throws InterruptedException if interrupted while simulating.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("argument must be name=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        List<Policy> policies = new ArrayList<>();
+        for (String policy : options.getOrDefault("policies", "").split(",")) {
+            if (!policy.isEmpty()) {
+                policies.add(Policy.valueOf(policy));
+            }
+        }
+        if (policies.isEmpty()) {
+            policies.addAll(Arrays.asList(Policy.values()));
+        }
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "100,1000,10000").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        Simulator simulator = new Simulator(policies, sizes);
+        String file = options.get("trace");
+        if (file != null) {
+            try (InputStream in = new FileInputStream(file)) {
+                PrimitiveIterator.OfLong trace = "binary".equals(options.get("format"))
+                        ? Traces.binary(in)
+                        : Traces.text(new InputStreamReader(in, StandardCharsets.UTF_8));
+                simulator.simulate(trace).print(System.out);
+            }
+        } else {
+            simulator.simulate(generate(options)).print(System.out);
+        }
+    }
+
+    /**
+     * Returns the synthetic trace specified by the options.
+     *
+     * @param options the options of the trace.
+     * @return the keys of the trace.
+     */
+    private static PrimitiveIterator.OfLong generate(Map<String, String> options) {
+        long events = Long.parseLong(options.getOrDefault("events", "1000000"));
+        int keySpace = Integer.parseInt(options.getOrDefault("keySpace", "100000"));
+        double skew = Double.parseDouble(options.getOrDefault("skew", "0.99"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        String generator = options.getOrDefault("generate", "zipf");
+        switch (generator) {
+            case "zipf":
+                return Traces.zipf(events, keySpace, skew, seed);
+            case "loop":
+                return Traces.loop(events, keySpace);
+            case "scan":
+                return Traces.scanPollution(events, keySpace, skew,
+                        Integer.parseInt(options.getOrDefault("scanPeriod", "100000")),
+                        Integer.parseInt(options.getOrDefault("scanLength", "10000")), seed);
+            default:
+                throw new IllegalArgumentException("unknown generator " + generator);
+        }
+    }
+
+    /**
+     * Replays the trace against a new cache of every policy and size.
+     *
+     * @param trace the keys of the trace.
+     * @return the hit ratios of the policies by size.
+     * @throws InterruptedException if interrupted while simulating.
+     */
+    public Result simulate(PrimitiveIterator.OfLong trace) throws InterruptedException {
+        List<Replay> replays = new ArrayList<>();
+        for (Policy policy : policies) {
+            for (int size : sizes) {
+                replays.add(new Replay(policy.newCache(size)));
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(replays.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            long[] chunk = new long[chunkSize];
+            long events = 0;
+            while (trace.hasNext()) {
+                int length = 0;
+                while (length < chunk.length && trace.hasNext()) {
+                    chunk[length++] = trace.nextLong();
+                }
+                events += length;
+                int chunkLength = length;
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (Replay replay : replays) {
+                    tasks.add(() -> {
+                        replay.replay(chunk, chunkLength);
+                        return null;
+                    });
+                }
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("replay failed", e.getCause());
+                    }
+                }
+            }
+            long[][] hits = new long[policies.size()][sizes.length];
+            for (int i = 0; i < replays.size(); i++) {
+                hits[i / sizes.length][i % sizes.length] = replays.get(i).hits;
+            }
+            return new Result(policies, sizes, events, hits);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Replay of the trace against a single cache.
+     */
+    private static class Replay {
+
+        /**
+         * The simulated cache.
+         */
+        private final Cache<Long, Long> cache;
+
+        /**
+         * The number of requested keys found in the cache so far.
+         */
+        private long hits;
+
+        /**
+         * Constructs a replay against the cache.
+         *
+         * @param cache the simulated cache.
+         */
+        Replay(Cache<Long, Long> cache) {
+            this.cache = cache;
+        }
+
+        /**
+         * Requests the keys from the cache in order and caches the missing ones.
+         *
+         * @param keys   the keys of the chunk.
+         * @param length the number of keys in the chunk.
+         */
+        void replay(long[] keys, int length) {
+            for (int i = 0; i < length; i++) {
+                Long key = keys[i];
+                if (cache.get(key) != null) {
+                    hits++;
+                } else {
+                    cache.put(key, key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hit ratios of the simulated policies by cache size.
+     */
+    public static class Result {
+
+        /**
+         * The simulated policies.
+         */
+        private final List<Policy> policies;
+
+        /**
+         * The simulated cache sizes.
+         */
+        private final int[] sizes;
+
+        /**
+         * The number of keys in the trace.
+         */
+        private final long events;
+
+        /**
+         * The numbers of hits by policy index and size index.
+         */
+        private final long[][] hits;
+
+        /**
+         * Constructs the result of a simulation.
+         *
+         * @param policies the simulated policies.
+         * @param sizes    the simulated cache sizes.
+         * @param events   the number of keys in the trace.
+         * @param hits     the numbers of hits by policy index and size index.
+         */
+        Result(List<Policy> policies, int[] sizes, long events, long[][] hits) {
+            this.policies = policies;
+            this.sizes = sizes;
+            this.events = events;
+            this.hits = hits;
+        }
+
+        /**
+         * Returns the number of keys in the trace.
+         *
+         * @return the number of keys in the trace.
+         */
+        public long getEvents() {
+            return events;
+        }
+
+        /**
+         * Returns the hit ratio of the policy with the cache size.
+         *
+         * @param policy the simulated policy.
+         * @param size   the simulated cache size.
+         * @return the number of hits divided by the number of keys in the trace, or 0 for an empty trace.
+         */
+        public double getHitRatio(Policy policy, int size) {
+            int policyIndex = policies.indexOf(policy);
+            int sizeIndex = -1;
+            for (int i = 0; i < sizes.length; i++) {
+                if (sizes[i] == size) {
+                    sizeIndex = i;
+                }
+            }
+            if (policyIndex < 0 || sizeIndex < 0) {
+                throw new IllegalArgumentException("policy " + policy + " with size " + size + " is not simulated");
+            }
+            return events == 0 ? 0 : (double) hits[policyIndex][sizeIndex] / events;
+        }
+
+        /**
+         * Prints the hit-ratio-vs-size curves as CSV with a row per size and a column per policy.
+         *
+         * @param out the stream to print to.
+         */
+        public void print(PrintStream out) {
+            StringBuilder header = new StringBuilder("size");
+            for (Policy policy : policies) {
+                header.append(',').append(policy);
+            }
+            out.println(header);
+            for (int size : sizes) {
+                StringBuilder row = new StringBuilder().append(size);
+                for (Policy policy : policies) {
+                    row.append(',').append(String.format("%.4f", getHitRatio(policy, size)));
+                }
+                out.println(row);
+            }
+        }
+    }
+}
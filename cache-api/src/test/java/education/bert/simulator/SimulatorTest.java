@@ -0,0 +1,132 @@
+package education.bert.simulator;
+
+import education.bert.Cache;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulatorTest {
+
+    @Test
+    public void shouldThrowExceptionsTest() {
+        assertThrows(IllegalArgumentException.class, () -> new Simulator(Collections.emptyList(), new int[]{1}));
+        assertThrows(IllegalArgumentException.class, () -> new Simulator(Arrays.asList(Policy.values()), new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> Traces.zipf(1, 1, 0.5, 1));
+        assertThrows(IllegalArgumentException.class, () -> Traces.zipf(1, 10, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> Traces.loop(-1, 10));
+        assertThrows(IllegalArgumentException.class, () -> Traces.loop(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> Traces.scanPollution(1, 10, 0.5, 0, 1, 1));
+        assertThrows(NoSuchElementException.class, () -> Traces.loop(0, 1).nextLong());
+    }
+
+    @Test
+    public void loopTest() throws InterruptedException {
+        Simulator simulator = new Simulator(Arrays.asList(Policy.LRU, Policy.FIFO, Policy.CLOCK, Policy.TIERED),
+                new int[]{10, 9});
+
+        Simulator.Result result = simulator.simulate(Traces.loop(3 * Simulator.chunkSize, 10));
+
+        assertEquals(3 * Simulator.chunkSize, result.getEvents());
+        assertEquals(1 - 10.0 / result.getEvents(), result.getHitRatio(Policy.LRU, 10), 1e-9);
+        assertEquals(1 - 10.0 / result.getEvents(), result.getHitRatio(Policy.FIFO, 10), 1e-9);
+        assertEquals(1 - 10.0 / result.getEvents(), result.getHitRatio(Policy.CLOCK, 10), 1e-9);
+        assertEquals(1 - 10.0 / result.getEvents(), result.getHitRatio(Policy.TIERED, 10), 1e-9);
+        assertEquals(0, result.getHitRatio(Policy.LRU, 9));
+        assertEquals(0, result.getHitRatio(Policy.FIFO, 9));
+        assertThrows(IllegalArgumentException.class, () -> result.getHitRatio(Policy.TINY_LFU, 10));
+        assertThrows(IllegalArgumentException.class, () -> result.getHitRatio(Policy.LRU, 11));
+    }
+
+    @Test
+    public void scanPollutionTest() throws InterruptedException {
+        Simulator simulator = new Simulator(Arrays.asList(Policy.values()), new int[]{1000});
+
+        Simulator.Result result = simulator.simulate(Traces.scanPollution(500_000, 10_000, 0.99, 2_000, 2_000, 1));
+
+        assertTrue(result.getHitRatio(Policy.TINY_LFU, 1000) > result.getHitRatio(Policy.LRU, 1000));
+        assertTrue(result.getHitRatio(Policy.LRU, 1000) > 0);
+        assertTrue(result.getHitRatio(Policy.CLOCK, 1000) > 0);
+        assertTrue(result.getHitRatio(Policy.TIERED, 1000) > 0);
+    }
+
+    @Test
+    public void clockShouldKeepKeysWithSameHashCodeApartTest() {
+        Cache<Long, Long> cache = Policy.CLOCK.newCache(10);
+        long key = 0x1_0000_0001L;
+
+        assertNull(cache.put(0L, 1L));
+        assertNull(cache.get(key));
+        assertNull(cache.put(key, 2L));
+        assertNull(cache.get(0L));
+        assertNull(cache.remove(0L));
+        assertEquals(2, (long) cache.get(key));
+        assertEquals(2, (long) cache.remove(key));
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void zipfTest() {
+        PrimitiveIterator.OfLong trace = Traces.zipf(100_000, 1000, 0.99, 1);
+        long[] counts = new long[1000];
+        while (trace.hasNext()) {
+            counts[(int) trace.nextLong()]++;
+        }
+
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > counts[100]);
+        assertTrue(counts[0] > 100_000 / 20);
+    }
+
+    @Test
+    public void binaryTraceTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(1000, Traces.writeBinary(Traces.zipf(1000, 100, 0.5, 1), out));
+
+        PrimitiveIterator.OfLong expected = Traces.zipf(1000, 100, 0.5, 1);
+        PrimitiveIterator.OfLong actual = Traces.binary(new ByteArrayInputStream(out.toByteArray()));
+        while (expected.hasNext()) {
+            assertEquals(expected.nextLong(), actual.nextLong());
+        }
+        assertFalse(actual.hasNext());
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), 12);
+        PrimitiveIterator.OfLong broken = Traces.binary(new ByteArrayInputStream(truncated));
+        broken.nextLong();
+        assertThrows(UncheckedIOException.class, broken::hasNext);
+    }
+
+    @Test
+    public void textTraceTest() {
+        PrimitiveIterator.OfLong trace = Traces.text(new StringReader("# key timestamp\n1 100\n\n  -2\t200\n3\n"));
+
+        assertEquals(1, trace.nextLong());
+        assertEquals(-2, trace.nextLong());
+        assertEquals(3, trace.nextLong());
+        assertFalse(trace.hasNext());
+        assertThrows(NumberFormatException.class, () -> Traces.text(new StringReader("key\n")).hasNext());
+    }
+
+    @Test
+    public void printTest() throws InterruptedException {
+        Simulator simulator = new Simulator(Arrays.asList(Policy.LRU, Policy.TINY_LFU), new int[]{1, 2});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        simulator.simulate(Traces.text(new StringReader("1\n1\n2\n1\n"))).print(new PrintStream(out, true));
+
+        String[] lines = out.toString().trim().split("\\R");
+        assertEquals("size,LRU,TINY_LFU", lines[0]);
+        assertEquals(3, lines.length);
+        assertTrue(lines[2].startsWith("2,0.5000,"));
+    }
+}
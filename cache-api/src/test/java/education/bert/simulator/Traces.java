@@ -0,0 +1,288 @@
+package education.bert.simulator;
+
+import education.bert.benchmark.KeyDistribution;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Sources of access traces, i.e. sequences of requested keys. Recorded traces are read lazily from streams and
+ * synthetic traces are generated lazily, so a trace of any length takes constant memory.
+ */
+public final class Traces {
+
+    private Traces() {
+    }
+
+    /**
+     * Returns the trace read from text with a key per line. Only the first whitespace-separated token of a line is
+     * read, so other columns of a recorded trace are ignored. Blank lines and lines starting with {@code #} are skipped.
+     *
+     * @param reader the reader of the text. It is read lazily and not closed.
+     * @return the keys of the trace.
+     * @throws UncheckedIOException  if the text can not be read.
+     * @throws NumberFormatException if a key is not a decimal long.
+     */
+    public static PrimitiveIterator.OfLong text(Reader reader) {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        return new LookaheadIterator() {
+            @Override
+            boolean readNext() throws IOException {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && line.charAt(0) != '#') {
+                        int end = 0;
+                        while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+                            end++;
+                        }
+                        next = Long.parseLong(line.substring(0, end));
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the trace read from the binary format written by {@link #writeBinary(PrimitiveIterator.OfLong,
+     * OutputStream)}: a sequence of big-endian 64-bit keys.
+     *
+     * @param in the stream of the keys. It is read lazily and not closed.
+     * @return the keys of the trace.
+     * @throws UncheckedIOException if the stream can not be read or ends in the middle of a key.
+     */
+    public static PrimitiveIterator.OfLong binary(InputStream in) {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        return new LookaheadIterator() {
+            @Override
+            boolean readNext() throws IOException {
+                int first = data.read();
+                if (first < 0) {
+                    return false;
+                }
+                long key = first;
+                for (int i = 1; i < Long.BYTES; i++) {
+                    int b = data.read();
+                    if (b < 0) {
+                        throw new EOFException("trace ends in the middle of a key");
+                    }
+                    key = key << 8 | b;
+                }
+                next = key;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Writes the trace in the binary format read by {@link #binary(InputStream)}.
+     *
+     * @param trace the keys of the trace.
+     * @param out   the stream to write to. It is not closed.
+     * @return the number of written keys.
+     * @throws IOException if the stream can not be written.
+     */
+    public static long writeBinary(PrimitiveIterator.OfLong trace, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        long count = 0;
+        while (trace.hasNext()) {
+            data.writeLong(trace.nextLong());
+            count++;
+        }
+        data.flush();
+        return count;
+    }
+
+    /**
+     * Returns a synthetic trace where the frequency of the key of rank {@code i} is proportional to
+     * {@code 1 / i^skew}, generated as by {@link KeyDistribution#ZIPFIAN}. Key 0 is the most frequent one.
+     *
+     * @param events   the number of keys in the trace.
+     * @param keySpace the number of distinct keys.
+     * @param skew     the skew of the distribution in the range {@code (0, 1)}, e.g. 0.99 as in YCSB.
+     * @param seed     the seed of the random generator.
+     * @return the keys of the trace.
+     */
+    public static PrimitiveIterator.OfLong zipf(long events, int keySpace, double skew, long seed) {
+        if (keySpace < 2) {
+            throw new IllegalArgumentException("keySpace must not be less than 2");
+        }
+        if (skew <= 0 || skew >= 1) {
+            throw new IllegalArgumentException("skew must be in the range (0, 1)");
+        }
+        IntSupplier keys = KeyDistribution.zipfian(keySpace, skew, new Random(seed));
+        return new GeneratedIterator(events) {
+            @Override
+            long generate(long index) {
+                return keys.getAsInt();
+            }
+        };
+    }
+
+    /**
+     * Returns a synthetic trace that requests keys 0 to {@code loopLength - 1} in order again and again. A recency
+     * based policy gets no hits at all if the loop is longer than the cache.
+     *
+     * @param events     the number of keys in the trace.
+     * @param loopLength the number of distinct keys in the loop.
+     * @return the keys of the trace.
+     */
+    public static PrimitiveIterator.OfLong loop(long events, int loopLength) {
+        if (loopLength < 1) {
+            throw new IllegalArgumentException("loopLength must not be less than 1");
+        }
+        return new GeneratedIterator(events) {
+            @Override
+            long generate(long index) {
+                return index % loopLength;
+            }
+        };
+    }
+
+    /**
+     * Returns a synthetic Zipf trace polluted by scans: after every {@code scanPeriod} Zipf keys follow
+     * {@code scanLength} keys requested only once, as if a full table scan ran between the regular lookups. A policy
+     * resistant to scans keeps the hot Zipf keys cached.
+     *
+     * @param events     the number of keys in the trace.
+     * @param keySpace   the number of distinct Zipf keys.
+     * @param skew       the skew of the Zipf distribution.
+     * @param scanPeriod the number of Zipf keys between two scans.
+     * @param scanLength the number of keys of a scan.
+     * @param seed       the seed of the random generator.
+     * @return the keys of the trace.
+     */
+    public static PrimitiveIterator.OfLong scanPollution(long events, int keySpace, double skew, int scanPeriod,
+                                                         int scanLength, long seed) {
+        if (scanPeriod < 1 || scanLength < 1) {
+            throw new IllegalArgumentException("scanPeriod and scanLength must not be less than 1");
+        }
+        PrimitiveIterator.OfLong hot = zipf(Long.MAX_VALUE, keySpace, skew, seed);
+        return new GeneratedIterator(events) {
+            private long scanned = keySpace;
+
+            @Override
+            long generate(long index) {
+                if (index % (scanPeriod + scanLength) < scanPeriod) {
+                    return hot.nextLong();
+                }
+                return scanned++;
+            }
+        };
+    }
+
+    /**
+     * Iterator that reads the next key ahead, so that {@link #hasNext()} knows whether there is one.
+     */
+    private abstract static class LookaheadIterator implements PrimitiveIterator.OfLong {
+
+        /**
+         * The key read ahead.
+         */
+        long next;
+
+        /**
+         * Whether {@link #next} holds a key not returned yet.
+         */
+        private boolean ready;
+
+        /**
+         * Whether the source is exhausted.
+         */
+        private boolean done;
+
+        /**
+         * Reads the next key into {@link #next}.
+         *
+         * @return {@code false} if there are no more keys.
+         * @throws IOException if the source can not be read.
+         */
+        abstract boolean readNext() throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if (!ready && !done) {
+                try {
+                    ready = readNext();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                done = !ready;
+            }
+            return ready;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            return next;
+        }
+    }
+
+    /**
+     * Iterator over a fixed number of generated keys.
+     */
+    private abstract static class GeneratedIterator implements PrimitiveIterator.OfLong {
+
+        /**
+         * The number of keys to generate.
+         */
+        private final long events;
+
+        /**
+         * The index of the next key.
+         */
+        private long index;
+
+        /**
+         * Constructs an iterator over the specified number of keys.
+         *
+         * @param events the number of keys to generate.
+         */
+        GeneratedIterator(long events) {
+            if (events < 0) {
+                throw new IllegalArgumentException("events must not be negative");
+            }
+            this.events = events;
+        }
+
+        /**
+         * Generates the key of the index.
+         *
+         * @param index the index of the key in the trace.
+         * @return the key.
+         */
+        abstract long generate(long index);
+
+        @Override
+        public boolean hasNext() {
+            return index < events;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return generate(index++);
+        }
+    }
+}
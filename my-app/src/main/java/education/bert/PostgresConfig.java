@@ -1,6 +1,15 @@
 package education.bert;
 
+/**
+ * Configuration of the database the tests and benchmarks run against.
+ */
 public class PostgresConfig {
+
+    /**
+     * The url of the database. It is taken from the {@code db.url} system property if set, e.g. to the in-memory H2
+     * database of the {@code h2} profile, otherwise it is the local PostgreSQL database.
+     */
 //    public final static String url = "jdbc:postgresql://192.168.99.100:32768/postgres?user=postgres";
-    public final static String url = "jdbc:postgresql://localhost:5432/travis_ci_test?user=postgres";
+    public final static String url = System.getProperty("db.url",
+            "jdbc:postgresql://localhost:5432/travis_ci_test?user=postgres");
 }
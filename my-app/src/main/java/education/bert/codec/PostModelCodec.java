@@ -0,0 +1,49 @@
+package education.bert.codec;
+
+import education.bert.ValueCodec;
+import education.bert.model.PostModel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec that stores posts in the off-heap cache as the id and the creator id followed by the UTF-8 post name.
+ */
+public class PostModelCodec implements ValueCodec<PostModel> {
+
+    /**
+     * Returns the number of bytes needed to encode the post.
+     *
+     * @param post the post to be encoded.
+     * @return the size of the encoded post in bytes.
+     */
+    @Override
+    public int encodedSize(PostModel post) {
+        return 8 + ValueCodec.stringSize(post.getPostName());
+    }
+
+    /**
+     * Writes the post into the buffer.
+     *
+     * @param post   the post to be encoded.
+     * @param buffer the buffer to write to.
+     */
+    @Override
+    public void encode(PostModel post, ByteBuffer buffer) {
+        buffer.putInt(post.getId());
+        buffer.putInt(post.getCreatorId());
+        ValueCodec.putString(buffer, post.getPostName());
+    }
+
+    /**
+     * Reads a post from the buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return the decoded post.
+     */
+    @Override
+    public PostModel decode(ByteBuffer buffer) {
+        int id = buffer.getInt();
+        int creatorId = buffer.getInt();
+        return new PostModel(id, ValueCodec.getString(buffer), creatorId);
+    }
+}
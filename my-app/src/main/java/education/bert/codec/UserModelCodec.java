@@ -0,0 +1,47 @@
+package education.bert.codec;
+
+import education.bert.ValueCodec;
+import education.bert.model.UserModel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec that stores users in the off-heap cache as the id followed by the UTF-8 name.
+ */
+public class UserModelCodec implements ValueCodec<UserModel> {
+
+    /**
+     * Returns the number of bytes needed to encode the user.
+     *
+     * @param user the user to be encoded.
+     * @return the size of the encoded user in bytes.
+     */
+    @Override
+    public int encodedSize(UserModel user) {
+        return 4 + ValueCodec.stringSize(user.getName());
+    }
+
+    /**
+     * Writes the user into the buffer.
+     *
+     * @param user   the user to be encoded.
+     * @param buffer the buffer to write to.
+     */
+    @Override
+    public void encode(UserModel user, ByteBuffer buffer) {
+        buffer.putInt(user.getId());
+        ValueCodec.putString(buffer, user.getName());
+    }
+
+    /**
+     * Reads a user from the buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return the decoded user.
+     */
+    @Override
+    public UserModel decode(ByteBuffer buffer) {
+        int id = buffer.getInt();
+        return new UserModel(id, ValueCodec.getString(buffer));
+    }
+}
@@ -0,0 +1,271 @@
+package education.bert.service;
+
+import education.bert.model.PostModel;
+import education.bert.model.UserModel;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade of {@link ForumService}. No more queries run at a time than there are connections in the pool of
+ * the service, so any number of callers can have queries in flight without a platform thread of their own per query.
+ * If the runtime supports virtual threads, every call gets a new virtual thread that waits for a permit of a semaphore
+ * sized to the pool. Otherwise the calls run on a fixed pool of platform threads of that size.
+ */
+public class AsyncForumService implements AutoCloseable {
+
+    /**
+     * The minimal number of queries running at a time.
+     */
+    public static final int minimalThreads = 1;
+
+    /**
+     * The number of created platform threads, used to name them.
+     */
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    /**
+     * The service that runs the queries.
+     */
+    private final ForumService service;
+
+    /**
+     * The executor that runs the queries.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The permits of the queries running at a time. They only matter for virtual threads, since the fixed pool has no
+     * more threads than permits.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Constructs an asynchronous facade of the service running at most the specified number of queries at a time.
+     *
+     * @param service the service that runs the queries. It is not closed by this facade.
+     * @param threads the maximum number of queries running at a time.
+     */
+    public AsyncForumService(ForumService service, int threads) {
+        if (service == null) {
+            throw new NullPointerException();
+        }
+        if (threads < minimalThreads) {
+            throw new IllegalArgumentException("threads must not be less than minimalThreads (" + minimalThreads +
+                    ")");
+        }
+        this.service = service;
+        permits = new Semaphore(threads);
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+        executor = virtualThreads != null ? virtualThreads : Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "async-forum-service-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Constructs an asynchronous facade of the service running at most as many queries at a time as its connection pool
+     * has connections.
+     *
+     * @param service the service that runs the queries. Its DB url must be set. It is not closed by this facade.
+     */
+    public AsyncForumService(ForumService service) {
+        this(service, service.getConnectionPool().getMaxPoolSize());
+    }
+
+    /**
+     * Returns the executor starting a new virtual thread for every task if the runtime supports virtual threads.
+     *
+     * @return the executor of virtual threads, or {@code null} if the runtime does not support them.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the call on the executor once a permit is available.
+     *
+     * @param call the blocking call of the service.
+     * @param <V>  the type of the result of the call.
+     * @return the future completed with the result of the call, or exceptionally with its exception.
+     */
+    protected <V> CompletableFuture<V> supplyAsync(Supplier<V> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                return call.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * Asynchronously adds specified user to DB if {@code user.getId() == 0}, otherwise updates existing user.
+     *
+     * @param user user to be added or updated.
+     * @return the future of either (1) the same user with updated id or (2) {@code null} if there is no user to update
+     * in the database.
+     * @see ForumService#saveUser(UserModel)
+     */
+    public CompletableFuture<UserModel> saveUser(UserModel user) {
+        return supplyAsync(() -> service.saveUser(user));
+    }
+
+    /**
+     * Asynchronously adds the users with {@code id == 0} to DB and updates the other users in a single transaction.
+     *
+     * @param users users to be added or updated.
+     * @return the future of the saved users.
+     * @see ForumService#saveUsers(Collection)
+     */
+    public CompletableFuture<List<UserModel>> saveUsers(Collection<UserModel> users) {
+        return supplyAsync(() -> service.saveUsers(users));
+    }
+
+    /**
+     * Asynchronously returns user with specified id.
+     *
+     * @param id id by which user is to be returned.
+     * @return the future of user with specified id.
+     * @see ForumService#getUser(int)
+     */
+    public CompletableFuture<UserModel> getUser(int id) {
+        return supplyAsync(() -> service.getUser(id));
+    }
+
+    /**
+     * Asynchronously returns users with specified ids.
+     *
+     * @param ids ids by which users are to be returned.
+     * @return the future of users with specified ids by their ids.
+     * @see ForumService#getUsers(int[])
+     */
+    public CompletableFuture<Map<Integer, UserModel>> getUsers(int[] ids) {
+        return supplyAsync(() -> service.getUsers(ids));
+    }
+
+    /**
+     * Asynchronously removes user with specified id from DB.
+     *
+     * @param id id by which user is to be removed.
+     * @return the future of {@code true} if the user is successfully removed, otherwise {@code false}.
+     * @see ForumService#removeUser(int)
+     */
+    public CompletableFuture<Boolean> removeUser(int id) {
+        return supplyAsync(() -> service.removeUser(id));
+    }
+
+    /**
+     * Asynchronously returns the total number of users.
+     *
+     * @return the future of the total number of users.
+     * @see ForumService#getUsersCount()
+     */
+    public CompletableFuture<Integer> getUsersCount() {
+        return supplyAsync(service::getUsersCount);
+    }
+
+    /**
+     * Asynchronously adds specified post to DB if {@code post.getId() == 0}, otherwise updates existing post.
+     *
+     * @param post post to be added or updated.
+     * @return the future of either (1) the same post with updated id or (2) {@code null} if there is no post to update
+     * in the database.
+     * @see ForumService#savePost(PostModel)
+     */
+    public CompletableFuture<PostModel> savePost(PostModel post) {
+        return supplyAsync(() -> service.savePost(post));
+    }
+
+    /**
+     * Asynchronously adds the posts with {@code id == 0} to DB and updates the other posts in a single transaction.
+     *
+     * @param posts posts to be added or updated.
+     * @return the future of the saved posts.
+     * @see ForumService#savePosts(Collection)
+     */
+    public CompletableFuture<List<PostModel>> savePosts(Collection<PostModel> posts) {
+        return supplyAsync(() -> service.savePosts(posts));
+    }
+
+    /**
+     * Asynchronously returns post with specified id.
+     *
+     * @param id id by which post is to be returned.
+     * @return the future of post with specified id.
+     * @see ForumService#getPost(int)
+     */
+    public CompletableFuture<PostModel> getPost(int id) {
+        return supplyAsync(() -> service.getPost(id));
+    }
+
+    /**
+     * Asynchronously returns posts with specified ids.
+     *
+     * @param ids ids by which posts are to be returned.
+     * @return the future of posts with specified ids by their ids.
+     * @see ForumService#getPosts(int[])
+     */
+    public CompletableFuture<Map<Integer, PostModel>> getPosts(int[] ids) {
+        return supplyAsync(() -> service.getPosts(ids));
+    }
+
+    /**
+     * Asynchronously removes post with specified id from DB.
+     *
+     * @param id id by which post is to be removed.
+     * @return the future of {@code true} if the post is successfully removed, otherwise {@code false}.
+     * @see ForumService#removePost(int)
+     */
+    public CompletableFuture<Boolean> removePost(int id) {
+        return supplyAsync(() -> service.removePost(id));
+    }
+
+    /**
+     * Asynchronously returns the total number of posts.
+     *
+     * @return the future of the total number of posts.
+     * @see ForumService#getPostsCount()
+     */
+    public CompletableFuture<Integer> getPostsCount() {
+        return supplyAsync(service::getPostsCount);
+    }
+
+    /**
+     * Asynchronously returns the number of posts for specified creator.
+     *
+     * @param creatorId id of the creator whose posts are to be counted.
+     * @return the future of the number of posts for the creator.
+     * @see ForumService#getPostsCountForCreator(int)
+     */
+    public CompletableFuture<Integer> getPostsCountForCreator(int creatorId) {
+        return supplyAsync(() -> service.getPostsCountForCreator(creatorId));
+    }
+
+    /**
+     * Stops accepting new calls and waits for the calls in flight to complete. The service is not closed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package education.bert.service;
+
+import education.bert.Int2ObjectCache;
+import education.bert.ValueCodec;
+import education.bert.codec.PostModelCodec;
+import education.bert.codec.UserModelCodec;
+import education.bert.model.PostModel;
+import education.bert.model.UserModel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Snapshot of the users and posts caches in a local file, so that a restarted service can warm up its caches instead
+ * of sending the full miss load to the database. The items are listed from the most to the least recently used one,
+ * either with their values or as ids only.
+ * <p>
+ * The file starts with a magic number, the format version and a flag telling whether the values are included. Each
+ * item is a record of the query family byte and the id, followed by the length and the bytes of the value encoded by
+ * its codec if the values are included. A zero family byte ends the file, so a truncated file is detected. The file is
+ * written by streaming the items into a temporary file, which then replaces the previous snapshot, and is read back
+ * memory-mapped. Only the ids and values of the items that fit into the caches are decoded, the records of the others
+ * are skipped.
+ */
+class CacheSnapshot {
+
+    /**
+     * The first bytes of a snapshot file.
+     */
+    private static final int magic = 0x46534E50;
+
+    /**
+     * The version of the format.
+     */
+    private static final int version = 1;
+
+    /**
+     * The family byte that ends the file.
+     */
+    private static final byte endFamily = 0;
+
+    /**
+     * The family byte of a user record.
+     */
+    private static final byte usersFamily = 1;
+
+    /**
+     * The family byte of a post record.
+     */
+    private static final byte postsFamily = 2;
+
+    /**
+     * The codec of the users.
+     */
+    private static final ValueCodec<UserModel> userCodec = new UserModelCodec();
+
+    /**
+     * The codec of the posts.
+     */
+    private static final ValueCodec<PostModel> postCodec = new PostModelCodec();
+
+    /**
+     * The users of the snapshot.
+     */
+    private final Family<UserModel> users;
+
+    /**
+     * The posts of the snapshot.
+     */
+    private final Family<PostModel> posts;
+
+    /**
+     * Whether the snapshot includes the values.
+     */
+    private final boolean withValues;
+
+    /**
+     * Constructs a snapshot by reading it from the buffer.
+     *
+     * @param buffer   the contents of the snapshot file.
+     * @param maxUsers the maximum number of users read.
+     * @param maxPosts the maximum number of posts read.
+     * @throws IOException if the buffer does not contain a snapshot.
+     */
+    private CacheSnapshot(ByteBuffer buffer, int maxUsers, int maxPosts) throws IOException {
+        if (buffer.getInt() != magic || buffer.getInt() != version) {
+            throw new IOException("not a cache snapshot of version " + version);
+        }
+        withValues = buffer.get() != 0;
+        users = new Family<>(maxUsers, withValues);
+        posts = new Family<>(maxPosts, withValues);
+        while (true) {
+            byte family = buffer.get();
+            if (family == endFamily) {
+                return;
+            } else if (family == usersFamily) {
+                users.read(buffer, withValues ? userCodec : null);
+            } else if (family == postsFamily) {
+                posts.read(buffer, withValues ? postCodec : null);
+            } else {
+                throw new IOException("unknown query family " + family);
+            }
+        }
+    }
+
+    /**
+     * Reads the most recently used items of the snapshot from the file mapped into memory. The records of the other
+     * items are skipped without decoding them.
+     *
+     * @param file     the snapshot file.
+     * @param maxUsers the maximum number of users read, e.g. the size of their cache.
+     * @param maxPosts the maximum number of posts read, e.g. the size of their cache.
+     * @return the read snapshot.
+     * @throws IOException if the file can not be read or does not contain a complete snapshot.
+     */
+    static CacheSnapshot read(Path file, int maxUsers, int maxPosts) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("cache snapshot is too large: " + file);
+            }
+            try {
+                return new CacheSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), maxUsers,
+                        maxPosts);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("cache snapshot is truncated: " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot of the caches to the file. The items are streamed into a temporary file next to it, which
+     * replaces the file once complete, so a failed write leaves the previous snapshot intact.
+     *
+     * @param file       the snapshot file.
+     * @param usersCache the cache of users.
+     * @param postsCache the cache of posts.
+     * @param withValues whether the values are written, otherwise only the ids.
+     * @throws IOException if the file can not be written.
+     */
+    static void write(Path file, Int2ObjectCache<UserModel> usersCache, Int2ObjectCache<PostModel> postsCache,
+                      boolean withValues) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeBoolean(withValues);
+            writeFamily(out, usersFamily, usersCache, withValues ? userCodec : null);
+            writeFamily(out, postsFamily, postsCache, withValues ? postCodec : null);
+            out.writeByte(endFamily);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a record for each item of the cache from the most to the least recently used one.
+     *
+     * @param out    the stream to write to.
+     * @param family the family byte of the records.
+     * @param cache  the cache of the family.
+     * @param codec  the codec of the values, or {@code null} if only the ids are written.
+     * @param <V>    the type of values.
+     * @throws IOException if the stream can not be written.
+     */
+    private static <V> void writeFamily(DataOutputStream out, byte family, Int2ObjectCache<V> cache,
+                                        ValueCodec<V> codec) throws IOException {
+        ByteBuffer[] encoded = {ByteBuffer.allocate(256)};
+        try {
+            cache.forEachByRecency((value, id) -> {
+                try {
+                    out.writeByte(family);
+                    out.writeInt(id);
+                    if (codec != null) {
+                        int size = codec.encodedSize(value);
+                        if (encoded[0].capacity() < size) {
+                            encoded[0] = ByteBuffer.allocate(Math.max(size, 2 * encoded[0].capacity()));
+                        }
+                        encoded[0].clear();
+                        codec.encode(value, encoded[0]);
+                        out.writeInt(size);
+                        out.write(encoded[0].array(), 0, size);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns whether the snapshot includes the values.
+     *
+     * @return {@code true} if the values are included, {@code false} if only the ids are.
+     */
+    boolean hasValues() {
+        return withValues;
+    }
+
+    /**
+     * Returns the users of the snapshot.
+     *
+     * @return the users from the most to the least recently used one.
+     */
+    Family<UserModel> users() {
+        return users;
+    }
+
+    /**
+     * Returns the posts of the snapshot.
+     *
+     * @return the posts from the most to the least recently used one.
+     */
+    Family<PostModel> posts() {
+        return posts;
+    }
+
+    /**
+     * The most recently used items of a query family from the most to the least recently used one.
+     *
+     * @param <V> the type of values.
+     */
+    static class Family<V> {
+
+        /**
+         * The ids of the items by index, as many as can be read.
+         */
+        private final int[] ids;
+
+        /**
+         * The values of the items by index, or {@code null} if the values are not included.
+         */
+        private final Object[] values;
+
+        /**
+         * The number of items read.
+         */
+        private int size;
+
+        /**
+         * Constructs an empty family.
+         *
+         * @param capacity   the maximum number of items read.
+         * @param withValues whether the values are included.
+         */
+        private Family(int capacity, boolean withValues) {
+            ids = new int[capacity];
+            values = withValues ? new Object[capacity] : null;
+        }
+
+        /**
+         * Reads a record from the buffer positioned after its family byte. Once the family is full, the record is
+         * skipped without decoding the value.
+         *
+         * @param buffer the buffer to read from.
+         * @param codec  the codec of the values, or {@code null} if the record has only the id.
+         */
+        private void read(ByteBuffer buffer, ValueCodec<V> codec) {
+            int id = buffer.getInt();
+            boolean full = size == ids.length;
+            if (codec != null) {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                if (length < 0 || end > buffer.limit()) {
+                    throw new BufferUnderflowException();
+                }
+                if (!full) {
+                    values[size] = codec.decode(buffer);
+                }
+                buffer.position(end);
+            }
+            if (!full) {
+                ids[size++] = id;
+            }
+        }
+
+        /**
+         * Returns the number of items.
+         *
+         * @return the number of items.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the id of the item.
+         *
+         * @param index the index of the item, 0 for the most recently used one.
+         * @return the id of the item.
+         */
+        int id(int index) {
+            return ids[index];
+        }
+
+        /**
+         * Returns the value of the item.
+         *
+         * @param index the index of the item, 0 for the most recently used one.
+         * @return the value of the item.
+         */
+        @SuppressWarnings("unchecked")
+        V value(int index) {
+            return (V) values[index];
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package education.bert.service;
+
+import education.bert.model.PostModel;
+import education.bert.model.UserModel;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous facade of {@link CachedForumService}. Cache hits of users, posts and counts are completed synchronously
+ * in the calling thread, only the misses are handed over to the executor.
+ */
+public class CachedAsyncForumService extends AsyncForumService {
+
+    /**
+     * The cached service that runs the queries.
+     */
+    private final CachedForumService service;
+
+    /**
+     * Constructs an asynchronous facade of the cached service running at most the specified number of queries at a
+     * time.
+     *
+     * @param service the cached service that runs the queries. It is not closed by this facade.
+     * @param threads the maximum number of queries running at a time.
+     */
+    public CachedAsyncForumService(CachedForumService service, int threads) {
+        super(service, threads);
+        this.service = service;
+    }
+
+    /**
+     * Constructs an asynchronous facade of the cached service running at most as many queries at a time as its
+     * connection pool has connections.
+     *
+     * @param service the cached service that runs the queries. Its DB url must be set. It is not closed by this
+     *                facade.
+     */
+    public CachedAsyncForumService(CachedForumService service) {
+        super(service);
+        this.service = service;
+    }
+
+    /**
+     * Returns user with specified id, completed immediately if it is cached.
+     *
+     * @param id id by which user is to be returned.
+     * @return the future of user with specified id.
+     */
+    @Override
+    public CompletableFuture<UserModel> getUser(int id) {
+        UserModel user = service.getUserIfCached(id);
+        return user != null ? CompletableFuture.completedFuture(user) : super.getUser(id);
+    }
+
+    /**
+     * Returns post with specified id, completed immediately if it is cached.
+     *
+     * @param id id by which post is to be returned.
+     * @return the future of post with specified id.
+     */
+    @Override
+    public CompletableFuture<PostModel> getPost(int id) {
+        PostModel post = service.getPostIfCached(id);
+        return post != null ? CompletableFuture.completedFuture(post) : super.getPost(id);
+    }
+
+    /**
+     * Returns the total number of users, completed immediately if it is cached.
+     *
+     * @return the future of the total number of users.
+     */
+    @Override
+    public CompletableFuture<Integer> getUsersCount() {
+        Integer count = service.getUsersCountIfCached();
+        return count != null ? CompletableFuture.completedFuture(count) : super.getUsersCount();
+    }
+
+    /**
+     * Returns the total number of posts, completed immediately if it is cached.
+     *
+     * @return the future of the total number of posts.
+     */
+    @Override
+    public CompletableFuture<Integer> getPostsCount() {
+        Integer count = service.getPostsCountIfCached();
+        return count != null ? CompletableFuture.completedFuture(count) : super.getPostsCount();
+    }
+
+    /**
+     * Returns the number of posts for specified creator id, completed immediately if it is cached.
+     *
+     * @param creatorId creator id for which number of posts is to be returned.
+     * @return the future of the number of posts for specified creator id.
+     */
+    @Override
+    public CompletableFuture<Integer> getPostsCountForCreator(int creatorId) {
+        Integer count = service.getPostsCountForCreatorIfCached(creatorId);
+        return count != null ? CompletableFuture.completedFuture(count) : super.getPostsCountForCreator(creatorId);
+    }
+}
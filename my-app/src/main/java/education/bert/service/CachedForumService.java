@@ -1,10 +1,48 @@
 package education.bert.service;
 
-import education.bert.Cache;
-import education.bert.CacheLinkedMapImpl;
+import education.bert.CacheExpiringImpl;
+import education.bert.CacheStats;
+import education.bert.CacheStatsJmx;
+import education.bert.ConcurrentStatsCounter;
+import education.bert.Int2IntCache;
+import education.bert.Int2ObjectCache;
+import education.bert.StatsCounter;
+import education.bert.exception.DataAccessException;
 import education.bert.model.PostModel;
 import education.bert.model.UserModel;
 
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
 /**
  * Service class that provides read/write data from/to the database using cache-api. This service implements a
  * simplified model of an internet forum or social network.
@@ -12,32 +50,695 @@ import education.bert.model.UserModel;
 public class CachedForumService extends ForumService {
 
     /**
-     * Cache that stores string requests and objects received from the database.
+     * Cache that stores users received from the database by id.
+     */
+    private Int2ObjectCache<UserModel> usersCache;
+
+    /**
+     * Cache that stores posts received from the database by id.
+     */
+    private Int2ObjectCache<PostModel> postsCache;
+
+    /**
+     * Cache that stores the numbers of posts received from the database by creator id. The cached numbers are
+     * maintained by the writes of this service.
+     */
+    private Int2IntCache postsCountForCreatorCache;
+
+    /**
+     * Cache that stores the total numbers of users and posts received from the database by {@link CountQuery} ordinal.
+     * The cached numbers are maintained by the writes of this service.
+     */
+    private Int2IntCache countsCache;
+
+    /**
+     * The default maximum number of missing ids cached per query family.
+     */
+    public static final int defaultNegativeCacheSize = 1000;
+
+    /**
+     * The default time in milliseconds after which a cached missing id expires.
+     */
+    public static final long defaultNegativeTtlMillis = 5000;
+
+    /**
+     * Cache of the ids of users that do not exist in the database.
+     */
+    private NegativeCache missingUsers;
+
+    /**
+     * Cache of the ids of posts that do not exist in the database.
+     */
+    private NegativeCache missingPosts;
+
+    /**
+     * The maximum number of missing ids cached per query family.
+     */
+    private int negativeCacheSize = defaultNegativeCacheSize;
+
+    /**
+     * The time in milliseconds after which a cached missing id expires.
+     */
+    private long negativeTtlMillis = defaultNegativeTtlMillis;
+
+    /**
+     * The number of locks that order the writes of the same ids.
+     */
+    private static final int writeLockStripes = 64;
+
+    /**
+     * The locks by id stripe that order the database writes and cache updates of the same ids.
+     */
+    private final Lock[] writeLocks = new Lock[writeLockStripes];
+
+    {
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Whether the written users and posts are put into the cache instead of being invalidated.
+     */
+    private volatile boolean writeThrough;
+
+    /**
+     * Pending updates of users in the write-behind mode, otherwise {@code null}.
+     */
+    private volatile WriteBehindQueue<UserModel> userWrites;
+
+    /**
+     * Pending updates of posts in the write-behind mode, otherwise {@code null}.
      */
-    private Cache<String, Object> cache;
+    private volatile WriteBehindQueue<PostModel> postWrites;
 
     /**
-     * Creates empty DB tables and new cache with default maximum cache size.
+     * The executor that runs the background tasks, i.e. the flushes of the write-behind mode and the reconciliations of
+     * the counts, or {@code null} if none has been scheduled.
+     */
+    private ScheduledExecutorService maintenance;
+
+    /**
+     * The scheduled reconciliation of the cached counts, or {@code null} if none has been scheduled. Guarded by
+     * {@code this}.
+     */
+    private ScheduledFuture<?> countsReconciliation;
+
+    /**
+     * The number of instances created so far, which numbers the names of their statistics MBeans.
+     */
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    /**
+     * The name of this instance qualifying the names of its statistics MBeans, so instances do not replace each
+     * other's ones.
+     */
+    private final String instanceName = CachedForumService.class.getSimpleName() + "-" + instances.incrementAndGet();
+
+    /**
+     * The names of the statistics MBeans registered by the current caches, guarded by {@code this}.
+     */
+    private final List<ObjectName> statsNames = new ArrayList<>();
+
+    /**
+     * The number of ids prefetched from DB by a single query when a snapshot without values is restored.
+     */
+    private static final int snapshotBatchSize = 100;
+
+    /**
+     * The file the snapshots are written to periodically and on close, or {@code null} if none have been scheduled.
+     */
+    private volatile Path snapshotFile;
+
+    /**
+     * Whether the scheduled snapshots include the values.
+     */
+    private volatile boolean snapshotWithValues;
+
+    /**
+     * Loads a user from DB on a cache miss. Loaders are kept in fields and the id caches have primitive keys, so a
+     * cache hit does not allocate at all.
+     */
+    private final IntFunction<UserModel> userLoader = id -> {
+        UserModel pending = userWrites != null ? userWrites.get(id) : null;
+        if (pending != null) {
+            return pending;
+        }
+        NegativeCache missing = missingUsers;
+        if (missing.contains(id)) {
+            return null;
+        }
+        long epoch = missing.epoch(id);
+        UserModel user = super.getUser(id);
+        if (user == null) {
+            missing.add(id, epoch);
+        }
+        return user;
+    };
+
+    /**
+     * Loads the missing users of a bulk get from DB with a single query.
+     */
+    private final Function<int[], Map<Integer, UserModel>> usersLoader = ids -> withPending(
+            loadAll(ids, missingUsers, super::getUsers), ids, userWrites);
+
+    /**
+     * Loads a post from DB on a cache miss.
+     */
+    private final IntFunction<PostModel> postLoader = id -> {
+        PostModel pending = postWrites != null ? postWrites.get(id) : null;
+        if (pending != null) {
+            return pending;
+        }
+        NegativeCache missing = missingPosts;
+        if (missing.contains(id)) {
+            return null;
+        }
+        long epoch = missing.epoch(id);
+        PostModel post = super.getPost(id);
+        if (post == null) {
+            missing.add(id, epoch);
+        }
+        return post;
+    };
+
+    /**
+     * Loads the missing posts of a bulk get from DB with a single query.
+     */
+    private final Function<int[], Map<Integer, PostModel>> postsLoader = ids -> withPending(
+            loadAll(ids, missingPosts, super::getPosts), ids, postWrites);
+
+    /**
+     * Loads the number of posts for a creator from DB on a cache miss.
+     */
+    private final IntUnaryOperator postsCountForCreatorLoader = id -> super.getPostsCountForCreator(id);
+
+    /**
+     * Loads the total number of users or posts from DB on a cache miss.
+     */
+    private final IntUnaryOperator countLoader = query ->
+            query == CountQuery.USERS_COUNT.ordinal() ? super.getUsersCount() : super.getPostsCount();
+
+    /**
+     * Creates empty DB tables and new caches with default maximum cache size.
      */
     @Override
     public void setup() {
-        cache = new CacheLinkedMapImpl<>();
-        super.setup();
+        setup(Int2ObjectCache.defaultCacheSize);
     }
 
     /**
-     * Creates empty DB tables and new cache with specified maximum cache size.
+     * Creates empty DB tables and new caches with specified maximum cache size. Each query family (users, posts and
+     * posts counts by creator) gets its own cache of this size. Statistics are not recorded.
      *
      * @param maxCacheSize the maximum cache size.
      */
     public void setup(int maxCacheSize) {
-        cache = new CacheLinkedMapImpl<>(maxCacheSize);
+        setup(maxCacheSize, false);
+    }
+
+    /**
+     * Creates empty DB tables and new caches with specified maximum cache size. If statistics are recorded, they are
+     * available via {@link #getCacheStats()} and registered as JMX MBeans named after this instance and the query
+     * families. The MBeans of the previous caches are unregistered.
+     *
+     * @param maxCacheSize the maximum cache size.
+     * @param recordStats  whether statistics of the caches are recorded.
+     */
+    public void setup(int maxCacheSize, boolean recordStats) {
+        unregisterStats();
+        usersCache = new Int2ObjectCache<>(maxCacheSize, newStatsCounter("users", recordStats));
+        postsCache = new Int2ObjectCache<>(maxCacheSize, newStatsCounter("posts", recordStats));
+        postsCountForCreatorCache = new Int2IntCache(maxCacheSize,
+                newStatsCounter("postsCountForCreator", recordStats));
+        countsCache = new Int2IntCache(CountQuery.values().length, newStatsCounter("counts", recordStats));
+        missingUsers = new NegativeCache(negativeCacheSize, negativeTtlMillis, TimeUnit.MILLISECONDS);
+        missingPosts = new NegativeCache(negativeCacheSize, negativeTtlMillis, TimeUnit.MILLISECONDS);
+        if (userWrites != null) {
+            userWrites.clear();
+            postWrites.clear();
+        }
         super.setup();
     }
 
+    /**
+     * Sets the size budget and the expiration time of the caches of missing users and posts. A lookup of an id that
+     * does not exist in the database caches the id, so repeated lookups of it do not query DB until it expires or the
+     * row is added by this service. The missing ids are cached apart from the existing rows, so they can not push them
+     * out. Takes effect on the next {@link #setup(int, boolean)}.
+     *
+     * @param maxCacheSize the maximum number of missing ids cached per query family.
+     * @param ttl          the duration after the lookup when a missing id expires.
+     * @param unit         the unit of the duration.
+     */
+    public void setNegativeCaching(int maxCacheSize, long ttl, TimeUnit unit) {
+        if (maxCacheSize < CacheExpiringImpl.minimalCacheSize) {
+            throw new IllegalArgumentException("maxCacheSize must not be less than minimalCacheSize (" +
+                    CacheExpiringImpl.minimalCacheSize + ")");
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        negativeCacheSize = maxCacheSize;
+        negativeTtlMillis = Math.max(1, unit.toMillis(ttl));
+    }
+
+    /**
+     * Enables or disables the write-through mode. In this mode the users and posts returned by successful saves are put
+     * into the cache instead of being invalidated, so reading them right after a write does not miss. The database
+     * write and the cache update of an id are done under a lock of its stripe, so concurrent writes of the same id
+     * reach the cache in the order they reach DB. A put cancels the caching of a load of the id in flight, so a slower
+     * concurrent read of the older row can not overwrite the written one either.
+     *
+     * @param writeThrough whether the write-through mode is enabled.
+     */
+    public void setWriteThrough(boolean writeThrough) {
+        this.writeThrough = writeThrough;
+    }
+
+    /**
+     * Runs the write of the ids under the locks of their stripes, so that it sees the rows and cached values of the ids
+     * as left by the previous write of them. The locks are taken in the order of the stripes, so concurrent batches can
+     * not deadlock.
+     *
+     * @param ids   the ids to be written, 0 for the ones to be added.
+     * @param write the database write and the cache update.
+     * @param <V>   the type of the result of the write.
+     * @return the result of the write.
+     */
+    private <V> V withWriteLocks(IntStream ids, Supplier<V> write) {
+        int[] stripes = ids.filter(id -> id != 0)
+                .map(id -> (id & Integer.MAX_VALUE) % writeLockStripes)
+                .distinct()
+                .sorted()
+                .toArray();
+        for (int stripe : stripes) {
+            writeLocks[stripe].lock();
+        }
+        try {
+            return write.get();
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                writeLocks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Puts the saved user into the cache in the write-through mode, otherwise invalidates the updated user. Either way
+     * the id of an added user is no longer cached as missing. An update can not add a row, so it invalidates no missing
+     * id.
+     *
+     * @param id    the id of the user before the save, 0 for an added user.
+     * @param saved the saved user.
+     */
+    private void updateCachedUser(int id, UserModel saved) {
+        if (id == 0) {
+            missingUsers.invalidate(saved.getId());
+        }
+        if (writeThrough) {
+            usersCache.put(saved.getId(), new UserModel(saved.getId(), saved.getName()));
+        } else if (id != 0) {
+            usersCache.remove(id);
+        }
+    }
+
+    /**
+     * Puts the saved post into the cache in the write-through mode, otherwise invalidates the updated post. Either way
+     * the id of an added post is no longer cached as missing. An update can not add a row, so it invalidates no missing
+     * id.
+     *
+     * @param id    the id of the post before the save, 0 for an added post.
+     * @param saved the saved post.
+     */
+    private void updateCachedPost(int id, PostModel saved) {
+        if (id == 0) {
+            missingPosts.invalidate(saved.getId());
+        }
+        if (writeThrough) {
+            postsCache.put(saved.getId(), new PostModel(saved.getId(), saved.getPostName(), saved.getCreatorId()));
+        } else if (id != 0) {
+            postsCache.remove(id);
+        }
+    }
+
+    /**
+     * Enables the write-behind mode. Updates of existing users and posts are then put into the cache immediately and
+     * queued instead of being written to DB. Repeated updates of the same id collapse into one. A background thread
+     * writes the queued updates in batches at least every {@code maxDelay}, and {@link #close()} flushes the remaining
+     * ones. Since an update is not checked against DB, it returns the updated user or post even if there is no row to
+     * update; such an update is dropped from the cache when it is flushed. Additions and removals remain synchronous.
+     *
+     * @param maxDelay the maximum time an update waits in the queue before it is written.
+     * @param unit     the time unit of the delay.
+     */
+    public void enableWriteBehind(long maxDelay, TimeUnit unit) {
+        if (maxDelay <= 0) {
+            throw new IllegalArgumentException("maxDelay must be positive");
+        }
+        if (userWrites != null) {
+            throw new IllegalStateException("write-behind is already enabled");
+        }
+        userWrites = new WriteBehindQueue<>(UserModel::getId, super::saveUsers);
+        postWrites = new WriteBehindQueue<>(PostModel::getId, this::flushPosts);
+        // A failed flush leaves the updates queued, so they are retried by the next one.
+        schedule(this::flushWrites, maxDelay, unit);
+    }
+
+    /**
+     * Schedules the reconciliation of the cached counts with DB instead of the previously scheduled one, see
+     * {@link #reconcileCounts()}. The cached counts are kept up to date by the writes of this service, so a
+     * reconciliation only matters if the database is also written by others. No reconciliation is scheduled unless
+     * requested, and the first one starts the maintenance thread.
+     *
+     * @param period the time between two reconciliations.
+     * @param unit   the time unit of the period.
+     */
+    public synchronized void scheduleCountsReconciliation(long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        if (countsReconciliation != null) {
+            countsReconciliation.cancel(false);
+        }
+        countsReconciliation = schedule(this::reconcileCounts, period, unit);
+    }
+
+    /**
+     * Reloads the cached counts from DB in place, one query per cached count, while the cached numbers stay readable. A
+     * count that is being changed by a write of this service during its reload keeps the cached number, which already
+     * includes the change, see {@link Int2IntCache#refresh(int, IntUnaryOperator)}.
+     */
+    public void reconcileCounts() {
+        for (int query : countsCache.keysByRecency()) {
+            countsCache.refresh(query, countLoader);
+        }
+        for (int creatorId : postsCountForCreatorCache.keysByRecency()) {
+            postsCountForCreatorCache.refresh(creatorId, postsCountForCreatorLoader);
+        }
+    }
+
+    /**
+     * Writes the hot users and posts to the file, from the most to the least recently used one as approximated by the
+     * CLOCK policy of the caches, so that a restarted service can warm up its caches with
+     * {@link #restoreSnapshot(Path, int)}. The file is written by streaming the items into a temporary file, which then
+     * replaces the previous snapshot.
+     *
+     * @param file       the snapshot file.
+     * @param withValues whether the values are written, which makes the restore need no queries, otherwise only the
+     *                   ids.
+     * @throws UncheckedIOException if the file can not be written.
+     */
+    public void saveSnapshot(Path file, boolean withValues) {
+        try {
+            CacheSnapshot.write(file, usersCache, postsCache, withValues);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Schedules writing the snapshot of the caches to the file, see {@link #saveSnapshot(Path, boolean)}. The snapshot
+     * is also written by {@link #close()}, so the next start gets the caches as they were on shutdown.
+     *
+     * @param file       the snapshot file.
+     * @param withValues whether the values are written, otherwise only the ids.
+     * @param period     the time between two snapshots.
+     * @param unit       the time unit of the period.
+     */
+    public void scheduleSnapshots(Path file, boolean withValues, long period, TimeUnit unit) {
+        if (file == null) {
+            throw new NullPointerException();
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        snapshotWithValues = withValues;
+        snapshotFile = file;
+        schedule(() -> saveSnapshot(file, withValues), period, unit);
+    }
+
+    /**
+     * Warms up the caches from the snapshot written by {@link #saveSnapshot(Path, boolean)}. Should be invoked after
+     * {@link #setup(int, boolean)}, before the service takes requests. Only the most recently used items that fit into
+     * the caches are restored. The values of a snapshot that includes them are cached as they were when it was written,
+     * without querying DB. Otherwise the items are prefetched from DB in batches by parallel queries, the most recently
+     * used ones first.
+     *
+     * @param file        the snapshot file.
+     * @param parallelism the number of queries run in parallel.
+     * @return {@code true} if the snapshot has been restored, {@code false} if the file does not exist.
+     * @throws UncheckedIOException if the file can not be read or does not contain a complete snapshot.
+     * @throws DataAccessException  if the items can not be prefetched.
+     */
+    public boolean restoreSnapshot(Path file, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (!Files.exists(file)) {
+            return false;
+        }
+        CacheSnapshot snapshot;
+        try {
+            snapshot = CacheSnapshot.read(file, usersCache.getMaxCacheSize(), postsCache.getMaxCacheSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (snapshot.hasValues()) {
+            restoreValues(snapshot.users(), usersCache);
+            restoreValues(snapshot.posts(), postsCache);
+            return true;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<CompletableFuture<?>> prefetches = new ArrayList<>();
+            prefetch(snapshot.users(), this::getUsers, executor, prefetches);
+            prefetch(snapshot.posts(), this::getPosts, executor, prefetches);
+            CompletableFuture.allOf(prefetches.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        return true;
+    }
+
+    /**
+     * Caches the values of the items of the snapshot, which has been read up to the size of the cache.
+     *
+     * @param family the items of the snapshot.
+     * @param cache  the cache of the family.
+     * @param <V>    the type of values.
+     */
+    private static <V> void restoreValues(CacheSnapshot.Family<V> family, Int2ObjectCache<V> cache) {
+        for (int i = 0; i < family.size(); i++) {
+            cache.put(family.id(i), family.value(i));
+        }
+    }
+
+    /**
+     * Submits the bulk gets of the items of the snapshot, which has been read up to the size of the cache, in batches.
+     *
+     * @param family     the items of the snapshot.
+     * @param bulkGet    the bulk get that caches the items.
+     * @param executor   the executor that runs the bulk gets.
+     * @param prefetches the list the submitted bulk gets are added to.
+     * @param <V>        the type of values.
+     */
+    private static <V> void prefetch(CacheSnapshot.Family<V> family, Function<int[], Map<Integer, V>> bulkGet,
+                                     ExecutorService executor, List<CompletableFuture<?>> prefetches) {
+        int[] ids = IntStream.range(0, family.size()).map(family::id).toArray();
+        for (int from = 0; from < ids.length; from += snapshotBatchSize) {
+            int[] batch = Arrays.copyOfRange(ids, from, Math.min(from + snapshotBatchSize, ids.length));
+            prefetches.add(CompletableFuture.runAsync(() -> bulkGet.apply(batch), executor));
+        }
+    }
+
+    /**
+     * Runs the task periodically on the maintenance thread, which is started on the first call. An exception thrown by
+     * the task does not cancel its next runs.
+     *
+     * @param task  the background task.
+     * @param delay the time between the end of a run and the start of the next one.
+     * @param unit  the time unit of the delay.
+     * @return the scheduled task.
+     */
+    private synchronized ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        if (maintenance == null) {
+            maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cached-forum-service-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // The task is retried by its next run.
+            }
+        }, delay, delay, unit);
+    }
+
+    /**
+     * Writes all queued updates to DB in the write-behind mode. Does nothing otherwise.
+     *
+     * @throws DataAccessException if the updates can not be written; they stay queued then.
+     */
+    public void flushWrites() {
+        if (userWrites == null) {
+            return;
+        }
+        for (int id : userWrites.flush()) {
+            usersCache.remove(id);
+        }
+        for (int id : postWrites.flush()) {
+            postsCache.remove(id);
+        }
+    }
+
+    /**
+     * Returns the number of queued updates in the write-behind mode.
+     *
+     * @return the number of updates not yet written to DB.
+     */
+    public int getPendingWrites() {
+        return userWrites == null ? 0 : userWrites.size() + postWrites.size();
+    }
+
+    /**
+     * Stops the background tasks, writes the queued updates and the scheduled snapshot, unregisters the statistics
+     * MBeans and closes the pool of connections to the database.
+     *
+     * @throws DataAccessException  if the queued updates can not be written; the pool is closed anyway.
+     * @throws UncheckedIOException if the snapshot can not be written; the pool is closed anyway.
+     */
+    @Override
+    public void close() {
+        try {
+            synchronized (this) {
+                if (maintenance != null) {
+                    maintenance.shutdown();
+                    try {
+                        maintenance.awaitTermination(1, TimeUnit.MINUTES);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    maintenance = null;
+                    countsReconciliation = null;
+                }
+            }
+            flushWrites();
+            Path file = snapshotFile;
+            if (file != null && usersCache != null) {
+                saveSnapshot(file, snapshotWithValues);
+            }
+        } finally {
+            unregisterStats();
+            super.close();
+        }
+    }
+
+    /**
+     * Loads the values of the ids that are not cached as missing with a single query and caches the ids that turn out
+     * to be missing.
+     *
+     * @param ids     the ids of the values.
+     * @param missing the cache of missing ids.
+     * @param loader  the function that loads the values by id from DB.
+     * @param <V>     the type of values.
+     * @return the loaded values by id.
+     */
+    private static <V> Map<Integer, V> loadAll(int[] ids, NegativeCache missing,
+                                               Function<int[], Map<Integer, V>> loader) {
+        int[] unknown = IntStream.of(ids).filter(id -> !missing.contains(id)).toArray();
+        if (unknown.length == 0) {
+            return new LinkedHashMap<>();
+        }
+        long[] epochs = IntStream.of(unknown).mapToLong(missing::epoch).toArray();
+        Map<Integer, V> loaded = loader.apply(unknown);
+        for (int i = 0; i < unknown.length; i++) {
+            if (!loaded.containsKey(unknown[i])) {
+                missing.add(unknown[i], epochs[i]);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Overlays the loaded values with the pending updates of their ids in the write-behind mode.
+     *
+     * @param loaded the values loaded from DB by id.
+     * @param ids    the ids of the values.
+     * @param writes the pending updates, or {@code null} if the write-behind mode is disabled.
+     * @param <V>    the type of values.
+     * @return the loaded values with the pending updates.
+     */
+    private static <V> Map<Integer, V> withPending(Map<Integer, V> loaded, int[] ids, WriteBehindQueue<V> writes) {
+        if (writes != null) {
+            for (int id : ids) {
+                V pending = writes.get(id);
+                if (pending != null) {
+                    loaded.put(id, pending);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns snapshots of the statistics of the caches by query family. All counts are zero unless the statistics are
+     * recorded.
+     *
+     * @return the statistics of the users, posts, postsCountForCreator and counts caches.
+     */
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("users", usersCache.stats());
+        stats.put("posts", postsCache.stats());
+        stats.put("postsCountForCreator", postsCountForCreatorCache.stats());
+        stats.put("counts", countsCache.stats());
+        return stats;
+    }
+
+    /**
+     * Returns a new counter of the statistics of the cache registered as a JMX MBean named after this instance and the
+     * query family, e.g. {@code CachedForumService-1.users}, or the disabled counter.
+     *
+     * @param family      the query family of the cache.
+     * @param recordStats whether statistics of the cache are recorded.
+     * @return the counter of the statistics.
+     */
+    private StatsCounter newStatsCounter(String family, boolean recordStats) {
+        if (!recordStats) {
+            return StatsCounter.disabled();
+        }
+        StatsCounter counter = new ConcurrentStatsCounter();
+        ObjectName name = CacheStatsJmx.register(instanceName + "." + family, counter);
+        synchronized (this) {
+            statsNames.add(name);
+        }
+        return counter;
+    }
+
+    /**
+     * Unregisters the statistics MBeans of the current caches.
+     */
+    private synchronized void unregisterStats() {
+        for (ObjectName name : statsNames) {
+            CacheStatsJmx.unregister(name);
+        }
+        statsNames.clear();
+    }
+
     /**
      * Adds specified user to DB if {@code user.getId() == 0}, otherwise updates existing user. If successful,
-     * invalidates the corresponding cache data.
+     * increments the cached users count for an added user and invalidates an updated one, or caches the saved user in
+     * the write-through mode. In the write-behind mode an update is cached and queued instead, see
+     * {@link #enableWriteBehind(long, TimeUnit)}.
      *
      * @param user user to be added or updated.
      * @return either (1) the same user with updated id or (2) {@code null} if there is no user to update in the
@@ -45,69 +746,185 @@ public class CachedForumService extends ForumService {
      */
     @Override
     public UserModel saveUser(UserModel user) {
-        UserModel result = super.saveUser(user);
-        if (result != null) {
+        if (userWrites != null && user.getId() != 0) {
+            UserModel pending = new UserModel(user.getId(), user.getName());
+            userWrites.add(pending);
+            usersCache.put(pending.getId(), pending);
+            return new UserModel(user.getId(), user.getName());
+        }
+        int usersCount = CountQuery.USERS_COUNT.ordinal();
+        try (CountUpdate count = new CountUpdate(countsCache,
+                user.getId() == 0 ? Collections.singleton(usersCount) : Collections.emptySet())) {
+            UserModel result = withWriteLocks(IntStream.of(user.getId()), () -> {
+                UserModel saved = super.saveUser(user);
+                if (saved != null) {
+                    updateCachedUser(user.getId(), saved);
+                }
+                return saved;
+            });
+            if (result != null && user.getId() == 0) {
+                count.add(usersCount, 1);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Adds the users with {@code id == 0} to DB and updates the other users in a single transaction. If successful,
+     * adds the number of added users to the cached users count once per batch and invalidates the updated users, or
+     * caches the saved users in the write-through mode. In the write-behind mode only the additions are written, the
+     * updates are cached and queued.
+     *
+     * @param users users to be added or updated.
+     * @return for each user in iteration order either (1) the same user with updated id or (2) {@code null} if there is
+     * no user to update in the database.
+     */
+    @Override
+    public List<UserModel> saveUsers(Collection<UserModel> users) {
+        if (userWrites != null) {
+            List<UserModel> inserted = new ArrayList<>();
+            for (UserModel user : users) {
+                if (user.getId() == 0) {
+                    inserted.add(user);
+                }
+            }
+            Iterator<UserModel> insertedResults = saveUsersNow(inserted).iterator();
+            List<UserModel> result = new ArrayList<>(users.size());
+            for (UserModel user : users) {
+                result.add(user.getId() == 0 ? insertedResults.next() : saveUser(user));
+            }
+            return result;
+        }
+        return saveUsersNow(users);
+    }
+
+    /**
+     * Adds and updates the users in a single transaction and updates the corresponding cache data.
+     *
+     * @param users users to be added or updated.
+     * @return for each user in iteration order either (1) the same user with updated id or (2) {@code null} if there is
+     * no user to update in the database.
+     */
+    private List<UserModel> saveUsersNow(Collection<UserModel> users) {
+        int inserted = 0;
+        for (UserModel user : users) {
             if (user.getId() == 0) {
-                cache.remove("getUsersCount()");
-            } else {
-                cache.remove("getUser(" + user.getId() + ")");
+                inserted++;
             }
         }
-        return result;
+        int usersCount = CountQuery.USERS_COUNT.ordinal();
+        try (CountUpdate count = new CountUpdate(countsCache,
+                inserted > 0 ? Collections.singleton(usersCount) : Collections.emptySet())) {
+            List<UserModel> result = withWriteLocks(users.stream().mapToInt(UserModel::getId), () -> {
+                List<UserModel> saved = super.saveUsers(users);
+                Iterator<UserModel> savedIterator = saved.iterator();
+                for (UserModel user : users) {
+                    UserModel savedUser = savedIterator.next();
+                    if (savedUser != null) {
+                        updateCachedUser(user.getId(), savedUser);
+                    } else {
+                        usersCache.remove(user.getId());
+                    }
+                }
+                return saved;
+            });
+            if (inserted > 0) {
+                count.add(usersCount, inserted);
+            }
+            return result;
+        }
     }
 
     /**
      * Returns user with specified id from cache, if possible. Otherwise returns user from DB and caches the result.
+     * Concurrent misses of the same user wait for a single database query. An id without user is cached as missing
+     * for a short time, see {@link #setNegativeCaching(int, long, TimeUnit)}.
      *
      * @param id id by which user is to be returned.
      * @return user with specified id.
      */
     @Override
     public UserModel getUser(int id) {
-        UserModel result = (UserModel) cache.get("getUser(" + id + ")");
-        if (result == null) {
-            result = super.getUser(id);
-            if (result != null) {
-                cache.put("getUser(" + id + ")", result);
-            }
-        }
-        return result;
+        return usersCache.computeIfAbsent(id, userLoader);
+    }
+
+    /**
+     * Returns user with specified id if it is cached, without querying DB.
+     *
+     * @param id id by which user is to be returned.
+     * @return the cached user with specified id, or {@code null} if it is not cached.
+     */
+    public UserModel getUserIfCached(int id) {
+        return usersCache.getIfPresent(id);
+    }
+
+    /**
+     * Returns users with specified ids from cache, if possible. The missing users are returned from DB using a single
+     * query and cached.
+     *
+     * @param ids ids by which users are to be returned.
+     * @return users with specified ids that exist by their ids, in the order of the ids.
+     */
+    @Override
+    public Map<Integer, UserModel> getUsers(int[] ids) {
+        return usersCache.getAll(ids, usersLoader);
     }
 
     /**
-     * Removes user with specified id from DB. If successful, invalidates the corresponding cache data.
+     * Removes user with specified id from DB. If successful, invalidates the cached user and decrements the cached
+     * users count.
      *
      * @param id id by which user is to be removed.
      * @return {@code true} if the user is successfully removed, otherwise {@code null}.
      */
     @Override
     public boolean removeUser(int id) {
-        boolean removed = super.removeUser(id);
-        if (removed) {
-            cache.remove("getUsersCount()");
-            cache.remove("getUser(" + id + ")");
+        if (userWrites != null && userWrites.get(id) != null) {
+            userWrites.remove(id);
+            usersCache.remove(id);
+        }
+        int usersCount = CountQuery.USERS_COUNT.ordinal();
+        try (CountUpdate count = new CountUpdate(countsCache, Collections.singleton(usersCount))) {
+            boolean removed = withWriteLocks(IntStream.of(id), () -> {
+                boolean deleted = super.removeUser(id);
+                if (deleted) {
+                    usersCache.remove(id);
+                }
+                return deleted;
+            });
+            if (removed) {
+                count.add(usersCount, -1);
+            }
+            return removed;
         }
-        return removed;
     }
 
     /**
-     * Returns the total number of users in the database using cache.
+     * Returns the total number of users in the database using cache. Once loaded, the cached number is maintained by
+     * the writes of this service instead of being reloaded.
      *
      * @return the total number of users in the database using cache.
      */
     @Override
     public int getUsersCount() {
-        Integer result = (Integer) cache.get("getUsersCount()");
-        if (result == null) {
-            result = super.getUsersCount();
-            cache.put("getUsersCount()", result);
-        }
-        return result;
+        return countsCache.computeIfAbsent(CountQuery.USERS_COUNT.ordinal(), countLoader);
+    }
+
+    /**
+     * Returns the total number of users if it is cached, without querying DB.
+     *
+     * @return the cached number of users, or {@code null} if it is not cached.
+     */
+    public Integer getUsersCountIfCached() {
+        return getIfCached(countsCache, CountQuery.USERS_COUNT.ordinal());
     }
 
     /**
      * Adds specified post to DB if {@code post.getId() == 0}, otherwise updates existing post. If successful,
-     * invalidates the corresponding cache data.
+     * increments the cached posts counts for an added post, moves an updated post that changes its creator from the
+     * cached posts count of the old creator to the new one's, and invalidates an updated post, or caches the saved post
+     * in the write-through mode. In the write-behind mode an update is cached and queued instead, see
+     * {@link #enableWriteBehind(long, TimeUnit)}.
      *
      * @param post post to be added or updated.
      * @return either (1) the same post with updated id or (2) {@code null} if there is no post to update in the
@@ -115,87 +932,328 @@ public class CachedForumService extends ForumService {
      */
     @Override
     public PostModel savePost(PostModel post) {
-        PostModel result = super.savePost(post);
-        if (result != null) {
-            if (post.getId() == 0) {
-                cache.remove("getPostsCount()");
-                cache.remove("getPostsCountForCreator(" + post.getCreatorId() + ")");
-            } else {
-                cache.remove("getPost(" + post.getId() + ")");
+        if (postWrites != null && post.getId() != 0) {
+            PostModel pending = new PostModel(post.getId(), post.getPostName(), post.getCreatorId());
+            postWrites.add(pending);
+            postsCache.put(pending.getId(), pending);
+            return new PostModel(post.getId(), post.getPostName(), post.getCreatorId());
+        }
+        return writePosts(Collections.singletonList(post), this::getPosts, () -> {
+            PostModel saved = super.savePost(post);
+            if (saved != null) {
+                updateCachedPost(post.getId(), saved);
+            }
+            return Collections.singletonList(saved);
+        }).get(0);
+    }
+
+    /**
+     * Adds the posts with {@code id == 0} to DB and updates the other posts in a single transaction. If successful,
+     * adds the numbers of added posts to the cached posts count and the cached posts counts of their creators once per
+     * batch, moves the updated posts that change their creators between the cached posts counts of the creators and
+     * invalidates the updated posts, or caches the saved posts in the write-through mode. In the write-behind mode only
+     * the additions are written, the updates are cached and queued.
+     *
+     * @param posts posts to be added or updated.
+     * @return for each post in iteration order either (1) the same post with updated id or (2) {@code null} if there is
+     * no post to update in the database.
+     */
+    @Override
+    public List<PostModel> savePosts(Collection<PostModel> posts) {
+        if (postWrites != null) {
+            List<PostModel> inserted = new ArrayList<>();
+            for (PostModel post : posts) {
+                if (post.getId() == 0) {
+                    inserted.add(post);
+                }
+            }
+            Iterator<PostModel> insertedResults = savePostsNow(inserted).iterator();
+            List<PostModel> result = new ArrayList<>(posts.size());
+            for (PostModel post : posts) {
+                result.add(post.getId() == 0 ? insertedResults.next() : savePost(post));
             }
+            return result;
         }
-        return result;
+        return savePostsNow(posts);
+    }
+
+    /**
+     * Adds and updates the posts in a single transaction and updates the corresponding cache data.
+     *
+     * @param posts posts to be added or updated.
+     * @return for each post in iteration order either (1) the same post with updated id or (2) {@code null} if there is
+     * no post to update in the database.
+     */
+    private List<PostModel> savePostsNow(Collection<PostModel> posts) {
+        return writePosts(posts, this::getPosts, () -> {
+            List<PostModel> saved = super.savePosts(posts);
+            Iterator<PostModel> savedIterator = saved.iterator();
+            for (PostModel post : posts) {
+                PostModel savedPost = savedIterator.next();
+                if (savedPost != null) {
+                    updateCachedPost(post.getId(), savedPost);
+                } else {
+                    postsCache.remove(post.getId());
+                }
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Writes a batch of queued post updates to DB in the write-behind mode. The creators of the posts before the
+     * updates are queried from DB, since the cache already holds the updated posts.
+     *
+     * @param posts the queued updates.
+     * @return for each post in order either (1) the same post or (2) {@code null} if there is no post to update in the
+     * database.
+     */
+    private List<PostModel> flushPosts(List<PostModel> posts) {
+        return writePosts(posts, super::getPosts, () -> super.savePosts(posts));
+    }
+
+    /**
+     * Runs the write of the posts and changes the cached posts counts by its result. An added post counts for its
+     * creator, and an updated post moved to another creator counts for the new one instead of the old one. The updated
+     * posts are read before the write under the write locks of their ids, so of two concurrent updates of the same post
+     * the later one moves it from the creator the earlier one has left it with. The changed counts are marked as updated during the write, so
+     * that a concurrent read does not cache a number that may or may not include it, see
+     * {@link Int2IntCache#beginUpdate(int)}.
+     *
+     * @param posts  the posts to be added or updated.
+     * @param reader the function returning the updated posts by id as they are before the write.
+     * @param write  the write returning for each post in iteration order either the saved post or {@code null}.
+     * @return the result of the write.
+     */
+    private List<PostModel> writePosts(Collection<PostModel> posts, Function<int[], Map<Integer, PostModel>> reader,
+                                       Supplier<List<PostModel>> write) {
+        return withWriteLocks(posts.stream().mapToInt(PostModel::getId), () -> {
+            int[] updated = posts.stream().mapToInt(PostModel::getId).filter(id -> id != 0).toArray();
+            Map<Integer, PostModel> before = updated.length == 0 ? Collections.emptyMap() : reader.apply(updated);
+            boolean added = false;
+            Set<Integer> creators = new HashSet<>();
+            for (PostModel post : posts) {
+                PostModel old = before.get(post.getId());
+                if (post.getId() == 0) {
+                    added = true;
+                    creators.add(post.getCreatorId());
+                } else if (old != null && old.getCreatorId() != post.getCreatorId()) {
+                    creators.add(old.getCreatorId());
+                    creators.add(post.getCreatorId());
+                }
+            }
+            int postsCount = CountQuery.POSTS_COUNT.ordinal();
+            try (CountUpdate count = new CountUpdate(countsCache,
+                    added ? Collections.singleton(postsCount) : Collections.emptySet());
+                 CountUpdate countsByCreator = new CountUpdate(postsCountForCreatorCache, creators)) {
+                List<PostModel> result = write.get();
+                Iterator<PostModel> resultIterator = result.iterator();
+                for (PostModel post : posts) {
+                    PostModel old = before.get(post.getId());
+                    if (resultIterator.next() == null) {
+                        continue;
+                    }
+                    if (post.getId() == 0) {
+                        count.add(postsCount, 1);
+                        countsByCreator.add(post.getCreatorId(), 1);
+                    } else if (old != null && old.getCreatorId() != post.getCreatorId()) {
+                        countsByCreator.add(old.getCreatorId(), -1);
+                        countsByCreator.add(post.getCreatorId(), 1);
+                    }
+                }
+                return result;
+            }
+        });
     }
 
     /**
      * Returns post with specified id from cache, if possible. Otherwise returns post from DB and caches the result.
+     * Concurrent misses of the same post wait for a single database query. An id without post is cached as missing
+     * for a short time, see {@link #setNegativeCaching(int, long, TimeUnit)}.
      *
      * @param id id by which post is to be returned.
      * @return post with specified id.
      */
     @Override
     public PostModel getPost(int id) {
-        PostModel result = (PostModel) cache.get("getPost(" + id + ")");
-        if (result == null) {
-            result = super.getPost(id);
-            if (result != null) {
-                cache.put("getPost(" + id + ")", result);
-            }
-        }
-        return result;
+        return postsCache.computeIfAbsent(id, postLoader);
+    }
+
+    /**
+     * Returns post with specified id if it is cached, without querying DB.
+     *
+     * @param id id by which post is to be returned.
+     * @return the cached post with specified id, or {@code null} if it is not cached.
+     */
+    public PostModel getPostIfCached(int id) {
+        return postsCache.getIfPresent(id);
     }
 
     /**
-     * Removes post with specified id from DB. If successful, invalidates the corresponding cache data.
+     * Returns posts with specified ids from cache, if possible. The missing posts are returned from DB using a single
+     * query and cached.
+     *
+     * @param ids ids by which posts are to be returned.
+     * @return posts with specified ids that exist by their ids, in the order of the ids.
+     */
+    @Override
+    public Map<Integer, PostModel> getPosts(int[] ids) {
+        return postsCache.getAll(ids, postsLoader);
+    }
+
+    /**
+     * Removes post with specified id from DB. If successful, invalidates the cached post and decrements the cached
+     * posts counts.
      *
      * @param id id by which post is to be removed.
      * @return {@code true} if the post is successfully removed, otherwise {@code null}.
      */
     @Override
     public boolean removePost(int id) {
-        PostModel post = getPost(id);
-        if (post != null) {
+        return withWriteLocks(IntStream.of(id), () -> {
+            PostModel post = getPost(id);
+            if (post != null && postWrites != null && postWrites.get(id) != null) {
+                postWrites.remove(id);
+                postsCache.remove(id);
+                // The discarded update may have moved the post, but the row still counts for the creator in DB.
+                post = super.getPost(id);
+            }
+            if (post == null) {
+                return false;
+            }
             int creatorId = post.getCreatorId();
-            boolean removed = super.removePost(id);
-            if (removed) {
-                cache.remove("getPostsCount()");
-                cache.remove("getPost(" + id + ")");
-                cache.remove("getPostsCountForCreator(" + creatorId + ")");
+            int postsCount = CountQuery.POSTS_COUNT.ordinal();
+            try (CountUpdate count = new CountUpdate(countsCache, Collections.singleton(postsCount));
+                 CountUpdate countByCreator = new CountUpdate(postsCountForCreatorCache,
+                         Collections.singleton(creatorId))) {
+                boolean removed = super.removePost(id);
+                if (removed) {
+                    postsCache.remove(id);
+                    count.add(postsCount, -1);
+                    countByCreator.add(creatorId, -1);
+                }
+                return removed;
             }
-            return removed;
-        } else {
-            return false;
-        }
+        });
     }
 
     /**
-     * Returns the total number of posts in the database using cache.
+     * Returns the total number of posts in the database using cache. Once loaded, the cached number is maintained by
+     * the writes of this service instead of being reloaded.
      *
      * @return the total number of posts in the database using cache.
      */
     @Override
     public int getPostsCount() {
-        Integer result = (Integer) cache.get("getPostsCount()");
-        if (result == null) {
-            result = super.getPostsCount();
-            cache.put("getPostsCount()", result);
-        }
-        return result;
+        return countsCache.computeIfAbsent(CountQuery.POSTS_COUNT.ordinal(), countLoader);
+    }
+
+    /**
+     * Returns the total number of posts if it is cached, without querying DB.
+     *
+     * @return the cached number of posts, or {@code null} if it is not cached.
+     */
+    public Integer getPostsCountIfCached() {
+        return getIfCached(countsCache, CountQuery.POSTS_COUNT.ordinal());
     }
 
     /**
-     * Returns the number of posts for specified creator id using cache.
+     * Returns the number of posts for specified creator id using cache. Once loaded, the cached number is maintained by
+     * the writes of this service instead of being reloaded. In the write-behind mode an update that moves a post to
+     * another creator is reflected once it is written.
      *
      * @param creatorId creator id for which number of posts is to be returned.
      * @return the number of posts for specified creator id.
      */
     @Override
     public int getPostsCountForCreator(int creatorId) {
-        Integer result = (Integer) cache.get("getPostsCountForCreator(" + creatorId + ")");
-        if (result == null) {
-            result = super.getPostsCountForCreator(creatorId);
-            cache.put("getPostsCountForCreator(" + creatorId + ")", result);
+        return postsCountForCreatorCache.computeIfAbsent(creatorId, postsCountForCreatorLoader);
+    }
+
+    /**
+     * Returns the number of posts for specified creator id if it is cached, without querying DB.
+     *
+     * @param creatorId creator id for which number of posts is to be returned.
+     * @return the cached number of posts for specified creator id, or {@code null} if it is not cached.
+     */
+    public Integer getPostsCountForCreatorIfCached(int creatorId) {
+        return getIfCached(postsCountForCreatorCache, creatorId);
+    }
+
+    /**
+     * Returns the cached count for the key. The presence is checked first, so a count that is not cached is not
+     * recorded as a miss here, but by the load that follows it.
+     *
+     * @param cache the cache of counts.
+     * @param key   the key of the count.
+     * @return the cached count, or {@code null} if it is not cached.
+     */
+    private static Integer getIfCached(Int2IntCache cache, int key) {
+        if (!cache.containsKey(key)) {
+            return null;
         }
-        return result;
+        int count = cache.getOrDefault(key, -1);
+        return count < 0 ? null : count;
+    }
+
+    /**
+     * Update of cached counts by a database write. The counts are marked as updated when it is created, before the
+     * write, so that a load of them that may or may not include the write does not cache its result. The changes added
+     * during the write are applied to the cached counts when it is closed, after the write.
+     */
+    private static final class CountUpdate implements AutoCloseable {
+
+        /**
+         * The cache of the counts.
+         */
+        private final Int2IntCache cache;
+
+        /**
+         * The changes of the updated counts by key.
+         */
+        private final Map<Integer, Integer> deltas = new HashMap<>();
+
+        /**
+         * Marks the counts of the keys as updated.
+         *
+         * @param cache the cache of the counts.
+         * @param keys  the keys of the counts changed by the write.
+         */
+        CountUpdate(Int2IntCache cache, Collection<Integer> keys) {
+            this.cache = cache;
+            for (int key : keys) {
+                if (deltas.putIfAbsent(key, 0) == null) {
+                    cache.beginUpdate(key);
+                }
+            }
+        }
+
+        /**
+         * Adds a change of the count of the key made by the write.
+         *
+         * @param key   one of the keys of the updated counts.
+         * @param delta the change of the count.
+         */
+        void add(int key, int delta) {
+            deltas.merge(key, delta, Integer::sum);
+        }
+
+        /**
+         * Applies the changes to the cached counts and ends their updates, with no changes if the write has failed.
+         */
+        @Override
+        public void close() {
+            for (Map.Entry<Integer, Integer> entry : deltas.entrySet()) {
+                cache.endUpdate(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Keys of the aggregate count queries which do not depend on any id.
+     */
+    private enum CountQuery {
+        USERS_COUNT,
+        POSTS_COUNT
     }
 }
@@ -3,33 +3,88 @@ package education.bert.service;
 import education.bert.exception.DataAccessException;
 import education.bert.model.PostModel;
 import education.bert.model.UserModel;
+import education.bert.util.jdbc.ConnectionPool;
 import education.bert.util.jdbc.JdbcHelper;
+import education.bert.util.jdbc.RowMapper;
 import education.bert.util.jdbc.SqlCallable;
 import education.bert.util.jdbc.SqlRunnable;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Service class that provides read/write data from/to the database. This service implements a simplified model of an
  * internet forum or social network.
  */
-public class ForumService {
+public class ForumService implements AutoCloseable {
 
     /**
-     * PostgreSQL database url.
+     * The number of rows fetched from the database at a time by the streaming methods.
      */
-    private String dbUrl;
+    public static final int defaultFetchSize = 1000;
 
     /**
-     * DB url setter.
+     * Pool of connections to the PostgreSQL database.
+     */
+    private ConnectionPool connectionPool;
+
+    /**
+     * DB url setter. Creates a pool of connections to the database and closes the previous one, if any.
      *
      * @param dbUrl a url to be set.
      */
     public void setDbUrl(String dbUrl) {
-        this.dbUrl = dbUrl;
+        ConnectionPool previous = connectionPool;
+        connectionPool = new ConnectionPool(dbUrl);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Returns the pool of connections to the database, e.g. to monitor it.
+     *
+     * @return the pool of connections, or {@code null} if the DB url is not set.
+     */
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Closes the pool of connections to the database.
+     */
+    @Override
+    public void close() {
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
     }
 
+    /**
+     * Maps a row of the users table to a user.
+     */
+    private static final RowMapper<UserModel> userMapper = resultSet -> new UserModel(
+            resultSet.getInt("id"),
+            resultSet.getString("name")
+    );
+
+    /**
+     * Maps a row of the posts table to a post.
+     */
+    private static final RowMapper<PostModel> postMapper = resultSet -> new PostModel(
+            resultSet.getInt("id"),
+            resultSet.getString("postName"),
+            resultSet.getInt("creatorId")
+    );
+
     /**
      * The wrapper for code throwing SQLException. The SQLException is replaced by RuntimeException.
      *
@@ -65,14 +120,14 @@ public class ForumService {
     public void setup() {
         sqlRun(() ->
         {
-            JdbcHelper.executeUpdate(dbUrl, "DROP TABLE IF EXISTS users;");
-            JdbcHelper.executeUpdate(dbUrl, "DROP TABLE IF EXISTS posts;");
+            JdbcHelper.executeUpdate(connectionPool, "DROP TABLE IF EXISTS users;");
+            JdbcHelper.executeUpdate(connectionPool, "DROP TABLE IF EXISTS posts;");
             JdbcHelper.executeUpdate(
-                    dbUrl,
+                    connectionPool,
                     "CREATE TABLE users (id SERIAL PRIMARY KEY, name TEXT NOT NULL);"
             );
             JdbcHelper.executeUpdate(
-                    dbUrl,
+                    connectionPool,
                     "CREATE TABLE posts (id SERIAL PRIMARY KEY, postName TEXT NOT NULL, creatorId INTEGER);"
             );
         });
@@ -84,8 +139,8 @@ public class ForumService {
     public void dropTables() {
         sqlRun(() ->
         {
-            JdbcHelper.executeUpdate(dbUrl, "DROP TABLE IF EXISTS users;");
-            JdbcHelper.executeUpdate(dbUrl, "DROP TABLE IF EXISTS posts;");
+            JdbcHelper.executeUpdate(connectionPool, "DROP TABLE IF EXISTS users;");
+            JdbcHelper.executeUpdate(connectionPool, "DROP TABLE IF EXISTS posts;");
         });
     }
 
@@ -102,7 +157,7 @@ public class ForumService {
                     UserModel result = new UserModel(user.getId(), user.getName());
                     if (user.getId() == 0) {
                         int id = JdbcHelper.executeUpdateWithId(
-                                dbUrl,
+                                connectionPool,
                                 "INSERT INTO users(name) VALUES (?);",
                                 statement ->
                                 {
@@ -113,7 +168,7 @@ public class ForumService {
                         result.setId(id);
                     } else if (0 ==
                             JdbcHelper.executeUpdate(
-                                    dbUrl,
+                                    connectionPool,
                                     "UPDATE users SET name = ? WHERE id = ?;",
                                     statement ->
                                     {
@@ -130,6 +185,56 @@ public class ForumService {
         );
     }
 
+    /**
+     * Adds the users with {@code id == 0} to DB and updates the other users in a single transaction using JDBC
+     * batching.
+     *
+     * @param users users to be added or updated.
+     * @return for each user in iteration order either (1) the same user with updated id or (2) {@code null} if there is
+     * no user to update in the database.
+     */
+    public List<UserModel> saveUsers(Collection<UserModel> users) {
+        List<UserModel> inserted = new ArrayList<>();
+        List<UserModel> updated = new ArrayList<>();
+        for (UserModel user : users) {
+            (user.getId() == 0 ? inserted : updated).add(user);
+        }
+        return sqlCall(() ->
+                JdbcHelper.executeInTransaction(connectionPool, connection ->
+                {
+                    List<Integer> ids = JdbcHelper.executeBatchWithIds(
+                            connection,
+                            "INSERT INTO users(name) VALUES (?);",
+                            inserted,
+                            (statement, user) -> statement.setString(1, user.getName())
+                    );
+                    int[] updateCounts = JdbcHelper.executeBatch(
+                            connection,
+                            "UPDATE users SET name = ? WHERE id = ?;",
+                            updated,
+                            (statement, user) ->
+                            {
+                                statement.setString(1, user.getName());
+                                statement.setInt(2, user.getId());
+                            }
+                    );
+                    List<UserModel> result = new ArrayList<>(users.size());
+                    int insertedIndex = 0;
+                    int updatedIndex = 0;
+                    for (UserModel user : users) {
+                        if (user.getId() == 0) {
+                            result.add(new UserModel(ids.get(insertedIndex++), user.getName()));
+                        } else if (updateCounts[updatedIndex++] == 0) {
+                            result.add(null);
+                        } else {
+                            result.add(new UserModel(user.getId(), user.getName()));
+                        }
+                    }
+                    return result;
+                })
+        );
+    }
+
     /**
      * Returns user with specified id from DB.
      *
@@ -139,21 +244,61 @@ public class ForumService {
     public UserModel getUser(int id) {
         return sqlCall(() ->
                 JdbcHelper.executeQueryForObject(
-                        dbUrl,
+                        connectionPool,
                         "SELECT id, name FROM users WHERE id = ?;",
                         statement ->
                         {
                             statement.setInt(1, id);
                             return statement;
                         },
-                        resultSet -> new UserModel(
-                                resultSet.getInt("id"),
-                                resultSet.getString("name")
-                        )
+                        userMapper
                 )
         ).orElse(null);
     }
 
+    /**
+     * Returns users with specified ids from DB using a single query.
+     *
+     * @param ids ids by which users are to be returned.
+     * @return users with specified ids that exist in DB by their ids, in the order of the ids.
+     */
+    public Map<Integer, UserModel> getUsers(int[] ids) {
+        if (ids.length == 0) {
+            return new LinkedHashMap<>();
+        }
+        List<UserModel> users = sqlCall(() ->
+                JdbcHelper.executeQueryForList(
+                        connectionPool,
+                        "SELECT id, name FROM users WHERE id = ANY(?);",
+                        statement -> setIds(statement, ids),
+                        userMapper
+                )
+        );
+        Map<Integer, UserModel> usersById = new HashMap<>();
+        for (UserModel user : users) {
+            usersById.put(user.getId(), user);
+        }
+        return inOrderOf(ids, usersById);
+    }
+
+    /**
+     * Returns all users from DB ordered by id as a lazily populated stream that holds a connection until it is closed,
+     * e.g. to export or warm up a large table with constant memory.
+     *
+     * @return the stream of all users that must be closed after use.
+     */
+    public Stream<UserModel> streamUsers() {
+        return sqlCall(() ->
+                JdbcHelper.executeQueryForStream(
+                        connectionPool,
+                        "SELECT id, name FROM users ORDER BY id;",
+                        defaultFetchSize,
+                        statement -> statement,
+                        userMapper
+                )
+        );
+    }
+
     /**
      * Removes user with specified id from DB.
      *
@@ -163,7 +308,7 @@ public class ForumService {
     public boolean removeUser(int id) {
         return sqlCall(() ->
                 0 != JdbcHelper.executeUpdate(
-                        dbUrl,
+                        connectionPool,
                         "DELETE FROM users WHERE id = ?;",
                         statement ->
                         {
@@ -183,7 +328,7 @@ public class ForumService {
         return sqlCall(() ->
                 {
                     Optional<Integer> result = JdbcHelper.executeQueryForObject(
-                            dbUrl,
+                            connectionPool,
                             "SELECT COUNT(*) AS cnt FROM users;",
                             statement -> statement,
                             resultSet -> resultSet.getInt("cnt")
@@ -206,7 +351,7 @@ public class ForumService {
                     PostModel result = new PostModel(post.getId(), post.getPostName(), post.getCreatorId());
                     if (post.getId() == 0) {
                         int id = JdbcHelper.executeUpdateWithId(
-                                dbUrl,
+                                connectionPool,
                                 "INSERT INTO posts(postName, creatorId) VALUES (?, ?);",
                                 statement ->
                                 {
@@ -218,7 +363,7 @@ public class ForumService {
                         result.setId(id);
                     } else if (0 ==
                             JdbcHelper.executeUpdate(
-                                    dbUrl,
+                                    connectionPool,
                                     "UPDATE posts SET postName = ?, creatorId = ? WHERE id = ?;",
                                     statement ->
                                     {
@@ -236,6 +381,61 @@ public class ForumService {
         );
     }
 
+    /**
+     * Adds the posts with {@code id == 0} to DB and updates the other posts in a single transaction using JDBC
+     * batching.
+     *
+     * @param posts posts to be added or updated.
+     * @return for each post in iteration order either (1) the same post with updated id or (2) {@code null} if there is
+     * no post to update in the database.
+     */
+    public List<PostModel> savePosts(Collection<PostModel> posts) {
+        List<PostModel> inserted = new ArrayList<>();
+        List<PostModel> updated = new ArrayList<>();
+        for (PostModel post : posts) {
+            (post.getId() == 0 ? inserted : updated).add(post);
+        }
+        return sqlCall(() ->
+                JdbcHelper.executeInTransaction(connectionPool, connection ->
+                {
+                    List<Integer> ids = JdbcHelper.executeBatchWithIds(
+                            connection,
+                            "INSERT INTO posts(postName, creatorId) VALUES (?, ?);",
+                            inserted,
+                            (statement, post) ->
+                            {
+                                statement.setString(1, post.getPostName());
+                                statement.setInt(2, post.getCreatorId());
+                            }
+                    );
+                    int[] updateCounts = JdbcHelper.executeBatch(
+                            connection,
+                            "UPDATE posts SET postName = ?, creatorId = ? WHERE id = ?;",
+                            updated,
+                            (statement, post) ->
+                            {
+                                statement.setString(1, post.getPostName());
+                                statement.setInt(2, post.getCreatorId());
+                                statement.setInt(3, post.getId());
+                            }
+                    );
+                    List<PostModel> result = new ArrayList<>(posts.size());
+                    int insertedIndex = 0;
+                    int updatedIndex = 0;
+                    for (PostModel post : posts) {
+                        if (post.getId() == 0) {
+                            result.add(new PostModel(ids.get(insertedIndex++), post.getPostName(), post.getCreatorId()));
+                        } else if (updateCounts[updatedIndex++] == 0) {
+                            result.add(null);
+                        } else {
+                            result.add(new PostModel(post.getId(), post.getPostName(), post.getCreatorId()));
+                        }
+                    }
+                    return result;
+                })
+        );
+    }
+
     /**
      * Returns post with specified id from DB.
      *
@@ -245,22 +445,120 @@ public class ForumService {
     public PostModel getPost(int id) {
         return sqlCall(() ->
                 JdbcHelper.executeQueryForObject(
-                        dbUrl,
+                        connectionPool,
                         "SELECT id, postName, creatorId FROM posts WHERE id = ?;",
                         statement ->
                         {
                             statement.setInt(1, id);
                             return statement;
                         },
-                        resultSet -> new PostModel(
-                                resultSet.getInt("id"),
-                                resultSet.getString("postName"),
-                                resultSet.getInt("creatorId")
-                        )
+                        postMapper
                 )
         ).orElse(null);
     }
 
+    /**
+     * Returns posts with specified ids from DB using a single query.
+     *
+     * @param ids ids by which posts are to be returned.
+     * @return posts with specified ids that exist in DB by their ids, in the order of the ids.
+     */
+    public Map<Integer, PostModel> getPosts(int[] ids) {
+        if (ids.length == 0) {
+            return new LinkedHashMap<>();
+        }
+        List<PostModel> posts = sqlCall(() ->
+                JdbcHelper.executeQueryForList(
+                        connectionPool,
+                        "SELECT id, postName, creatorId FROM posts WHERE id = ANY(?);",
+                        statement -> setIds(statement, ids),
+                        postMapper
+                )
+        );
+        Map<Integer, PostModel> postsById = new HashMap<>();
+        for (PostModel post : posts) {
+            postsById.put(post.getId(), post);
+        }
+        return inOrderOf(ids, postsById);
+    }
+
+    /**
+     * Sets the ids as the SQL integer array parameter of the statement.
+     *
+     * @param statement a statement with a single array parameter.
+     * @param ids       ids to be set.
+     * @return the same statement.
+     * @throws SQLException if a database access error occurs.
+     */
+    private static PreparedStatement setIds(PreparedStatement statement, int[] ids) throws SQLException {
+        Integer[] boxedIds = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            boxedIds[i] = ids[i];
+        }
+        statement.setArray(1, statement.getConnection().createArrayOf("integer", boxedIds));
+        return statement;
+    }
+
+    /**
+     * Orders the found values by the specified ids.
+     *
+     * @param ids        ids in the desired order.
+     * @param valuesById values by their ids.
+     * @param <V>        the type of values.
+     * @return the values that exist for the ids, in the order of the ids.
+     */
+    private static <V> Map<Integer, V> inOrderOf(int[] ids, Map<Integer, V> valuesById) {
+        Map<Integer, V> result = new LinkedHashMap<>();
+        for (int id : ids) {
+            V value = valuesById.get(id);
+            if (value != null) {
+                result.put(id, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns all posts from DB ordered by id as a lazily populated stream that holds a connection until it is closed,
+     * e.g. to export or warm up a large table with constant memory.
+     *
+     * @return the stream of all posts that must be closed after use.
+     */
+    public Stream<PostModel> streamPosts() {
+        return sqlCall(() ->
+                JdbcHelper.executeQueryForStream(
+                        connectionPool,
+                        "SELECT id, postName, creatorId FROM posts ORDER BY id;",
+                        defaultFetchSize,
+                        statement -> statement,
+                        postMapper
+                )
+        );
+    }
+
+    /**
+     * Returns the posts of the specified creator from DB ordered by id as a lazily populated stream that holds a
+     * connection until it is closed.
+     *
+     * @param creatorId id of the creator whose posts are to be returned.
+     * @return the stream of the posts of the creator that must be closed after use.
+     */
+    public Stream<PostModel> streamPostsForCreator(int creatorId) {
+        return sqlCall(() ->
+                JdbcHelper.executeQueryForStream(
+                        connectionPool,
+                        "SELECT id, postName, creatorId FROM posts WHERE creatorId = ? ORDER BY id;",
+                        defaultFetchSize,
+                        statement ->
+                        {
+                            statement.setInt(1, creatorId);
+                            return statement;
+                        },
+                        postMapper
+                )
+        );
+    }
+
     /**
      * Removes post with specified id from DB.
      *
@@ -270,7 +568,7 @@ public class ForumService {
     public boolean removePost(int id) {
         return sqlCall(() ->
                 0 != JdbcHelper.executeUpdate(
-                        dbUrl,
+                        connectionPool,
                         "DELETE FROM posts WHERE id = ?;",
                         statement ->
                         {
@@ -290,7 +588,7 @@ public class ForumService {
         return sqlCall(() ->
                 {
                     Optional<Integer> result = JdbcHelper.executeQueryForObject(
-                            dbUrl,
+                            connectionPool,
                             "SELECT COUNT(*) AS cnt FROM posts;",
                             statement -> statement,
                             resultSet -> resultSet.getInt("cnt")
@@ -310,7 +608,7 @@ public class ForumService {
         return sqlCall(() ->
                 {
                     Optional<Integer> result = JdbcHelper.executeQueryForObject(
-                            dbUrl,
+                            connectionPool,
                             "SELECT COUNT(*) AS cnt FROM posts WHERE creatorId = ?;",
                             statement ->
                             {
@@ -0,0 +1,102 @@
+package education.bert.service;
+
+import education.bert.CacheExpiringImpl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache of the ids that do not exist in the database, so that repeated lookups of deleted or never existing rows do
+ * not query it. The ids expire after a short time and have a size budget of their own, so they can not push the
+ * existing rows out of their cache.
+ * <p>
+ * An id found missing by a load must not be cached if the row is added while the load is in flight. Therefore a load
+ * takes the current epoch of the id before it queries the database, each invalidation starts a new epoch of the ids of
+ * its stripe, and the id is cached only if no invalidation of its stripe has happened in between. Invalidations of
+ * other ids do not keep the loads of most ids from being cached.
+ */
+class NegativeCache {
+
+    /**
+     * The missing ids with their expiration times.
+     */
+    private final CacheExpiringImpl<Integer, Boolean> missing;
+
+    /**
+     * The number of stripes of the ids that have separate epochs.
+     */
+    private static final int epochStripes = 64;
+
+    /**
+     * The numbers of invalidations so far by stripe of the ids, written under the lock of {@link #missing}.
+     */
+    private final AtomicLongArray epochs = new AtomicLongArray(epochStripes);
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxCacheSize the maximum number of ids to store.
+     * @param ttl          the duration after the load when a missing id expires.
+     * @param unit         the unit of the duration.
+     */
+    NegativeCache(int maxCacheSize, long ttl, TimeUnit unit) {
+        missing = new CacheExpiringImpl<>(maxCacheSize, ttl, 0, unit);
+    }
+
+    /**
+     * Returns the current epoch of the id, to be taken before the database is queried.
+     *
+     * @param id the id of the row.
+     * @return the current epoch of the id.
+     */
+    long epoch(int id) {
+        return epochs.get(stripe(id));
+    }
+
+    /**
+     * Returns whether the id is known to be missing.
+     *
+     * @param id the id of the row.
+     * @return {@code true} if the id has been found missing and has not expired or been invalidated since.
+     */
+    boolean contains(int id) {
+        return missing.get(id) != null;
+    }
+
+    /**
+     * Caches the id found missing unless an invalidation of its stripe has happened since the epoch was taken.
+     *
+     * @param id    the id of the missing row.
+     * @param epoch the epoch taken before the database was queried.
+     */
+    void add(int id, long epoch) {
+        synchronized (missing) {
+            if (epochs.get(stripe(id)) == epoch) {
+                missing.put(id, Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Removes the id, e.g. because the row is added, and prevents the loads in flight from caching the ids of its
+     * stripe.
+     *
+     * @param id the id of the row.
+     */
+    void invalidate(int id) {
+        synchronized (missing) {
+            epochs.incrementAndGet(stripe(id));
+            missing.remove(id);
+        }
+    }
+
+    /**
+     * Returns the stripe of the id.
+     *
+     * @param id the id of the row.
+     * @return the index of the epoch of the id.
+     */
+    private static int stripe(int id) {
+        return id & (epochStripes - 1);
+    }
+}
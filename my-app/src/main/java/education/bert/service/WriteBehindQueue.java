@@ -0,0 +1,120 @@
+package education.bert.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Queue of pending updates by id for write-behind caching. A newer update of an id replaces the pending one, so
+ * repeated writes of the same id collapse into one. An update stays visible via {@link #get(int)} until it has been
+ * written, so a reader that misses the cache never sees the older row from the database in between.
+ *
+ * @param <V> the type of updated values.
+ */
+class WriteBehindQueue<V> {
+
+    /**
+     * The pending updates by id.
+     */
+    private final ConcurrentHashMap<Integer, V> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the id of a value.
+     */
+    private final ToIntFunction<? super V> idOf;
+
+    /**
+     * Writes a batch of updates in a single transaction and returns the written values in order, {@code null} for the
+     * ones that do not exist in the database.
+     */
+    private final Function<List<V>, List<V>> writer;
+
+    /**
+     * The lock that lets only one flush write at a time, so an older batch can not overwrite a newer one.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param idOf   the function that returns the id of a value.
+     * @param writer the function that writes a batch of updates in a single transaction.
+     */
+    WriteBehindQueue(ToIntFunction<? super V> idOf, Function<List<V>, List<V>> writer) {
+        this.idOf = idOf;
+        this.writer = writer;
+    }
+
+    /**
+     * Adds the update, replacing the pending update of the same id.
+     *
+     * @param value the updated value.
+     */
+    void add(V value) {
+        pending.put(idOf.applyAsInt(value), value);
+    }
+
+    /**
+     * Returns the pending update of the id.
+     *
+     * @param id the id of the value.
+     * @return the pending update, or {@code null} if there is none.
+     */
+    V get(int id) {
+        return pending.get(id);
+    }
+
+    /**
+     * Discards the pending update of the id, e.g. because the row is deleted.
+     *
+     * @param id the id of the value.
+     */
+    void remove(int id) {
+        pending.remove(id);
+    }
+
+    /**
+     * Returns the number of pending updates.
+     *
+     * @return the number of pending updates.
+     */
+    int size() {
+        return pending.size();
+    }
+
+    /**
+     * Discards all pending updates.
+     */
+    void clear() {
+        pending.clear();
+    }
+
+    /**
+     * Writes all pending updates as a single batch. An update replaced while the batch is written stays pending. If the
+     * writer throws, all updates stay pending.
+     *
+     * @return the ids of the written updates whose rows do not exist in the database.
+     */
+    List<Integer> flush() {
+        synchronized (flushLock) {
+            List<V> batch = new ArrayList<>(pending.values());
+            if (batch.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<V> written = writer.apply(batch);
+            List<Integer> missing = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                V value = batch.get(i);
+                int id = idOf.applyAsInt(value);
+                pending.remove(id, value);
+                if (written.get(i) == null) {
+                    missing.add(id);
+                }
+            }
+            return missing;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package education.bert.util.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface BatchSetter<E> {
+    void set(PreparedStatement statement, E item) throws SQLException;
+}
@@ -0,0 +1,9 @@
+package education.bert.util.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface ConnectionCallback<V> {
+    V call(Connection connection) throws SQLException;
+}
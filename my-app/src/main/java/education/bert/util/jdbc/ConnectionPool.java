@@ -0,0 +1,1012 @@
+package education.bert.util.jdbc;
+
+import education.bert.Cache;
+import education.bert.CacheLinkedMapImpl;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of database connections. A borrowed connection is a proxy that returns the physical connection to the
+ * pool on {@link Connection#close()}.
+ * <p>
+ * Borrowing does not lock: a thread first tries the connections it has returned itself, then scans all connections of
+ * the pool, then opens a new one if the pool is not full, and only then waits for a connection handed off by a
+ * returning thread. Idle connections are validated and connections older than the maximum lifetime are closed by a
+ * background housekeeper.
+ * <p>
+ * Each connection keeps an LRU cache of its prepared statements keyed by the SQL text and the generated keys mode, so a
+ * statement prepared with {@link Connection#prepareStatement(String)} or
+ * {@link Connection#prepareStatement(String, int)} is parsed once per connection. Closing such a statement returns it
+ * to the cache.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    /**
+     * The minimal number of connections.
+     */
+    public static final int minimalPoolSize = 1;
+
+    /**
+     * The default number of connections.
+     */
+    public static final int defaultPoolSize = 10;
+
+    /**
+     * The default number of prepared statements cached per connection.
+     */
+    public static final int defaultStatementCacheSize = 32;
+
+    /**
+     * The default time to wait for a connection in milliseconds.
+     */
+    public static final long defaultConnectionTimeout = 30_000;
+
+    /**
+     * The default maximum lifetime of a connection in milliseconds.
+     */
+    public static final long defaultMaxLifetime = 1_800_000;
+
+    /**
+     * The default period of the housekeeping in milliseconds.
+     */
+    public static final long defaultHousekeepingPeriod = 30_000;
+
+    /**
+     * The time in seconds to wait for the database to validate a connection.
+     */
+    private static final int validationTimeout = 5;
+
+    /**
+     * The maximum number of connections remembered by a thread.
+     */
+    private static final int threadLocalCapacity = 16;
+
+    /**
+     * The maximum time in nanoseconds a waiting thread sleeps before it rescans the pool.
+     */
+    private static final long handoffTimeSlice = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * The thread that runs the housekeeping of all pools.
+     */
+    private static final ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The database url.
+     */
+    private final String url;
+
+    /**
+     * The maximum number of connections.
+     */
+    private final int maxPoolSize;
+
+    /**
+     * The number of prepared statements cached per connection.
+     */
+    private final int statementCacheSize;
+
+    /**
+     * The time in nanoseconds to wait for a connection.
+     */
+    private final long connectionTimeout;
+
+    /**
+     * The maximum lifetime of a connection in nanoseconds.
+     */
+    private final long maxLifetime;
+
+    /**
+     * All connections of the pool.
+     */
+    private final CopyOnWriteArrayList<PoolEntry> entries = new CopyOnWriteArrayList<>();
+
+    /**
+     * The connections most recently returned by the current thread, which are likely to be idle when it borrows again.
+     */
+    private final ThreadLocal<List<PoolEntry>> threadEntries = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * The queue that hands off returned connections directly to waiting threads.
+     */
+    private final SynchronousQueue<PoolEntry> handoff = new SynchronousQueue<>(true);
+
+    /**
+     * The number of connections including the ones being opened.
+     */
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    /**
+     * The number of threads waiting for a connection.
+     */
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * The number of borrowed connections.
+     */
+    private final LongAdder borrowCount = new LongAdder();
+
+    /**
+     * The total time in nanoseconds spent waiting for connections.
+     */
+    private final LongAdder totalWaitTime = new LongAdder();
+
+    /**
+     * The maximum time in nanoseconds spent waiting for a connection.
+     */
+    private final LongAccumulator maxWaitTime = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * The number of requests for a connection that timed out.
+     */
+    private final LongAdder timeoutCount = new LongAdder();
+
+    /**
+     * The scheduled housekeeping of the pool.
+     */
+    private final ScheduledFuture<?> housekeeping;
+
+    /**
+     * Whether the pool is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructs an empty pool with the specified settings.
+     *
+     * @param url                the database url.
+     * @param maxPoolSize        the maximum number of connections.
+     * @param statementCacheSize the number of prepared statements cached per connection, 0 disables the caching.
+     * @param connectionTimeout  the time to wait for a connection.
+     * @param maxLifetime        the maximum lifetime of a connection.
+     * @param housekeepingPeriod the period of validation of idle connections and eviction of expired ones.
+     * @param unit               the time unit of the durations.
+     */
+    public ConnectionPool(String url, int maxPoolSize, int statementCacheSize, long connectionTimeout, long maxLifetime,
+                          long housekeepingPeriod, TimeUnit unit) {
+        if (url == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (maxPoolSize < minimalPoolSize) {
+            throw new IllegalArgumentException("maxPoolSize must not be less than minimalPoolSize (" +
+                    minimalPoolSize + ")");
+        }
+        if (statementCacheSize < 0 || connectionTimeout < 0) {
+            throw new IllegalArgumentException("statementCacheSize and connectionTimeout must not be negative");
+        }
+        if (maxLifetime <= 0 || housekeepingPeriod <= 0) {
+            throw new IllegalArgumentException("maxLifetime and housekeepingPeriod must be positive");
+        }
+        this.url = url;
+        this.maxPoolSize = maxPoolSize;
+        this.statementCacheSize = statementCacheSize;
+        this.connectionTimeout = unit.toNanos(connectionTimeout);
+        this.maxLifetime = unit.toNanos(maxLifetime);
+        Housekeeping task = new Housekeeping(this);
+        long period = unit.toNanos(housekeepingPeriod);
+        housekeeping = housekeeper.scheduleWithFixedDelay(task, period, period, TimeUnit.NANOSECONDS);
+        task.future = housekeeping;
+    }
+
+    /**
+     * Constructs an empty pool with the specified maximum number of connections and default timeouts.
+     *
+     * @param url         the database url.
+     * @param maxPoolSize the maximum number of connections.
+     */
+    public ConnectionPool(String url, int maxPoolSize) {
+        this(url, maxPoolSize, defaultStatementCacheSize, defaultConnectionTimeout, defaultMaxLifetime,
+                defaultHousekeepingPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructs an empty pool with the default maximum number of connections (10) and default timeouts.
+     *
+     * @param url the database url.
+     */
+    public ConnectionPool(String url) {
+        this(url, defaultPoolSize);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if all connections are in use and the pool is not full.
+     * Otherwise waits for a connection to be returned.
+     *
+     * @return the connection that returns to the pool on close.
+     * @throws SQLException if a database access error occurs, the pool is closed or no connection becomes available
+     *                      within the connection timeout ({@link SQLTransientConnectionException}).
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long startTime = System.nanoTime();
+        PoolEntry entry = borrow(startTime);
+        long waitTime = System.nanoTime() - startTime;
+        borrowCount.increment();
+        totalWaitTime.add(waitTime);
+        maxWaitTime.accumulate(waitTime);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(this, entry));
+    }
+
+    /**
+     * Not supported, the credentials are part of the url.
+     *
+     * @param username the database user.
+     * @param password the user's password.
+     * @return never.
+     * @throws SQLFeatureNotSupportedException always.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * Closes idle connections and stops the housekeeping. Borrowed connections are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeping.cancel(false);
+        for (PoolEntry entry : entries) {
+            if (entry.state.compareAndSet(PoolEntry.notInUse, PoolEntry.reserved)) {
+                remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of connections, e.g. to size the executors that use the pool.
+     *
+     * @return the maximum number of connections.
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Returns the number of open connections.
+     *
+     * @return the number of open connections.
+     */
+    public int getTotalConnections() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of idle connections.
+     *
+     * @return the number of idle connections.
+     */
+    public int getIdleConnections() {
+        return countEntries(PoolEntry.notInUse);
+    }
+
+    /**
+     * Returns the number of borrowed connections.
+     *
+     * @return the number of borrowed connections.
+     */
+    public int getActiveConnections() {
+        return countEntries(PoolEntry.inUse);
+    }
+
+    /**
+     * Returns the number of threads waiting for a connection.
+     *
+     * @return the number of threads waiting for a connection.
+     */
+    public int getPendingThreads() {
+        return waiters.get();
+    }
+
+    /**
+     * Returns the number of connections borrowed since the pool was created.
+     *
+     * @return the number of borrowed connections.
+     */
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /**
+     * Returns the total time spent waiting for connections, including the time to open new ones.
+     *
+     * @return the total wait time in nanoseconds.
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime.sum();
+    }
+
+    /**
+     * Returns the maximum time spent waiting for a connection.
+     *
+     * @return the maximum wait time in nanoseconds.
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    /**
+     * Returns the average time spent waiting for a connection.
+     *
+     * @return the average wait time in nanoseconds, or 0 if no connection has been borrowed.
+     */
+    public double getAverageWaitTime() {
+        long count = borrowCount.sum();
+        return count == 0 ? 0.0 : (double) totalWaitTime.sum() / count;
+    }
+
+    /**
+     * Returns the number of requests for a connection that timed out.
+     *
+     * @return the number of timed out requests.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * Returns null, the pool does not log.
+     *
+     * @return null.
+     */
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    /**
+     * Ignored, the pool does not log.
+     *
+     * @param out the log writer.
+     */
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    /**
+     * Ignored, the connection timeout is set in the constructor.
+     *
+     * @param seconds the connection timeout.
+     */
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    /**
+     * Returns the connection timeout.
+     *
+     * @return the connection timeout in seconds.
+     */
+    @Override
+    public int getLoginTimeout() {
+        return (int) TimeUnit.NANOSECONDS.toSeconds(connectionTimeout);
+    }
+
+    /**
+     * Not supported, the pool does not log.
+     *
+     * @return never.
+     * @throws SQLFeatureNotSupportedException always.
+     */
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("ConnectionPool is not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Takes an idle connection, opens a new one or waits for a returned one.
+     *
+     * @param startTime the time the request started at.
+     * @return the borrowed connection.
+     * @throws SQLException if a database access error occurs, the pool is closed or the request times out.
+     */
+    private PoolEntry borrow(long startTime) throws SQLException {
+        List<PoolEntry> local = threadEntries.get();
+        for (int i = local.size() - 1; i >= 0; i--) {
+            PoolEntry entry = local.remove(i);
+            if (entry.state.compareAndSet(PoolEntry.notInUse, PoolEntry.inUse)) {
+                return entry;
+            }
+        }
+
+        waiters.incrementAndGet();
+        try {
+            while (true) {
+                for (PoolEntry entry : entries) {
+                    if (entry.state.compareAndSet(PoolEntry.notInUse, PoolEntry.inUse)) {
+                        return entry;
+                    }
+                }
+                PoolEntry created = tryOpen();
+                if (created != null) {
+                    return created;
+                }
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                long remaining = startTime + connectionTimeout - System.nanoTime();
+                if (remaining <= 0) {
+                    timeoutCount.increment();
+                    throw new SQLTransientConnectionException("Connection is not available, request timed out after " +
+                            TimeUnit.NANOSECONDS.toMillis(connectionTimeout) + "ms");
+                }
+                PoolEntry entry = handoff.poll(Math.min(remaining, handoffTimeSlice), TimeUnit.NANOSECONDS);
+                if (entry != null && entry.state.compareAndSet(PoolEntry.notInUse, PoolEntry.inUse)) {
+                    return entry;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Opens a new connection if the pool is not full.
+     *
+     * @return the new borrowed connection, or {@code null} if the pool is full.
+     * @throws SQLException if a database access error occurs or the pool has been closed meanwhile.
+     */
+    private PoolEntry tryOpen() throws SQLException {
+        int count = totalConnections.get();
+        while (count < maxPoolSize) {
+            if (totalConnections.compareAndSet(count, count + 1)) {
+                Connection connection;
+                try {
+                    connection = DriverManager.getConnection(url);
+                } catch (SQLException | RuntimeException e) {
+                    totalConnections.decrementAndGet();
+                    throw e;
+                }
+                PoolEntry entry = new PoolEntry(connection, System.nanoTime(), statementCacheSize);
+                entries.add(entry);
+                if (closed) {
+                    remove(entry);
+                    throw new SQLException("Connection pool is closed");
+                }
+                return entry;
+            }
+            count = totalConnections.get();
+        }
+        return null;
+    }
+
+    /**
+     * Returns a connection to the pool and hands it off to a waiting thread, if any. The connection is closed instead
+     * if it is broken, has outlived the maximum lifetime or the pool is closed. An open transaction is rolled back.
+     *
+     * @param entry the returned connection.
+     */
+    private void release(PoolEntry entry) {
+        if (!entry.broken) {
+            try {
+                if (!entry.connection.getAutoCommit()) {
+                    entry.connection.rollback();
+                    entry.connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                entry.broken = true;
+            }
+        }
+        if (entry.broken || entry.evicted || closed || System.nanoTime() - entry.creationTime >= maxLifetime) {
+            remove(entry);
+            return;
+        }
+
+        entry.state.set(PoolEntry.notInUse);
+        if (closed) {
+            if (entry.state.compareAndSet(PoolEntry.notInUse, PoolEntry.reserved)) {
+                remove(entry);
+            }
+            return;
+        }
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (entry.state.get() != PoolEntry.notInUse || handoff.offer(entry)) {
+                return;
+            }
+            if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+            } else {
+                Thread.yield();
+            }
+        }
+        List<PoolEntry> local = threadEntries.get();
+        if (local.size() < threadLocalCapacity) {
+            local.add(entry);
+        }
+    }
+
+    /**
+     * Removes a connection that is not available for borrowing from the pool and closes it.
+     *
+     * @param entry the removed connection.
+     */
+    private void remove(PoolEntry entry) {
+        entry.state.set(PoolEntry.removed);
+        if (entries.remove(entry)) {
+            totalConnections.decrementAndGet();
+        }
+        try {
+            entry.connection.close();
+        } catch (SQLException ignored) {
+            // the connection is discarded anyway
+        }
+    }
+
+    /**
+     * Closes idle connections that have outlived the maximum lifetime or are no longer valid, and marks borrowed ones
+     * that have outlived the maximum lifetime to be closed when returned.
+     */
+    private void housekeep() {
+        long now = System.nanoTime();
+        for (PoolEntry entry : entries) {
+            if (now - entry.creationTime >= maxLifetime) {
+                entry.evicted = true;
+            }
+            if (entry.state.compareAndSet(PoolEntry.notInUse, PoolEntry.reserved)) {
+                if (entry.evicted || !isValid(entry.connection)) {
+                    remove(entry);
+                } else {
+                    entry.state.set(PoolEntry.notInUse);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the connection is still open and usable.
+     *
+     * @param connection the checked connection.
+     * @return {@code true} if the connection is valid.
+     */
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of connections in the specified state.
+     *
+     * @param state the state of the connections.
+     * @return the number of connections in the state.
+     */
+    private int countEntries(int state) {
+        int count = 0;
+        for (PoolEntry entry : entries) {
+            if (entry.state.get() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Physical connection of the pool with its state.
+     */
+    private static final class PoolEntry {
+
+        /**
+         * The state of an idle connection.
+         */
+        static final int notInUse = 0;
+
+        /**
+         * The state of a borrowed connection.
+         */
+        static final int inUse = 1;
+
+        /**
+         * The state of a connection being checked by the housekeeper.
+         */
+        static final int reserved = 2;
+
+        /**
+         * The state of a closed connection.
+         */
+        static final int removed = -1;
+
+        /**
+         * The physical connection.
+         */
+        final Connection connection;
+
+        /**
+         * The time the connection was opened at.
+         */
+        final long creationTime;
+
+        /**
+         * The state of the connection. A new connection is borrowed by the thread that opened it.
+         */
+        final AtomicInteger state = new AtomicInteger(inUse);
+
+        /**
+         * Whether the connection has outlived the maximum lifetime.
+         */
+        volatile boolean evicted;
+
+        /**
+         * Whether the connection has failed with a connection error.
+         */
+        volatile boolean broken;
+
+        /**
+         * The prepared statements of the connection, or {@code null} if they are not cached. Only the thread that has
+         * borrowed the connection accesses them.
+         */
+        final Cache<StatementKey, CachedStatement> statements;
+
+        PoolEntry(Connection connection, long creationTime, int statementCacheSize) {
+            this.connection = connection;
+            this.creationTime = creationTime;
+            if (statementCacheSize > 0) {
+                statements = new CacheLinkedMapImpl<>(statementCacheSize);
+                statements.setEvictionListener((key, statement, cause) -> statement.evict());
+            } else {
+                statements = null;
+            }
+        }
+
+        /**
+         * Marks the connection broken if the exception is a connection error.
+         *
+         * @param exception the exception thrown by the connection or its statement.
+         */
+        void checkBroken(Throwable exception) {
+            if (exception instanceof SQLException) {
+                String sqlState = ((SQLException) exception).getSQLState();
+                if (sqlState != null && sqlState.startsWith("08")) {
+                    broken = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Key of a cached prepared statement.
+     */
+    private static final class StatementKey {
+
+        /**
+         * The SQL text of the statement.
+         */
+        final String sql;
+
+        /**
+         * Whether the statement returns auto-generated keys, one of the {@link Statement} constants.
+         */
+        final int autoGeneratedKeys;
+
+        StatementKey(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            StatementKey that = (StatementKey) o;
+            return autoGeneratedKeys == that.autoGeneratedKeys && sql.equals(that.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + autoGeneratedKeys;
+        }
+    }
+
+    /**
+     * Prepared statement kept open by the statement cache of a connection.
+     */
+    private static final class CachedStatement {
+
+        /**
+         * The physical statement.
+         */
+        final PreparedStatement statement;
+
+        /**
+         * Whether the statement is currently used by a borrower.
+         */
+        boolean inUse;
+
+        /**
+         * Whether the statement has been evicted from the cache or cannot be reused, and must be closed once it is not
+         * used.
+         */
+        boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        /**
+         * Closes the statement evicted from the cache, or marks it to be closed once it is returned.
+         */
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        /**
+         * Returns the statement to the cache, or closes it if it has been evicted or cannot be reset.
+         */
+        void release() {
+            inUse = false;
+            try {
+                if (!evicted && !statement.isClosed()) {
+                    statement.clearParameters();
+                    statement.clearBatch();
+                    return;
+                }
+            } catch (SQLException e) {
+                // the statement cannot be reused
+            }
+            evicted = true;
+            closeQuietly();
+        }
+
+        /**
+         * Closes the physical statement.
+         */
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // the statement is discarded anyway
+            }
+        }
+    }
+
+    /**
+     * Handler of the borrowed connection proxy that returns the connection to the pool on close.
+     */
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        /**
+         * The pool the connection is borrowed from.
+         */
+        private final ConnectionPool pool;
+
+        /**
+         * The borrowed connection.
+         */
+        private final PoolEntry entry;
+
+        /**
+         * Whether the connection has been returned.
+         */
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        ConnectionHandler(ConnectionPool pool, PoolEntry entry) {
+            this.pool = pool;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        pool.release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed.get();
+                case "isValid":
+                    if (closed.get()) {
+                        return false;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + entry.connection;
+                default:
+                    break;
+            }
+            if (closed.get()) {
+                throw new SQLException("Connection is closed");
+            }
+            if (entry.statements != null && method.getName().equals("prepareStatement")) {
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                if (parameterTypes.length == 1) {
+                    return prepareStatement(proxy, (String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (parameterTypes.length == 2 && parameterTypes[1] == int.class) {
+                    return prepareStatement(proxy, (String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(entry.connection, args);
+            } catch (InvocationTargetException e) {
+                entry.checkBroken(e.getCause());
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Returns the cached statement for the SQL text and the generated keys mode, preparing it on a cache miss. If
+         * the cached statement is already in use, an uncached statement is prepared.
+         *
+         * @param proxy             the connection proxy.
+         * @param sql               the SQL text of the statement.
+         * @param autoGeneratedKeys whether the statement returns auto-generated keys.
+         * @return the statement proxy that returns the statement to the cache on close.
+         * @throws SQLException if a database access error occurs.
+         */
+        private PreparedStatement prepareStatement(Object proxy, String sql, int autoGeneratedKeys)
+                throws SQLException {
+            StatementKey key = new StatementKey(sql, autoGeneratedKeys);
+            CachedStatement cached = entry.statements.get(key);
+            try {
+                if (cached == null || cached.evicted) {
+                    cached = new CachedStatement(entry.connection.prepareStatement(sql, autoGeneratedKeys));
+                    entry.statements.put(key, cached);
+                } else if (cached.inUse) {
+                    return entry.connection.prepareStatement(sql, autoGeneratedKeys);
+                }
+            } catch (SQLException e) {
+                entry.checkBroken(e);
+                throw e;
+            }
+            cached.inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new StatementHandler((Connection) proxy, entry, cached));
+        }
+    }
+
+    /**
+     * Handler of the cached statement proxy that returns the statement to the cache on close.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        /**
+         * The connection proxy the statement is prepared by.
+         */
+        private final Connection connection;
+
+        /**
+         * The connection of the statement.
+         */
+        private final PoolEntry entry;
+
+        /**
+         * The cached statement.
+         */
+        private final CachedStatement cached;
+
+        /**
+         * Whether the statement has been returned.
+         */
+        private boolean closed;
+
+        StatementHandler(Connection connection, PoolEntry entry, CachedStatement cached) {
+            this.connection = connection;
+            this.entry = entry;
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        cached.release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + cached.statement;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                entry.checkBroken(e.getCause());
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Periodic housekeeping of a pool that does not keep an abandoned pool from being garbage collected.
+     */
+    private static final class Housekeeping implements Runnable {
+
+        /**
+         * The pool to clean up.
+         */
+        private final WeakReference<ConnectionPool> pool;
+
+        /**
+         * The scheduled task, cancelled once the pool is garbage collected.
+         */
+        private volatile ScheduledFuture<?> future;
+
+        Housekeeping(ConnectionPool pool) {
+            this.pool = new WeakReference<>(pool);
+        }
+
+        @Override
+        public void run() {
+            ConnectionPool connectionPool = pool.get();
+            if (connectionPool != null) {
+                connectionPool.housekeep();
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
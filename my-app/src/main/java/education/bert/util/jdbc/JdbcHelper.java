@@ -1,7 +1,18 @@
 package education.bert.util.jdbc;
 
+import education.bert.exception.DataAccessException;
+
+import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Utility class that makes working with databases easier.
@@ -9,17 +20,17 @@ import java.util.Optional;
 public class JdbcHelper {
 
     /**
-     * The wrapper for java.sql.Statement.executeUpdate with connection establishment and statement creation.
+     * The wrapper for java.sql.Statement.executeUpdate with borrowing a connection and statement creation.
      *
-     * @param url a database url.
-     * @param sql an SQL Data Manipulation Language (DML) statement.
+     * @param dataSource a source of database connections.
+     * @param sql        an SQL Data Manipulation Language (DML) statement.
      * @return either (1) the row count for SQL Data Manipulation Language (DML) statements or (2) 0 for SQL statements
      * that return nothing.
      * @throws SQLException if a database access error occurs.
      */
-    public static int executeUpdate(String url, String sql) throws SQLException {
+    public static int executeUpdate(DataSource dataSource, String sql) throws SQLException {
         try (
-                Connection connection = DriverManager.getConnection(url);
+                Connection connection = dataSource.getConnection();
                 Statement statement = connection.createStatement();
         ) {
             return statement.executeUpdate(sql);
@@ -27,67 +38,68 @@ public class JdbcHelper {
     }
 
     /**
-     * The wrapper for java.sql.PreparedStatement.executeUpdate with connection establishment and preparedStatement
+     * The wrapper for java.sql.PreparedStatement.executeUpdate with borrowing a connection and preparedStatement
      * creation.
      *
-     * @param url    a database url.
-     * @param sql    an SQL Data Manipulation Language (DML) statement.
-     * @param setter a PreparedStatementSetter functional interface implementation that sets the PreparedStatement.
+     * @param dataSource a source of database connections.
+     * @param sql        an SQL Data Manipulation Language (DML) statement.
+     * @param setter     a PreparedStatementSetter functional interface implementation that sets the PreparedStatement.
      * @return either (1) the row count for SQL Data Manipulation Language (DML) statements or (2) 0 for SQL statements
      * that return nothing.
      * @throws SQLException if a database access error occurs.
      */
-    public static int executeUpdate(String url, String sql, PreparedStatementSetter setter) throws SQLException {
+    public static int executeUpdate(DataSource dataSource, String sql, PreparedStatementSetter setter) throws SQLException {
         try (
-                Connection connection = DriverManager.getConnection(url);
-                PreparedStatement preparedStatement = setter.set(connection.prepareStatement(sql));
+                Connection connection = dataSource.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql);
         ) {
-            return preparedStatement.executeUpdate();
+            return setter.set(preparedStatement).executeUpdate();
         }
     }
 
     /**
-     * The wrapper for java.sql.PreparedStatement.executeUpdate with connection establishment and preparedStatement
+     * The wrapper for java.sql.PreparedStatement.executeUpdate with borrowing a connection and preparedStatement
      * creation that returns object containing the auto-generated key.
      *
-     * @param url    a database url.
-     * @param sql    an SQL Data Manipulation Language (DML) statement.
-     * @param setter a PreparedStatementSetter functional interface implementation that sets the PreparedStatement.
-     * @param <T>    the type of object containing the auto-generated key.
+     * @param dataSource a source of database connections.
+     * @param sql        an SQL Data Manipulation Language (DML) statement.
+     * @param setter     a PreparedStatementSetter functional interface implementation that sets the PreparedStatement.
+     * @param <T>        the type of object containing the auto-generated key.
      * @return the object containing the auto-generated key.
      * @throws SQLException if a database access error occurs.
      */
-    public static <T> T executeUpdateWithId(String url, String sql, PreparedStatementSetter setter) throws SQLException {
+    public static <T> T executeUpdateWithId(DataSource dataSource, String sql, PreparedStatementSetter setter) throws SQLException {
         try (
-                Connection connection = DriverManager.getConnection(url);
-                PreparedStatement preparedStatement = setter.set(connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS));
+                Connection connection = dataSource.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
         ) {
-            preparedStatement.executeUpdate();
-            ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
-            if (generatedKeys.next()) {
-                return (T) generatedKeys.getObject(1);
+            setter.set(preparedStatement).executeUpdate();
+            try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    return (T) generatedKeys.getObject(1);
+                }
             }
             throw new SQLException("No keys generated");
         }
     }
 
     /**
-     * The wrapper for java.sql.PreparedStatement.executeQuery with connection establishment, preparedStatement and
+     * The wrapper for java.sql.PreparedStatement.executeQuery with borrowing a connection, preparedStatement and
      * resultSet creation.
      *
-     * @param url    a database url.
-     * @param sql    an SQL Data Manipulation Language (DML) statement.
-     * @param setter a PreparedStatementSetter functional interface implementation that sets the PreparedStatement.
-     * @param mapper a RowMapper functional interface implementation that maps ResultSet to desired object.
-     * @param <T>    the type of object queried from the database.
+     * @param dataSource a source of database connections.
+     * @param sql        an SQL Data Manipulation Language (DML) statement.
+     * @param setter     a PreparedStatementSetter functional interface implementation that sets the PreparedStatement.
+     * @param mapper     a RowMapper functional interface implementation that maps ResultSet to desired object.
+     * @param <T>        the type of object queried from the database.
      * @return Optional container for the object queried from the database.
      * @throws SQLException if a database access error occurs.
      */
-    public static <T> Optional<T> executeQueryForObject(String url, String sql, PreparedStatementSetter setter, RowMapper<T> mapper) throws SQLException {
+    public static <T> Optional<T> executeQueryForObject(DataSource dataSource, String sql, PreparedStatementSetter setter, RowMapper<T> mapper) throws SQLException {
         try (
-                Connection connection = DriverManager.getConnection(url);
-                PreparedStatement preparedStatement = setter.set(connection.prepareStatement(sql));
-                ResultSet resultSet = preparedStatement.executeQuery();
+                Connection connection = dataSource.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                ResultSet resultSet = setter.set(preparedStatement).executeQuery();
         ) {
             if (resultSet.next()) {
                 return Optional.of(mapper.map(resultSet));
@@ -95,4 +107,207 @@ public class JdbcHelper {
             return Optional.empty();
         }
     }
+
+    /**
+     * The wrapper for java.sql.PreparedStatement.executeQuery with borrowing a connection, preparedStatement and
+     * resultSet creation that maps all rows of the resultSet.
+     *
+     * @param dataSource a source of database connections.
+     * @param sql        an SQL query.
+     * @param setter     a PreparedStatementSetter functional interface implementation that sets the PreparedStatement.
+     * @param mapper     a RowMapper functional interface implementation that maps ResultSet to desired object.
+     * @param <T>        the type of objects queried from the database.
+     * @return the objects queried from the database in the order of the rows.
+     * @throws SQLException if a database access error occurs.
+     */
+    public static <T> List<T> executeQueryForList(DataSource dataSource, String sql, PreparedStatementSetter setter, RowMapper<T> mapper) throws SQLException {
+        try (
+                Connection connection = dataSource.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                ResultSet resultSet = setter.set(preparedStatement).executeQuery();
+        ) {
+            List<T> result = new ArrayList<>();
+            while (resultSet.next()) {
+                result.add(mapper.map(resultSet));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The wrapper for java.sql.PreparedStatement.executeQuery that returns a lazily populated stream of the mapped
+     * rows. The rows are read through a forward-only resultSet in chunks of the fetch size, so the memory used does not
+     * depend on the number of rows. The borrowed connection stays in a read transaction until the stream is closed,
+     * so the stream must be closed, e.g. with try-with-resources. An SQLException thrown while reading the rows is
+     * replaced by DataAccessException.
+     *
+     * @param dataSource a source of database connections.
+     * @param sql        an SQL query.
+     * @param fetchSize  the number of rows to fetch from the database at a time, or 0 to fetch all rows at once.
+     * @param setter     a PreparedStatementSetter functional interface implementation that sets the PreparedStatement.
+     * @param mapper     a RowMapper functional interface implementation that maps ResultSet to desired object.
+     * @param <T>        the type of objects queried from the database.
+     * @return the stream of objects queried from the database in the order of the rows.
+     * @throws SQLException if a database access error occurs.
+     */
+    public static <T> Stream<T> executeQueryForStream(DataSource dataSource, String sql, int fetchSize, PreparedStatementSetter setter, RowMapper<T> mapper) throws SQLException {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("fetchSize must not be less than 0");
+        }
+        Connection connection = dataSource.getConnection();
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            // PostgreSQL uses a cursor, i.e. honors the fetch size, only outside of the autocommit mode.
+            connection.setAutoCommit(false);
+            preparedStatement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(fetchSize);
+            resultSet = setter.set(preparedStatement).executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                closeCursor(connection, preparedStatement, resultSet);
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        ResultSet rows = resultSet;
+        PreparedStatement statement = preparedStatement;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rows.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(rows));
+                    return true;
+                } catch (SQLException e) {
+                    throw new DataAccessException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                closeCursor(connection, statement, rows);
+            } catch (SQLException e) {
+                throw new DataAccessException(e);
+            }
+        });
+    }
+
+    /**
+     * Closes the resultSet and the preparedStatement, ends the read transaction and returns the connection.
+     *
+     * @param connection        the connection to be closed.
+     * @param preparedStatement the preparedStatement to be closed, or {@code null}.
+     * @param resultSet         the resultSet to be closed, or {@code null}.
+     * @throws SQLException if a database access error occurs.
+     */
+    private static void closeCursor(Connection connection, PreparedStatement preparedStatement, ResultSet resultSet) throws SQLException {
+        try {
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+            } finally {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Runs the callback in a transaction on a single connection. The transaction is committed if the callback
+     * succeeds, otherwise it is rolled back.
+     *
+     * @param dataSource a source of database connections.
+     * @param callback   a ConnectionCallback functional interface implementation that works with the connection.
+     * @param <T>        the type of the result of the callback.
+     * @return the result of the callback.
+     * @throws SQLException if a database access error occurs.
+     */
+    public static <T> T executeInTransaction(DataSource dataSource, ConnectionCallback<T> callback) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                T result = callback.call(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * The wrapper for java.sql.PreparedStatement.executeBatch that adds a set of parameters for each item to the
+     * batch.
+     *
+     * @param connection a connection to the database.
+     * @param sql        an SQL Data Manipulation Language (DML) statement.
+     * @param items      the items to be written.
+     * @param setter     a BatchSetter functional interface implementation that sets the parameters of an item.
+     * @param <E>        the type of the items.
+     * @return the row counts for the items in order.
+     * @throws SQLException if a database access error occurs.
+     */
+    public static <E> int[] executeBatch(Connection connection, String sql, Collection<? extends E> items, BatchSetter<? super E> setter) throws SQLException {
+        if (items.isEmpty()) {
+            return new int[0];
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            for (E item : items) {
+                setter.set(preparedStatement, item);
+                preparedStatement.addBatch();
+            }
+            return preparedStatement.executeBatch();
+        }
+    }
+
+    /**
+     * The wrapper for java.sql.PreparedStatement.executeBatch that adds a set of parameters for each item to the batch
+     * and returns the auto-generated keys.
+     *
+     * @param connection a connection to the database.
+     * @param sql        an SQL Data Manipulation Language (DML) statement.
+     * @param items      the items to be written.
+     * @param setter     a BatchSetter functional interface implementation that sets the parameters of an item.
+     * @param <E>        the type of the items.
+     * @param <T>        the type of object containing the auto-generated key.
+     * @return the auto-generated keys for the items in order.
+     * @throws SQLException if a database access error occurs.
+     */
+    public static <E, T> List<T> executeBatchWithIds(Connection connection, String sql, Collection<? extends E> items, BatchSetter<? super E> setter) throws SQLException {
+        List<T> keys = new ArrayList<>(items.size());
+        if (items.isEmpty()) {
+            return keys;
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (E item : items) {
+                setter.set(preparedStatement, item);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                while (generatedKeys.next()) {
+                    keys.add((T) generatedKeys.getObject(1));
+                }
+            }
+        }
+        if (keys.size() != items.size()) {
+            throw new SQLException("Expected " + items.size() + " generated keys but got " + keys.size());
+        }
+        return keys;
+    }
 }
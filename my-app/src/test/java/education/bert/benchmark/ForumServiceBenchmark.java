@@ -1,6 +1,8 @@
 package education.bert.benchmark;
 
 import education.bert.PostgresConfig;
+import education.bert.service.AsyncForumService;
+import education.bert.service.CachedAsyncForumService;
 import education.bert.service.CachedForumService;
 import education.bert.service.ForumService;
 import org.openjdk.jmh.annotations.*;
@@ -13,7 +15,7 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Benchmark class for testing both service without cache and service with cache.
+ * Benchmark class for testing service without cache and services with cache.
  */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -22,6 +24,14 @@ import java.util.concurrent.TimeUnit;
 @State(Scope.Benchmark)
 public class ForumServiceBenchmark {
 
+    /**
+     * The include pattern of the benchmarks run by the unit tests, i.e. those of the service without cache and the
+     * service with cache in the default mode. The benchmarks of the write modes and the asynchronous facades are run by
+     * {@link #main(String[])} only, so they do not prolong the unit tests.
+     */
+    public static final String unitTestBenchmarks = "\\.ForumServiceBenchmark\\."
+            + "(getSomePost|particularLoadTestScenario|randomLoadTestScenario)(CachedService)?$";
+
     /**
      * Service without cache to test.
      */
@@ -32,14 +42,40 @@ public class ForumServiceBenchmark {
      */
     private CachedForumService cachedService = new CachedForumService();
 
+    /**
+     * Service with cache in the write-through mode to test.
+     */
+    private CachedForumService writeThroughService = new CachedForumService();
+
+    /**
+     * Service with cache in the write-behind mode to test.
+     */
+    private CachedForumService writeBehindService = new CachedForumService();
+
+    /**
+     * Asynchronous facade of the service without cache to test.
+     */
+    private AsyncForumService asyncService;
+
+    /**
+     * Asynchronous facade of the service with cache to test.
+     */
+    private CachedAsyncForumService cachedAsyncService;
+
     {
         service.setDbUrl(PostgresConfig.url);
         cachedService.setDbUrl(PostgresConfig.url);
+        writeThroughService.setDbUrl(PostgresConfig.url);
+        writeThroughService.setWriteThrough(true);
+        writeBehindService.setDbUrl(PostgresConfig.url);
+        writeBehindService.enableWriteBehind(100, TimeUnit.MILLISECONDS);
+        asyncService = new AsyncForumService(service);
+        cachedAsyncService = new CachedAsyncForumService(cachedService);
     }
 
     /**
-     * Main method to run benchmark tests. Using the code below, you can run benchmarks anywhere you like, in particular
-     * inside unit tests.
+     * Main method to run all benchmark tests. Using the code below, you can run benchmarks anywhere you like, in
+     * particular inside unit tests, see {@link #unitTestBenchmarks}.
      *
      * @param args standard psvm arguments.
      * @throws RunnerException if JMH Runner issues occur.
@@ -48,6 +84,7 @@ public class ForumServiceBenchmark {
         Options options = new OptionsBuilder()
                 .include(ForumServiceBenchmark.class.getSimpleName())
                 .forks(1)
+                .jvmArgsAppend("-Ddb.url=" + PostgresConfig.url)
                 .shouldFailOnError(true)
                 .build();
         new Runner(options).run();
@@ -59,9 +96,25 @@ public class ForumServiceBenchmark {
     @Setup(Level.Iteration)
     public void setup() {
         cachedService.setup(50);
+        writeThroughService.setup(50);
+        writeBehindService.setup(50);
         LoadTestScenarios.addSomeInitialData(service);
     }
 
+    /**
+     * Closes the asynchronous facades and the connection pools of all services. This method is invoked after all
+     * iterations.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        asyncService.close();
+        cachedAsyncService.close();
+        service.close();
+        cachedService.close();
+        writeThroughService.close();
+        writeBehindService.close();
+    }
+
     /**
      * Executes getPost query via uncached service.
      *
@@ -104,6 +157,16 @@ public class ForumServiceBenchmark {
         LoadTestScenarios.particularLoadTestScenario(cachedService, blackhole);
     }
 
+    /**
+     * Executes particular load test scenario via cached service in the write-through mode.
+     *
+     * @param blackhole JMH Blackhole object for consuming the queried data.
+     */
+    @Benchmark
+    public void particularLoadTestScenarioWriteThroughService(Blackhole blackhole) {
+        LoadTestScenarios.particularLoadTestScenario(writeThroughService, blackhole);
+    }
+
     /**
      * Executes random load test scenario via uncached service in 10 threads.
      *
@@ -125,4 +188,37 @@ public class ForumServiceBenchmark {
     public void randomLoadTestScenarioCachedService(Blackhole blackhole) {
         LoadTestScenarios.randomLoadTestScenario(cachedService, blackhole);
     }
+
+    /**
+     * Executes random load test scenario via cached service in the write-behind mode in 100 threads.
+     *
+     * @param blackhole JMH Blackhole object for consuming the queried data.
+     */
+    @Threads(100)
+    @Benchmark
+    public void randomLoadTestScenarioWriteBehindService(Blackhole blackhole) {
+        LoadTestScenarios.randomLoadTestScenario(writeBehindService, blackhole);
+    }
+
+    /**
+     * Executes random asynchronous lookups via uncached service in 4 threads, each with 10 lookups in flight.
+     *
+     * @param blackhole JMH Blackhole object for consuming the queried data.
+     */
+    @Threads(4)
+    @Benchmark
+    public void randomAsyncLookupScenario(Blackhole blackhole) {
+        LoadTestScenarios.randomAsyncLookupScenario(asyncService, blackhole);
+    }
+
+    /**
+     * Executes random asynchronous lookups via cached service in 4 threads, each with 10 lookups in flight.
+     *
+     * @param blackhole JMH Blackhole object for consuming the queried data.
+     */
+    @Threads(4)
+    @Benchmark
+    public void randomAsyncLookupScenarioCachedService(Blackhole blackhole) {
+        LoadTestScenarios.randomAsyncLookupScenario(cachedAsyncService, blackhole);
+    }
 }
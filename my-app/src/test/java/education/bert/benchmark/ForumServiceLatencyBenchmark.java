@@ -0,0 +1,157 @@
+package education.bert.benchmark;
+
+import education.bert.PostgresConfig;
+import education.bert.service.CachedForumService;
+import education.bert.service.ForumService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark class for measuring the latency distribution and the throughput of the service with cache under a
+ * realistic {@link Workload}. The sample time mode reports the percentiles of the latency of a single operation, e.g.
+ * p50, p99 and p99.9, which the tail latency targets are checked against. The service without cache does not depend on
+ * the cache size, so it is measured once per workload by {@link UncachedForumServiceLatencyBenchmark}.
+ */
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ForumServiceLatencyBenchmark {
+
+    /**
+     * The mode of the service with cache to test: the default, the write-through or the write-behind mode.
+     */
+    @Param({"Cached", "WriteThrough", "WriteBehind"})
+    String implementation;
+
+    /**
+     * The maximum cache size of each query family.
+     */
+    @Param({"100", "1000", "10000"})
+    int cacheSize;
+
+    /**
+     * The number of users and posts in DB.
+     */
+    @Param("10000")
+    int keySpace;
+
+    /**
+     * The skew of the Zipfian distribution of the requested ids.
+     */
+    @Param("0.99")
+    double skew;
+
+    /**
+     * The percentage of reads among the operations.
+     */
+    @Param({"95", "50"})
+    int readPercent;
+
+    /**
+     * Service to test.
+     */
+    private ForumService service;
+
+    /**
+     * Main method to run the benchmark together with {@link UncachedForumServiceLatencyBenchmark} as the baseline. JMH
+     * command line options can be passed as arguments, e.g. {@code -p implementation=Cached -p cacheSize=1000} to
+     * measure only this configuration.
+     *
+     * @param args JMH command line options.
+     * @throws RunnerException            if JMH Runner issues occur.
+     * @throws CommandLineOptionException if the arguments can not be parsed.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ForumServiceLatencyBenchmark.class.getSimpleName())
+                .jvmArgsAppend("-Ddb.url=" + PostgresConfig.url)
+                .shouldFailOnError(true)
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * Creates the service and adds the users and posts to DB. This method is invoked before all iterations.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        CachedForumService cachedService = new CachedForumService();
+        cachedService.setDbUrl(PostgresConfig.url);
+        if ("WriteThrough".equals(implementation)) {
+            cachedService.setWriteThrough(true);
+        } else if ("WriteBehind".equals(implementation)) {
+            cachedService.enableWriteBehind(100, TimeUnit.MILLISECONDS);
+        } else if (!"Cached".equals(implementation)) {
+            throw new IllegalArgumentException("unknown implementation " + implementation);
+        }
+        cachedService.setup(cacheSize);
+        service = cachedService;
+        ForumService loader = new ForumService();
+        loader.setDbUrl(PostgresConfig.url);
+        try {
+            Workload.addInitialData(loader, keySpace);
+        } finally {
+            loader.close();
+        }
+    }
+
+    /**
+     * Closes the connection pool of the service. This method is invoked after all iterations.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    /**
+     * Executes the next operation of the workload of the thread.
+     *
+     * @param operations the workload of the thread.
+     * @param blackhole  JMH Blackhole object for consuming the queried data.
+     */
+    @Benchmark
+    public void operation(Operations operations, Blackhole blackhole) {
+        operations.workload.execute(service, blackhole);
+    }
+
+    /**
+     * The workload of a thread, so that the threads do not share a random generator. It is configured by the
+     * {@code keySpace}, {@code skew} and {@code readPercent} parameters of the benchmark that uses it.
+     */
+    @State(Scope.Thread)
+    public static class Operations {
+
+        /**
+         * The workload of the thread.
+         */
+        Workload workload;
+
+        /**
+         * Creates the workload of the thread seeded by the thread index. This method is invoked before all iterations.
+         *
+         * @param benchmark the parameters of the benchmark.
+         * @param params    the parameters of the thread.
+         */
+        @Setup(Level.Trial)
+        public void setup(BenchmarkParams benchmark, ThreadParams params) {
+            workload = new Workload(Integer.parseInt(benchmark.getParam("keySpace")),
+                    Double.parseDouble(benchmark.getParam("skew")), Integer.parseInt(benchmark.getParam("readPercent")),
+                    params.getThreadIndex());
+        }
+    }
+}
@@ -2,9 +2,15 @@ package education.bert.benchmark;
 
 import education.bert.model.PostModel;
 import education.bert.model.UserModel;
+import education.bert.service.AsyncForumService;
 import education.bert.service.ForumService;
 import org.openjdk.jmh.infra.Blackhole;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Utility class with some load test scenarios designed to test Forum services.
  */
@@ -16,27 +22,31 @@ public class LoadTestScenarios {
      * @param service service with which requests are executed.
      */
     public static void addSomeInitialData(ForumService service) {
-        service.saveUser(new UserModel(0, "Vasya"));
-        service.saveUser(new UserModel(0, "Petya"));
-        service.saveUser(new UserModel(0, "Ivan"));
-        service.saveUser(new UserModel(0, "Masha"));
-        service.saveUser(new UserModel(0, "Sasha"));
-        service.saveUser(new UserModel(0, "Dasha"));
-        service.saveUser(new UserModel(0, "Bert"));
-        service.saveUser(new UserModel(0, "Kolya"));
-        service.saveUser(new UserModel(0, "Styopa"));
-        service.saveUser(new UserModel(0, "Alesha"));
-
-        service.savePost(new PostModel(0, "Hello Friends", 1));
-        service.savePost(new PostModel(0, "Forum Rules", 2));
-        service.savePost(new PostModel(0, "General Discussion", 1));
-        service.savePost(new PostModel(0, "FAQ", 2));
-        service.savePost(new PostModel(0, "News", 1));
-        service.savePost(new PostModel(0, "Searching Teammates", 7));
-        service.savePost(new PostModel(0, "Please Help Me", 4));
-        service.savePost(new PostModel(0, "Technical Issues", 1));
-        service.savePost(new PostModel(0, "Guides", 2));
-        service.savePost(new PostModel(0, "Happy New Year", 7));
+        service.saveUsers(Arrays.asList(
+                new UserModel(0, "Vasya"),
+                new UserModel(0, "Petya"),
+                new UserModel(0, "Ivan"),
+                new UserModel(0, "Masha"),
+                new UserModel(0, "Sasha"),
+                new UserModel(0, "Dasha"),
+                new UserModel(0, "Bert"),
+                new UserModel(0, "Kolya"),
+                new UserModel(0, "Styopa"),
+                new UserModel(0, "Alesha")
+        ));
+
+        service.savePosts(Arrays.asList(
+                new PostModel(0, "Hello Friends", 1),
+                new PostModel(0, "Forum Rules", 2),
+                new PostModel(0, "General Discussion", 1),
+                new PostModel(0, "FAQ", 2),
+                new PostModel(0, "News", 1),
+                new PostModel(0, "Searching Teammates", 7),
+                new PostModel(0, "Please Help Me", 4),
+                new PostModel(0, "Technical Issues", 1),
+                new PostModel(0, "Guides", 2),
+                new PostModel(0, "Happy New Year", 7)
+        ));
     }
 
     /**
@@ -155,4 +165,35 @@ public class LoadTestScenarios {
                 break;
         }
     }
+
+    /**
+     * Executes random test scenario that fans out multiple lookups at once and waits for all of them.
+     *
+     * @param service   asynchronous service with which requests are executed.
+     * @param blackhole JMH Blackhole object for consuming the queried data.
+     */
+    public static void randomAsyncLookupScenario(AsyncForumService service, Blackhole blackhole) {
+        int usersCount = service.getUsersCount().join();
+        int postsCount = service.getPostsCount().join();
+        List<CompletableFuture<?>> lookups = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            int randomCase = (int) (3 * Math.random());
+            switch (randomCase) {
+                case 0:
+                    lookups.add(service.getUser((int) (usersCount * Math.random() + 1)));
+                    break;
+                case 1:
+                    lookups.add(service.getPost((int) (postsCount * Math.random() + 1)));
+                    break;
+                case 2:
+                    lookups.add(service.getPostsCountForCreator((int) (usersCount * Math.random() + 1)));
+                    break;
+            }
+        }
+
+        for (CompletableFuture<?> lookup : lookups) {
+            blackhole.consume(lookup.join());
+        }
+    }
 }
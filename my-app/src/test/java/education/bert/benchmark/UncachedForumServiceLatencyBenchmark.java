@@ -0,0 +1,99 @@
+package education.bert.benchmark;
+
+import education.bert.PostgresConfig;
+import education.bert.service.ForumService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark class for measuring the latency distribution and the throughput of the service without cache under the
+ * same {@link Workload} as {@link ForumServiceLatencyBenchmark}, as the baseline for the service with cache.
+ */
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class UncachedForumServiceLatencyBenchmark {
+
+    /**
+     * The number of users and posts in DB.
+     */
+    @Param("10000")
+    int keySpace;
+
+    /**
+     * The skew of the Zipfian distribution of the requested ids.
+     */
+    @Param("0.99")
+    double skew;
+
+    /**
+     * The percentage of reads among the operations.
+     */
+    @Param({"95", "50"})
+    int readPercent;
+
+    /**
+     * Service to test.
+     */
+    private ForumService service;
+
+    /**
+     * Main method to run the benchmark. JMH command line options can be passed as arguments, e.g.
+     * {@code -p readPercent=95} to measure only this workload.
+     *
+     * @param args JMH command line options.
+     * @throws RunnerException            if JMH Runner issues occur.
+     * @throws CommandLineOptionException if the arguments can not be parsed.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(UncachedForumServiceLatencyBenchmark.class.getSimpleName())
+                .jvmArgsAppend("-Ddb.url=" + PostgresConfig.url)
+                .shouldFailOnError(true)
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * Creates the service and adds the users and posts to DB. This method is invoked before all iterations.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        service = new ForumService();
+        service.setDbUrl(PostgresConfig.url);
+        service.setup();
+        Workload.addInitialData(service, keySpace);
+    }
+
+    /**
+     * Closes the connection pool of the service. This method is invoked after all iterations.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    /**
+     * Executes the next operation of the workload of the thread.
+     *
+     * @param operations the workload of the thread.
+     * @param blackhole  JMH Blackhole object for consuming the queried data.
+     */
+    @Benchmark
+    public void operation(ForumServiceLatencyBenchmark.Operations operations, Blackhole blackhole) {
+        operations.workload.execute(service, blackhole);
+    }
+}
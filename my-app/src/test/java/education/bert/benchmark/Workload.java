@@ -0,0 +1,150 @@
+package education.bert.benchmark;
+
+import education.bert.model.PostModel;
+import education.bert.model.UserModel;
+import education.bert.service.ForumService;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generator of a realistic workload for Forum services. The ids of the requested users and posts follow a Zipfian
+ * distribution: a few hot ids are requested most of the time and the id of rank {@code i} is requested with frequency
+ * proportional to {@code 1 / i^skew}, as in YCSB. Reads are lookups of users, posts and posts counts by creator, writes
+ * are renames of existing users and posts, so the set of ids stays the same during a run.
+ * <p>
+ * A workload is not thread-safe: every thread gets its own one with its own seed, so that the threads do not contend on
+ * a shared random generator and each run requests the same ids.
+ */
+public class Workload {
+
+    /**
+     * The number of distinct user ids and post ids.
+     */
+    private final int keySpace;
+
+    /**
+     * The percentage of reads among the operations.
+     */
+    private final int readPercent;
+
+    /**
+     * The random generator of the thread.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The sum of the first two terms of the harmonic series.
+     */
+    private final double zeta2;
+
+    /**
+     * The generalized harmonic number of the key space.
+     */
+    private final double zetaN;
+
+    /**
+     * The exponent of the inverse distribution function.
+     */
+    private final double alpha;
+
+    /**
+     * The scale of the inverse distribution function.
+     */
+    private final double eta;
+
+    /**
+     * Constructs a workload over the ids from 1 to {@code keySpace}.
+     *
+     * @param keySpace    the number of distinct user ids and post ids.
+     * @param skew        the skew of the distribution in the range {@code (0, 1)}, e.g. 0.99 as in YCSB.
+     * @param readPercent the percentage of reads among the operations.
+     * @param seed        the seed of the random generator.
+     */
+    public Workload(int keySpace, double skew, int readPercent, long seed) {
+        if (keySpace < 2) {
+            throw new IllegalArgumentException("keySpace must not be less than 2");
+        }
+        if (skew <= 0 || skew >= 1) {
+            throw new IllegalArgumentException("skew must be in the range (0, 1)");
+        }
+        if (readPercent < 0 || readPercent > 100) {
+            throw new IllegalArgumentException("readPercent must be in the range [0, 100]");
+        }
+        this.keySpace = keySpace;
+        this.readPercent = readPercent;
+        this.random = new SplittableRandom(seed);
+        zeta2 = 1 + Math.pow(0.5, skew);
+        double sum = 0;
+        for (int i = 1; i <= keySpace; i++) {
+            sum += 1 / Math.pow(i, skew);
+        }
+        zetaN = sum;
+        alpha = 1 / (1 - skew);
+        eta = (1 - Math.pow(2.0 / keySpace, 1 - skew)) / (1 - zeta2 / zetaN);
+    }
+
+    /**
+     * Adds the users and posts requested by the workload via specified service. Post {@code i} is created by user
+     * {@code i}, so every user has a single post.
+     *
+     * @param service  service with which requests are executed.
+     * @param keySpace the number of users and posts to add.
+     */
+    public static void addInitialData(ForumService service, int keySpace) {
+        List<UserModel> users = new ArrayList<>(keySpace);
+        List<PostModel> posts = new ArrayList<>(keySpace);
+        for (int i = 1; i <= keySpace; i++) {
+            users.add(new UserModel(0, "User " + i));
+            posts.add(new PostModel(0, "Post " + i, i));
+        }
+        service.saveUsers(users);
+        service.savePosts(posts);
+    }
+
+    /**
+     * Returns the next requested id.
+     *
+     * @return an id from 1 to {@code keySpace}, lower ids are more popular.
+     */
+    public int nextId() {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 1;
+        }
+        if (uz < zeta2) {
+            return 2;
+        }
+        return 1 + Math.min(keySpace - 1, (int) (keySpace * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    /**
+     * Executes the next operation of the workload.
+     *
+     * @param service   service with which requests are executed.
+     * @param blackhole JMH Blackhole object for consuming the queried data.
+     */
+    public void execute(ForumService service, Blackhole blackhole) {
+        int id = nextId();
+        if (random.nextInt(100) < readPercent) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    blackhole.consume(service.getUser(id));
+                    break;
+                case 1:
+                    blackhole.consume(service.getPost(id));
+                    break;
+                default:
+                    blackhole.consume(service.getPostsCountForCreator(id));
+                    break;
+            }
+        } else if (random.nextBoolean()) {
+            blackhole.consume(service.saveUser(new UserModel(id, "renamed User " + id)));
+        } else {
+            blackhole.consume(service.savePost(new PostModel(id, "changed Post " + id, id)));
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package education.bert.unit;
 
 import education.bert.PostgresConfig;
+import education.bert.exception.DataAccessException;
 import education.bert.model.PostModel;
 import education.bert.model.UserModel;
 import education.bert.service.ForumService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class AForumServiceTest {
@@ -25,6 +34,11 @@ public class AForumServiceTest {
         service.setup();
     }
 
+    @AfterEach
+    public void tearDown() {
+        service.close();
+    }
+
     @Test
     public void saveGetUserTest() {
         UserModel user = new UserModel(0, "Vasya");
@@ -142,4 +156,96 @@ public class AForumServiceTest {
         service.savePost(new PostModel(0, "General Discussion", 1));
         assertEquals(2, service.getPostsCountForCreator(1));
     }
+
+    @Test
+    public void saveUsersTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+
+        assertEquals(
+                Arrays.asList(new UserModel(2, "Petya"), new UserModel(1, "Vasiliy"), null, new UserModel(3, "Ivan")),
+                service.saveUsers(Arrays.asList(new UserModel(0, "Petya"), new UserModel(1, "Vasiliy"),
+                        new UserModel(5, "Masha"), new UserModel(0, "Ivan")))
+        );
+        assertEquals(new UserModel(1, "Vasiliy"), service.getUser(1));
+        assertEquals(new UserModel(3, "Ivan"), service.getUser(3));
+        assertEquals(3, service.getUsersCount());
+        assertEquals(Collections.emptyList(), service.saveUsers(Collections.emptyList()));
+    }
+
+    @Test
+    public void savePostsTest() {
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+
+        assertEquals(
+                Arrays.asList(new PostModel(1, "Hello Folks", 1), new PostModel(2, "Forum Rules", 2), null),
+                service.savePosts(Arrays.asList(new PostModel(1, "Hello Folks", 1), new PostModel(0, "Forum Rules", 2),
+                        new PostModel(5, "FAQ", 2)))
+        );
+        assertEquals(new PostModel(1, "Hello Folks", 1), service.getPost(1));
+        assertEquals(new PostModel(2, "Forum Rules", 2), service.getPost(2));
+        assertEquals(2, service.getPostsCount());
+    }
+
+    @Test
+    public void failedBatchShouldBeRolledBackTest() {
+        assertThrows(DataAccessException.class, () -> service.savePosts(Arrays.asList(
+                new PostModel(0, "Hello Friends", 1), new PostModel(0, null, 1))));
+        assertEquals(0, service.getPostsCount());
+        assertThrows(DataAccessException.class, () -> service.saveUsers(Arrays.asList(
+                new UserModel(0, "Vasya"), new UserModel(0, null))));
+        assertEquals(0, service.getUsersCount());
+    }
+
+    @Test
+    public void getUsersTest() {
+        service.saveUsers(Arrays.asList(new UserModel(0, "Vasya"), new UserModel(0, "Petya"),
+                new UserModel(0, "Ivan")));
+
+        Map<Integer, UserModel> users = service.getUsers(new int[]{3, 5, 1, 3});
+        assertEquals(Arrays.asList(3, 1), new ArrayList<>(users.keySet()));
+        assertEquals(new UserModel(3, "Ivan"), users.get(3));
+        assertEquals(new UserModel(1, "Vasya"), users.get(1));
+        assertEquals(Collections.emptyMap(), service.getUsers(new int[0]));
+    }
+
+    @Test
+    public void getPostsTest() {
+        service.savePosts(Arrays.asList(new PostModel(0, "Hello Friends", 1), new PostModel(0, "Forum Rules", 2)));
+
+        Map<Integer, PostModel> posts = service.getPosts(new int[]{2, 1, 7});
+        assertEquals(Arrays.asList(2, 1), new ArrayList<>(posts.keySet()));
+        assertEquals(new PostModel(2, "Forum Rules", 2), posts.get(2));
+        assertEquals(new PostModel(1, "Hello Friends", 1), posts.get(1));
+        assertEquals(Collections.emptyMap(), service.getPosts(new int[0]));
+    }
+
+    @Test
+    public void streamPostsTest() {
+        service.savePosts(Arrays.asList(new PostModel(0, "Hello Friends", 1), new PostModel(0, "Forum Rules", 2),
+                new PostModel(0, "General Discussion", 1)));
+
+        try (Stream<PostModel> posts = service.streamPostsForCreator(1)) {
+            assertEquals(Arrays.asList(new PostModel(1, "Hello Friends", 1), new PostModel(3, "General Discussion", 1)),
+                    posts.collect(Collectors.toList()));
+        }
+        try (Stream<PostModel> posts = service.streamPosts()) {
+            assertEquals(3, posts.count());
+        }
+        assertEquals(0, service.getConnectionPool().getActiveConnections());
+    }
+
+    @Test
+    public void streamUsersTest() {
+        service.saveUsers(Arrays.asList(new UserModel(0, "Vasya"), new UserModel(0, "Petya")));
+
+        try (Stream<UserModel> users = service.streamUsers()) {
+            assertEquals(new UserModel(1, "Vasya"), users.findFirst().orElse(null));
+        }
+        assertEquals(0, service.getConnectionPool().getActiveConnections());
+
+        service.dropTables();
+
+        assertThrows(DataAccessException.class, service::streamUsers);
+        assertEquals(0, service.getConnectionPool().getActiveConnections());
+    }
 }
@@ -0,0 +1,104 @@
+package education.bert.unit;
+
+import education.bert.PostgresConfig;
+import education.bert.exception.DataAccessException;
+import education.bert.model.PostModel;
+import education.bert.model.UserModel;
+import education.bert.service.AsyncForumService;
+import education.bert.service.ForumService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncForumServiceTest {
+    private final ForumService service = new ForumService();
+    private AsyncForumService asyncService;
+
+    {
+        service.setDbUrl(PostgresConfig.url);
+    }
+
+    @BeforeEach
+    public void setup() {
+        service.setup();
+        asyncService = new AsyncForumService(service);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        asyncService.close();
+        service.close();
+    }
+
+    @Test
+    public void shouldThrowExceptionsTest() {
+        assertThrows(NullPointerException.class, () -> new AsyncForumService(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AsyncForumService(service, 0));
+    }
+
+    @Test
+    public void usersTest() {
+        assertEquals(new UserModel(1, "Vasya"), asyncService.saveUser(new UserModel(0, "Vasya")).join());
+        assertEquals(Arrays.asList(new UserModel(2, "Petya"), new UserModel(3, "Ivan")),
+                asyncService.saveUsers(Arrays.asList(new UserModel(0, "Petya"), new UserModel(0, "Ivan"))).join());
+        assertEquals(new UserModel(2, "Petya"), asyncService.getUser(2).join());
+        assertEquals(Arrays.asList(3, 1), new ArrayList<>(asyncService.getUsers(new int[]{3, 1}).join().keySet()));
+        assertEquals(3, asyncService.getUsersCount().join().intValue());
+        assertTrue(asyncService.removeUser(2).join());
+        assertNull(asyncService.getUser(2).join());
+    }
+
+    @Test
+    public void postsTest() {
+        assertEquals(new PostModel(1, "Hello Friends", 1),
+                asyncService.savePost(new PostModel(0, "Hello Friends", 1)).join());
+        assertEquals(Arrays.asList(new PostModel(2, "Forum Rules", 2), new PostModel(3, "General Discussion", 1)),
+                asyncService.savePosts(Arrays.asList(new PostModel(0, "Forum Rules", 2),
+                        new PostModel(0, "General Discussion", 1))).join());
+        assertEquals(new PostModel(2, "Forum Rules", 2), asyncService.getPost(2).join());
+        assertEquals(2, asyncService.getPosts(new int[]{1, 2, 5}).join().size());
+        assertEquals(3, asyncService.getPostsCount().join().intValue());
+        assertEquals(2, asyncService.getPostsCountForCreator(1).join().intValue());
+        assertTrue(asyncService.removePost(1).join());
+    }
+
+    @Test
+    public void fanOutShouldNotExceedPoolTest() {
+        asyncService.close();
+        asyncService = new AsyncForumService(service, 2);
+        asyncService.saveUser(new UserModel(0, "Vasya")).join();
+        List<CompletableFuture<UserModel>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(asyncService.getUser(1));
+        }
+        for (CompletableFuture<UserModel> future : futures) {
+            assertEquals(new UserModel(1, "Vasya"), future.join());
+        }
+        assertTrue(service.getConnectionPool().getTotalConnections() <= 2);
+    }
+
+    @Test
+    public void exceptionShouldCompleteFutureExceptionallyTest() {
+        service.dropTables();
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> asyncService.getUser(1).join());
+        assertTrue(exception.getCause() instanceof DataAccessException);
+    }
+
+    @Test
+    public void closedServiceShouldRejectCallsTest() {
+        asyncService.close();
+
+        assertThrows(RejectedExecutionException.class, () -> asyncService.getPost(1));
+    }
+}
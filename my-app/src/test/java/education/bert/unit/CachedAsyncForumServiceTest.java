@@ -0,0 +1,99 @@
+package education.bert.unit;
+
+import education.bert.PostgresConfig;
+import education.bert.model.PostModel;
+import education.bert.model.UserModel;
+import education.bert.service.CachedAsyncForumService;
+import education.bert.service.CachedForumService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachedAsyncForumServiceTest {
+    private final CachedForumService service = new CachedForumService();
+    private CachedAsyncForumService asyncService;
+
+    {
+        service.setDbUrl(PostgresConfig.url);
+    }
+
+    @BeforeEach
+    public void setup() {
+        service.setup(3, true);
+        asyncService = new CachedAsyncForumService(service);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        asyncService.close();
+        service.close();
+    }
+
+    @Test
+    public void cacheHitsShouldCompleteImmediatelyTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+
+        assertEquals(new UserModel(1, "Vasya"), asyncService.getUser(1).join());
+        assertEquals(new PostModel(1, "Hello Friends", 1), asyncService.getPost(1).join());
+
+        asyncService.close();
+        CompletableFuture<UserModel> user = asyncService.getUser(1);
+        CompletableFuture<PostModel> post = asyncService.getPost(1);
+
+        assertTrue(user.isDone());
+        assertEquals(new UserModel(1, "Vasya"), user.join());
+        assertEquals(new PostModel(1, "Hello Friends", 1), post.join());
+        assertEquals(1, service.getCacheStats().get("users").getHitCount());
+        assertEquals(1, service.getCacheStats().get("users").getMissCount());
+    }
+
+    @Test
+    public void cachedCountsShouldCompleteImmediatelyTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+
+        assertEquals(1, asyncService.getUsersCount().join());
+        assertEquals(1, asyncService.getPostsCount().join());
+        assertEquals(1, asyncService.getPostsCountForCreator(1).join());
+        service.saveUser(new UserModel(0, "Petya"));
+        service.savePost(new PostModel(0, "Hi", 1));
+
+        asyncService.close();
+        CompletableFuture<Integer> usersCount = asyncService.getUsersCount();
+        CompletableFuture<Integer> postsCount = asyncService.getPostsCount();
+        CompletableFuture<Integer> postsCountForCreator = asyncService.getPostsCountForCreator(1);
+
+        assertTrue(usersCount.isDone());
+        assertEquals(2, usersCount.join());
+        assertEquals(2, postsCount.join());
+        assertEquals(2, postsCountForCreator.join());
+        assertNull(service.getPostsCountForCreatorIfCached(2));
+        assertEquals(1, service.getCacheStats().get("postsCountForCreator").getHitCount());
+        assertEquals(1, service.getCacheStats().get("postsCountForCreator").getMissCount());
+    }
+
+    @Test
+    public void cacheMissesShouldBeLoadedTest() {
+        asyncService.close();
+        asyncService = new CachedAsyncForumService(service, 1);
+        service.saveUser(new UserModel(0, "Vasya"));
+
+        assertNull(asyncService.getPost(1).join());
+        assertEquals(new UserModel(1, "Vasya"), asyncService.getUser(1).join());
+        assertEquals(new UserModel(1, "Vasya"), service.getUserIfCached(1));
+        assertNull(service.getPostIfCached(1));
+
+        assertNull(service.getUsersCountIfCached());
+        assertEquals(1, asyncService.getUsersCount().join());
+        assertEquals(0, asyncService.getPostsCount().join());
+        assertEquals(0, asyncService.getPostsCountForCreator(1).join());
+        assertEquals(1, service.getUsersCountIfCached());
+        assertEquals(0, service.getPostsCountIfCached());
+        assertEquals(0, service.getPostsCountForCreatorIfCached(1));
+    }
+}
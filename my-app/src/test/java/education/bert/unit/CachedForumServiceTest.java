@@ -1,21 +1,38 @@
 package education.bert.unit;
 
+import education.bert.CacheStats;
 import education.bert.PostgresConfig;
 import education.bert.benchmark.ForumServiceBenchmark;
 import education.bert.exception.DataAccessException;
 import education.bert.model.PostModel;
 import education.bert.model.UserModel;
 import education.bert.service.CachedForumService;
+import education.bert.service.ForumService;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class CachedForumServiceTest extends AForumServiceTest {
     private final CachedForumService service = new CachedForumService();
@@ -28,8 +45,9 @@ public class CachedForumServiceTest extends AForumServiceTest {
     @AfterAll
     static void benchmarkRunner() throws RunnerException {
         Options options = new OptionsBuilder()
-                .include(ForumServiceBenchmark.class.getSimpleName())
+                .include(ForumServiceBenchmark.unitTestBenchmarks)
                 .forks(1)
+                .jvmArgsAppend("-Ddb.url=" + PostgresConfig.url)
                 .shouldFailOnError(true)
                 .build();
         new Runner(options).run();
@@ -81,7 +99,7 @@ public class CachedForumServiceTest extends AForumServiceTest {
     }
 
     @Test
-    public void saveUserShouldInvalidateGetUsersCountTest() {
+    public void saveUserShouldUpdateGetUsersCountTest() {
         UserModel user = new UserModel(0, "Vasya");
         UserModel newUser = new UserModel(0, "Petya");
 
@@ -91,7 +109,7 @@ public class CachedForumServiceTest extends AForumServiceTest {
         service.saveUser(newUser);
         service.dropTables();
 
-        assertThrows(DataAccessException.class, service::getUsersCount);
+        assertEquals(2, service.getUsersCount());
     }
 
     @Test
@@ -110,7 +128,7 @@ public class CachedForumServiceTest extends AForumServiceTest {
     }
 
     @Test
-    public void removeUserShouldInvalidateGetUserAndCountTest() {
+    public void removeUserShouldInvalidateGetUserAndUpdateCountTest() {
         UserModel user = new UserModel(0, "Vasya");
         UserModel savedUser = new UserModel(1, "Vasya");
 
@@ -122,11 +140,11 @@ public class CachedForumServiceTest extends AForumServiceTest {
         service.dropTables();
 
         assertThrows(DataAccessException.class, () -> service.getUser(1));
-        assertThrows(DataAccessException.class, service::getUsersCount);
+        assertEquals(0, service.getUsersCount());
     }
 
     @Test
-    public void savePostShouldInvalidateGetPostsCountTest() {
+    public void savePostShouldUpdateGetPostsCountsTest() {
         PostModel post = new PostModel(0, "Hello Friends", 1);
         PostModel newPost = new PostModel(0, "Forum Rules", 2);
 
@@ -137,8 +155,76 @@ public class CachedForumServiceTest extends AForumServiceTest {
         service.savePost(newPost);
         service.dropTables();
 
-        assertThrows(DataAccessException.class, service::getPostsCount);
-        assertThrows(DataAccessException.class, () -> service.getPostsCountForCreator(2));
+        assertEquals(2, service.getPostsCount());
+        assertEquals(1, service.getPostsCountForCreator(2));
+        assertThrows(DataAccessException.class, () -> service.getPostsCountForCreator(1));
+    }
+
+    @Test
+    public void saveUsersShouldInvalidateGetUserAndUpdateCountTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+        assertEquals(new UserModel(1, "Vasya"), service.getUser(1));
+        assertEquals(1, service.getUsersCount());
+
+        service.saveUsers(Arrays.asList(new UserModel(1, "Vasiliy"), new UserModel(0, "Petya"),
+                new UserModel(0, "Ivan")));
+        service.dropTables();
+
+        assertThrows(DataAccessException.class, () -> service.getUser(1));
+        assertEquals(3, service.getUsersCount());
+    }
+
+    @Test
+    public void savePostsShouldInvalidateGetPostAndUpdateCountsTest() {
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        assertEquals(new PostModel(1, "Hello Friends", 1), service.getPost(1));
+        assertEquals(1, service.getPostsCount());
+        assertEquals(1, service.getPostsCountForCreator(1));
+        assertEquals(0, service.getPostsCountForCreator(2));
+        assertEquals(0, service.getPostsCountForCreator(3));
+
+        service.savePosts(Arrays.asList(new PostModel(1, "Hello Folks", 1), new PostModel(0, "Forum Rules", 2),
+                new PostModel(0, "FAQ", 2)));
+        service.dropTables();
+
+        assertThrows(DataAccessException.class, () -> service.getPost(1));
+        assertEquals(3, service.getPostsCount());
+        assertEquals(2, service.getPostsCountForCreator(2));
+        assertEquals(1, service.getPostsCountForCreator(1));
+        assertEquals(0, service.getPostsCountForCreator(3));
+    }
+
+    @Test
+    public void updateOnlyBatchShouldKeepCountsTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        assertEquals(1, service.getUsersCount());
+        assertEquals(1, service.getPostsCount());
+
+        service.saveUsers(Arrays.asList(new UserModel(1, "Vasiliy")));
+        service.savePosts(Arrays.asList(new PostModel(1, "Hello Folks", 1)));
+        service.dropTables();
+
+        assertEquals(1, service.getUsersCount());
+        assertEquals(1, service.getPostsCount());
+    }
+
+    @Test
+    public void updatePostShouldMoveItBetweenCreatorCountsTest() {
+        service.savePosts(Arrays.asList(new PostModel(0, "Hello Friends", 1), new PostModel(0, "Forum Rules", 1)));
+        assertEquals(2, service.getPostsCount());
+        assertEquals(2, service.getPostsCountForCreator(1));
+        assertEquals(0, service.getPostsCountForCreator(2));
+        assertEquals(0, service.getPostsCountForCreator(3));
+
+        service.savePost(new PostModel(1, "Hello Friends", 2));
+        service.savePosts(Arrays.asList(new PostModel(2, "Forum Rules", 3), new PostModel(3, "FAQ", 3)));
+        service.dropTables();
+
+        assertEquals(2, service.getPostsCount());
+        assertEquals(0, service.getPostsCountForCreator(1));
+        assertEquals(1, service.getPostsCountForCreator(2));
+        assertEquals(1, service.getPostsCountForCreator(3));
     }
 
     @Test
@@ -157,7 +243,7 @@ public class CachedForumServiceTest extends AForumServiceTest {
     }
 
     @Test
-    public void removePostShouldInvalidateGetPostAndCountTest() {
+    public void removePostShouldInvalidateGetPostAndUpdateCountsTest() {
         PostModel post = new PostModel(0, "Hello Friends", 1);
         PostModel savedPost = new PostModel(1, "Hello Friends", 1);
 
@@ -170,8 +256,160 @@ public class CachedForumServiceTest extends AForumServiceTest {
         service.dropTables();
 
         assertThrows(DataAccessException.class, () -> service.getPost(1));
-        assertThrows(DataAccessException.class, service::getPostsCount);
-        assertThrows(DataAccessException.class, () -> service.getPostsCountForCreator(1));
+        assertEquals(0, service.getPostsCount());
+        assertEquals(0, service.getPostsCountForCreator(1));
+    }
+
+    @Test
+    public void countsShouldNotBeReloadedAfterWritesTest() {
+        service.setup(3, true);
+        assertEquals(0, service.getUsersCount());
+        assertEquals(0, service.getPostsCount());
+        assertEquals(0, service.getPostsCountForCreator(1));
+
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        service.savePosts(Arrays.asList(new PostModel(0, "Forum Rules", 1), new PostModel(0, "FAQ", 2)));
+        service.removePost(3);
+
+        assertEquals(1, service.getUsersCount());
+        assertEquals(2, service.getPostsCount());
+        assertEquals(2, service.getPostsCountForCreator(1));
+        assertEquals(2, service.getCacheStats().get("counts").getMissCount());
+        assertEquals(1, service.getCacheStats().get("postsCountForCreator").getMissCount());
+    }
+
+    @Test
+    public void reconcileCountsShouldReloadCountsTest() {
+        service.setup(3, true);
+        assertEquals(0, service.getUsersCount());
+        assertEquals(0, service.getPostsCountForCreator(1));
+        ForumService other = new ForumService();
+        other.setDbUrl(PostgresConfig.url);
+        try {
+            other.saveUser(new UserModel(0, "Vasya"));
+            other.savePost(new PostModel(0, "Hello Friends", 1));
+        } finally {
+            other.close();
+        }
+        assertEquals(0, service.getUsersCount());
+        assertEquals(0, service.getPostsCountForCreator(1));
+
+        service.reconcileCounts();
+
+        assertEquals(1, service.getUsersCount());
+        assertEquals(1, service.getPostsCountForCreator(1));
+        assertNull(service.getPostsCountIfCached());
+        assertEquals(1, service.getCacheStats().get("counts").getMissCount());
+        assertEquals(1, service.getCacheStats().get("postsCountForCreator").getMissCount());
+    }
+
+    @Test
+    public void countsReconciliationShouldRunPeriodicallyTest() throws InterruptedException {
+        assertThrows(IllegalArgumentException.class, () -> service.scheduleCountsReconciliation(0,
+                TimeUnit.MILLISECONDS));
+        assertEquals(0, service.getUsersCount());
+        ForumService other = new ForumService();
+        other.setDbUrl(PostgresConfig.url);
+        try {
+            other.saveUser(new UserModel(0, "Vasya"));
+        } finally {
+            other.close();
+        }
+
+        service.scheduleCountsReconciliation(10, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 500 && service.getUsersCount() != 1; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, service.getUsersCount());
+    }
+
+    @Test
+    public void missingRowsShouldBeCachedTest() {
+        assertNull(service.getUser(1));
+        assertNull(service.getPost(1));
+        assertTrue(service.getUsers(new int[]{2, 3}).isEmpty());
+        assertTrue(service.getPosts(new int[]{2, 3}).isEmpty());
+
+        service.dropTables();
+
+        assertNull(service.getUser(1));
+        assertNull(service.getPost(1));
+        assertTrue(service.getUsers(new int[]{1, 2, 3}).isEmpty());
+        assertTrue(service.getPosts(new int[]{3, 2, 1}).isEmpty());
+        assertThrows(DataAccessException.class, () -> service.getUser(4));
+    }
+
+    @Test
+    public void addedRowsShouldNotBeCachedAsMissingTest() {
+        assertNull(service.getUser(1));
+        assertNull(service.getPost(2));
+        assertTrue(service.getUsers(new int[]{2, 3}).isEmpty());
+
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.saveUsers(Arrays.asList(new UserModel(0, "Petya"), new UserModel(0, "Ivan")));
+        service.savePosts(Arrays.asList(new PostModel(0, "Hello Friends", 1), new PostModel(0, "Forum Rules", 2)));
+
+        assertEquals(new UserModel(1, "Vasya"), service.getUser(1));
+        assertEquals(new PostModel(2, "Forum Rules", 2), service.getPost(2));
+        assertEquals(Arrays.asList(new UserModel(2, "Petya"), new UserModel(3, "Ivan")),
+                new ArrayList<>(service.getUsers(new int[]{2, 3}).values()));
+    }
+
+    @Test
+    public void updatedRowsShouldKeepMissingRowsCachedTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        assertNull(service.getUser(2));
+        assertNull(service.getPost(2));
+
+        service.saveUser(new UserModel(1, "Vasiliy"));
+        service.savePosts(Arrays.asList(new PostModel(1, "Hello Folks", 1)));
+        service.dropTables();
+
+        assertNull(service.getUser(2));
+        assertNull(service.getPost(2));
+        assertThrows(DataAccessException.class, () -> service.getUser(1));
+    }
+
+    @Test
+    public void missingRowsShouldExpireTest() throws InterruptedException {
+        assertThrows(IllegalArgumentException.class, () -> service.setNegativeCaching(0, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> service.setNegativeCaching(1, 0, TimeUnit.SECONDS));
+        service.setNegativeCaching(10, 1, TimeUnit.SECONDS);
+        service.setup(3);
+        ForumService other = new ForumService();
+        other.setDbUrl(PostgresConfig.url);
+        try {
+            assertNull(service.getUser(1));
+            other.saveUser(new UserModel(0, "Vasya"));
+        } finally {
+            other.close();
+        }
+        assertNull(service.getUser(1));
+
+        for (int i = 0; i < 500 && service.getUser(1) == null; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(new UserModel(1, "Vasya"), service.getUser(1));
+    }
+
+    @Test
+    public void missingRowsShouldNotEvictExistingRowsTest() {
+        service.setNegativeCaching(2, 1, TimeUnit.MINUTES);
+        service.setup(3, true);
+        service.saveUsers(Arrays.asList(new UserModel(0, "Vasya"), new UserModel(0, "Petya"),
+                new UserModel(0, "Ivan")));
+        service.getUsers(new int[]{1, 2, 3});
+
+        for (int id = 4; id < 100; id++) {
+            assertNull(service.getUser(id));
+        }
+        service.getUsers(new int[]{1, 2, 3});
+
+        assertEquals(3, service.getCacheStats().get("users").getHitCount());
     }
 
     @Test
@@ -182,17 +420,520 @@ public class CachedForumServiceTest extends AForumServiceTest {
         PostModel expectedPost = new PostModel(1, "Hello Friends", 1);
 
         service.saveUser(user);
+        service.saveUser(new UserModel(0, "Petya"));
+        service.saveUser(new UserModel(0, "Ivan"));
+        service.saveUser(new UserModel(0, "Masha"));
         service.savePost(post);
         assertEquals(expectedUser, service.getUser(1));
         assertEquals(expectedPost, service.getPost(1));
-        assertEquals(1, service.getUsersCount());
+        assertEquals(4, service.getUsersCount());
         assertEquals(1, service.getPostsCount());
+        service.getUser(2);
+        service.getUser(3);
+        service.getUser(2);
+        service.getUser(3);
+        service.getUser(4);
 
         service.dropTables();
 
         assertEquals(expectedPost, service.getPost(1));
-        assertEquals(1, service.getUsersCount());
+        assertEquals(new UserModel(4, "Masha"), service.getUser(4));
+        assertEquals(4, service.getUsersCount());
         assertEquals(1, service.getPostsCount());
         assertThrows(DataAccessException.class, () -> service.getUser(1));
     }
+
+    @Test
+    public void cacheStatsTest() {
+        service.setup(3, true);
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.getUser(1);
+        service.getUser(1);
+        service.getUsersCount();
+        Map<String, CacheStats> stats = service.getCacheStats();
+
+        assertEquals(1, stats.get("users").getHitCount());
+        assertEquals(1, stats.get("users").getMissCount());
+        assertEquals(1, stats.get("users").getLoadSuccessCount());
+        assertEquals(1, stats.get("counts").getMissCount());
+        assertEquals(0, stats.get("posts").getRequestCount());
+    }
+
+    @Test
+    public void cacheStatsMBeansShouldBeRegisteredPerInstanceTest() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("education.bert:type=CacheStats,*");
+        service.setup(3, true);
+        int registered = server.queryNames(pattern, null).size();
+
+        CachedForumService other = new CachedForumService();
+        other.setDbUrl(PostgresConfig.url);
+        try {
+            other.setup(3, true);
+            assertEquals(registered + 4, server.queryNames(pattern, null).size());
+            other.setup(3, false);
+            assertEquals(registered, server.queryNames(pattern, null).size());
+            other.setup(3, true);
+        } finally {
+            other.close();
+        }
+        assertEquals(registered, server.queryNames(pattern, null).size());
+
+        service.close();
+        assertEquals(registered - 4, server.queryNames(pattern, null).size());
+    }
+
+    @Test
+    public void getUsersShouldLoadOnlyMissesTest() {
+        service.setup(3, true);
+        service.saveUsers(Arrays.asList(new UserModel(0, "Vasya"), new UserModel(0, "Petya"),
+                new UserModel(0, "Ivan")));
+        service.getUser(1);
+        Map<Integer, UserModel> users = service.getUsers(new int[]{2, 1, 3});
+        CacheStats stats = service.getCacheStats().get("users");
+
+        assertEquals(Arrays.asList(2, 1, 3), new ArrayList<>(users.keySet()));
+        assertEquals(1, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(2, stats.getLoadSuccessCount());
+
+        service.dropTables();
+
+        assertEquals(users, service.getUsers(new int[]{2, 1, 3}));
+    }
+
+    @Test
+    public void getPostsFromCacheTest() {
+        service.savePosts(Arrays.asList(new PostModel(0, "Hello Friends", 1), new PostModel(0, "Forum Rules", 2)));
+        Map<Integer, PostModel> posts = service.getPosts(new int[]{1, 2});
+
+        service.dropTables();
+
+        assertEquals(posts, service.getPosts(new int[]{1, 2}));
+        assertEquals(new PostModel(2, "Forum Rules", 2), service.getPost(2));
+        assertThrows(DataAccessException.class, () -> service.getPosts(new int[]{1, 3}));
+    }
+
+    @Test
+    public void writeBehindShouldCoalesceUpdatesTest() {
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        service.enableWriteBehind(1, TimeUnit.HOURS);
+
+        assertEquals(new PostModel(1, "Hello Folks", 1), service.savePost(new PostModel(1, "Hello Folks", 1)));
+        service.savePost(new PostModel(1, "Hello Everyone", 1));
+        service.savePost(new PostModel(1, "Hello World", 1));
+
+        assertEquals(1, service.getPendingWrites());
+        assertEquals(new PostModel(1, "Hello World", 1), service.getPost(1));
+        try (ForumService database = new ForumService()) {
+            database.setDbUrl(PostgresConfig.url);
+            assertEquals(new PostModel(1, "Hello Friends", 1), database.getPost(1));
+
+            service.flushWrites();
+
+            assertEquals(0, service.getPendingWrites());
+            assertEquals(new PostModel(1, "Hello World", 1), database.getPost(1));
+        }
+    }
+
+    @Test
+    public void writeBehindShouldFlushPeriodicallyTest() throws InterruptedException {
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.enableWriteBehind(20, TimeUnit.MILLISECONDS);
+
+        service.saveUser(new UserModel(1, "Vasiliy"));
+        for (int i = 0; i < 500 && service.getPendingWrites() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, service.getPendingWrites());
+        try (ForumService database = new ForumService()) {
+            database.setDbUrl(PostgresConfig.url);
+            assertEquals(new UserModel(1, "Vasiliy"), database.getUser(1));
+        }
+    }
+
+    @Test
+    public void writeBehindPendingUpdatesShouldSurviveEvictionTest() {
+        service.saveUsers(Arrays.asList(new UserModel(0, "Vasya"), new UserModel(0, "Petya"),
+                new UserModel(0, "Ivan"), new UserModel(0, "Masha")));
+        service.savePosts(Arrays.asList(new PostModel(0, "Hello Friends", 1), new PostModel(0, "Forum Rules", 2),
+                new PostModel(0, "General Discussion", 1), new PostModel(0, "FAQ", 2)));
+        service.enableWriteBehind(1, TimeUnit.HOURS);
+
+        service.saveUser(new UserModel(1, "Vasiliy"));
+        service.savePost(new PostModel(1, "Hello Folks", 1));
+        service.getUsers(new int[]{2, 3, 4});
+        service.getPosts(new int[]{2, 3, 4});
+
+        assertEquals(new UserModel(1, "Vasiliy"), service.getUser(1));
+        assertEquals(new PostModel(1, "Hello Folks", 1), service.getPost(1));
+        assertEquals(new UserModel(1, "Vasiliy"), service.getUsers(new int[]{2, 3, 4, 1}).get(1));
+        assertEquals(new PostModel(1, "Hello Folks", 1), service.getPosts(new int[]{2, 3, 4, 1}).get(1));
+    }
+
+    @Test
+    public void writeBehindBatchesShouldWriteAdditionsImmediatelyTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        service.enableWriteBehind(1, TimeUnit.HOURS);
+
+        assertEquals(Arrays.asList(new UserModel(1, "Vasiliy"), new UserModel(2, "Petya")),
+                service.saveUsers(Arrays.asList(new UserModel(1, "Vasiliy"), new UserModel(0, "Petya"))));
+        assertEquals(Arrays.asList(new PostModel(2, "Forum Rules", 2), new PostModel(1, "Hello Folks", 1)),
+                service.savePosts(Arrays.asList(new PostModel(0, "Forum Rules", 2),
+                        new PostModel(1, "Hello Folks", 1))));
+        assertEquals(2, service.getPendingWrites());
+        assertEquals(2, service.getUsersCount());
+        assertEquals(2, service.getPostsCount());
+
+        service.flushWrites();
+
+        service.setup(3);
+        assertEquals(0, service.getPendingWrites());
+    }
+
+    @Test
+    public void writeBehindUpdateOfMissingRowShouldBeDroppedTest() {
+        service.enableWriteBehind(1, TimeUnit.HOURS);
+
+        assertEquals(new UserModel(5, "Ghost"), service.saveUser(new UserModel(5, "Ghost")));
+        assertEquals(new PostModel(5, "Ghost Post", 5), service.savePost(new PostModel(5, "Ghost Post", 5)));
+        assertEquals(new UserModel(5, "Ghost"), service.getUser(5));
+
+        service.flushWrites();
+
+        assertNull(service.getUser(5));
+        assertNull(service.getPost(5));
+    }
+
+    @Test
+    public void writeBehindRemoveShouldDiscardPendingUpdateTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        service.enableWriteBehind(1, TimeUnit.HOURS);
+        service.saveUser(new UserModel(1, "Vasiliy"));
+        service.savePost(new PostModel(1, "Hello Folks", 1));
+
+        assertTrue(service.removeUser(1));
+        assertTrue(service.removePost(1));
+
+        assertEquals(0, service.getPendingWrites());
+        assertNull(service.getUser(1));
+        assertNull(service.getPost(1));
+    }
+
+    @Test
+    public void writeBehindShouldMovePostBetweenCreatorCountsOnFlushTest() {
+        service.savePosts(Arrays.asList(new PostModel(0, "Hello Friends", 1), new PostModel(0, "Forum Rules", 1)));
+        assertEquals(2, service.getPostsCount());
+        assertEquals(2, service.getPostsCountForCreator(1));
+        assertEquals(0, service.getPostsCountForCreator(2));
+        service.enableWriteBehind(1, TimeUnit.HOURS);
+        service.savePost(new PostModel(1, "Hello Friends", 2));
+        service.savePost(new PostModel(2, "Forum Rules", 2));
+
+        assertEquals(2, service.getPostsCountForCreator(1));
+        assertTrue(service.removePost(2));
+        service.flushWrites();
+        service.dropTables();
+
+        assertEquals(1, service.getPostsCount());
+        assertEquals(0, service.getPostsCountForCreator(1));
+        assertEquals(1, service.getPostsCountForCreator(2));
+    }
+
+    @Test
+    public void writeBehindFailedFlushShouldKeepUpdatesTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.enableWriteBehind(1, TimeUnit.HOURS);
+        service.saveUser(new UserModel(1, "Vasiliy"));
+        service.dropTables();
+
+        assertThrows(DataAccessException.class, service::flushWrites);
+        assertEquals(1, service.getPendingWrites());
+
+        service.setup(3);
+        assertEquals(0, service.getPendingWrites());
+    }
+
+    @Test
+    public void closeShouldFlushPendingUpdatesTest() {
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.enableWriteBehind(1, TimeUnit.HOURS);
+        service.saveUser(new UserModel(1, "Vasiliy"));
+
+        service.close();
+
+        try (ForumService database = new ForumService()) {
+            database.setDbUrl(PostgresConfig.url);
+            assertEquals(new UserModel(1, "Vasiliy"), database.getUser(1));
+        }
+    }
+
+    @Test
+    public void writeBehindShouldBeEnabledOnceTest() {
+        assertThrows(IllegalArgumentException.class, () -> service.enableWriteBehind(0, TimeUnit.SECONDS));
+        service.flushWrites();
+        service.enableWriteBehind(1, TimeUnit.SECONDS);
+
+        assertThrows(IllegalStateException.class, () -> service.enableWriteBehind(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void writeThroughShouldCacheSavedRowsTest() {
+        service.setup(3, true);
+        service.setWriteThrough(true);
+
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        service.saveUser(new UserModel(1, "Vasiliy"));
+        assertNull(service.saveUser(new UserModel(5, "Ghost")));
+
+        assertEquals(new UserModel(1, "Vasiliy"), service.getUser(1));
+        assertEquals(new PostModel(1, "Hello Friends", 1), service.getPost(1));
+        assertNull(service.getUserIfCached(5));
+        assertEquals(1, service.getUsersCount());
+        assertEquals(1, service.getPostsCountForCreator(1));
+        assertEquals(0, service.getCacheStats().get("users").getMissCount());
+        assertEquals(0, service.getCacheStats().get("posts").getMissCount());
+
+        service.savePost(new PostModel(1, "Hello Folks", 1));
+        service.dropTables();
+
+        assertEquals(new PostModel(1, "Hello Folks", 1), service.getPost(1));
+    }
+
+    @Test
+    public void writeThroughBatchesShouldCacheSavedRowsTest() {
+        service.setWriteThrough(true);
+        service.saveUsers(Arrays.asList(new UserModel(0, "Vasya"), new UserModel(0, "Petya")));
+        service.savePosts(Arrays.asList(new PostModel(0, "Hello Friends", 1), new PostModel(0, "Forum Rules", 2)));
+        service.saveUsers(Arrays.asList(new UserModel(2, "Pyotr"), new UserModel(7, "Ghost")));
+        service.savePosts(Arrays.asList(new PostModel(2, "Rules", 2), new PostModel(7, "Ghost Post", 7)));
+
+        service.dropTables();
+
+        assertEquals(new UserModel(1, "Vasya"), service.getUser(1));
+        assertEquals(new UserModel(2, "Pyotr"), service.getUser(2));
+        assertEquals(new PostModel(1, "Hello Friends", 1), service.getPost(1));
+        assertEquals(new PostModel(2, "Rules", 2), service.getPost(2));
+        assertNull(service.getUserIfCached(7));
+        assertNull(service.getPostIfCached(7));
+    }
+
+    @Test
+    public void writeThroughRemoveShouldInvalidateTest() {
+        service.setWriteThrough(true);
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+
+        assertTrue(service.removeUser(1));
+        assertTrue(service.removePost(1));
+
+        assertNull(service.getUser(1));
+        assertNull(service.getPost(1));
+        assertFalse(service.removeUser(1));
+    }
+
+    @Test
+    public void concurrentCreatorMovesShouldKeepCountsTest() throws Exception {
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        int creators = 4;
+        for (int creator = 1; creator <= creators; creator++) {
+            assertEquals(creator == 1 ? 1 : 0, service.getPostsCountForCreator(creator));
+        }
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 20; j++) {
+                        service.savePost(new PostModel(1, "Hello Friends", 1 + (thread + j) % creators));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        try (ForumService database = new ForumService()) {
+            database.setDbUrl(PostgresConfig.url);
+            for (int creator = 1; creator <= creators; creator++) {
+                assertEquals(database.getPostsCountForCreator(creator), service.getPostsCountForCreator(creator));
+            }
+        }
+    }
+
+    @Test
+    public void writeThroughConcurrentWritesShouldKeepCacheConsistentTest() throws Exception {
+        service.setWriteThrough(true);
+        service.saveUser(new UserModel(0, "Vasya"));
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 20; j++) {
+                        service.saveUser(new UserModel(1, "Vasya " + thread + "-" + j));
+                        service.getUser(1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        try (ForumService database = new ForumService()) {
+            database.setDbUrl(PostgresConfig.url);
+            assertEquals(database.getUser(1), service.getUser(1));
+        }
+    }
+
+    @Test
+    public void snapshotWithValuesShouldBeRestoredWithoutQueriesTest(@TempDir Path directory) {
+        Path file = directory.resolve("cache.snapshot");
+        service.saveUsers(Arrays.asList(new UserModel(0, "Vasya"), new UserModel(0, "Petya")));
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        service.getUser(1);
+        service.getUser(2);
+        service.getPost(1);
+        service.saveSnapshot(file, true);
+
+        service.setup(3);
+        assertNull(service.getUserIfCached(1));
+
+        assertTrue(service.restoreSnapshot(file, 1));
+        assertEquals(new UserModel(1, "Vasya"), service.getUserIfCached(1));
+        assertEquals(new UserModel(2, "Petya"), service.getUserIfCached(2));
+        assertEquals(new PostModel(1, "Hello Friends", 1), service.getPostIfCached(1));
+    }
+
+    @Test
+    public void snapshotShouldBeRestoredUpToCacheSizeTest(@TempDir Path directory) {
+        Path file = directory.resolve("cache.snapshot");
+        service.setup(5);
+        List<UserModel> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(new UserModel(0, "User" + i));
+        }
+        service.saveUsers(users);
+        for (int id = 1; id <= 5; id++) {
+            service.getUser(id);
+        }
+        service.getUser(5);
+        service.saveSnapshot(file, true);
+
+        service.setup(2);
+        service.dropTables();
+
+        assertTrue(service.restoreSnapshot(file, 1));
+        assertEquals(new UserModel(5, "User4"), service.getUserIfCached(5));
+        int cachedUsers = 0;
+        for (int id = 1; id <= 5; id++) {
+            if (service.getUserIfCached(id) != null) {
+                cachedUsers++;
+            }
+        }
+        assertEquals(2, cachedUsers);
+    }
+
+    @Test
+    public void snapshotWithoutValuesShouldBePrefetchedTest(@TempDir Path directory) {
+        Path file = directory.resolve("cache.snapshot");
+        List<UserModel> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(new UserModel(0, "User" + i));
+        }
+        service.saveUsers(users);
+        service.savePost(new PostModel(0, "Hello Friends", 1));
+        for (int id = 1; id <= 5; id++) {
+            service.getUser(id);
+        }
+        service.getPost(1);
+        service.getUser(5);
+        service.saveSnapshot(file, false);
+
+        service.setup(3);
+        service.saveUsers(users);
+        service.savePost(new PostModel(0, "Changed Friends", 1));
+
+        assertTrue(service.restoreSnapshot(file, 2));
+        assertEquals(new UserModel(5, "User4"), service.getUserIfCached(5));
+        assertEquals(new PostModel(1, "Changed Friends", 1), service.getPostIfCached(1));
+        int cachedUsers = 0;
+        for (int id = 1; id <= 5; id++) {
+            if (service.getUserIfCached(id) != null) {
+                cachedUsers++;
+            }
+        }
+        assertEquals(3, cachedUsers);
+
+        service.setup(3);
+        service.dropTables();
+        assertThrows(DataAccessException.class, () -> service.restoreSnapshot(file, 1));
+    }
+
+    @Test
+    public void invalidSnapshotShouldNotBeRestoredTest(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("cache.snapshot");
+        assertThrows(IllegalArgumentException.class, () -> service.restoreSnapshot(file, 0));
+        assertFalse(service.restoreSnapshot(file, 1));
+
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertThrows(UncheckedIOException.class, () -> service.restoreSnapshot(file, 1));
+
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.getUser(1);
+        service.saveSnapshot(file, true);
+        byte[] snapshot = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(snapshot, snapshot.length - 3));
+        assertThrows(UncheckedIOException.class, () -> service.restoreSnapshot(file, 1));
+
+        snapshot[9] = 7;
+        Files.write(file, snapshot);
+        assertThrows(UncheckedIOException.class, () -> service.restoreSnapshot(file, 1));
+
+        assertThrows(UncheckedIOException.class, () -> service.saveSnapshot(directory.resolve("none/cache"), false));
+    }
+
+    @Test
+    public void snapshotsShouldBeWrittenPeriodicallyAndOnCloseTest(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("cache.snapshot");
+        assertThrows(NullPointerException.class, () -> service.scheduleSnapshots(null, false, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> service.scheduleSnapshots(file, false, 0,
+                TimeUnit.SECONDS));
+        service.saveUser(new UserModel(0, "Vasya"));
+        service.getUser(1);
+
+        service.scheduleSnapshots(file, true, 10, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 500 && !Files.exists(file); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(file));
+        Files.delete(file);
+        service.close();
+        assertTrue(Files.exists(file));
+
+        CachedForumService restarted = new CachedForumService();
+        restarted.setDbUrl(PostgresConfig.url);
+        try {
+            restarted.setup(3);
+            assertTrue(restarted.restoreSnapshot(file, 1));
+            assertEquals(new UserModel(1, "Vasya"), restarted.getUserIfCached(1));
+        } finally {
+            restarted.close();
+        }
+    }
 }
@@ -0,0 +1,373 @@
+package education.bert.unit;
+
+import education.bert.PostgresConfig;
+import education.bert.util.jdbc.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+    private ConnectionPool pool = new ConnectionPool(PostgresConfig.url, 2, 2, 200, 10_000, 10_000,
+            TimeUnit.MILLISECONDS);
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionTest() {
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool(PostgresConfig.url, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool(PostgresConfig.url, 1, -1, 1, 1, 1,
+                TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool(PostgresConfig.url, 1, 0, -1, 1, 1,
+                TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool(PostgresConfig.url, 1, 0, 1, 0, 1,
+                TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool(PostgresConfig.url, 1, 0, 1, 1, 0,
+                TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldThrowNullPointerExceptionTest() {
+        assertThrows(NullPointerException.class, () -> new ConnectionPool(null));
+        assertThrows(NullPointerException.class, () -> new ConnectionPool(PostgresConfig.url, 1, 0, 1, 1, 1, null));
+    }
+
+    @Test
+    public void connectionShouldBeReusedTest() throws SQLException {
+        Connection physical;
+        try (Connection connection = pool.getConnection()) {
+            physical = connection.unwrap(Connection.class);
+            assertEquals(1, selectOne(connection));
+            assertEquals(1, pool.getActiveConnections());
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertSame(physical, connection.unwrap(Connection.class));
+        }
+        assertEquals(1, pool.getTotalConnections());
+        assertEquals(1, pool.getIdleConnections());
+        assertEquals(2, pool.getBorrowCount());
+        assertTrue(pool.getTotalWaitTime() >= pool.getMaxWaitTime());
+        assertTrue(pool.getAverageWaitTime() > 0);
+    }
+
+    @Test
+    public void closedConnectionShouldNotBeUsableTest() throws SQLException {
+        Connection connection = pool.getConnection();
+        assertFalse(connection.isClosed());
+        assertTrue(connection.isValid(1));
+        assertEquals(connection, connection);
+        assertEquals(System.identityHashCode(connection), connection.hashCode());
+        assertTrue(connection.toString().startsWith("Pooled"));
+        connection.close();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertFalse(connection.isValid(1));
+        assertThrows(SQLException.class, connection::createStatement);
+        assertEquals(1, pool.getIdleConnections());
+    }
+
+    @Test
+    public void requestShouldTimeOutTest() throws SQLException {
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+            assertEquals(2, pool.getActiveConnections());
+        }
+        assertEquals(1, pool.getTimeoutCount());
+        assertEquals(0, pool.getPendingThreads());
+    }
+
+    @Test
+    public void returnedConnectionShouldBeHandedOffTest() throws Exception {
+        ConnectionPool singlePool = new ConnectionPool(PostgresConfig.url, 1, 2, 10, 10, 10, TimeUnit.SECONDS);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Connection connection = singlePool.getConnection();
+            CountDownLatch started = new CountDownLatch(1);
+            Future<Integer> waiter = executor.submit(() -> {
+                started.countDown();
+                try (Connection handedOff = singlePool.getConnection()) {
+                    return selectOne(handedOff);
+                }
+            });
+            started.await();
+            while (singlePool.getPendingThreads() == 0) {
+                Thread.yield();
+            }
+            connection.close();
+            assertEquals(1, (int) waiter.get());
+            assertEquals(1, singlePool.getTotalConnections());
+            assertTrue(singlePool.getMaxWaitTime() > 0);
+        } finally {
+            executor.shutdown();
+            singlePool.close();
+        }
+    }
+
+    @Test
+    public void concurrentAccessTest() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        try (Connection connection = pool.getConnection()) {
+                            assertEquals(1, selectOne(connection));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getTotalConnections() <= 2);
+        assertEquals(800, pool.getBorrowCount());
+    }
+
+    @Test
+    public void openTransactionShouldBeRolledBackTest() throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DROP TABLE IF EXISTS pool_test;");
+            statement.executeUpdate("CREATE TABLE pool_test (id INTEGER);");
+        }
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.executeUpdate("INSERT INTO pool_test VALUES (1);");
+        }
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) = 0 FROM pool_test;")) {
+            assertTrue(connection.getAutoCommit());
+            assertTrue(resultSet.next());
+            assertTrue(resultSet.getBoolean(1));
+        }
+    }
+
+    @Test
+    public void queryErrorShouldNotBreakConnectionTest() throws SQLException {
+        Connection physical;
+        try (Connection connection = pool.getConnection()) {
+            physical = connection.unwrap(Connection.class);
+            assertThrows(SQLException.class, () -> connection.createStatement().executeQuery("SELECT * FROM nowhere;"));
+            assertThrows(SQLException.class, () -> connection.setTransactionIsolation(-1));
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertSame(physical, connection.unwrap(Connection.class));
+        }
+    }
+
+    @Test
+    public void brokenConnectionShouldBeRemovedTest() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            connection.unwrap(Connection.class).close();
+            assertThrows(SQLException.class, connection::createStatement);
+        }
+        assertEquals(0, pool.getTotalConnections());
+        try (Connection connection = pool.getConnection()) {
+            assertEquals(1, selectOne(connection));
+        }
+    }
+
+    @Test
+    public void expiredConnectionsShouldBeEvictedTest() throws Exception {
+        pool.close();
+        pool = new ConnectionPool(PostgresConfig.url, 2, 2, 1000, 100, 20, TimeUnit.MILLISECONDS);
+        Connection idle = pool.getConnection();
+        Connection borrowed = pool.getConnection();
+        idle.close();
+        Thread.sleep(300);
+
+        assertEquals(1, pool.getTotalConnections());
+        borrowed.close();
+        assertEquals(0, pool.getTotalConnections());
+    }
+
+    @Test
+    public void invalidConnectionsShouldBeEvictedTest() throws Exception {
+        pool.close();
+        pool = new ConnectionPool(PostgresConfig.url, 2, 2, 1000, 10_000, 20, TimeUnit.MILLISECONDS);
+        Connection connection = pool.getConnection();
+        Connection physical = connection.unwrap(Connection.class);
+        connection.close();
+        physical.close();
+        Thread.sleep(300);
+
+        assertEquals(0, pool.getTotalConnections());
+    }
+
+    @Test
+    public void abandonedPoolShouldBeGarbageCollectedTest() throws InterruptedException {
+        WeakReference<ConnectionPool> abandoned = new WeakReference<>(
+                new ConnectionPool(PostgresConfig.url, 1, 0, 1, 1, 1, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < 100 && abandoned.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(abandoned.get());
+    }
+
+    @Test
+    public void closedPoolShouldNotLendConnectionsTest() throws SQLException {
+        Connection borrowed = pool.getConnection();
+        pool.getConnection().close();
+        pool.close();
+
+        assertEquals(1, pool.getTotalConnections());
+        assertThrows(SQLException.class, pool::getConnection);
+        borrowed.close();
+        assertEquals(0, pool.getTotalConnections());
+    }
+
+    @Test
+    public void preparedStatementShouldBeCachedTest() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            PreparedStatement physical;
+            try (PreparedStatement statement = connection.prepareStatement("SELECT ?::int;")) {
+                physical = statement.unwrap(PreparedStatement.class);
+                statement.setInt(1, 1);
+                assertEquals(1, selectInt(statement));
+                assertSame(connection, statement.getConnection());
+                assertEquals(statement, statement);
+                assertEquals(System.identityHashCode(statement), statement.hashCode());
+                assertTrue(statement.toString().startsWith("Cached"));
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT ?::int;")) {
+                assertSame(physical, statement.unwrap(PreparedStatement.class));
+                assertThrows(SQLException.class, statement::executeQuery);
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT ?::int;",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                assertNotSame(physical, statement.unwrap(PreparedStatement.class));
+            }
+            PreparedStatement returned = connection.prepareStatement("SELECT ?::int;");
+            returned.close();
+            returned.close();
+            assertTrue(returned.isClosed());
+            assertFalse(physical.isClosed());
+            assertThrows(SQLException.class, () -> returned.setInt(1, 1));
+        }
+    }
+
+    @Test
+    public void statementInUseShouldNotBeSharedTest() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement first = connection.prepareStatement("SELECT ?::int;");
+             PreparedStatement second = connection.prepareStatement("SELECT ?::int;")) {
+            assertNotSame(first.unwrap(PreparedStatement.class), second.unwrap(PreparedStatement.class));
+            first.setInt(1, 1);
+            second.setInt(1, 2);
+            assertEquals(1, selectInt(first));
+            assertEquals(2, selectInt(second));
+        }
+    }
+
+    @Test
+    public void evictedStatementShouldBeClosedTest() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            PreparedStatement inUse = connection.prepareStatement("SELECT 1;");
+            PreparedStatement idle = connection.prepareStatement("SELECT 2;");
+            PreparedStatement physicalInUse = inUse.unwrap(PreparedStatement.class);
+            PreparedStatement physicalIdle = idle.unwrap(PreparedStatement.class);
+            idle.close();
+            connection.prepareStatement("SELECT 3;").close();
+            connection.prepareStatement("SELECT 4;").close();
+
+            assertTrue(physicalIdle.isClosed());
+            assertFalse(physicalInUse.isClosed());
+            assertEquals(1, selectInt(inUse));
+            inUse.close();
+            assertTrue(physicalInUse.isClosed());
+        }
+    }
+
+    @Test
+    public void closedStatementShouldNotBeCachedTest() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            PreparedStatement physical;
+            try (PreparedStatement statement = connection.prepareStatement("SELECT 1;")) {
+                physical = statement.unwrap(PreparedStatement.class);
+                physical.close();
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT 1;")) {
+                assertNotSame(physical, statement.unwrap(PreparedStatement.class));
+                assertEquals(1, selectInt(statement));
+            }
+        }
+    }
+
+    @Test
+    public void statementCacheCanBeDisabledTest() throws SQLException {
+        pool.close();
+        pool = new ConnectionPool(PostgresConfig.url, 1, 0, 1000, 10_000, 10_000, TimeUnit.MILLISECONDS);
+        try (Connection connection = pool.getConnection()) {
+            PreparedStatement statement = connection.prepareStatement("SELECT 1;");
+            PreparedStatement physical = statement.unwrap(PreparedStatement.class);
+            statement.close();
+            assertTrue(physical.isClosed());
+        }
+    }
+
+    @Test
+    public void brokenStatementConnectionShouldBeRemovedTest() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1;")) {
+            connection.unwrap(Connection.class).close();
+            assertThrows(SQLException.class, statement::executeQuery);
+            assertThrows(SQLException.class, () -> connection.prepareStatement("SELECT 2;"));
+        }
+        assertEquals(0, pool.getTotalConnections());
+    }
+
+    @Test
+    public void dataSourceTest() throws SQLException {
+        pool.setLoginTimeout(1);
+        pool.setLogWriter(null);
+        assertEquals(0, pool.getLoginTimeout());
+        assertNull(pool.getLogWriter());
+        assertSame(pool, pool.unwrap(ConnectionPool.class));
+        assertTrue(pool.isWrapperFor(ConnectionPool.class));
+        assertFalse(pool.isWrapperFor(String.class));
+        assertThrows(SQLException.class, () -> pool.unwrap(String.class));
+        assertThrows(SQLFeatureNotSupportedException.class, () -> pool.getConnection("user", "password"));
+        assertThrows(SQLFeatureNotSupportedException.class, pool::getParentLogger);
+    }
+
+    private static int selectInt(PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static int selectOne(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT 1;")) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+}
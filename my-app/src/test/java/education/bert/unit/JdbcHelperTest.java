@@ -0,0 +1,111 @@
+package education.bert.unit;
+
+import education.bert.PostgresConfig;
+import education.bert.exception.DataAccessException;
+import education.bert.util.jdbc.ConnectionPool;
+import education.bert.util.jdbc.JdbcHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcHelperTest {
+    private final ConnectionPool pool = new ConnectionPool(PostgresConfig.url, 1, 2, 200, 10_000, 10_000,
+            TimeUnit.MILLISECONDS);
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    private Stream<Integer> series(int count, int fetchSize) throws SQLException {
+        return JdbcHelper.executeQueryForStream(
+                pool,
+                "SELECT i FROM generate_series(1, ?) AS t(i);",
+                fetchSize,
+                statement ->
+                {
+                    statement.setInt(1, count);
+                    return statement;
+                },
+                resultSet ->
+                {
+                    if (fetchSize > 0) {
+                        assertEquals(fetchSize, resultSet.getStatement().getFetchSize());
+                    }
+                    return resultSet.getInt("i");
+                }
+        );
+    }
+
+    @Test
+    public void shouldThrowIllegalArgumentExceptionTest() {
+        assertThrows(IllegalArgumentException.class, () -> series(1, -1));
+        assertEquals(0, pool.getTotalConnections());
+    }
+
+    @Test
+    public void streamShouldReadAllRowsTest() throws SQLException {
+        try (Stream<Integer> stream = series(10_000, 100)) {
+            assertEquals(1, pool.getActiveConnections());
+            assertEquals(50_005_000L, stream.mapToLong(Integer::longValue).sum());
+        }
+        assertEquals(0, pool.getActiveConnections());
+        try (Stream<Integer> stream = series(3, 0)) {
+            assertEquals(Arrays.asList(1, 2, 3), stream.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void closeShouldReturnConnectionTest() throws SQLException {
+        try (Stream<Integer> stream = series(10_000, 10)) {
+            Iterator<Integer> iterator = stream.iterator();
+            assertEquals(1, iterator.next().intValue());
+            assertEquals(2, iterator.next().intValue());
+        }
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+        try (Stream<Integer> stream = series(2, 10)) {
+            assertEquals(Arrays.asList(1, 2), stream.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void errorWhileReadingShouldBeReplacedTest() throws SQLException {
+        try (Stream<Integer> stream = JdbcHelper.executeQueryForStream(
+                pool,
+                "SELECT 1 / (2 - i) AS q FROM generate_series(1, 3) AS t(i);",
+                1,
+                statement -> statement,
+                resultSet -> resultSet.getInt("q")
+        )) {
+            Iterator<Integer> iterator = stream.iterator();
+            assertEquals(1, iterator.next().intValue());
+            assertThrows(DataAccessException.class, iterator::next);
+        }
+        assertEquals(0, pool.getActiveConnections());
+    }
+
+    @Test
+    public void errorWhileQueryingShouldReturnConnectionTest() throws SQLException {
+        assertThrows(SQLException.class, () -> JdbcHelper.executeQueryForStream(
+                pool,
+                "SELECT id FROM missing_table;",
+                1,
+                statement -> statement,
+                resultSet -> resultSet.getInt("id")
+        ));
+        assertEquals(0, pool.getActiveConnections());
+        try (Stream<Integer> stream = JdbcHelper.executeQueryForStream(pool, "SELECT 1 AS one;", 1,
+                statement -> statement, resultSet -> resultSet.getInt("one"))) {
+            assertEquals(Arrays.asList(1), stream.collect(Collectors.toList()));
+        }
+    }
+}
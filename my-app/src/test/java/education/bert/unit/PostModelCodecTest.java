@@ -0,0 +1,34 @@
+package education.bert.unit;
+
+import education.bert.CacheOffHeapImpl;
+import education.bert.codec.PostModelCodec;
+import education.bert.model.PostModel;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PostModelCodecTest {
+    private final PostModelCodec codec = new PostModelCodec();
+
+    @Test
+    public void encodeDecodeTest() {
+        PostModel post = new PostModel(7, "Hello Friends", 42);
+        ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(post));
+        codec.encode(post, buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        assertEquals(post, codec.decode(buffer));
+    }
+
+    @Test
+    public void offHeapCacheTest() {
+        CacheOffHeapImpl<Integer, PostModel> cache = new CacheOffHeapImpl<>(1 << 20, 1 << 16, codec);
+        for (int i = 1; i <= 1000; i++) {
+            cache.put(i, new PostModel(i, "Post" + i, i % 10));
+        }
+        assertEquals(new PostModel(500, "Post500", 0), cache.get(500));
+        assertEquals(1000, cache.size());
+    }
+}
@@ -0,0 +1,34 @@
+package education.bert.unit;
+
+import education.bert.CacheOffHeapImpl;
+import education.bert.codec.UserModelCodec;
+import education.bert.model.UserModel;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UserModelCodecTest {
+    private final UserModelCodec codec = new UserModelCodec();
+
+    @Test
+    public void encodeDecodeTest() {
+        UserModel user = new UserModel(42, "Вася");
+        ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(user));
+        codec.encode(user, buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        assertEquals(user, codec.decode(buffer));
+    }
+
+    @Test
+    public void offHeapCacheTest() {
+        CacheOffHeapImpl<Integer, UserModel> cache = new CacheOffHeapImpl<>(1 << 20, 1 << 16, codec);
+        for (int i = 1; i <= 1000; i++) {
+            cache.put(i, new UserModel(i, "User" + i));
+        }
+        assertEquals(new UserModel(500, "User500"), cache.get(500));
+        assertEquals(1000, cache.size());
+    }
+}